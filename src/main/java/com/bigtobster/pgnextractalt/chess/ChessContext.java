@@ -95,7 +95,8 @@ class ChessContext
 	private static final String SITE_KEY                 = "Site";
 	private static final String WHITE_ELO_KEY            = "WhiteElo";
 	private final String[] tagKeys;
-	private ArrayList<Game> games = new ArrayList<Game>(10);
+	private ArrayList<GameRecord> records = new ArrayList<GameRecord>(10);
+	private CompactGameStore      store   = null;
 
 	/**
 	 * Initialises the chess context
@@ -157,7 +158,7 @@ class ChessContext
 	public String toString()
 	{
 		return "ChessContext{" +
-			   ", games=" + this.games +
+			   ", records=" + this.records +
 			   '}';
 	}
 
@@ -168,17 +169,68 @@ class ChessContext
 	 */
 	void addGames(final ArrayList<Game> newGames)
 	{
-		this.games.addAll(newGames);
+		for(final Game game : newGames)
+		{
+			this.records.add(new GameRecord(game));
+		}
+	}
+
+	/**
+	 * Adds a list of game records to the existing list of games
+	 *
+	 * @param newRecords The list of records to be added to currently stored list of games
+	 */
+	void addRecords(final ArrayList<GameRecord> newRecords)
+	{
+		this.records.addAll(newRecords);
+	}
+
+	/**
+	 * Moves every game into a compact store. Games that the store cannot hold without loss are kept as they are.
+	 *
+	 * @param allocator The allocator of the store's arrays - on or off the heap
+	 * @return The number of games now held compactly
+	 */
+	int compact(final StoreAllocator allocator)
+	{
+		final CompactGameStore store = new CompactGameStore(allocator);
+		final ArrayList<GameRecord> compactRecords = new ArrayList<GameRecord>(this.records.size());
+		for(final GameRecord record : this.records)
+		{
+			final int storeIndex = store.add(record.readGame());
+			compactRecords.add((storeIndex == CompactGameStore.NOT_STORED) ? record : new GameRecord(store, storeIndex));
+		}
+		//Every game has been read out of any previous store so the context's claim on it can go
+		this.closeStore();
+		this.store = store;
+		this.setRecords(compactRecords);
+		return store.getGameCount();
+	}
+
+	/**
+	 * Getter for the number of games. Does not force lazily imported games to be parsed.
+	 *
+	 * @return The number of current games
+	 */
+	int getGameCount()
+	{
+		return this.records.size();
 	}
 
 	/**
-	 * Getter for the list of games
+	 * Getter for the list of games. Lazily imported and compact games are only kept softly by their records and may be read afresh on any call,
+	 * so tags inserted into them must be written back with writeTags.
 	 *
 	 * @return ArrayList&lt;Game&gt; The list of current games
 	 */
 	ArrayList<Game> getGames()
 	{
-		return this.games;
+		final ArrayList<Game> games = new ArrayList<Game>(this.records.size());
+		for(final GameRecord record : this.records)
+		{
+			games.add(record.readGame());
+		}
+		return games;
 	}
 
 	/**
@@ -187,9 +239,66 @@ class ChessContext
 	 * @param newGames The list of games to replace the currently stored games
 	 */
 	void setGames(final ArrayList<Game> newGames)
+	{
+		this.records = new ArrayList<GameRecord>(newGames.size());
+		for(final Game game : newGames)
+		{
+			this.records.add(new GameRecord(game));
+		}
+		this.closeUnreferencedStore();
+	}
+
+	/**
+	 * Getter for the game records. Unlike getGames this does not force lazily imported games to be parsed.
+	 *
+	 * @return The list of current game records
+	 */
+	ArrayList<GameRecord> getRecords()
+	{
+		return this.records;
+	}
+
+	/**
+	 * Getter for the compact store the current games may be held in
+	 *
+	 * @return The compact store or null if there is none
+	 */
+	CompactGameStore getStore()
+	{
+		return this.store;
+	}
+
+	/**
+	 * Setter for the game records. The context's claim on a compact store which none of the new records hold games in is released.
+	 *
+	 * @param newRecords The list of records to replace the currently stored games
+	 */
+	void setRecords(final ArrayList<GameRecord> newRecords)
 	{
 		//noinspection AssignmentToCollectionOrArrayFieldFromParameter
-		this.games = newGames;
+		this.records = newRecords;
+		this.closeUnreferencedStore();
+	}
+
+	/**
+	 * Setter for the game records of a view. The context takes its own claim on the compact store the records may be held in, so that the
+	 * store stays open for them after the view is released.
+	 *
+	 * @param newRecords  The list of records to replace the currently stored games
+	 * @param recordStore The compact store the records may be held in, null if there is none
+	 */
+	void setRecords(final ArrayList<GameRecord> newRecords, final CompactGameStore recordStore)
+	{
+		if(recordStore != this.store)
+		{
+			if(recordStore != null)
+			{
+				recordStore.retain();
+			}
+			this.closeStore();
+			this.store = recordStore;
+		}
+		this.setRecords(newRecords);
 	}
 
 	/**
@@ -209,14 +318,61 @@ class ChessContext
 	 */
 	boolean isPGNImported()
 	{
-		return ! this.games.isEmpty();
+		return ! this.records.isEmpty();
 	}
 
 	/**
-	 * Resets PGN-Extract-Alt Context
+	 * Resets PGN-Extract-Alt Context. Views still holding games in a compact store keep it open until they are released.
 	 */
 	void reset()
 	{
-		this.games.clear();
+		this.closeStore();
+		this.records.clear();
+	}
+
+	/**
+	 * Writes the tags of games returned by getGames back to the current games
+	 *
+	 * @param games The games, in the order returned by getGames
+	 */
+	void writeTags(final ArrayList<Game> games)
+	{
+		if(games.size() != this.records.size())
+		{
+			throw new IllegalArgumentException("Expected " + this.records.size() + " games but was given " + games.size());
+		}
+		for(int i = 0; i < games.size(); i++)
+		{
+			this.records.get(i).writeTags(games.get(i));
+		}
+	}
+
+	private void closeStore()
+	{
+		if(this.store != null)
+		{
+			this.store.release();
+			this.store = null;
+		}
+	}
+
+	/**
+	 * Releases the context's claim on the compact store once no current record holds a game in it, so that its off-heap memory and scratch file
+	 * are let go of without waiting for a reset once no view holds a claim either
+	 */
+	private void closeUnreferencedStore()
+	{
+		if(this.store == null)
+		{
+			return;
+		}
+		for(final GameRecord record : this.records)
+		{
+			if(record.isStoredIn(this.store))
+			{
+				return;
+			}
+		}
+		this.closeStore();
 	}
 }
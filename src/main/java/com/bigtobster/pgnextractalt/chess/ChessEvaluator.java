@@ -14,7 +14,12 @@ import chesspresso.Chess;
 import chesspresso.game.Game;
 import chesspresso.move.Move;
 import chesspresso.position.Position;
+import com.bigtobster.pgnextractalt.filters.GameFingerprint;
+import com.bigtobster.pgnextractalt.uciEngine.SearchLimit;
+import com.bigtobster.pgnextractalt.uciEngine.SearchLimitMode;
+import com.bigtobster.pgnextractalt.uciEngine.SearchResult;
 import com.bigtobster.pgnextractalt.uciEngine.UCIEngine;
+import com.bigtobster.pgnextractalt.uciEngine.UCIEnginePool;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.naming.OperationNotSupportedException;
@@ -23,6 +28,13 @@ import java.net.URISyntaxException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -32,10 +44,12 @@ import java.util.logging.Logger;
  */
 public class ChessEvaluator
 {
-	private static final char   HYPHEN = '-';
-	@SuppressWarnings("UnusedDeclaration")
-	private static final Logger LOGGER = Logger.getLogger(ChessEvaluator.class.getName());
-	private static final String SPACE  = " ";
+	private static final char    HYPHEN            = '-';
+	private static final Logger  LOGGER            = Logger.getLogger(ChessEvaluator.class.getName());
+	private static final int     PAIRS_PER_TASK    = 16;
+	private static final int     PLAN_WINDOW_GAMES = 1024;
+	private static final String  SPACE             = " ";
+	private static       boolean isEngineRetained  = false;
 	@SuppressWarnings("InstanceVariableMayNotBeInitialized")
 	@Autowired
 	private ChessContext   chessContext;
@@ -50,113 +64,311 @@ public class ChessEvaluator
 	 *
 	 * @param games The list of games the be assessed for machine correlation
 	 * @param depth The minimum depth that the engine will look for before returning a best move
-	 * @param wait  The period of time the application will wait in ms before polling the uci engine for a best move/delay
+	 * @param wait  No longer used - the engine's output is read as soon as it is written
 	 * @param force Whether to overwrite cases which have already got a MC value
 	 * @return The number of games correctly evaluated
 	 * @throws IOException                    Thrown on an unknown engine failure - typically a failure to connect to the engine for some reason
 	 * @throws OperationNotSupportedException Thrown when connected to the engine but engine does not support the current operating system or
 	 *                                        architecture
 	 * @throws java.net.URISyntaxException    Thrown on a failure to detect a Stockfish binary
+	 * @deprecated Use {@link #evaluateMachineCorrelation(java.util.ArrayList, MachineCorrelationSettings)}
 	 */
-	@SuppressWarnings({
-							  "FeatureEnvy",
-							  "OverlyLongMethod"
-							  , "BooleanParameter"
-							  , "MethodWithMoreThanThreeNegations"
-					  })
+	@SuppressWarnings({"BooleanParameter", "UnusedParameters"})
+	@Deprecated
 	public static int evaluateMachineCorrelation(final ArrayList<Game> games, final int depth, final int wait, final boolean force) throws
 																																	IOException,
 																																	OperationNotSupportedException,
 																																	URISyntaxException
 	{
-		final NumberFormat formatter = new DecimalFormat("#0.00");
-		final UCIEngine uciEngine = new UCIEngine();
-		uciEngine.startEngine(ChessContext.resolveStockfishPath());
-		int modifiedGames = 0;
-		boolean isGameModified = false;
-		for(final Game game : games)
+		final MachineCorrelationSettings settings = new MachineCorrelationSettings(depth);
+		settings.setForce(force);
+		return ChessEvaluator.evaluateMachineCorrelation(games, settings);
+	}
+
+	/**
+	 * Evaluates how closely each player correlates to a machine, sharing the games out between a pool of engines. Each engine runs as its own
+	 * process with its own threads and hash, and games are handed to whichever engine is free. The tags are only written once every game has been
+	 * evaluated and are written in game order, so the outcome does not depend on which engine evaluated which game.
+	 *
+	 * @param games    The list of games the be assessed for machine correlation
+	 * @param settings The search, engine and scoring settings
+	 * @return The number of games correctly evaluated
+	 * @throws IOException                    Thrown on an unknown engine failure - typically a failure to connect to the engine for some reason
+	 * @throws OperationNotSupportedException Thrown when connected to the engine but engine does not support the current operating system or
+	 *                                        architecture
+	 * @throws java.net.URISyntaxException    Thrown on a failure to detect a Stockfish binary
+	 */
+	public static int evaluateMachineCorrelation(
+			final ArrayList<Game> games, final MachineCorrelationSettings settings
+												) throws IOException, OperationNotSupportedException, URISyntaxException
+	{
+		final String enginePath = ChessContext.resolveStockfishPath();
+		final int searchId = ChessEvaluator.getSearchId(UCIEngine.getEngineDigest(enginePath), settings);
+		CorrelationJournal journal = null;
+		if(settings.getJournalFile() != null)
+		{
+			journal = new CorrelationJournal(
+					settings.getJournalFile(),
+					settings.getDepth(),
+					settings.isSingleSearch(),
+					settings.isForce(),
+					searchId
+											);
+		}
+		UCIEnginePool enginePool = null;
+		boolean isCompleted = false;
+		final ForkJoinPool executor = new ForkJoinPool(settings.getEngines());
+		try
 		{
-			float whiteMCScore = 0.0F;
-			float blackMCScore = 0.0F;
-			if(force || ! ChessPresso.isMachineCorrelationEvaluated(game.getWhite()) || ! ChessPresso.isMachineCorrelationEvaluated(game.getBlack()))
+			if(settings.getSyzygyPath() == null)
+			{
+				enginePool = UCIEnginePool.claimPrestarted(enginePath, settings.getEngines(), settings.getEngineThreads(), settings.getEngineHash());
+			}
+			if(enginePool == null)
+			{
+				enginePool = new UCIEnginePool(settings.getEngines(), settings.getEngineThreads(), settings.getEngineHash());
+				enginePool.setSyzygyPath(settings.getSyzygyPath());
+				enginePool.start(enginePath);
+			}
+			final float[][] gameScores;
+			if(settings.isSingleSearch())
 			{
-				game.gotoStart();
-				Move move = game.getNextMove();
-				while(move != null)
+				gameScores = ChessEvaluator.evaluateSingleSearchGames(games, settings, enginePool, executor, searchId, journal);
+			}
+			else
+			{
+				gameScores = ChessEvaluator.evaluatePlannedGames(games, settings, enginePool, executor, journal);
+			}
+			int modifiedGames = 0;
+			for(int i = 0; i < games.size(); i++)
+			{
+				if(ChessEvaluator.insertMachineCorrelationTags(games.get(i), gameScores[i], settings.isForce()))
 				{
-					final Position position = game.getPosition();
-					if(move.isWhiteMove())
-					{
-						if(force || ! ChessPresso.isMachineCorrelationEvaluated(game.getWhite()))
-						{
-							final float moveScore = ChessEvaluator.evaluateMoveCorrelationScore(uciEngine, depth, wait, move, position);
-							whiteMCScore += moveScore;
-						}
-					}
-					else
-					{
-						if(force || ! ChessPresso.isMachineCorrelationEvaluated(game.getBlack()))
-						{
-							final float moveScore = ChessEvaluator.evaluateMoveCorrelationScore(uciEngine, depth, wait, move, position);
-							blackMCScore += moveScore;
-						}
-					}
-					game.goForward();
-					move = game.getNextMove();
-					uciEngine.reset();
+					modifiedGames++;
 				}
 			}
-			if(force || ! ChessPresso.isMachineCorrelationEvaluated(game.getWhite()))
+			isCompleted = true;
+			return modifiedGames;
+		}
+		catch(final InterruptedException interruptedException)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while evaluating machine correlation", interruptedException);
+		}
+		finally
+		{
+			executor.shutdown();
+			// Engines which saw a failure or an interrupt may be mid-search or broken, so only a clean run hands them on
+			if((enginePool != null) && isCompleted && ChessEvaluator.isEngineRetained && (settings.getSyzygyPath() == null))
 			{
-				final String newWhiteName = game.getWhite() + ChessEvaluator.SPACE + ChessEvaluator.HYPHEN + ChessEvaluator.SPACE +
-											ChessPresso.MC_TAG_PREFIX + ChessEvaluator.SPACE + formatter.format((double) whiteMCScore);
-				game.setTag(ChessContext.WHITE_KEY, newWhiteName);
-				isGameModified = true;
+				enginePool.retain(enginePath);
 			}
-			if(force || ! ChessPresso.isMachineCorrelationEvaluated(game.getBlack()))
+			else if(enginePool != null)
+			{
+				enginePool.stop();
+			}
+			if(journal != null)
+			{
+				journal.close();
+			}
+		}
+	}
+
+	/**
+	 * Starts an engine in the background with the default engine settings, so that the next machine correlation evaluation which uses those
+	 * settings does not wait for the engine to start. Does nothing on an unsupported operating system or architecture.
+	 */
+	public static void prestartEngines()
+	{
+		try
+		{
+			UCIEnginePool.prestart(ChessContext.resolveStockfishPath(), 1, UCIEngine.USE_THREADS, UCIEngine.USE_HASH_MB);
+		}
+		catch(@SuppressWarnings("LocalVariableNamingConvention") final OperationNotSupportedException operationNotSupportedException)
+		{
+			ChessEvaluator.LOGGER.log(Level.FINE, "Engine not prestarted", operationNotSupportedException);
+		}
+	}
+
+	/**
+	 * Sets whether the engines of a machine correlation evaluation are kept running once it has finished, so that the next evaluation with the
+	 * same engine settings claims them rather than starting its own. Evaluations which use Syzygy tablebases always stop their engines. Turning this
+	 * off stops any engines that are being kept.
+	 *
+	 * @param isRetained Whether to keep the engines running
+	 */
+	public static void setEnginesRetained(final boolean isRetained)
+	{
+		ChessEvaluator.isEngineRetained = isRetained;
+		if(! isRetained)
+		{
+			try
 			{
-				final String newBlackName = game.getBlack() + ChessEvaluator.SPACE + ChessEvaluator.HYPHEN + ChessEvaluator.SPACE +
-											ChessPresso.MC_TAG_PREFIX + ChessEvaluator.SPACE + formatter.format((double) blackMCScore);
-				game.setTag(ChessContext.BLACK_KEY, newBlackName);
-				isGameModified = true;
+				UCIEnginePool.releasePrestarted();
 			}
-			if(isGameModified)
+			catch(final InterruptedException ignored)
 			{
-				modifiedGames++;
+				Thread.currentThread().interrupt();
 			}
 		}
-		uciEngine.stopEngine();
-		return modifiedGames;
 	}
 
-	private static String convertLANtoCoordinateNotation(final Move move)
+	/**
+	 * Converts a move into the coordinate notation used by UCI engines
+	 *
+	 * @param move The move
+	 * @return The move's from and to squares, followed by the promotion piece in lower case if any
+	 */
+	static String convertLANtoCoordinateNotation(final Move move)
+	{
+		final String coordinateMove = Chess.sqiToStr(move.getFromSqi()) + Chess.sqiToStr(move.getToSqi());
+		if(move.isPromotion())
+		{
+			return coordinateMove + Character.toLowerCase(Chess.pieceToChar(move.getPromo()));
+		}
+		return coordinateMove;
+	}
+
+	/**
+	 * Scores the unique (position, played move) pairs of a plan, sharing them out between the engines in the pool in small runs
+	 *
+	 * @return The score of each pair, by pair index
+	 */
+	private static float[] evaluatePairs(
+			final CorrelationPlan plan, final SearchLimit searchLimit, final UCIEnginePool enginePool, final ForkJoinPool executor
+										) throws IOException, InterruptedException
 	{
-		return Chess.sqiToStr(move.getFromSqi()) + Chess.sqiToStr(move.getToSqi());
+		final int pairCount = plan.getPairCount();
+		final ArrayList<Callable<float[]>> tasks = new ArrayList<Callable<float[]>>();
+		for(int from = 0; from < pairCount; from += ChessEvaluator.PAIRS_PER_TASK)
+		{
+			tasks.add(new PairCorrelationTask(enginePool, plan, searchLimit, from, Math.min(from + ChessEvaluator.PAIRS_PER_TASK, pairCount)));
+		}
+		final List<Future<float[]>> results = executor.invokeAll(tasks);
+		final float[] pairScores = new float[pairCount];
+		for(int i = 0; i < results.size(); i++)
+		{
+			final float[] taskScores = ChessEvaluator.getScores(results.get(i));
+			System.arraycopy(taskScores, 0, pairScores, i * ChessEvaluator.PAIRS_PER_TASK, taskScores.length);
+		}
+		return pairScores;
 	}
 
+	/**
+	 * Scores games with the three search method, planning a window of games at a time so that each (position, played move) pair is only searched
+	 * once. Each ply starts from a fresh engine, so a pair's score does not depend on the game it came from. The journal is brought up to date at
+	 * the end of every window.
+	 *
+	 * @return The white and black scores of each game, in game order
+	 */
 	@SuppressWarnings({"FeatureEnvy", "MethodWithTooManyParameters"})
+	private static float[][] evaluatePlannedGames(
+			final ArrayList<Game> games, final MachineCorrelationSettings settings, final UCIEnginePool enginePool, final ForkJoinPool executor,
+			final CorrelationJournal journal
+												 ) throws IOException, InterruptedException
+	{
+		final Map<String, Float> rememberedScores = CorrelationPlan.newRememberedScores();
+		final float[][] gameScores = new float[games.size()][];
+		for(int windowStart = 0; windowStart < games.size(); windowStart += ChessEvaluator.PLAN_WINDOW_GAMES)
+		{
+			final int windowEnd = Math.min(windowStart + ChessEvaluator.PLAN_WINDOW_GAMES, games.size());
+			final CorrelationPlan plan = new CorrelationPlan(rememberedScores);
+			final int[] planGames = new int[windowEnd - windowStart];
+			final GameFingerprint[] fingerprints = new GameFingerprint[windowEnd - windowStart];
+			for(int i = windowStart; i < windowEnd; i++)
+			{
+				planGames[i - windowStart] = - 1;
+				if(journal != null)
+				{
+					fingerprints[i - windowStart] = journal.newFingerprint();
+					fingerprints[i - windowStart].compute(games.get(i));
+					gameScores[i] = journal.get(fingerprints[i - windowStart]);
+				}
+				if(gameScores[i] == null)
+				{
+					planGames[i - windowStart] = plan.addGame(games.get(i), settings.isForce());
+				}
+			}
+			plan.setPairScores(ChessEvaluator.evaluatePairs(plan, settings.getSearchLimit(), enginePool, executor));
+			for(int i = windowStart; i < windowEnd; i++)
+			{
+				if(planGames[i - windowStart] >= 0)
+				{
+					gameScores[i] = plan.getGameScores(planGames[i - windowStart]);
+					if(journal != null)
+					{
+						journal.append(fingerprints[i - windowStart], gameScores[i]);
+					}
+				}
+			}
+		}
+		return gameScores;
+	}
+
+	/**
+	 * Sums the correlation scores of every move of each player who still needs evaluating, searching every position of the game once. The game is
+	 * fed to the engine a move at a time and the engine's hash table is only cleared at the start of the game, so each search can reuse the work
+	 * done for the plies before it. Positions found in the evaluation cache are not searched at all.
+	 *
+	 * @return The white and black scores, in that order
+	 */
+	@SuppressWarnings({"FeatureEnvy", "MethodWithMoreThanThreeNegations"})
+	private static float[] evaluateGameSingleSearchScores(
+			final UCIEngine uciEngine, final Game game, final MachineCorrelationSettings settings, final int engineId
+														 ) throws IOException
+	{
+		final boolean force = settings.isForce();
+		float whiteMCScore = 0.0F;
+		float blackMCScore = 0.0F;
+		final boolean evaluateWhite = force || ! ChessPresso.isMachineCorrelationEvaluated(game.getWhite());
+		final boolean evaluateBlack = force || ! ChessPresso.isMachineCorrelationEvaluated(game.getBlack());
+		if(evaluateWhite || evaluateBlack)
+		{
+			game.gotoStart();
+			uciEngine.startGame(game.getPosition().getFEN());
+			SearchResult before = ChessEvaluator.searchPosition(uciEngine, game.getPosition(), settings, engineId);
+			Move move = game.getNextMove();
+			while(move != null)
+			{
+				uciEngine.playMove(ChessEvaluator.convertLANtoCoordinateNotation(move));
+				game.goForward();
+				final SearchResult after = ChessEvaluator.searchPosition(uciEngine, game.getPosition(), settings, engineId);
+				final float moveScore = ChessEvaluator.getSingleSearchMoveScore(move, before, after);
+				if(move.isWhiteMove())
+				{
+					whiteMCScore += evaluateWhite ? moveScore : 0.0F;
+				}
+				else
+				{
+					blackMCScore += evaluateBlack ? moveScore : 0.0F;
+				}
+				before = after;
+				move = game.getNextMove();
+			}
+		}
+		return new float[]{whiteMCScore, blackMCScore};
+	}
+
 	private static float evaluateMoveCorrelationScore(
-			final UCIEngine uciEngine, final int depth, final int wait, final Move move,
-			final Position currentPosition
+			final UCIEngine uciEngine, final SearchLimit searchLimit, final String actualMoveCoordinate, final String fen
 													 ) throws IOException
 	{
-		uciEngine.setPosition(currentPosition.getFEN());
-		final String actualMoveCoordinate = ChessEvaluator.convertLANtoCoordinateNotation(move);
-		final String bestMoveCoordinate = uciEngine.getBestMoveAlt(depth, wait);
+		uciEngine.setPosition(fen);
+		final String bestMoveCoordinate = uciEngine.getBestMoveAlt(searchLimit);
 		if(actualMoveCoordinate.equals(bestMoveCoordinate))
 		{
 			return 0.0F;
 		}
 		uciEngine.reset();
-		uciEngine.setPosition(currentPosition.getFEN());
-		final float actualMoveEval = uciEngine.getMoveScoreAlt(actualMoveCoordinate, depth, wait);
+		uciEngine.setPosition(fen);
+		final float actualMoveEval = uciEngine.getMoveScoreAlt(actualMoveCoordinate, searchLimit);
 		if(actualMoveEval < 0.0F)
 		{
 			return 0.0F;
 		}
 		uciEngine.reset();
-		uciEngine.setPosition(currentPosition.getFEN());
-		final float bestMoveEval = uciEngine.getMoveScoreAlt(bestMoveCoordinate, depth, wait);
+		uciEngine.setPosition(fen);
+		final float bestMoveEval = uciEngine.getMoveScoreAlt(bestMoveCoordinate, searchLimit);
 		if(bestMoveEval <= 0.0F)
 		{
 			return 0.0F;
@@ -167,6 +379,133 @@ public class ChessEvaluator
 		return Math.max(bestMoveEval - actualMoveEval, 0.0f);
 	}
 
+	/**
+	 * Scores games with the single search method, one game per task, so that each engine sees the positions of a game in order
+	 *
+	 * @return The white and black scores of each game, in game order
+	 */
+	@SuppressWarnings("MethodWithTooManyParameters")
+	private static float[][] evaluateSingleSearchGames(
+			final ArrayList<Game> games, final MachineCorrelationSettings settings, final UCIEnginePool enginePool, final ForkJoinPool executor,
+			final int engineId, final CorrelationJournal journal
+													  ) throws IOException, InterruptedException
+	{
+		final ArrayList<Callable<float[]>> tasks = new ArrayList<Callable<float[]>>(games.size());
+		for(final Game game : games)
+		{
+			tasks.add(new GameCorrelationTask(enginePool, game, settings, engineId, journal));
+		}
+		final List<Future<float[]>> results = executor.invokeAll(tasks);
+		final float[][] gameScores = new float[games.size()][];
+		for(int i = 0; i < games.size(); i++)
+		{
+			gameScores[i] = ChessEvaluator.getScores(results.get(i));
+		}
+		return gameScores;
+	}
+
+	private static float[] getScores(final Future<float[]> result) throws IOException, InterruptedException
+	{
+		try
+		{
+			return result.get();
+		}
+		catch(final ExecutionException executionException)
+		{
+			final Throwable cause = executionException.getCause();
+			if(cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			if(cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Identifies the engine build together with the search limit, so that cached or journalled results from another engine build or a run with a
+	 * different limit are never reused. The engine is identified by the digest of its binary rather than its path, as the path within the jar
+	 * stays the same when the engine is upgraded. A plain limit of the search depth is identified by the engine alone, as the depth is already part of the cache
+	 * keys and the journal header.
+	 */
+	private static int getSearchId(final String engineDigest, final MachineCorrelationSettings settings)
+	{
+		if(settings.getSearchLimit().equals(new SearchLimit(SearchLimitMode.DEPTH, (long) settings.getDepth())))
+		{
+			return engineDigest.hashCode();
+		}
+		return engineDigest.hashCode() * 31 + settings.getSearchLimit().hashCode();
+	}
+
+	/**
+	 * Scores a move from the searches either side of it. The played move is worth the negated score of the position it led to, as that score is
+	 * from the opponent's point of view. As with the three search scoring, a move matching the engine's choice or a position with a forced mate
+	 * scores 0.
+	 */
+	private static float getSingleSearchMoveScore(final Move move, final SearchResult before, final SearchResult after)
+	{
+		if(ChessEvaluator.convertLANtoCoordinateNotation(move).equals(before.getBestMove()) || before.isMate() || after.isMate())
+		{
+			return 0.0F;
+		}
+		return Math.max(before.getScore() + after.getScore(), 0.0F);
+	}
+
+	/**
+	 * Appends the scores to the name tags of each player who still needs evaluating
+	 *
+	 * @return Whether either tag was modified
+	 */
+	@SuppressWarnings({"FeatureEnvy", "BooleanParameter"})
+	private static boolean insertMachineCorrelationTags(final Game game, final float[] scores, final boolean force)
+	{
+		final NumberFormat formatter = new DecimalFormat("#0.00");
+		boolean isGameModified = false;
+		if(force || ! ChessPresso.isMachineCorrelationEvaluated(game.getWhite()))
+		{
+			final String newWhiteName = game.getWhite() + ChessEvaluator.SPACE + ChessEvaluator.HYPHEN + ChessEvaluator.SPACE +
+										ChessPresso.MC_TAG_PREFIX + ChessEvaluator.SPACE + formatter.format((double) scores[0]);
+			game.setTag(ChessContext.WHITE_KEY, newWhiteName);
+			isGameModified = true;
+		}
+		if(force || ! ChessPresso.isMachineCorrelationEvaluated(game.getBlack()))
+		{
+			final String newBlackName = game.getBlack() + ChessEvaluator.SPACE + ChessEvaluator.HYPHEN + ChessEvaluator.SPACE +
+										ChessPresso.MC_TAG_PREFIX + ChessEvaluator.SPACE + formatter.format((double) scores[1]);
+			game.setTag(ChessContext.BLACK_KEY, newBlackName);
+			isGameModified = true;
+		}
+		return isGameModified;
+	}
+
+	private static SearchResult searchPosition(
+			final UCIEngine uciEngine, final Position position, final MachineCorrelationSettings settings, final int engineId
+											  ) throws IOException
+	{
+		final EvaluationCache evaluationCache = settings.getEvaluationCache();
+		if(evaluationCache != null)
+		{
+			final SearchResult cachedResult = evaluationCache.get(position.getHashCode(), settings.getDepth(), engineId);
+			if(cachedResult != null)
+			{
+				return cachedResult;
+			}
+		}
+		final SearchResult result = uciEngine.search(settings.getSearchLimit());
+		if(evaluationCache != null)
+		{
+			evaluationCache.put(position.getHashCode(), settings.getDepth(), engineId, result);
+		}
+		return result;
+	}
+
 	@SuppressWarnings({"HardCodedStringLiteral", "DuplicateStringLiteralInspection", "MagicCharacter"})
 	@Override
 	public String toString()
@@ -176,4 +515,127 @@ public class ChessEvaluator
 			   '}';
 	}
 
+	/**
+	 * Evaluates a single game by single search on whichever engine in the pool is free, handing the engine back once done. Games already in the
+	 * journal are not evaluated again and newly evaluated games are added to it.
+	 */
+	private static final class GameCorrelationTask implements Callable<float[]>
+	{
+		private final int                        engineId;
+		private final UCIEnginePool              enginePool;
+		private final Game                       game;
+		private final CorrelationJournal         journal;
+		private final MachineCorrelationSettings settings;
+
+		GameCorrelationTask(
+				final UCIEnginePool enginePool, final Game game, final MachineCorrelationSettings settings, final int engineId,
+				final CorrelationJournal journal
+						   )
+		{
+			this.enginePool = enginePool;
+			this.game = game;
+			this.settings = settings;
+			this.engineId = engineId;
+			this.journal = journal;
+		}
+
+		@Override
+		public float[] call() throws IOException, InterruptedException
+		{
+			GameFingerprint fingerprint = null;
+			if(this.journal != null)
+			{
+				fingerprint = this.journal.newFingerprint();
+				fingerprint.compute(this.game);
+				final float[] journalledScores = this.journal.get(fingerprint);
+				if(journalledScores != null)
+				{
+					return journalledScores;
+				}
+			}
+			final UCIEngine uciEngine = this.enginePool.acquire();
+			final float[] scores;
+			try
+			{
+				scores = ChessEvaluator.evaluateGameSingleSearchScores(uciEngine, this.game, this.settings, this.engineId);
+			}
+			finally
+			{
+				this.enginePool.release(uciEngine);
+			}
+			if(this.journal != null)
+			{
+				this.journal.append(fingerprint, scores);
+			}
+			return scores;
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "GameCorrelationTask{" +
+				   "engineId=" + this.engineId +
+				   ", settings=" + this.settings +
+				   '}';
+		}
+	}
+
+	/**
+	 * Scores a run of the pairs of a plan on whichever engine in the pool is free, handing the engine back once done
+	 */
+	private static final class PairCorrelationTask implements Callable<float[]>
+	{
+		private final UCIEnginePool   enginePool;
+		private final int             from;
+		private final CorrelationPlan plan;
+		private final SearchLimit     searchLimit;
+		private final int             to;
+
+		@SuppressWarnings("MethodWithTooManyParameters")
+		PairCorrelationTask(final UCIEnginePool enginePool, final CorrelationPlan plan, final SearchLimit searchLimit, final int from, final int to)
+		{
+			this.enginePool = enginePool;
+			this.plan = plan;
+			this.searchLimit = searchLimit;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public float[] call() throws IOException, InterruptedException
+		{
+			final float[] scores = new float[this.to - this.from];
+			final UCIEngine uciEngine = this.enginePool.acquire();
+			try
+			{
+				for(int pair = this.from; pair < this.to; pair++)
+				{
+					scores[pair - this.from] = ChessEvaluator.evaluateMoveCorrelationScore(
+							uciEngine,
+							this.searchLimit,
+							this.plan.getMove(pair),
+							this.plan.getFEN(pair)
+																						  );
+					uciEngine.reset();
+				}
+			}
+			finally
+			{
+				this.enginePool.release(uciEngine);
+			}
+			return scores;
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "PairCorrelationTask{" +
+				   "searchLimit=" + this.searchLimit +
+				   ", from=" + this.from +
+				   ", to=" + this.to +
+				   '}';
+		}
+	}
 }
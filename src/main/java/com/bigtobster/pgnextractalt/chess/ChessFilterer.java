@@ -10,27 +10,63 @@
 
 package com.bigtobster.pgnextractalt.chess;
 
+import chesspresso.game.Game;
 import com.bigtobster.pgnextractalt.filters.Filter;
+import com.bigtobster.pgnextractalt.filters.HeaderFilter;
+import com.bigtobster.pgnextractalt.filters.PartitionableFilter;
+import com.bigtobster.pgnextractalt.filters.StatelessFilter;
+import com.bigtobster.pgnextractalt.filters.StreamableFilter;
+import com.bigtobster.pgnextractalt.filters.TextFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.MissingResourceException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Executes a filter which filters games. All the filtering rules are defined by a class in the filter package. You MUST load a filter into the
  * filterer before filtering Created by Toby Leheup on 04/02/16 for pgn-extract-alt.
+ * <p>
+ * Several filters can be chained into a pipeline. Runs of filters that can decide on games one at a time are fused into a single pass, so each
+ * game is looked at once by the whole run and only the games surviving the run are collected. Only a filter that needs the whole list of games,
+ * such as a duplicate filter isolating or purging, makes the games be gathered into a list in between. Within a stage the stateless filters are
+ * reordered by the FilterPlanner so that cheap, selective filters run first.
+ * <p>
+ * Given several threads, a stage made only of stateless and partitionable filters is run over partitions of the games at once. The surviving
+ * games are put back together in their original order and every stateful filter combines what its partitions saw, so the games kept are the
+ * same as on a single thread.
  *
  * @author Toby Leheup (Bigtobster)
  */
 @SuppressWarnings("PublicMethodNotExposedInInterface")
 public class ChessFilterer
 {
+	private static final int               MIN_PARTITION_GAMES   = 16;
+	private static final int               PARTITIONS_PER_THREAD = 4;
+	private static final String            STAGE_SEPARATOR       = " | ";
+	private final        ArrayList<Filter> filters               = new ArrayList<Filter>(3);
+	private              String            plan                  = "";
 	@SuppressWarnings("InstanceVariableMayNotBeInitialized")
 	@Autowired
 	private ChessContext chessContext;
-	private Filter filter = null;
 
 	/**
-	 * Loads a new filter into the filterer
+	 * Describes the order the filters were run in by the last run. Stages are separated by "|" and each filter is described with what it reads
+	 * and the share of the sampled games it kept.
+	 *
+	 * @return The plan of the last run, empty if nothing has been run
+	 */
+	public String getPlan()
+	{
+		return this.plan;
+	}
+
+	/**
+	 * Loads a new filter into the filterer, replacing any pipeline of filters
 	 *
 	 * @param newFilter The new filter to be used by the filterer
 	 */
@@ -38,25 +74,87 @@ public class ChessFilterer
 	{
 		if(newFilter != null)
 		{
-			this.filter = newFilter;
+			this.filters.clear();
+			this.filters.add(newFilter);
 		}
 	}
 
 	/**
-	 * Executes the currently loaded filter
+	 * Loads a pipeline of filters into the filterer, replacing any filters loaded before. Each filter is run on the games surviving the filters
+	 * before it.
+	 *
+	 * @param newFilters The filters in the order they should be applied
+	 */
+	public void loadFilters(final List<? extends Filter> newFilters)
+	{
+		this.filters.clear();
+		this.filters.addAll(newFilters);
+	}
+
+	/**
+	 * Executes the currently loaded filters on a single thread
 	 *
 	 * @return The number of games filtered
 	 */
-	@SuppressWarnings({"InstanceMethodNamingConvention", "FeatureEnvy"})
+	@SuppressWarnings("InstanceMethodNamingConvention")
 	public int run()
 	{
-		if(this.filter == null)
+		return this.run(1);
+	}
+
+	/**
+	 * Executes the currently loaded filters
+	 *
+	 * @param threads The number of threads to filter with
+	 * @return The number of games filtered
+	 */
+	@SuppressWarnings({"InstanceMethodNamingConvention", "FeatureEnvy"})
+	public int run(final int threads)
+	{
+		if(this.filters.isEmpty())
 		{
 			throw new MissingResourceException("Missing filter", Filter.class.toString(), Filter.class.getSimpleName());
 		}
-		final int preGameCount = this.chessContext.getGames().size();
-		this.chessContext.setGames(this.filter.filter(this.chessContext.getGames()));
-		final int postGameCount = this.chessContext.getGames().size();
+		final int preGameCount = this.chessContext.getGameCount();
+		ArrayList<GameRecord> records = this.chessContext.getRecords();
+		final StringBuilder runPlan = new StringBuilder(64);
+		int stageStart = 0;
+		while(stageStart < this.filters.size())
+		{
+			int stageEnd = stageStart;
+			while((stageEnd < this.filters.size()) && ChessFilterer.isStreamable(this.filters.get(stageEnd)))
+			{
+				stageEnd++;
+			}
+			if(runPlan.length() > 0)
+			{
+				runPlan.append(ChessFilterer.STAGE_SEPARATOR);
+			}
+			if(stageEnd > stageStart)
+			{
+				final StringBuilder stagePlan = new StringBuilder(64);
+				final ArrayList<Filter> stage = FilterPlanner.plan(this.filters.subList(stageStart, stageEnd), records, stagePlan);
+				if((threads > 1) && ChessFilterer.isPartitionable(stage))
+				{
+					records = ChessFilterer.runPartitioned(records, stage, threads);
+				}
+				else
+				{
+					records = ChessFilterer.runFused(records, stage);
+				}
+				runPlan.append(stagePlan);
+				stageStart = stageEnd;
+			}
+			else
+			{
+				runPlan.append(this.filters.get(stageStart).getClass().getSimpleName()).append(" (whole list)");
+				records = ChessFilterer.runWhole(records, this.filters.get(stageStart));
+				stageStart++;
+			}
+		}
+		this.plan = runPlan.toString();
+		this.chessContext.setRecords(records);
+		final int postGameCount = this.chessContext.getGameCount();
 		return preGameCount - postGameCount;
 	}
 
@@ -66,7 +164,229 @@ public class ChessFilterer
 	{
 		return "ChessFilterer{" +
 			   "chessContext=" + this.chessContext +
-			   ", filter=" + this.filter +
+			   ", filters=" + this.filters +
 			   '}';
 	}
+
+	/**
+	 * Puts a game to each filter of a stage in turn
+	 *
+	 * @param record The record of the game
+	 * @param stage  The streamable filters to put the game to
+	 * @return True if every filter kept the game else false
+	 */
+	static boolean isRetained(final GameRecord record, final List<Filter> stage)
+	{
+		for(final Filter filter : stage)
+		{
+			if(filter instanceof HeaderFilter)
+			{
+				//Header filters only need the tags so lazily imported games are left unparsed
+				if(! ((HeaderFilter) filter).isHeaderRetained(record))
+				{
+					return false;
+				}
+			}
+			else if((filter instanceof TextFilter) && record.canCopyText())
+			{
+				//Text filters read the movetext straight from the file so lazily imported games are still left unparsed
+				if(! ((TextFilter) filter).isTextRetained(record, record.readMoveText()))
+				{
+					return false;
+				}
+			}
+			else if(! ((StreamableFilter) filter).isRetained(record.readGame()))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Combines the partitions of a pass in order. Only the last filter of a pass can have state, so the games its copy kept are exactly the games
+	 * surviving the partition.
+	 */
+	private static ArrayList<GameRecord> combinePartitions(
+			final List<Filter> pass,
+			final List<ArrayList<Filter>> partitionPasses,
+			final List<ArrayList<GameRecord>> partitionRecords,
+			final int gameCount
+														  )
+	{
+		final Filter lastFilter = pass.get(pass.size() - 1);
+		final ArrayList<GameRecord> survivingRecords = new ArrayList<GameRecord>(gameCount);
+		for(int partition = 0; partition < partitionRecords.size(); partition++)
+		{
+			final ArrayList<GameRecord> records = partitionRecords.get(partition);
+			if(lastFilter instanceof StatelessFilter)
+			{
+				survivingRecords.addAll(records);
+				continue;
+			}
+			final PartitionableFilter partitionFilter = (PartitionableFilter) partitionPasses.get(partition).get(pass.size() - 1);
+			final BitSet rejected = ((PartitionableFilter) lastFilter).combine(partitionFilter);
+			for(int i = 0; i < records.size(); i++)
+			{
+				if(! rejected.get(i))
+				{
+					survivingRecords.add(records.get(i));
+				}
+			}
+		}
+		return survivingRecords;
+	}
+
+	private static boolean isPartitionable(final List<Filter> stage)
+	{
+		for(final Filter filter : stage)
+		{
+			if(! (filter instanceof StatelessFilter) && ! (filter instanceof PartitionableFilter))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isStreamable(final Filter filter)
+	{
+		return (filter instanceof StreamableFilter) && ((StreamableFilter) filter).isStreamable();
+	}
+
+	/**
+	 * Runs a stage of streamable filters in one pass. Each game is put to the filters in order until one rejects it.
+	 */
+	private static ArrayList<GameRecord> runFused(final List<GameRecord> records, final List<Filter> stage)
+	{
+		final ArrayList<GameRecord> survivingRecords = new ArrayList<GameRecord>(records.size());
+		for(final GameRecord record : records)
+		{
+			if(ChessFilterer.isRetained(record, stage))
+			{
+				survivingRecords.add(record);
+			}
+		}
+		return survivingRecords;
+	}
+
+	/**
+	 * Runs one pass of a partitioned stage. Each partition is filtered by its own copy of any stateful filter, stateless filters being shared.
+	 */
+	private static ArrayList<GameRecord> runPartitionedPass(final ArrayList<GameRecord> records, final List<Filter> pass, final int threads)
+	{
+		final int partitionCount = Math.min(threads * ChessFilterer.PARTITIONS_PER_THREAD, records.size() / ChessFilterer.MIN_PARTITION_GAMES);
+		if(partitionCount <= 1)
+		{
+			return ChessFilterer.runFused(records, pass);
+		}
+		final ArrayList<ArrayList<Filter>> partitionPasses = new ArrayList<ArrayList<Filter>>(partitionCount);
+		for(int partition = 0; partition < partitionCount; partition++)
+		{
+			final ArrayList<Filter> partitionPass = new ArrayList<Filter>(pass.size());
+			for(final Filter filter : pass)
+			{
+				partitionPass.add((filter instanceof StatelessFilter) ? filter : ((PartitionableFilter) filter).createPartition());
+			}
+			partitionPasses.add(partitionPass);
+		}
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try
+		{
+			final PartitionFilterTask task = new PartitionFilterTask(records, partitionPasses, 0, partitionCount);
+			final ArrayList<ArrayList<GameRecord>> partitionRecords = pool.invoke(task);
+			return ChessFilterer.combinePartitions(pass, partitionPasses, partitionRecords, records.size());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs a stage of stateless and partitionable filters over partitions of the games. The stage is cut after each stateful filter so that a
+	 * game rejected when the partitions are combined is never seen by a later filter.
+	 */
+	private static ArrayList<GameRecord> runPartitioned(final ArrayList<GameRecord> records, final List<Filter> stage, final int threads)
+	{
+		ArrayList<GameRecord> survivingRecords = records;
+		int passStart = 0;
+		for(int i = 0; i < stage.size(); i++)
+		{
+			if(! (stage.get(i) instanceof StatelessFilter) || (i == (stage.size() - 1)))
+			{
+				survivingRecords = ChessFilterer.runPartitionedPass(survivingRecords, stage.subList(passStart, i + 1), threads);
+				passStart = i + 1;
+			}
+		}
+		return survivingRecords;
+	}
+
+	/**
+	 * Runs a filter which needs to see the whole list of games at once
+	 */
+	private static ArrayList<GameRecord> runWhole(final ArrayList<GameRecord> records, final Filter filter)
+	{
+		final ArrayList<Game> games = new ArrayList<Game>(records.size());
+		final IdentityHashMap<Game, GameRecord> gameRecords = new IdentityHashMap<Game, GameRecord>(records.size());
+		for(final GameRecord record : records)
+		{
+			final Game game = record.readGame();
+			games.add(game);
+			gameRecords.put(game, record);
+		}
+		final ArrayList<Game> survivingGames = filter.filter(games);
+		final ArrayList<GameRecord> survivingRecords = new ArrayList<GameRecord>(survivingGames.size());
+		for(final Game game : survivingGames)
+		{
+			//Surviving games keep their records so that lazy and compact games are not held in full from now on
+			final GameRecord record = gameRecords.get(game);
+			survivingRecords.add((record == null) ? new GameRecord(game) : record);
+		}
+		return survivingRecords;
+	}
+
+	/**
+	 * Filters a range of partitions, splitting the range in half until a single partition remains
+	 */
+	private static final class PartitionFilterTask extends RecursiveTask<ArrayList<ArrayList<GameRecord>>>
+	{
+		private static final long serialVersionUID = 4460271356823190937L;
+		private final int                     firstPartition;
+		private final int                     lastPartition;
+		private final List<ArrayList<Filter>> passes;
+		private final List<GameRecord>        records;
+
+		PartitionFilterTask(final List<GameRecord> records, final List<ArrayList<Filter>> passes, final int firstPartition, final int lastPartition)
+		{
+			//noinspection AssignmentToCollectionOrArrayFieldFromParameter
+			this.records = records;
+			//noinspection AssignmentToCollectionOrArrayFieldFromParameter
+			this.passes = passes;
+			this.firstPartition = firstPartition;
+			this.lastPartition = lastPartition;
+		}
+
+		@Override
+		protected ArrayList<ArrayList<GameRecord>> compute()
+		{
+			if((this.lastPartition - this.firstPartition) > 1)
+			{
+				final int middlePartition = (this.firstPartition + this.lastPartition) >>> 1;
+				final PartitionFilterTask leftTask = new PartitionFilterTask(this.records, this.passes, this.firstPartition, middlePartition);
+				final PartitionFilterTask rightTask = new PartitionFilterTask(this.records, this.passes, middlePartition, this.lastPartition);
+				leftTask.fork();
+				final ArrayList<ArrayList<GameRecord>> rightRecords = rightTask.compute();
+				final ArrayList<ArrayList<GameRecord>> partitionRecords = leftTask.join();
+				partitionRecords.addAll(rightRecords);
+				return partitionRecords;
+			}
+			final int partitionCount = this.passes.size();
+			final int start = (int) ((long) this.records.size() * (long) this.firstPartition / (long) partitionCount);
+			final int end = (int) ((long) this.records.size() * (long) this.lastPartition / (long) partitionCount);
+			final ArrayList<ArrayList<GameRecord>> partitionRecords = new ArrayList<ArrayList<GameRecord>>(partitionCount);
+			partitionRecords.add(ChessFilterer.runFused(this.records.subList(start, end), this.passes.get(this.firstPartition)));
+			return partitionRecords;
+		}
+	}
 }
@@ -14,14 +14,30 @@ import chesspresso.game.Game;
 import chesspresso.pgn.PGNReader;
 import chesspresso.pgn.PGNSyntaxError;
 import chesspresso.pgn.PGNWriter;
+import com.bigtobster.pgnextractalt.filters.DuplicateFilterMode;
+import com.bigtobster.pgnextractalt.filters.GameFingerprint;
+import com.bigtobster.pgnextractalt.filters.HeaderFilter;
+import com.bigtobster.pgnextractalt.filters.SeenGamesArchive;
+import com.bigtobster.pgnextractalt.filters.StreamableFilter;
+import com.bigtobster.pgnextractalt.filters.TagSource;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.activation.UnsupportedDataTypeException;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,13 +49,185 @@ import java.util.logging.Logger;
 @SuppressWarnings({"PublicMethodNotExposedInInterface"})
 public final class ChessIO
 {
+	private static final String EMPTY_PGN_FILE                = "Empty PGN file!";
 	private static final String FAILED_TO_EXPORT_INVALID_GAME = "Failed to export an invalid game";
+	private static final String GAME_RANGE_OUT_OF_BOUNDS      = "Cannot import games ";
 	@SuppressWarnings("UnusedDeclaration")
 	private static final Logger LOGGER                        = Logger.getLogger(ChessIO.class.getName());
 	@SuppressWarnings("InstanceVariableMayNotBeInitialized")
 	@Autowired
 	private ChessContext chessContext;
 
+	private static void checkIsPGNFile(final File pgnFile) throws UnsupportedDataTypeException
+	{
+		if(! PGNReader.isPGNFile(pgnFile.getPath()))
+		{
+			throw new UnsupportedDataTypeException("File at " + pgnFile.getPath() + " is not a PGN file");
+		}
+	}
+
+	private static void copyGame(final PrintWriter printWriter, final GameRecord record)
+	{
+		//A lazily imported game that has not been parsed is copied straight from its file rather than parsed only to be written back out
+		final String text;
+		try
+		{
+			text = record.readText();
+		}
+		catch(final IOException ioe)
+		{
+			throw new IllegalStateException("Failed to read " + record + " for export", ioe);
+		}
+		printWriter.print(text.trim());
+		printWriter.println();
+		printWriter.println();
+	}
+
+	private static boolean isHeaderRetained(final TagSource tags, final List<? extends HeaderFilter> headerFilters)
+	{
+		for(final HeaderFilter headerFilter : headerFilters)
+		{
+			if(! headerFilter.isHeaderRetained(tags))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isRetained(final Game game, final ArrayList<StreamableFilter> filters)
+	{
+		for(final StreamableFilter filter : filters)
+		{
+			if(! filter.isRetained(game))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isUnseen(final byte[] gameBytes, final GameFingerprint fingerprint, final SeenGamesArchive seenGames)
+			throws IOException
+	{
+		if(seenGames == null)
+		{
+			return true;
+		}
+		//Only the raw text is fingerprinted - games that have been seen before are never parsed
+		fingerprint.computeText(new String(gameBytes, StandardCharsets.ISO_8859_1));
+		return ! seenGames.contains(fingerprint.getHigh(), fingerprint.getLow());
+	}
+
+	private static FileInputStream openPGNFile(final File pgnFile) throws IOException
+	{
+		ChessIO.checkIsPGNFile(pgnFile);
+		return new FileInputStream(pgnFile);
+	}
+
+	private static ArrayList<Game> readRetainedGames(
+			final File pgnFile,
+			final PGNIndex pgnIndex,
+			final List<? extends HeaderFilter> headerFilters,
+			final SeenGamesArchive seenGames
+													) throws IOException, PGNSyntaxError
+	{
+		final ArrayList<Game> games = new ArrayList<Game>(pgnIndex.getGameCount());
+		final GameFingerprint fingerprint = new GameFingerprint();
+		final FileInputStream fileInputStream = ChessIO.openPGNFile(pgnFile);
+		try
+		{
+			final FileChannel channel = fileInputStream.getChannel();
+			for(int i = 0; i < pgnIndex.getGameCount(); i++)
+			{
+				final long offset = pgnIndex.getOffset(i);
+				final byte[] gameBytes = ParallelPGNImporter.readChunk(channel, offset, offset + pgnIndex.getLength(i));
+				//Only the tag section is parsed first - the moves of games rejected by their tags are never parsed, nor recorded as seen
+				if(ChessIO.isHeaderRetained(new ParsedTags(GameRecord.readTags(gameBytes)), headerFilters) &&
+				   ChessIO.isUnseen(gameBytes, fingerprint, seenGames))
+				{
+					final Game game = ChessIO.openPGNReader(new ByteArrayInputStream(gameBytes), pgnFile.getPath()).parseGame();
+					if(game != null)
+					{
+						games.add(game);
+						//Only a game that has been imported is recorded as seen
+						if(seenGames != null)
+						{
+							seenGames.add(fingerprint.getHigh(), fingerprint.getLow());
+						}
+					}
+				}
+			}
+		}
+		finally
+		{
+			fileInputStream.close();
+		}
+		return games;
+	}
+
+	/**
+	 * Opens a PGN reader over PGN text. PGN files are ISO-8859-1 text, which decodes each byte to the same character on every platform, so parsed
+	 * games agree with the tags and moves read as raw text.
+	 *
+	 * @param inputStream The stream of PGN text
+	 * @param name        The name of the PGN text's source, for syntax errors
+	 * @return The PGN reader
+	 */
+	static PGNReader openPGNReader(final InputStream inputStream, final String name)
+	{
+		return new PGNReader(new InputStreamReader(inputStream, StandardCharsets.ISO_8859_1), name);
+	}
+
+	private static boolean writeGame(final PGNWriter pgnWriter, final Game game)
+	{
+		//noinspection ProhibitedExceptionCaught
+		try
+		{
+			pgnWriter.write(game.getModel());
+			return true;
+		}
+		catch(final NullPointerException ignored)
+		{
+			/*
+			Bit of a Chesspresso weird-ism here
+			It tries super hard to import games - whether they are sane or not
+			In theory, the same issue applies when modifying games - you could "corrupt" them
+			Consequently, when you try to do something to, in this case export, those games,
+			you end up with errors. Those errors aren't fluffy and nice - they're NPEs...
+			As a rule, GIGO applies.
+			This is fundamentally an issue with Chesspresso that needs fixing at the Chesspresso level.
+			 */
+			ChessIO.LOGGER.log(Level.WARNING, ChessIO.FAILED_TO_EXPORT_INVALID_GAME);
+			ChessIO.LOGGER.log(Level.WARNING, game.toString());
+			return false;
+		}
+	}
+
+	/**
+	 * Packs the currently imported games into a compact store, cutting the memory each game needs by around an order of magnitude. Games are only
+	 * rebuilt in full when they are next asked for. Games holding anything the store cannot represent, such as variations or comments, are left as
+	 * they are.
+	 *
+	 * @return The number of games now held compactly
+	 */
+	public int compact()
+	{
+		return this.chessContext.compact(StoreAllocator.onHeap());
+	}
+
+	/**
+	 * Packs the currently imported games into a compact store held off the Java heap. Up to memoryBudget bytes are held in direct memory and the
+	 * rest is spilled to a memory mapped scratch file, so the garbage collector's work stays flat however many games are loaded.
+	 *
+	 * @param memoryBudget The number of bytes of direct memory to use before spilling to disk
+	 * @return The number of games now held compactly
+	 */
+	public int compact(final long memoryBudget)
+	{
+		return this.chessContext.compact(StoreAllocator.offHeap(memoryBudget));
+	}
+
 	/**
 	 * Writes the currently imported games to a PGN file
 	 *
@@ -48,26 +236,15 @@ public final class ChessIO
 	public void exportPGN(final PrintWriter printWriter)
 	{
 		final PGNWriter pgnWriter = new PGNWriter(printWriter);
-		for(final Game game : this.chessContext.getGames())
+		for(final GameRecord record : this.chessContext.getRecords())
 		{
-			//noinspection ProhibitedExceptionCaught
-			try
+			if(record.canCopyText())
 			{
-				pgnWriter.write(game.getModel());
+				ChessIO.copyGame(printWriter, record);
 			}
-			catch(final NullPointerException ignored)
+			else
 			{
-				/*
-				Bit of a Chesspresso weird-ism here
-				It tries super hard to import games - whether they are sane or not
-				In theory, the same issue applies when modifying games - you could "corrupt" them
-				Consequently, when you try to do something to, in this case export, those games,
-				you end up with errors. Those errors aren't fluffy and nice - they're NPEs...
-				As a rule, GIGO applies.
-				This is fundamentally an issue with Chesspresso that needs fixing at the Chesspresso level.
-				 */
-				ChessIO.LOGGER.log(Level.WARNING, ChessIO.FAILED_TO_EXPORT_INVALID_GAME);
-				ChessIO.LOGGER.log(Level.WARNING, game.toString());
+				ChessIO.writeGame(pgnWriter, record.readGame());
 			}
 		}
 		/*
@@ -82,6 +259,85 @@ public final class ChessIO
 		}
 	}
 
+	/**
+	 * Streams a PGN file through a chain of filters and straight out to another PGN file. Games are read, filtered and written one at a time and are
+	 * never added to the currently imported games, so memory use does not grow with the size of the file.
+	 *
+	 * @param pgnFile     The file pointing to a PGN file to stream
+	 * @param printWriter The printWriter with the bundled file to write surviving games to
+	 * @param filters     The filters, in order, that each game must survive to be written
+	 * @return The number of games written
+	 * @throws javax.activation.UnsupportedDataTypeException Throws exception in the event that passed file is not a PGN
+	 * @throws IOException                                   Filesystem issue with reading PGN file
+	 * @throws PGNSyntaxError                                Syntax error with readying PGN file
+	 */
+	@SuppressWarnings("FeatureEnvy")
+	public int streamPGN(final File pgnFile, final PrintWriter printWriter, final ArrayList<StreamableFilter> filters) throws
+																														 IOException,
+																														 PGNSyntaxError,
+																														 UnsupportedDataTypeException
+	{
+		final PGNWriter pgnWriter = new PGNWriter(printWriter);
+		int writtenGames = 0;
+		final FileInputStream fileInputStream = ChessIO.openPGNFile(pgnFile);
+		try
+		{
+			final PGNReader pgnReader = ChessIO.openPGNReader(fileInputStream, pgnFile.getPath());
+			Game game = pgnReader.parseGame();
+			if(game == null)
+			{
+				throw new PGNSyntaxError(PGNSyntaxError.ERROR, ChessIO.EMPTY_PGN_FILE, pgnFile.getPath(), 0, "");
+			}
+			do
+			{
+				if(ChessIO.isRetained(game, filters) && ChessIO.writeGame(pgnWriter, game))
+				{
+					writtenGames++;
+				}
+				game = pgnReader.parseGame();
+			}
+			while(game != null);
+		}
+		finally
+		{
+			fileInputStream.close();
+			printWriter.flush();
+			printWriter.close();
+		}
+		return writtenGames;
+	}
+
+	/**
+	 * Streams the games of a PGN file that survive a duplicate filter straight out to another PGN file. Duplicates are found by sorting the game
+	 * fingerprints on disk, so memory use does not grow with the size of the file. Surviving games are copied byte for byte in their original
+	 * order.
+	 *
+	 * @param pgnFile    The file pointing to a PGN file to stream
+	 * @param exportFile The file to write surviving games to
+	 * @param mode       The duplicate filter mode (Filter, Isolate or Purge)
+	 * @param tagKeys    The keys of the tags that must also match for two games to be duplicates
+	 * @return The number of games written
+	 * @throws javax.activation.UnsupportedDataTypeException Throws exception in the event that passed file is not a PGN
+	 * @throws IOException                                   Filesystem issue with reading PGN file, or a PGNIndexMismatchException if the games
+	 *                                                       parsed from the file do not match its index
+	 * @throws PGNSyntaxError                                Syntax error with readying PGN file
+	 */
+	public int streamDuplicates(final File pgnFile, final File exportFile, final DuplicateFilterMode mode, final String[] tagKeys)
+			throws IOException, PGNSyntaxError, UnsupportedDataTypeException
+	{
+		return this.streamDuplicates(pgnFile, exportFile, mode, tagKeys, ExternalDuplicateFilter.DEFAULT_RUN_GAMES);
+	}
+
+	/**
+	 * Returns number of games in current context without parsing any lazily imported games
+	 *
+	 * @return The number of current games
+	 */
+	public int getGameCount()
+	{
+		return this.chessContext.getGameCount();
+	}
+
 	/**
 	 * Returns number of games in current context
 	 *
@@ -92,6 +348,17 @@ public final class ChessIO
 		return this.chessContext.getGames();
 	}
 
+	/**
+	 * Writes the tags of games returned by getGames back to the current games. Lazily imported and compact games are only kept softly, so tags
+	 * inserted into them may be lost unless written back.
+	 *
+	 * @param games The games, in the order returned by getGames
+	 */
+	public void writeTags(final ArrayList<Game> games)
+	{
+		this.chessContext.writeTags(games);
+	}
+
 	/**
 	 * Returns number of games in current context
 	 *
@@ -103,6 +370,28 @@ public final class ChessIO
 		this.chessContext.addGames(newGames);
 	}
 
+	/**
+	 * Takes a snapshot of the currently imported games. Later imports and filters do not change the snapshot, and any compact store is kept open
+	 * for the snapshot's games until the view is released.
+	 *
+	 * @return The view of the current games, which must be released once finished with
+	 */
+	public GameView getView()
+	{
+		return new GameView(new ArrayList<GameRecord>(this.chessContext.getRecords()), this.chessContext.getStore());
+	}
+
+	/**
+	 * Replaces the currently imported games with the games of a view. The current games take their own claim on the view's compact store, so the
+	 * view can be released whilst its games are still current.
+	 *
+	 * @param view The view to restore
+	 */
+	public void setView(final GameView view)
+	{
+		this.chessContext.setRecords(new ArrayList<GameRecord>(view.getRecords()), view.getStore());
+	}
+
 	/**
 	 * Converts a PGN file into a list of Chesspresso games
 	 *
@@ -115,19 +404,14 @@ public final class ChessIO
 	{
 		final PGNReader pgnReader;
 		final ArrayList<Game> games = new ArrayList<Game>(100);
-		final FileInputStream fileInputStream;
-		if(! PGNReader.isPGNFile(pgnFile.getPath()))
-		{
-			throw new UnsupportedDataTypeException("File at " + pgnFile.getPath() + " is not a PGN file");
-		}
-		fileInputStream = new FileInputStream(pgnFile);
+		final FileInputStream fileInputStream = ChessIO.openPGNFile(pgnFile);
 		try
 		{
-			pgnReader = new PGNReader(new FileInputStream(pgnFile), pgnFile.getPath());
+			pgnReader = ChessIO.openPGNReader(fileInputStream, pgnFile.getPath());
 			Game game = pgnReader.parseGame();
 			if(game == null)
 			{
-				throw new PGNSyntaxError(PGNSyntaxError.ERROR, "Empty PGN file!", pgnFile.getPath(), 0, "");
+				throw new PGNSyntaxError(PGNSyntaxError.ERROR, ChessIO.EMPTY_PGN_FILE, pgnFile.getPath(), 0, "");
 			}
 			do
 			{
@@ -143,6 +427,191 @@ public final class ChessIO
 		}
 	}
 
+	/**
+	 * Lazily imports a PGN file. Only the tags of each game are read - the moves of a game are parsed when the game is first needed, such as when it
+	 * is evaluated or filtered on its moves. Header-only work such as tag insertion and result filtering never parses the moves at all. Syntax
+	 * errors in a game's moves are therefore not found until the game is parsed.
+	 *
+	 * @param pgnFile The file pointing to a PGN file to import
+	 * @throws javax.activation.UnsupportedDataTypeException Throws exception in the event that passed file is not a PGN
+	 * @throws IOException                                   Filesystem issue with reading PGN file
+	 * @throws PGNSyntaxError                                Thrown on the PGN file containing no games
+	 */
+	public void importPGNLazily(final File pgnFile) throws IOException, PGNSyntaxError, UnsupportedDataTypeException
+	{
+		this.importPGNLazily(pgnFile, Collections.<HeaderFilter>emptyList());
+	}
+
+	/**
+	 * Imports the games of a PGN file that survive a set of header filters. The tags of each game are read and put to the filters before its moves
+	 * are parsed, so a rejected game costs no more than reading its text.
+	 *
+	 * @param pgnFile       The file pointing to a PGN file to import
+	 * @param headerFilters The filters that each game's tags must survive for the game to be imported
+	 * @return The number of games rejected by the filters
+	 * @throws javax.activation.UnsupportedDataTypeException Throws exception in the event that passed file is not a PGN
+	 * @throws IOException                                   Filesystem issue with reading PGN file
+	 * @throws PGNSyntaxError                                Syntax error with readying PGN file
+	 */
+	public int importPGN(final File pgnFile, final List<? extends HeaderFilter> headerFilters)
+			throws IOException, PGNSyntaxError, UnsupportedDataTypeException
+	{
+		ChessIO.checkIsPGNFile(pgnFile);
+		final PGNIndex pgnIndex = PGNIndex.load(pgnFile);
+		if(pgnIndex.getGameCount() == 0)
+		{
+			throw new PGNSyntaxError(PGNSyntaxError.ERROR, ChessIO.EMPTY_PGN_FILE, pgnFile.getPath(), 0, "");
+		}
+		final ArrayList<Game> games = ChessIO.readRetainedGames(pgnFile, pgnIndex, headerFilters, null);
+		this.addGames(games);
+		return pgnIndex.getGameCount() - games.size();
+	}
+
+	/**
+	 * Lazily imports the games of a PGN file that survive a set of header filters. Only the tags of each game are read, and only the records of
+	 * surviving games are kept.
+	 *
+	 * @param pgnFile       The file pointing to a PGN file to import
+	 * @param headerFilters The filters that each game's tags must survive for the game to be imported
+	 * @return The number of games rejected by the filters
+	 * @throws javax.activation.UnsupportedDataTypeException Throws exception in the event that passed file is not a PGN
+	 * @throws IOException                                   Filesystem issue with reading PGN file
+	 * @throws PGNSyntaxError                                Thrown on the PGN file containing no games
+	 */
+	public int importPGNLazily(final File pgnFile, final List<? extends HeaderFilter> headerFilters)
+			throws IOException, PGNSyntaxError, UnsupportedDataTypeException
+	{
+		ChessIO.checkIsPGNFile(pgnFile);
+		final ArrayList<GameRecord> records = GameRecord.readHeaders(pgnFile, PGNIndex.load(pgnFile));
+		if(records.isEmpty())
+		{
+			throw new PGNSyntaxError(PGNSyntaxError.ERROR, ChessIO.EMPTY_PGN_FILE, pgnFile.getPath(), 0, "");
+		}
+		final ArrayList<GameRecord> retainedRecords = new ArrayList<GameRecord>(records.size());
+		for(final GameRecord record : records)
+		{
+			if(ChessIO.isHeaderRetained(record, headerFilters))
+			{
+				retainedRecords.add(record);
+			}
+		}
+		this.chessContext.addRecords(retainedRecords);
+		return records.size() - retainedRecords.size();
+	}
+
+	/**
+	 * Imports a range of games from a PGN file. The file's index is used to seek straight to the requested games so only their bytes are read and
+	 * parsed. The index is loaded from its sidecar file, or built and saved on first use.
+	 *
+	 * @param pgnFile   The PGN file to be imported
+	 * @param firstGame The number of the first game to be imported, counting from 1
+	 * @param lastGame  The number of the last game to be imported. Numbers past the end of the file import up to the last game.
+	 * @param threads   The number of threads to parse with
+	 * @throws IOException                  Filesystem issue with reading PGN file
+	 * @throws PGNSyntaxError               Syntax error with reading PGN file
+	 * @throws UnsupportedDataTypeException Not a PGN file
+	 */
+	public void importPGN(final File pgnFile, final int firstGame, final int lastGame, final int threads)
+			throws IOException, PGNSyntaxError, UnsupportedDataTypeException
+	{
+		ChessIO.checkIsPGNFile(pgnFile);
+		final PGNIndex pgnIndex = PGNIndex.load(pgnFile);
+		if((firstGame < 1) || (firstGame > lastGame) || (firstGame > pgnIndex.getGameCount()))
+		{
+			throw new InvalidParameterException(
+					ChessIO.GAME_RANGE_OUT_OF_BOUNDS + firstGame + "-" + lastGame + " of " + pgnIndex.getGameCount() + " games"
+			);
+		}
+		final ArrayList<Game> games = ParallelPGNImporter.importPGN(
+				pgnFile,
+				pgnIndex,
+				firstGame - 1,
+				Math.min(lastGame, pgnIndex.getGameCount()) - 1,
+				Math.max(1, threads)
+																   );
+		if(games.isEmpty())
+		{
+			throw new PGNSyntaxError(PGNSyntaxError.ERROR, ChessIO.EMPTY_PGN_FILE, pgnFile.getPath(), 0, "");
+		}
+		this.addGames(games);
+	}
+
+	/**
+	 * Converts the games of a PGN file that survive a set of header filters and are not in an archive of seen games into a list of Chesspresso
+	 * games. Each game's tags are put to the filters and its raw text is fingerprinted and checked against the archive first, so rejected games
+	 * and games seen in earlier files are skipped without being parsed. Only the imported games are recorded in the archive, which is saved for
+	 * later sessions.
+	 *
+	 * @param pgnFile       The file pointing to a PGN file to import
+	 * @param seenGamesFile The Bloom filter file of the archive of seen games. Created if it doesn't exist.
+	 * @param headerFilters The filters that each game's tags must survive for the game to be imported
+	 * @return The number of games skipped as rejected by the filters or already seen
+	 * @throws javax.activation.UnsupportedDataTypeException Throws exception in the event that passed file is not a PGN
+	 * @throws IOException                                   Filesystem issue with reading PGN file or the archive
+	 * @throws PGNSyntaxError                                Syntax error with readying PGN file
+	 */
+	public int importUnseenPGN(final File pgnFile, final File seenGamesFile, final List<? extends HeaderFilter> headerFilters)
+			throws IOException, PGNSyntaxError, UnsupportedDataTypeException
+	{
+		ChessIO.checkIsPGNFile(pgnFile);
+		final PGNIndex pgnIndex = PGNIndex.load(pgnFile);
+		if(pgnIndex.getGameCount() == 0)
+		{
+			throw new PGNSyntaxError(PGNSyntaxError.ERROR, ChessIO.EMPTY_PGN_FILE, pgnFile.getPath(), 0, "");
+		}
+		final SeenGamesArchive seenGames = SeenGamesArchive.open(seenGamesFile, pgnIndex.getGameCount());
+		try
+		{
+			final ArrayList<Game> games = ChessIO.readRetainedGames(pgnFile, pgnIndex, headerFilters, seenGames);
+			this.addGames(games);
+			seenGames.save();
+			return pgnIndex.getGameCount() - games.size();
+		}
+		finally
+		{
+			seenGames.close();
+		}
+	}
+
+	/**
+	 * Converts a PGN file into a list of Chesspresso games, parsing the file on several threads. The games are added in the same order as they
+	 * appear in the file.
+	 *
+	 * @param pgnFile The file pointing to a PGN file to import
+	 * @param threads The number of threads to parse the file with. 1 or fewer parses on the current thread.
+	 * @throws javax.activation.UnsupportedDataTypeException Throws exception in the event that passed file is not a PGN
+	 * @throws IOException                                   Filesystem issue with reading PGN file
+	 * @throws PGNSyntaxError                                Syntax error with readying PGN file
+	 */
+	public void importPGN(final File pgnFile, final int threads) throws IOException, PGNSyntaxError, UnsupportedDataTypeException
+	{
+		if(threads <= 1)
+		{
+			this.importPGN(pgnFile);
+			return;
+		}
+		ChessIO.checkIsPGNFile(pgnFile);
+		final ArrayList<Game> games = ParallelPGNImporter.importPGN(pgnFile, threads);
+		if(games.isEmpty())
+		{
+			throw new PGNSyntaxError(PGNSyntaxError.ERROR, ChessIO.EMPTY_PGN_FILE, pgnFile.getPath(), 0, "");
+		}
+		this.addGames(games);
+	}
+
+	/**
+	 * Replaces every currently imported game with a copy, so that tags written to the games from now on are not seen by any view taken earlier
+	 */
+	public void isolateGames()
+	{
+		final ArrayList<GameRecord> records = new ArrayList<GameRecord>(this.chessContext.getGameCount());
+		for(final GameRecord record : this.chessContext.getRecords())
+		{
+			records.add(record.copy());
+		}
+		this.chessContext.setRecords(records);
+	}
+
 	/**
 	 * Advises if any games are currently loaded
 	 *
@@ -180,4 +649,66 @@ public final class ChessIO
 	{
 		this.chessContext.addGames(games);
 	}
+
+	/**
+	 * Streams the games of a PGN file that survive a duplicate filter straight out to another PGN file
+	 *
+	 * @param pgnFile    The file pointing to a PGN file to stream
+	 * @param exportFile The file to write surviving games to
+	 * @param mode       The duplicate filter mode (Filter, Isolate or Purge)
+	 * @param tagKeys    The keys of the tags that must also match for two games to be duplicates
+	 * @param runGames   The number of games sorted in memory at a time
+	 * @return The number of games written
+	 * @throws javax.activation.UnsupportedDataTypeException Throws exception in the event that passed file is not a PGN
+	 * @throws IOException                                   Filesystem issue with reading PGN file
+	 * @throws PGNSyntaxError                                Syntax error with readying PGN file
+	 */
+	int streamDuplicates(final File pgnFile, final File exportFile, final DuplicateFilterMode mode, final String[] tagKeys, final int runGames)
+			throws IOException, PGNSyntaxError, UnsupportedDataTypeException
+	{
+		ChessIO.checkIsPGNFile(pgnFile);
+		final PGNIndex pgnIndex = PGNIndex.load(pgnFile);
+		if(pgnIndex.getGameCount() == 0)
+		{
+			throw new PGNSyntaxError(PGNSyntaxError.ERROR, ChessIO.EMPTY_PGN_FILE, pgnFile.getPath(), 0, "");
+		}
+		final BitSet retainedGames = ExternalDuplicateFilter.findRetainedGames(
+				pgnFile,
+				pgnIndex,
+				new GameFingerprint(tagKeys),
+				mode,
+				runGames,
+				exportFile.getAbsoluteFile().getParentFile()
+																			  );
+		return ExternalDuplicateFilter.copyRetainedGames(pgnFile, pgnIndex, retainedGames, exportFile);
+	}
+
+	/**
+	 * The tags read from the text of a game whose moves have not been parsed
+	 */
+	private static final class ParsedTags implements TagSource
+	{
+		private final Map<String, String> tags;
+
+		ParsedTags(final Map<String, String> tags)
+		{
+			//noinspection AssignmentToCollectionOrArrayFieldFromParameter
+			this.tags = tags;
+		}
+
+		@Override
+		public String getTag(final String tagKey)
+		{
+			return this.tags.get(tagKey);
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "ParsedTags{" +
+				   "tags=" + this.tags +
+				   '}';
+		}
+	}
 }
@@ -10,7 +10,6 @@
 
 package com.bigtobster.pgnextractalt.chess;
 
-import chesspresso.game.Game;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.ArrayList;
@@ -53,12 +52,13 @@ public class ChessTagModder
 	public int insertTag(final String tagKey, final String tagValue, final boolean tagForce)
 	{
 		int counter = 0;
-		final ArrayList<Game> games = this.chessContext.getGames();
-		for(final Game game : games)
+		//Works on the records rather than the games so that lazily imported games are not parsed just to have a tag set
+		final ArrayList<GameRecord> records = this.chessContext.getRecords();
+		for(final GameRecord record : records)
 		{
-			if(! (! tagForce && (game.getTag(tagKey) != null)))
+			if(! (! tagForce && (record.getTag(tagKey) != null)))
 			{
-				game.setTag(tagKey, tagValue);
+				record.setTag(tagKey, tagValue);
 				counter++;
 			}
 		}
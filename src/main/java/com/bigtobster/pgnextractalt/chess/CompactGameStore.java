@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import chesspresso.game.Game;
+import chesspresso.move.IllegalMoveException;
+import chesspresso.move.Move;
+import chesspresso.position.Position;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.logging.Logger;
+
+/**
+ * A compact, primitive array backed store of games. The main line of every game is packed as Chesspresso short move codes into one shared array,
+ * with each game's moves found by its offset into that array. Tags are dictionary encoded - each tag key is a column of ints indexing a shared
+ * table of tag values. Games are only rebuilt as Chesspresso games when asked for.
+ * <p>
+ * The arrays are StoreArrays, so the bulk of the store can be kept off the heap and spilled to disk by handing the store an off-heap
+ * StoreAllocator. Only the tag key and value tables stay on the heap.
+ * <p>
+ * A game is only stored if it can be rebuilt exactly. Games with variations, comments or a set-up start position are refused and should be held
+ * as they are. A refused game leaves nothing behind - its tags are only added to the tag tables once the game has been accepted.
+ * <p>
+ * The store is shared by the chess context and any views of its games, each of which holds a claim on it. The store is closed, letting go of its
+ * memory and scratch file, when the last claim is released. A new store starts with a single claim held by its creator.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class CompactGameStore
+{
+	/**
+	 * The index returned by add for a game that cannot be stored compactly
+	 */
+	static final         int    NOT_STORED = - 1;
+	//Tag value ids are stored one higher than their index so that the zeroes of freshly allocated segments read as absent tags
+	private static final int    ABSENT     = 0;
+	@SuppressWarnings("UnusedDeclaration")
+	private static final Logger LOGGER     = Logger.getLogger(CompactGameStore.class.getName());
+	private final StoreAllocator           allocator;
+	private final ArrayList<StoreArray>    columns  = new ArrayList<StoreArray>(16);
+	private final HashMap<String, Integer> keyIds   = new HashMap<String, Integer>(16);
+	private final ArrayList<String>        keys     = new ArrayList<String>(16);
+	private final StoreArray               moveOffsets;
+	private final StoreArray               moves;
+	private final HashMap<String, Integer> valueIds = new HashMap<String, Integer>(1024);
+	private final ArrayList<String>        values   = new ArrayList<String>(1024);
+	private       int                      claims    = 1;
+	private       int                      gameCount = 0;
+
+	/**
+	 * Creates an empty store
+	 *
+	 * @param allocator The allocator of the store's arrays
+	 */
+	CompactGameStore(final StoreAllocator allocator)
+	{
+		this.allocator = allocator;
+		this.moveOffsets = new StoreArray(allocator, StoreArray.LONG_WIDTH);
+		this.moves = new StoreArray(allocator, StoreArray.SHORT_WIDTH);
+		this.moveOffsets.putLong(0L, 0L);
+	}
+
+	private static void stageTag(final Game game, final String tagKey, final ArrayList<String> tagKeys, final ArrayList<String> tagValues)
+	{
+		final String tagValue = game.getTag(tagKey);
+		if(tagValue != null)
+		{
+			tagKeys.add(tagKey);
+			tagValues.add(tagValue);
+		}
+	}
+
+	/**
+	 * Adds a game to the store. The game is rebuilt from its staged moves and tags straight away and is only kept if the rebuilt game equals the
+	 * original.
+	 *
+	 * @param game The game to be stored
+	 * @return The index of the game in the store or NOT_STORED if the game cannot be stored without loss
+	 */
+	int add(final Game game)
+	{
+		final int index = this.gameCount;
+		final long moveStart = this.moveOffsets.getLong((long) index);
+		long moveEnd = moveStart;
+		//The moves are staged past the last stored game, where the next game added overwrites them if this one is refused
+		game.gotoStart();
+		Move move = game.getNextMove();
+		while(move != null)
+		{
+			this.moves.putShort(moveEnd, move.getShortMoveDesc());
+			moveEnd++;
+			game.goForward();
+			move = game.getNextMove();
+		}
+		game.gotoStart();
+		//The tags are staged in the order getGame would read them back - known keys by column, then new keys in the game's order
+		final ArrayList<String> tagKeys = new ArrayList<String>(16);
+		final ArrayList<String> tagValues = new ArrayList<String>(16);
+		for(final String tagKey : this.keys)
+		{
+			CompactGameStore.stageTag(game, tagKey, tagKeys, tagValues);
+		}
+		for(final String tagKey : game.getTags())
+		{
+			if(! this.keyIds.containsKey(tagKey))
+			{
+				CompactGameStore.stageTag(game, tagKey, tagKeys, tagValues);
+			}
+		}
+		//Anything the store cannot represent - variations, comments, set-up positions - shows up as a difference here
+		if(! game.equals(this.rebuildGame(index, tagKeys, tagValues, moveStart, moveEnd)))
+		{
+			return CompactGameStore.NOT_STORED;
+		}
+		this.moveOffsets.putLong((long) index + 1L, moveEnd);
+		for(final StoreArray column : this.columns)
+		{
+			column.putInt((long) index, CompactGameStore.ABSENT);
+		}
+		for(int i = 0; i < tagKeys.size(); i++)
+		{
+			this.setTag(index, tagKeys.get(i), tagValues.get(i));
+		}
+		this.gameCount++;
+		return index;
+	}
+
+	/**
+	 * Getter for the allocator of the store's arrays
+	 *
+	 * @return The allocator
+	 */
+	StoreAllocator getAllocator()
+	{
+		return this.allocator;
+	}
+
+	/**
+	 * Rebuilds a game from the store
+	 *
+	 * @param index The index of the game in the store
+	 * @return A new Chesspresso game equal to the game that was stored
+	 */
+	Game getGame(final int index)
+	{
+		final ArrayList<String> tagKeys = new ArrayList<String>(this.keys.size());
+		final ArrayList<String> tagValues = new ArrayList<String>(this.keys.size());
+		for(int keyId = 0; keyId < this.keys.size(); keyId++)
+		{
+			final int valueId = this.columns.get(keyId).getInt((long) index);
+			if(valueId != CompactGameStore.ABSENT)
+			{
+				tagKeys.add(this.keys.get(keyId));
+				tagValues.add(this.values.get(valueId - 1));
+			}
+		}
+		return this.rebuildGame(index, tagKeys, tagValues, this.moveOffsets.getLong((long) index), this.moveOffsets.getLong((long) index + 1L));
+	}
+
+	/**
+	 * Getter for the number of games stored
+	 *
+	 * @return The number of games in the store
+	 */
+	int getGameCount()
+	{
+		return this.gameCount;
+	}
+
+	/**
+	 * Reads a tag of a stored game without rebuilding the game
+	 *
+	 * @param index  The index of the game in the store
+	 * @param tagKey The key of the tag
+	 * @return The value of the tag or null if the game has no such tag
+	 */
+	String getTag(final int index, final String tagKey)
+	{
+		final Integer keyId = this.keyIds.get(tagKey);
+		if(keyId == null)
+		{
+			return null;
+		}
+		final int valueId = this.columns.get(keyId).getInt((long) index);
+		return (valueId == CompactGameStore.ABSENT) ? null : this.values.get(valueId - 1);
+	}
+
+	/**
+	 * Writes a tag of a stored game without rebuilding the game
+	 *
+	 * @param index    The index of the game in the store
+	 * @param tagKey   The key of the tag
+	 * @param tagValue The new value of the tag
+	 */
+	void setTag(final int index, final String tagKey, final String tagValue)
+	{
+		Integer keyId = this.keyIds.get(tagKey);
+		if(keyId == null)
+		{
+			keyId = this.keys.size();
+			this.keys.add(tagKey);
+			this.keyIds.put(tagKey, keyId);
+			this.columns.add(new StoreArray(this.allocator, StoreArray.INT_WIDTH));
+		}
+		if(tagValue == null)
+		{
+			this.columns.get(keyId).putInt((long) index, CompactGameStore.ABSENT);
+			return;
+		}
+		Integer valueId = this.valueIds.get(tagValue);
+		if(valueId == null)
+		{
+			this.values.add(tagValue);
+			valueId = this.values.size();
+			this.valueIds.put(tagValue, valueId);
+		}
+		this.columns.get(keyId).putInt((long) index, valueId);
+	}
+
+	/**
+	 * Releases a claim on the store. Releasing the last claim closes the store, after which none of its games can be read.
+	 */
+	synchronized void release()
+	{
+		if(this.claims == 0)
+		{
+			throw new IllegalStateException("The compact store has already been closed");
+		}
+		this.claims--;
+		if(this.claims == 0)
+		{
+			for(final StoreArray column : this.columns)
+			{
+				column.release();
+			}
+			this.moves.release();
+			this.moveOffsets.release();
+			this.allocator.close();
+		}
+	}
+
+	/**
+	 * Takes a further claim on the store, keeping it open until the claim is released
+	 */
+	synchronized void retain()
+	{
+		if(this.claims == 0)
+		{
+			throw new IllegalStateException("The compact store has already been closed");
+		}
+		this.claims++;
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "CompactGameStore{" +
+			   "gameCount=" + this.gameCount +
+			   ", claims=" + this.claims +
+			   ", moves=" + this.moves +
+			   ", tagKeys=" + this.keys.size() +
+			   ", tagValues=" + this.values.size() +
+			   ", allocator=" + this.allocator +
+			   '}';
+	}
+
+	private Game rebuildGame(
+			final int index, final ArrayList<String> tagKeys, final ArrayList<String> tagValues, final long moveStart, final long moveEnd
+							)
+	{
+		final Game game = new Game();
+		for(int i = 0; i < tagKeys.size(); i++)
+		{
+			game.setTag(tagKeys.get(i), tagValues.get(i));
+		}
+		final Position position = game.getPosition();
+		try
+		{
+			for(long i = moveStart; i < moveEnd; i++)
+			{
+				position.doMove(this.moves.getShort(i));
+			}
+		}
+		catch(final IllegalMoveException ime)
+		{
+			throw new IllegalStateException("Stored game " + index + " has an illegal move", ime);
+		}
+		game.gotoStart();
+		return game;
+	}
+}
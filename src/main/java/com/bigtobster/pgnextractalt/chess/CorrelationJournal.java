@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import com.bigtobster.pgnextractalt.filters.GameFingerprint;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An append-only record of the machine correlation scores of every game evaluated so far, so that a run which is stopped part way through can be
+ * picked up again without re-evaluating the games already done. Each game is identified by the fingerprint of its moves and players. The journal
+ * remembers the settings it was started with and refuses to be resumed under different ones, as the scores would not be comparable. The settings
+ * include force, as a run without it leaves the score of a side already evaluated out of the journalled record.
+ * <p>
+ * A record is appended and flushed as soon as each game is evaluated. A record cut short by a crash is discarded when the journal is reopened.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class CorrelationJournal
+{
+	private static final int                          FORMAT_VERSION = 2;
+	private static final String[]                     GAME_TAG_KEYS  = {ChessContext.WHITE_KEY, ChessContext.BLACK_KEY};
+	private static final int                          HEADER_BYTES   = 24;
+	private static final Logger                       LOGGER         = Logger.getLogger(CorrelationJournal.class.getName());
+	private static final int                          MAGIC          = 0x50474e4a;
+	private static final int                          RECORD_BYTES   = 24;
+	private final        HashMap<JournalKey, float[]> entries;
+	private final        DataOutputStream             journalStream;
+
+	/**
+	 * Opens a journal, reading back every complete record. A journal which does not yet exist is created.
+	 *
+	 * @param journalFile  The journal file
+	 * @param depth        The search depth of the run
+	 * @param singleSearch Whether the run uses single search scoring
+	 * @param force        Whether the run evaluates players who already have a machine correlation score
+	 * @param engineId     The engine which runs the searches
+	 * @throws java.io.IOException Thrown if the journal cannot be read or written, is not a journal or was started with different settings
+	 */
+	@SuppressWarnings("BooleanParameter")
+	CorrelationJournal(final File journalFile, final int depth, final boolean singleSearch, final boolean force, final int engineId)
+			throws IOException
+	{
+		this.entries = new HashMap<JournalKey, float[]>();
+		final int mode = singleSearch ? 1 : 0;
+		final int forced = force ? 1 : 0;
+		final RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+		try
+		{
+			if(file.length() < (long) CorrelationJournal.HEADER_BYTES)
+			{
+				file.setLength(0L);
+				file.writeInt(CorrelationJournal.MAGIC);
+				file.writeInt(CorrelationJournal.FORMAT_VERSION);
+				file.writeInt(depth);
+				file.writeInt(mode);
+				file.writeInt(forced);
+				file.writeInt(engineId);
+			}
+			else
+			{
+				if(file.readInt() != CorrelationJournal.MAGIC)
+				{
+					throw new IOException("Not a machine correlation journal: " + journalFile.getPath());
+				}
+				if(file.readInt() != CorrelationJournal.FORMAT_VERSION)
+				{
+					throw new IOException("Journal was written in an older format and must be started afresh: " + journalFile.getPath());
+				}
+				if((file.readInt() != depth) || (file.readInt() != mode) || (file.readInt() != forced) || (file.readInt() != engineId))
+				{
+					throw new IOException("Journal was started with different evaluation settings: " + journalFile.getPath());
+				}
+				final long records = (file.length() - (long) CorrelationJournal.HEADER_BYTES) / (long) CorrelationJournal.RECORD_BYTES;
+				final long completeLength = (long) CorrelationJournal.HEADER_BYTES + (records * (long) CorrelationJournal.RECORD_BYTES);
+				if(completeLength != file.length())
+				{
+					CorrelationJournal.LOGGER.log(Level.WARNING, "Discarding incomplete journal record in " + journalFile.getPath());
+					file.setLength(completeLength);
+				}
+				this.readEntries(journalFile, records);
+			}
+		}
+		finally
+		{
+			file.close();
+		}
+		this.journalStream = new DataOutputStream(new FileOutputStream(journalFile, true));
+	}
+
+	/**
+	 * Records the scores of a game and flushes them to the journal file
+	 *
+	 * @param fingerprint The fingerprint of the game, as made by newFingerprint
+	 * @param scores      The white and black scores, in that order
+	 * @throws java.io.IOException Thrown if the record cannot be written
+	 */
+	synchronized void append(final GameFingerprint fingerprint, final float[] scores) throws IOException
+	{
+		this.journalStream.writeLong(fingerprint.getHigh());
+		this.journalStream.writeLong(fingerprint.getLow());
+		this.journalStream.writeFloat(scores[0]);
+		this.journalStream.writeFloat(scores[1]);
+		this.journalStream.flush();
+		this.entries.put(new JournalKey(fingerprint.getHigh(), fingerprint.getLow()), scores);
+	}
+
+	/**
+	 * Closes the journal file
+	 *
+	 * @throws java.io.IOException Thrown if the journal file cannot be closed
+	 */
+	synchronized void close() throws IOException
+	{
+		this.journalStream.close();
+	}
+
+	/**
+	 * Looks up the scores of a game evaluated earlier
+	 *
+	 * @param fingerprint The fingerprint of the game, as made by newFingerprint
+	 * @return The white and black scores, in that order, or null if the game has not been evaluated
+	 */
+	synchronized float[] get(final GameFingerprint fingerprint)
+	{
+		return this.entries.get(new JournalKey(fingerprint.getHigh(), fingerprint.getLow()));
+	}
+
+	/**
+	 * Getter for the number of games recorded in the journal
+	 *
+	 * @return The number of distinct games recorded
+	 */
+	synchronized int getSize()
+	{
+		return this.entries.size();
+	}
+
+	/**
+	 * Makes a fingerprint which identifies games in the same way as the journal. Fingerprints are not thread safe, so each thread needs its own.
+	 *
+	 * @return A fingerprint over a game's moves and players
+	 */
+	@SuppressWarnings("MethodMayBeStatic")
+	GameFingerprint newFingerprint()
+	{
+		return new GameFingerprint(CorrelationJournal.GAME_TAG_KEYS);
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public synchronized String toString()
+	{
+		return "CorrelationJournal{" +
+			   "entries=" + this.entries.size() +
+			   '}';
+	}
+
+	private void readEntries(final File journalFile, final long records) throws IOException
+	{
+		final DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+		try
+		{
+			//noinspection ResultOfMethodCallIgnored
+			inputStream.skipBytes(CorrelationJournal.HEADER_BYTES);
+			for(long i = 0L; i < records; i++)
+			{
+				final long high = inputStream.readLong();
+				final long low = inputStream.readLong();
+				final float whiteScore = inputStream.readFloat();
+				final float blackScore = inputStream.readFloat();
+				this.entries.put(new JournalKey(high, low), new float[]{whiteScore, blackScore});
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * The fingerprint of a journalled game
+	 */
+	private static final class JournalKey
+	{
+		private final long high;
+		private final long low;
+
+		JournalKey(final long high, final long low)
+		{
+			this.high = high;
+			this.low = low;
+		}
+
+		@Override
+		public boolean equals(final Object o)
+		{
+			if(this == o)
+			{
+				return true;
+			}
+			if(! (o instanceof JournalKey))
+			{
+				return false;
+			}
+			final JournalKey other = (JournalKey) o;
+			return (this.high == other.high) && (this.low == other.low);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (int) (this.low ^ (this.low >>> 32));
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "JournalKey{" +
+				   "high=" + this.high +
+				   ", low=" + this.low +
+				   '}';
+		}
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import chesspresso.game.Game;
+import chesspresso.move.Move;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The moves to be scored for a batch of games, with every repeated (position, played move) pair listed only once. Games which share an opening
+ * share the pairs for it, so each pair is searched a single time however many games reach it. Once the unique pairs have been scored the totals of
+ * each game are summed from them.
+ * <p>
+ * Pairs are matched on the first four fields of the FEN - the move clocks play no part in the search. Scores are also remembered between batches,
+ * up to a fixed number of pairs, so that the most common openings are not searched again in every batch.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class CorrelationPlan
+{
+	/**
+	 * The number of pair scores remembered between batches
+	 */
+	static final         int                      REMEMBERED_PAIRS = 1 << 20;
+	private static final int                      BLACK_MOVE       = 1;
+	private static final int                      FEN_KEY_FIELDS   = 4;
+	private static final Pattern                  SPACE_PATTERN    = Pattern.compile(" ");
+	private static final int                      WHITE_MOVE       = 0;
+	private final        ArrayList<String>        fens;
+	private final        ArrayList<int[]>         gamePairs;
+	private final        ArrayList<float[]>       gameScores;
+	private final        ArrayList<String>        moves;
+	private final        HashMap<String, Integer> pairIndexes;
+	private              float[]                  pairScores       = null;
+	private final        Map<String, Float>       rememberedScores;
+
+	/**
+	 * Constructor
+	 *
+	 * @param rememberedScores Scores of pairs from earlier batches, which are not searched again. Updated once this batch has been scored.
+	 */
+	CorrelationPlan(final Map<String, Float> rememberedScores)
+	{
+		this.fens = new ArrayList<String>();
+		this.moves = new ArrayList<String>();
+		this.gamePairs = new ArrayList<int[]>();
+		this.gameScores = new ArrayList<float[]>();
+		this.pairIndexes = new HashMap<String, Integer>();
+		this.rememberedScores = rememberedScores;
+	}
+
+	/**
+	 * Makes the map of remembered pair scores handed from batch to batch. It drops the least recently used pair once full.
+	 *
+	 * @return An empty map of remembered pair scores
+	 */
+	@SuppressWarnings({"CloneableClassWithoutClone", "serial"})
+	static Map<String, Float> newRememberedScores()
+	{
+		return new LinkedHashMap<String, Float>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Float> eldest)
+			{
+				return this.size() > CorrelationPlan.REMEMBERED_PAIRS;
+			}
+		};
+	}
+
+	private static String toPairKey(final String fen, final String move)
+	{
+		final String[] fields = CorrelationPlan.SPACE_PATTERN.split(fen);
+		final StringBuilder builder = new StringBuilder(fen.length() + move.length());
+		for(int i = 0; (i < CorrelationPlan.FEN_KEY_FIELDS) && (i < fields.length); i++)
+		{
+			builder.append(fields[i]).append(' ');
+		}
+		return builder.append(move).toString();
+	}
+
+	/**
+	 * Adds the moves of a game to the plan. Only the moves of players who still need evaluating are added.
+	 *
+	 * @param game  The game
+	 * @param force Whether players who already have a machine correlation score are evaluated again
+	 * @return The index of the game within the plan
+	 */
+	@SuppressWarnings({"BooleanParameter", "MethodWithMoreThanThreeNegations"})
+	int addGame(final Game game, final boolean force)
+	{
+		final boolean evaluateWhite = force || ! ChessPresso.isMachineCorrelationEvaluated(game.getWhite());
+		final boolean evaluateBlack = force || ! ChessPresso.isMachineCorrelationEvaluated(game.getBlack());
+		final float[] scores = new float[2];
+		final ArrayList<Integer> pairs = new ArrayList<Integer>();
+		if(evaluateWhite || evaluateBlack)
+		{
+			game.gotoStart();
+			Move move = game.getNextMove();
+			while(move != null)
+			{
+				final int side = move.isWhiteMove() ? CorrelationPlan.WHITE_MOVE : CorrelationPlan.BLACK_MOVE;
+				if((side == CorrelationPlan.WHITE_MOVE) ? evaluateWhite : evaluateBlack)
+				{
+					final String fen = game.getPosition().getFEN();
+					final String coordinateMove = ChessEvaluator.convertLANtoCoordinateNotation(move);
+					final String pairKey = CorrelationPlan.toPairKey(fen, coordinateMove);
+					final Float rememberedScore = this.rememberedScores.get(pairKey);
+					if(rememberedScore != null)
+					{
+						scores[side] += rememberedScore;
+					}
+					else
+					{
+						Integer pair = this.pairIndexes.get(pairKey);
+						if(pair == null)
+						{
+							pair = this.fens.size();
+							this.pairIndexes.put(pairKey, pair);
+							this.fens.add(fen);
+							this.moves.add(coordinateMove);
+						}
+						pairs.add((pair << 1) | side);
+					}
+				}
+				game.goForward();
+				move = game.getNextMove();
+			}
+		}
+		final int[] gamePairs = new int[pairs.size()];
+		for(int i = 0; i < gamePairs.length; i++)
+		{
+			gamePairs[i] = pairs.get(i);
+		}
+		this.gamePairs.add(gamePairs);
+		this.gameScores.add(scores);
+		return this.gameScores.size() - 1;
+	}
+
+	/**
+	 * Getter for the position of a pair
+	 *
+	 * @param pair The index of the pair
+	 * @return The FEN of the position the move was played in
+	 */
+	String getFEN(final int pair)
+	{
+		return this.fens.get(pair);
+	}
+
+	/**
+	 * Sums the scores of a game's moves. Only valid once the pair scores have been set.
+	 *
+	 * @param game The index of the game within the plan
+	 * @return The white and black scores, in that order
+	 */
+	float[] getGameScores(final int game)
+	{
+		final float[] scores = this.gameScores.get(game).clone();
+		for(final int pair : this.gamePairs.get(game))
+		{
+			scores[pair & 1] += this.pairScores[pair >>> 1];
+		}
+		return scores;
+	}
+
+	/**
+	 * Getter for the played move of a pair
+	 *
+	 * @param pair The index of the pair
+	 * @return The move in coordinate notation
+	 */
+	String getMove(final int pair)
+	{
+		return this.moves.get(pair);
+	}
+
+	/**
+	 * Getter for the number of unique pairs to be searched
+	 *
+	 * @return The number of pairs in the plan which were not remembered from earlier batches
+	 */
+	int getPairCount()
+	{
+		return this.fens.size();
+	}
+
+	/**
+	 * Sets the score of every pair and remembers them for later batches
+	 *
+	 * @param pairScores The score of each pair, by pair index
+	 */
+	void setPairScores(final float[] pairScores)
+	{
+		this.pairScores = pairScores.clone();
+		for(final Map.Entry<String, Integer> pairIndex : this.pairIndexes.entrySet())
+		{
+			this.rememberedScores.put(pairIndex.getKey(), pairScores[pairIndex.getValue()]);
+		}
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "CorrelationPlan{" +
+			   "games=" + this.gameScores.size() +
+			   ", pairs=" + this.fens.size() +
+			   ", rememberedScores=" + this.rememberedScores.size() +
+			   '}';
+	}
+}
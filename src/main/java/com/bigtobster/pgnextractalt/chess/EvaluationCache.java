@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import com.bigtobster.pgnextractalt.uciEngine.SearchResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of engine search results keyed on the position's Zobrist hash, the search depth and the engine which ran the search. Results are held
+ * in a bounded least recently used map and, optionally, in a fixed size hash file on disk which is memory mapped and kept between runs. The disk
+ * tier works like an engine's transposition table - each key has a short run of slots it may live in, and when they are all taken the key's home
+ * slot is overwritten.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class EvaluationCache
+{
+	/**
+	 * The number of slots in a new disk file when none is specified
+	 */
+	public static final  int              DEFAULT_DISK_SLOTS     = 1 << 20;
+	/**
+	 * The number of results held in memory when none is specified
+	 */
+	public static final  int              DEFAULT_MEMORY_ENTRIES = 1 << 16;
+	private static final int              DEPTH_OFFSET           = 8;
+	private static final int              ENGINE_OFFSET          = 12;
+	private static final int              FLAGS_OFFSET           = 24;
+	private static final int              FORMAT_VERSION         = 1;
+	private static final int              HEADER_BYTES           = 16;
+	private static final int              MAGIC                  = 0x50474e45;
+	private static final int              MATE_FLAG              = 2;
+	private static final int              MAXIMUM_DISK_SLOTS     = 1 << 25;
+	private static final int              MOVE_OFFSET            = 20;
+	private static final int              OCCUPIED_FLAG          = 1;
+	private static final int              PROBE_LIMIT            = 8;
+	private static final String           PROMOTION_PIECES       = " nbrq";
+	private static final int              SCORE_OFFSET           = 16;
+	private static final int              SLOT_BYTES             = 32;
+	private final        int              diskSlotCount;
+	private final        MappedByteBuffer diskSlots;
+	private              long             hits                   = 0L;
+	private final        MemoryTier       memory;
+	private              long             misses                 = 0L;
+
+	/**
+	 * Constructor for a cache held only in memory
+	 *
+	 * @param memoryEntries The largest number of results held in memory
+	 */
+	public EvaluationCache(final int memoryEntries)
+	{
+		this.memory = new MemoryTier(memoryEntries);
+		this.diskSlots = null;
+		this.diskSlotCount = 0;
+	}
+
+	/**
+	 * Constructor for a cache backed by a hash file on disk. An existing file keeps its own number of slots.
+	 *
+	 * @param memoryEntries The largest number of results held in memory
+	 * @param diskFile      The hash file, which is created if it does not exist
+	 * @param diskSlots     The number of slots given to a new hash file. Rounded up to a power of two.
+	 * @throws java.io.IOException Thrown if the hash file cannot be created, read or mapped, or is not a hash file
+	 */
+	public EvaluationCache(final int memoryEntries, final File diskFile, final int diskSlots) throws IOException
+	{
+		this.memory = new MemoryTier(memoryEntries);
+		final RandomAccessFile file = new RandomAccessFile(diskFile, "rw");
+		try
+		{
+			final int boundedSlots = Math.min(Math.max(diskSlots, EvaluationCache.PROBE_LIMIT), EvaluationCache.MAXIMUM_DISK_SLOTS);
+			int slotCount = Integer.highestOneBit(boundedSlots - 1) << 1;
+			if(file.length() == 0L)
+			{
+				file.writeInt(EvaluationCache.MAGIC);
+				file.writeInt(EvaluationCache.FORMAT_VERSION);
+				file.writeInt(slotCount);
+				file.writeInt(0);
+				file.setLength((long) EvaluationCache.HEADER_BYTES + ((long) slotCount * (long) EvaluationCache.SLOT_BYTES));
+			}
+			else
+			{
+				final int magic = file.readInt();
+				final int version = file.readInt();
+				slotCount = file.readInt();
+				if((magic != EvaluationCache.MAGIC) || (version != EvaluationCache.FORMAT_VERSION) || (Integer.bitCount(slotCount) != 1) ||
+				   (slotCount > EvaluationCache.MAXIMUM_DISK_SLOTS) ||
+				   (file.length() != ((long) EvaluationCache.HEADER_BYTES + ((long) slotCount * (long) EvaluationCache.SLOT_BYTES))))
+				{
+					throw new IOException("Not an evaluation cache file: " + diskFile.getPath());
+				}
+			}
+			this.diskSlotCount = slotCount;
+			this.diskSlots = file.getChannel().map(
+					FileChannel.MapMode.READ_WRITE,
+					(long) EvaluationCache.HEADER_BYTES,
+					(long) slotCount * (long) EvaluationCache.SLOT_BYTES
+												  );
+		}
+		finally
+		{
+			// The mapping stays valid once the file is closed
+			file.close();
+		}
+	}
+
+	private static SearchResult decodeResult(final int move, final float score, final int flags)
+	{
+		if(move == 0)
+		{
+			return new SearchResult(SearchResult.NO_MOVE, score, (flags & EvaluationCache.MATE_FLAG) != 0);
+		}
+		final int packed = move - 1;
+		final int from = packed >>> 9;
+		final int to = (packed >>> 3) & 63;
+		final int promotion = packed & 7;
+		final StringBuilder builder = new StringBuilder(5);
+		builder.append((char) ('a' + (from & 7))).append((char) ('1' + (from >>> 3)));
+		builder.append((char) ('a' + (to & 7))).append((char) ('1' + (to >>> 3)));
+		if(promotion != 0)
+		{
+			builder.append(EvaluationCache.PROMOTION_PIECES.charAt(promotion));
+		}
+		return new SearchResult(builder.toString(), score, (flags & EvaluationCache.MATE_FLAG) != 0);
+	}
+
+	/**
+	 * Packs a coordinate notation move into an int. 0 stands for no move, as does anything which is not a well formed coordinate move.
+	 */
+	private static int encodeMove(final String move)
+	{
+		if((move.length() < 4) || (move.length() > 5))
+		{
+			return 0;
+		}
+		final int fromFile = move.charAt(0) - 'a';
+		final int fromRank = move.charAt(1) - '1';
+		final int toFile = move.charAt(2) - 'a';
+		final int toRank = move.charAt(3) - '1';
+		final int promotion = (move.length() == 5) ? EvaluationCache.PROMOTION_PIECES.indexOf(move.charAt(4)) : 0;
+		if(((fromFile | fromRank | toFile | toRank) & ~ 7) != 0 || (promotion <= 0 && move.length() == 5))
+		{
+			return 0;
+		}
+		return ((((fromRank << 3) | fromFile) << 9) | (((toRank << 3) | toFile) << 3) | promotion) + 1;
+	}
+
+	private static int hashSlot(final long positionHash, final int depth, final int engineId, final int slotCount)
+	{
+		long mixed = positionHash ^ ((long) depth * 0x9e3779b97f4a7c15L) ^ ((long) engineId << 32);
+		mixed ^= mixed >>> 33;
+		mixed *= 0xff51afd7ed558ccdL;
+		mixed ^= mixed >>> 33;
+		return (int) mixed & (slotCount - 1);
+	}
+
+	/**
+	 * Flushes the disk tier, if any, so that its results survive the end of the run
+	 */
+	public synchronized void flush()
+	{
+		if(this.diskSlots != null)
+		{
+			this.diskSlots.force();
+		}
+	}
+
+	/**
+	 * Looks up a search result, checking memory before disk. Results found on disk are promoted into memory.
+	 *
+	 * @param positionHash The Zobrist hash of the searched position
+	 * @param depth        The depth searched to
+	 * @param engineId     The engine which ran the search
+	 * @return The cached result or null if there is none
+	 */
+	public synchronized SearchResult get(final long positionHash, final int depth, final int engineId)
+	{
+		final CacheKey key = new CacheKey(positionHash, depth, engineId);
+		SearchResult result = this.memory.get(key);
+		if((result == null) && (this.diskSlots != null))
+		{
+			final int home = EvaluationCache.hashSlot(positionHash, depth, engineId, this.diskSlotCount);
+			for(int probe = 0; (probe < EvaluationCache.PROBE_LIMIT) && (result == null); probe++)
+			{
+				final int slot = ((home + probe) & (this.diskSlotCount - 1)) * EvaluationCache.SLOT_BYTES;
+				final int flags = this.diskSlots.getInt(slot + EvaluationCache.FLAGS_OFFSET);
+				if((flags & EvaluationCache.OCCUPIED_FLAG) == 0)
+				{
+					//noinspection BreakStatement
+					break;
+				}
+				if((this.diskSlots.getLong(slot) == positionHash) && (this.diskSlots.getInt(slot + EvaluationCache.DEPTH_OFFSET) == depth) &&
+				   (this.diskSlots.getInt(slot + EvaluationCache.ENGINE_OFFSET) == engineId))
+				{
+					result = EvaluationCache.decodeResult(
+							this.diskSlots.getInt(slot + EvaluationCache.MOVE_OFFSET),
+							this.diskSlots.getFloat(slot + EvaluationCache.SCORE_OFFSET),
+							flags
+														 );
+					this.memory.put(key, result);
+				}
+			}
+		}
+		if(result == null)
+		{
+			this.misses++;
+		}
+		else
+		{
+			this.hits++;
+		}
+		return result;
+	}
+
+	/**
+	 * Getter for the number of lookups answered by the cache
+	 *
+	 * @return The number of lookups which found a result
+	 */
+	public synchronized long getHits()
+	{
+		return this.hits;
+	}
+
+	/**
+	 * Getter for the number of lookups the cache could not answer
+	 *
+	 * @return The number of lookups which found no result
+	 */
+	public synchronized long getMisses()
+	{
+		return this.misses;
+	}
+
+	/**
+	 * Stores a search result in memory and, if there is one, on disk
+	 *
+	 * @param positionHash The Zobrist hash of the searched position
+	 * @param depth        The depth searched to
+	 * @param engineId     The engine which ran the search
+	 * @param result       The result of the search
+	 */
+	public synchronized void put(final long positionHash, final int depth, final int engineId, final SearchResult result)
+	{
+		this.memory.put(new CacheKey(positionHash, depth, engineId), result);
+		if(this.diskSlots != null)
+		{
+			final int home = EvaluationCache.hashSlot(positionHash, depth, engineId, this.diskSlotCount);
+			int target = home;
+			for(int probe = 0; probe < EvaluationCache.PROBE_LIMIT; probe++)
+			{
+				final int slot = (home + probe) & (this.diskSlotCount - 1);
+				final int offset = slot * EvaluationCache.SLOT_BYTES;
+				if(((this.diskSlots.getInt(offset + EvaluationCache.FLAGS_OFFSET) & EvaluationCache.OCCUPIED_FLAG) == 0) ||
+				   ((this.diskSlots.getLong(offset) == positionHash) && (this.diskSlots.getInt(offset + EvaluationCache.DEPTH_OFFSET) == depth) &&
+					(this.diskSlots.getInt(offset + EvaluationCache.ENGINE_OFFSET) == engineId)))
+				{
+					target = slot;
+					//noinspection BreakStatement
+					break;
+				}
+			}
+			final int offset = target * EvaluationCache.SLOT_BYTES;
+			this.diskSlots.putLong(offset, positionHash);
+			this.diskSlots.putInt(offset + EvaluationCache.DEPTH_OFFSET, depth);
+			this.diskSlots.putInt(offset + EvaluationCache.ENGINE_OFFSET, engineId);
+			this.diskSlots.putFloat(offset + EvaluationCache.SCORE_OFFSET, result.getScore());
+			this.diskSlots.putInt(offset + EvaluationCache.MOVE_OFFSET, EvaluationCache.encodeMove(result.getBestMove()));
+			this.diskSlots.putInt(
+					offset + EvaluationCache.FLAGS_OFFSET,
+					EvaluationCache.OCCUPIED_FLAG | (result.isMate() ? EvaluationCache.MATE_FLAG : 0)
+								 );
+		}
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public synchronized String toString()
+	{
+		return "EvaluationCache{" +
+			   "memoryEntries=" + this.memory.size() +
+			   ", diskSlotCount=" + this.diskSlotCount +
+			   ", hits=" + this.hits +
+			   ", misses=" + this.misses +
+			   '}';
+	}
+
+	/**
+	 * The memory tier - a map which drops its least recently used result once it holds more than its capacity
+	 */
+	@SuppressWarnings({"CloneableClassWithoutClone", "serial"})
+	private static final class MemoryTier extends LinkedHashMap<CacheKey, SearchResult>
+	{
+		private final int capacity;
+
+		MemoryTier(final int capacity)
+		{
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<CacheKey, SearchResult> eldest)
+		{
+			return this.size() > this.capacity;
+		}
+	}
+
+	/**
+	 * The key of a result held in memory
+	 */
+	private static final class CacheKey
+	{
+		private final int  depth;
+		private final int  engineId;
+		private final long positionHash;
+
+		CacheKey(final long positionHash, final int depth, final int engineId)
+		{
+			this.positionHash = positionHash;
+			this.depth = depth;
+			this.engineId = engineId;
+		}
+
+		@Override
+		public boolean equals(final Object o)
+		{
+			if(this == o)
+			{
+				return true;
+			}
+			if(! (o instanceof CacheKey))
+			{
+				return false;
+			}
+			final CacheKey other = (CacheKey) o;
+			return (this.positionHash == other.positionHash) && (this.depth == other.depth) && (this.engineId == other.engineId);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (int) (this.positionHash ^ (this.positionHash >>> 32)) * 31 + (this.depth * 31 + this.engineId);
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "CacheKey{" +
+				   "positionHash=" + this.positionHash +
+				   ", depth=" + this.depth +
+				   ", engineId=" + this.engineId +
+				   '}';
+		}
+	}
+}
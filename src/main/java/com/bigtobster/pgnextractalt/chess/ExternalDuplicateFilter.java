@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import chesspresso.game.Game;
+import chesspresso.pgn.PGNReader;
+import chesspresso.pgn.PGNSyntaxError;
+import com.bigtobster.pgnextractalt.filters.DuplicateFilterMode;
+import com.bigtobster.pgnextractalt.filters.FingerprintSort;
+import com.bigtobster.pgnextractalt.filters.GameFingerprint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the duplicate games of a PGN file without holding the games in memory. The games are parsed a batch at a time and the fingerprint and
+ * index of each game is collected into a fixed size buffer. Whenever the buffer fills it is sorted and written out as a run file. The run files
+ * are then k-way merged so that copies of a game come out next to each other, in file order, and a keep or drop decision is made for every game.
+ * Only the buffer, the decisions (one bit per game) and the PGNIndex of the file are ever held in memory.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class ExternalDuplicateFilter
+{
+	/**
+	 * The default number of games in each sorted run
+	 */
+	static final         int    DEFAULT_RUN_GAMES = 1 << 20;
+	private static final Logger LOGGER            = Logger.getLogger(ExternalDuplicateFilter.class.getName());
+	private static final long   MAX_BATCH_LENGTH  = 1L << 24;
+	private static final int    RECORD_LONGS      = 3;
+	private static final String RUN_FILE_PREFIX   = "pgn-extract-alt-";
+	private static final String RUN_FILE_SUFFIX   = ".run";
+
+	private ExternalDuplicateFilter()
+	{
+	}
+
+	/**
+	 * Copies the raw text of the retained games of a PGN file into another file. The games are copied byte for byte so nothing is re-parsed.
+	 *
+	 * @param pgnFile       The PGN file to copy from
+	 * @param pgnIndex      The index of the PGN file
+	 * @param retainedGames The indices of the games to copy
+	 * @param exportFile    The file to copy the games to
+	 * @return The number of games copied
+	 * @throws IOException Filesystem issue with reading the PGN file or writing the export file
+	 */
+	static int copyRetainedGames(final File pgnFile, final PGNIndex pgnIndex, final BitSet retainedGames, final File exportFile)
+			throws IOException
+	{
+		final FileInputStream inputStream = new FileInputStream(pgnFile);
+		try
+		{
+			final FileOutputStream outputStream = new FileOutputStream(exportFile);
+			try
+			{
+				final FileChannel inputChannel = inputStream.getChannel();
+				final FileChannel outputChannel = outputStream.getChannel();
+				int copiedGames = 0;
+				for(int game = retainedGames.nextSetBit(0); game >= 0; game = retainedGames.nextSetBit(game + 1))
+				{
+					long position = pgnIndex.getOffset(game);
+					final long end = position + pgnIndex.getLength(game);
+					while(position < end)
+					{
+						position += inputChannel.transferTo(position, end - position, outputChannel);
+					}
+					copiedGames++;
+				}
+				return copiedGames;
+			}
+			finally
+			{
+				outputStream.close();
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Decides which games of a PGN file are retained by a duplicate filter mode
+	 *
+	 * @param pgnFile     The PGN file to be filtered
+	 * @param pgnIndex    The index of the PGN file
+	 * @param fingerprint The fingerprint games are compared by
+	 * @param mode        The duplicate filter mode
+	 * @param runGames    The number of games sorted in memory at a time
+	 * @param runDir      The directory the run files are written to
+	 * @return The indices of the retained games
+	 * @throws IOException    Filesystem issue with reading the PGN file or with the run files, or a PGNIndexMismatchException if the parsed games
+	 *                        do not match the index
+	 * @throws PGNSyntaxError Syntax error with reading the PGN file
+	 */
+	static BitSet findRetainedGames(
+			final File pgnFile,
+			final PGNIndex pgnIndex,
+			final GameFingerprint fingerprint,
+			final DuplicateFilterMode mode,
+			final int runGames,
+			final File runDir
+								   ) throws IOException, PGNSyntaxError
+	{
+		final ArrayList<File> runFiles = new ArrayList<File>(4);
+		try
+		{
+			ExternalDuplicateFilter.writeRuns(pgnFile, pgnIndex, fingerprint, Math.max(1, runGames), runDir, runFiles);
+			return ExternalDuplicateFilter.mergeRuns(runFiles, pgnIndex.getGameCount(), mode);
+		}
+		finally
+		{
+			for(final File runFile : runFiles)
+			{
+				if(! runFile.delete())
+				{
+					ExternalDuplicateFilter.LOGGER.log(Level.WARNING, "Failed to delete run file " + runFile);
+				}
+			}
+		}
+	}
+
+	private static BitSet mergeRuns(final ArrayList<File> runFiles, final int gameCount, final DuplicateFilterMode mode) throws IOException
+	{
+		final BitSet retainedGames = new BitSet(gameCount);
+		final PriorityQueue<RunReader> readers = new PriorityQueue<RunReader>(Math.max(1, runFiles.size()));
+		try
+		{
+			for(final File runFile : runFiles)
+			{
+				final RunReader reader = new RunReader(runFile);
+				if(reader.next())
+				{
+					readers.add(reader);
+				}
+				else
+				{
+					reader.close();
+				}
+			}
+			long groupHigh = 0L;
+			long groupLow = 0L;
+			int groupFirst = - 1;
+			int groupSize = 0;
+			while(! readers.isEmpty())
+			{
+				final RunReader reader = readers.poll();
+				final int game = reader.getGame();
+				if(groupSize > 0 && reader.getHigh() == groupHigh && reader.getLow() == groupLow)
+				{
+					groupSize++;
+					if(mode == DuplicateFilterMode.ISOLATE)
+					{
+						retainedGames.set(groupFirst);
+						retainedGames.set(game);
+					}
+				}
+				else
+				{
+					if(mode == DuplicateFilterMode.PURGE && groupSize == 1)
+					{
+						retainedGames.set(groupFirst);
+					}
+					if(mode == DuplicateFilterMode.FILTER)
+					{
+						retainedGames.set(game);
+					}
+					groupHigh = reader.getHigh();
+					groupLow = reader.getLow();
+					groupFirst = game;
+					groupSize = 1;
+				}
+				if(reader.next())
+				{
+					readers.add(reader);
+				}
+				else
+				{
+					reader.close();
+				}
+			}
+			if(mode == DuplicateFilterMode.PURGE && groupSize == 1)
+			{
+				retainedGames.set(groupFirst);
+			}
+			return retainedGames;
+		}
+		finally
+		{
+			for(final RunReader reader : readers)
+			{
+				reader.close();
+			}
+		}
+	}
+
+	private static void writeRun(final long[] records, final int gameCount, final File runDir, final ArrayList<File> runFiles) throws IOException
+	{
+		FingerprintSort.sort(records, ExternalDuplicateFilter.RECORD_LONGS, 0, gameCount);
+		final File runFile = File.createTempFile(ExternalDuplicateFilter.RUN_FILE_PREFIX, ExternalDuplicateFilter.RUN_FILE_SUFFIX, runDir);
+		runFiles.add(runFile);
+		final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile)));
+		try
+		{
+			for(int i = 0; i < gameCount * ExternalDuplicateFilter.RECORD_LONGS; i++)
+			{
+				outputStream.writeLong(records[i]);
+			}
+		}
+		finally
+		{
+			outputStream.close();
+		}
+	}
+
+	private static void writeRuns(
+			final File pgnFile,
+			final PGNIndex pgnIndex,
+			final GameFingerprint fingerprint,
+			final int runGames,
+			final File runDir,
+			final ArrayList<File> runFiles
+								 ) throws IOException, PGNSyntaxError
+	{
+		final long[] records = new long[Math.min(runGames, Math.max(1, pgnIndex.getGameCount())) * ExternalDuplicateFilter.RECORD_LONGS];
+		final int recordGames = records.length / ExternalDuplicateFilter.RECORD_LONGS;
+		int bufferedGames = 0;
+		final FileInputStream inputStream = new FileInputStream(pgnFile);
+		try
+		{
+			final FileChannel channel = inputStream.getChannel();
+			int game = 0;
+			while(game < pgnIndex.getGameCount())
+			{
+				//Batches always end on a game boundary so each game can be matched back to its index entry
+				final int firstGame = game;
+				final long start = pgnIndex.getOffset(firstGame);
+				long end = start + pgnIndex.getLength(firstGame);
+				game++;
+				while(game < pgnIndex.getGameCount() && end + pgnIndex.getLength(game) - start <= ExternalDuplicateFilter.MAX_BATCH_LENGTH)
+				{
+					end += pgnIndex.getLength(game);
+					game++;
+				}
+				final byte[] batch = ParallelPGNImporter.readChunk(channel, start, end);
+				final PGNReader pgnReader = ChessIO.openPGNReader(new ByteArrayInputStream(batch), pgnFile.getPath());
+				for(int batchGame = firstGame; batchGame < game; batchGame++)
+				{
+					final Game parsedGame = pgnReader.parseGame();
+					if(parsedGame == null)
+					{
+						throw new PGNIndexMismatchException(pgnFile.getPath());
+					}
+					fingerprint.compute(parsedGame);
+					final int slot = bufferedGames * ExternalDuplicateFilter.RECORD_LONGS;
+					records[slot] = fingerprint.getHigh();
+					records[slot + 1] = fingerprint.getLow();
+					records[slot + 2] = (long) batchGame;
+					bufferedGames++;
+					if(bufferedGames == recordGames)
+					{
+						ExternalDuplicateFilter.writeRun(records, bufferedGames, runDir, runFiles);
+						bufferedGames = 0;
+					}
+				}
+				if(pgnReader.parseGame() != null)
+				{
+					//The batch held a game its index missed, so the games parsed from it are not the games their index entries point at
+					throw new PGNIndexMismatchException(pgnFile.getPath());
+				}
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+		if(bufferedGames > 0)
+		{
+			ExternalDuplicateFilter.writeRun(records, bufferedGames, runDir, runFiles);
+		}
+	}
+
+	/**
+	 * Reads the sorted records of a run file back one at a time. Readers order themselves by their current record for the k-way merge.
+	 */
+	private static final class RunReader implements Comparable<RunReader>
+	{
+		private final DataInputStream inputStream;
+		private int  game = 0;
+		private long high = 0L;
+		private long low  = 0L;
+
+		RunReader(final File runFile) throws IOException
+		{
+			this.inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile)));
+		}
+
+		@Override
+		public int compareTo(final RunReader other)
+		{
+			if(this.high != other.high)
+			{
+				return this.high < other.high ? - 1 : 1;
+			}
+			if(this.low != other.low)
+			{
+				return this.low < other.low ? - 1 : 1;
+			}
+			return this.game < other.game ? - 1 : (this.game == other.game ? 0 : 1);
+		}
+
+		@SuppressWarnings("NonFinalFieldReferenceInEquals")
+		@Override
+		public boolean equals(final Object obj)
+		{
+			return obj instanceof RunReader && this.compareTo((RunReader) obj) == 0;
+		}
+
+		@SuppressWarnings("NonFinalFieldReferencedInHashCode")
+		@Override
+		public int hashCode()
+		{
+			return this.game;
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "RunReader{" +
+				   "game=" + this.game +
+				   '}';
+		}
+
+		void close() throws IOException
+		{
+			this.inputStream.close();
+		}
+
+		int getGame()
+		{
+			return this.game;
+		}
+
+		long getHigh()
+		{
+			return this.high;
+		}
+
+		long getLow()
+		{
+			return this.low;
+		}
+
+		boolean next() throws IOException
+		{
+			try
+			{
+				this.high = this.inputStream.readLong();
+			}
+			catch(final EOFException ignored)
+			{
+				return false;
+			}
+			this.low = this.inputStream.readLong();
+			//noinspection NumericCastThatLosesPrecision
+			this.game = (int) this.inputStream.readLong();
+			return true;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import com.bigtobster.pgnextractalt.filters.Filter;
+import com.bigtobster.pgnextractalt.filters.HeaderFilter;
+import com.bigtobster.pgnextractalt.filters.StatelessFilter;
+import com.bigtobster.pgnextractalt.filters.TextFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Orders the filters of a fused stage so that cheap filters which reject many games run first, leaving the costly filters fewer games to look
+ * at. Only stateless filters are moved, and never past a stateful filter, so the surviving games are the same whatever order is chosen. Each
+ * filter's cost is estimated from what it reads - tags alone, the raw movetext or the parsed moves - and the share of games it keeps is sampled
+ * from the first games of the stage. A run of stateless filters with nothing to reorder is not sampled.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class FilterPlanner
+{
+	/**
+	 * The number of games at the start of a stage that each filter is tried on
+	 */
+	static final         int    SAMPLE_GAMES     = 256;
+	private static final String FILTER_SEPARATOR = " -> ";
+	/**
+	 * Relative cost of a filter which needs the game's moves parsed
+	 */
+	private static final int    GAME_COST        = 50;
+	/**
+	 * Relative cost of a filter which only reads the game's tags
+	 */
+	private static final int    HEADER_COST      = 1;
+	/**
+	 * Keeps a filter which rejects nothing in the sample from being ranked as free
+	 */
+	private static final double MIN_REJECT_SHARE = 0.001;
+	private static final String PERCENT          = "%";
+	private static final int    PERCENT_SCALE    = 100;
+	/**
+	 * Relative cost of a filter which reads the game's movetext without parsing it
+	 */
+	private static final int    TEXT_COST        = 10;
+
+	private FilterPlanner()
+	{
+	}
+
+	/**
+	 * Orders the filters of a stage
+	 *
+	 * @param stage       The streamable filters of the stage in the order they were given
+	 * @param records     The records entering the stage, the first of which are sampled
+	 * @param description Empty builder that a description of the chosen order is written to
+	 * @return The filters in the order they should be run
+	 */
+	static ArrayList<Filter> plan(final List<Filter> stage, final List<GameRecord> records, final StringBuilder description)
+	{
+		final List<GameRecord> sample = records.subList(0, Math.min(FilterPlanner.SAMPLE_GAMES, records.size()));
+		final ArrayList<Filter> plannedStage = new ArrayList<Filter>(stage.size());
+		final ArrayList<Filter> statelessRun = new ArrayList<Filter>(stage.size());
+		for(final Filter filter : stage)
+		{
+			if(filter instanceof StatelessFilter)
+			{
+				statelessRun.add(filter);
+			}
+			else
+			{
+				FilterPlanner.addRun(statelessRun, sample, plannedStage, description);
+				FilterPlanner.describe(description, filter.getClass().getSimpleName() + " (stateful)");
+				plannedStage.add(filter);
+			}
+		}
+		FilterPlanner.addRun(statelessRun, sample, plannedStage, description);
+		return plannedStage;
+	}
+
+	/**
+	 * Sorts a run of stateless filters by rank and adds them to the stage, emptying the run. A run of at most one filter keeps its order whatever
+	 * the sample holds, so it is not sampled.
+	 */
+	private static void addRun(
+			final ArrayList<Filter> statelessRun,
+			final List<GameRecord> sample,
+			final ArrayList<Filter> plannedStage,
+			final StringBuilder description
+							  )
+	{
+		final List<GameRecord> runSample = (statelessRun.size() > 1) ? sample : Collections.<GameRecord>emptyList();
+		final ArrayList<PlannedFilter> plannedRun = new ArrayList<PlannedFilter>(statelessRun.size());
+		for(final Filter filter : statelessRun)
+		{
+			plannedRun.add(new PlannedFilter(filter, runSample));
+		}
+		//The sort is stable so filters of equal rank keep the order they were given in
+		Collections.sort(plannedRun, new RankComparator());
+		for(final PlannedFilter plannedFilter : plannedRun)
+		{
+			FilterPlanner.describe(description, plannedFilter.toDescription());
+			plannedStage.add(plannedFilter.filter);
+		}
+		statelessRun.clear();
+	}
+
+	private static void describe(final StringBuilder description, final String filterDescription)
+	{
+		if(description.length() > 0)
+		{
+			description.append(FilterPlanner.FILTER_SEPARATOR);
+		}
+		description.append(filterDescription);
+	}
+
+	/**
+	 * A stateless filter with its estimated cost and sampled share of games kept
+	 */
+	private static final class PlannedFilter
+	{
+		private final int     cost;
+		private final Filter  filter;
+		private final boolean isSampled;
+		private final double  keptShare;
+		private final String  source;
+
+		PlannedFilter(final Filter filter, final List<GameRecord> sample)
+		{
+			this.filter = filter;
+			if(filter instanceof HeaderFilter)
+			{
+				this.cost = FilterPlanner.HEADER_COST;
+				this.source = "tags";
+			}
+			else if(filter instanceof TextFilter)
+			{
+				this.cost = FilterPlanner.TEXT_COST;
+				this.source = "text";
+			}
+			else
+			{
+				this.cost = FilterPlanner.GAME_COST;
+				this.source = "moves";
+			}
+			final List<Filter> singleFilter = Collections.singletonList(filter);
+			int keptGames = 0;
+			for(final GameRecord record : sample)
+			{
+				if(ChessFilterer.isRetained(record, singleFilter))
+				{
+					keptGames++;
+				}
+			}
+			this.isSampled = ! sample.isEmpty();
+			this.keptShare = this.isSampled ? ((double) keptGames / (double) sample.size()) : 1.0;
+		}
+
+		/**
+		 * The expected cost of the filter for every game it rejects. The lower the rank, the earlier the filter should run.
+		 */
+		double getRank()
+		{
+			return (double) this.cost / Math.max(1.0 - this.keptShare, FilterPlanner.MIN_REJECT_SHARE);
+		}
+
+		String toDescription()
+		{
+			if(! this.isSampled)
+			{
+				return this.filter.getClass().getSimpleName() + " (" + this.source + ')';
+			}
+			return this.filter.getClass().getSimpleName() + " (" + this.source + ", keeps " +
+				   Math.round(this.keptShare * (double) FilterPlanner.PERCENT_SCALE) + FilterPlanner.PERCENT + ')';
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "PlannedFilter{" +
+				   "filter=" + this.filter +
+				   ", cost=" + this.cost +
+				   ", isSampled=" + this.isSampled +
+				   ", keptShare=" + this.keptShare +
+				   ", source=" + this.source +
+				   '}';
+		}
+	}
+
+	/**
+	 * Orders planned filters by rank, lowest first
+	 */
+	private static final class RankComparator implements Comparator<PlannedFilter>
+	{
+		@Override
+		public int compare(final PlannedFilter first, final PlannedFilter second)
+		{
+			return Double.compare(first.getRank(), second.getRank());
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "RankComparator{}";
+		}
+	}
+}
@@ -0,0 +1,585 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import chesspresso.game.Game;
+import chesspresso.pgn.PGNReader;
+import chesspresso.pgn.PGNSyntaxError;
+import chesspresso.pgn.PGNWriter;
+import com.bigtobster.pgnextractalt.filters.TagSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A game held by the chess context. A record either wraps a fully parsed Chesspresso game, points at a game in a CompactGameStore or, when lazily
+ * imported, holds just the game's tags and the byte range of the game in its PGN file. A lazy or compact record only keeps the game last read
+ * from it softly, so repeated filter passes do not parse the game again while memory allows, yet the record can still shrink back to the size it
+ * was imported at. A lazy record also remembers the length and modification time its PGN file had when imported, and refuses to read a game from
+ * the file once either has changed. Tags can be read and written without the game being parsed - written tags are applied to every game read
+ * afterwards.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class GameRecord implements TagSource
+{
+	private static final byte   CARRIAGE_RETURN    = (byte) '\r';
+	private static final String COPY_NAME          = "copy";
+	private static final char   ESCAPE             = '\\';
+	private static final int    HEADER_READ_LENGTH = 1024;
+	@SuppressWarnings("UnusedDeclaration")
+	private static final Logger LOGGER             = Logger.getLogger(GameRecord.class.getName());
+	private static final byte   NEW_LINE           = (byte) '\n';
+	private static final char   NEW_LINE_CHAR      = '\n';
+	private static final char   QUOTE              = '"';
+	private static final char   TAG_CLOSE          = ']';
+	private static final byte   TAG_OPEN           = (byte) '[';
+	private static final char   TAG_OPEN_CHAR      = '[';
+	private static final char   TAG_SEPARATOR      = ' ';
+	private final int                           headerLength;
+	private final int                           length;
+	private final long                          offset;
+	private final File                          pgnFile;
+	private final long                          sourceLength;
+	private final long                          sourceModified;
+	private final CompactGameStore              store;
+	private final int                           storeIndex;
+	private final Game                          game;
+	private       SoftReference<Game>           readGame;
+	private       LinkedHashMap<String, String> tagEdits;
+	private       LinkedHashMap<String, String> tags;
+
+	/**
+	 * Creates a record of an already parsed game
+	 *
+	 * @param game The parsed game
+	 */
+	GameRecord(final Game game)
+	{
+		this.game = game;
+		this.pgnFile = null;
+		this.offset = 0L;
+		this.length = 0;
+		this.headerLength = 0;
+		this.sourceLength = 0L;
+		this.sourceModified = 0L;
+		this.store = null;
+		this.storeIndex = CompactGameStore.NOT_STORED;
+	}
+
+	/**
+	 * Creates a record of a game held in a compact store
+	 *
+	 * @param store      The store holding the game
+	 * @param storeIndex The index of the game in the store
+	 */
+	GameRecord(final CompactGameStore store, final int storeIndex)
+	{
+		this.store = store;
+		this.storeIndex = storeIndex;
+		this.game = null;
+		this.pgnFile = null;
+		this.offset = 0L;
+		this.length = 0;
+		this.headerLength = 0;
+		this.sourceLength = 0L;
+		this.sourceModified = 0L;
+	}
+
+	@SuppressWarnings("MethodWithTooManyParameters")
+	private GameRecord(
+			final File pgnFile, final long sourceLength, final long sourceModified, final long offset, final int length, final int headerLength,
+			final LinkedHashMap<String, String> tags
+					  )
+	{
+		this.pgnFile = pgnFile;
+		this.sourceLength = sourceLength;
+		this.sourceModified = sourceModified;
+		this.offset = offset;
+		this.length = length;
+		this.headerLength = headerLength;
+		//noinspection AssignmentToCollectionOrArrayFieldFromParameter
+		this.tags = tags;
+		this.game = null;
+		this.store = null;
+		this.storeIndex = CompactGameStore.NOT_STORED;
+	}
+
+	/**
+	 * Creates lazy records of every game in a PGN file. Only the tag section of each game is read. Relies upon every game opening with an Event tag
+	 * as required by the PGN standard's Seven Tag Roster. The records remember the file's current length and modification time so that a later
+	 * change to the file is caught rather than read as garbled games.
+	 *
+	 * @param pgnFile  The PGN file
+	 * @param pgnIndex The index of the PGN file
+	 * @return The lazy records in file order
+	 * @throws IOException Filesystem issue with reading PGN file
+	 */
+	static ArrayList<GameRecord> readHeaders(final File pgnFile, final PGNIndex pgnIndex) throws IOException
+	{
+		final ArrayList<GameRecord> records = new ArrayList<GameRecord>(pgnIndex.getGameCount());
+		final long sourceLength = pgnFile.length();
+		final long sourceModified = pgnFile.lastModified();
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(pgnFile, "r");
+		try
+		{
+			byte[] buffer = new byte[GameRecord.HEADER_READ_LENGTH];
+			for(int i = 0; i < pgnIndex.getGameCount(); i++)
+			{
+				//noinspection NumericCastThatLosesPrecision
+				final int gameLength = (int) pgnIndex.getLength(i);
+				int headerLength = - 1;
+				int readLength = Math.min(gameLength, buffer.length);
+				while(headerLength < 0)
+				{
+					randomAccessFile.seek(pgnIndex.getOffset(i));
+					randomAccessFile.readFully(buffer, 0, readLength);
+					headerLength = GameRecord.findHeaderEnd(buffer, readLength);
+					if((headerLength < 0) && (readLength == gameLength))
+					{
+						//The game has no moves - its tags run to the end of its range
+						headerLength = gameLength;
+					}
+					else if(headerLength < 0)
+					{
+						buffer = Arrays.copyOf(buffer, buffer.length * 2);
+						readLength = Math.min(gameLength, buffer.length);
+					}
+				}
+				records.add(new GameRecord(
+						pgnFile,
+						sourceLength,
+						sourceModified,
+						pgnIndex.getOffset(i),
+						gameLength,
+						headerLength,
+						GameRecord.parseTags(buffer, headerLength)
+									  ));
+			}
+		}
+		finally
+		{
+			randomAccessFile.close();
+		}
+		return records;
+	}
+
+	/**
+	 * Parses the tags of a game from its text without parsing its moves
+	 *
+	 * @param gameBytes The bytes of the whole game
+	 * @return The tags, in file order, keyed by tag name
+	 */
+	static LinkedHashMap<String, String> readTags(final byte[] gameBytes)
+	{
+		final int headerLength = GameRecord.findHeaderEnd(gameBytes, gameBytes.length);
+		//A game with no moves has tags running to the end of its text
+		return GameRecord.parseTags(gameBytes, (headerLength < 0) ? gameBytes.length : headerLength);
+	}
+
+	/**
+	 * Copies a parsed game by writing it out as PGN and reading it back in
+	 */
+	private static Game copyGame(final Game game)
+	{
+		final StringWriter text = new StringWriter(GameRecord.HEADER_READ_LENGTH);
+		final PrintWriter printWriter = new PrintWriter(text);
+		new PGNWriter(printWriter).write(game.getModel());
+		printWriter.flush();
+		final Game copiedGame;
+		try
+		{
+			copiedGame = new PGNReader(new StringReader(text.toString()), GameRecord.COPY_NAME).parseGame();
+		}
+		catch(final IOException ioe)
+		{
+			throw new IllegalStateException("Failed to copy game " + game, ioe);
+		}
+		catch(final PGNSyntaxError pgnSyntaxError)
+		{
+			throw new IllegalStateException("Failed to copy game " + game, pgnSyntaxError);
+		}
+		if(copiedGame == null)
+		{
+			throw new IllegalStateException("Failed to copy game " + game);
+		}
+		return copiedGame;
+	}
+
+	/**
+	 * Finds the end of the tag section - the start of the first line that does not open a tag
+	 *
+	 * @param bytes  The bytes of the start of a game
+	 * @param length The number of valid bytes
+	 * @return The length of the tag section or -1 if the tag section runs past the given bytes
+	 */
+	private static int findHeaderEnd(final byte[] bytes, final int length)
+	{
+		boolean lineStart = true;
+		for(int i = 0; i < length; i++)
+		{
+			if(lineStart && (bytes[i] != GameRecord.TAG_OPEN))
+			{
+				return i;
+			}
+			lineStart = bytes[i] == GameRecord.NEW_LINE;
+		}
+		return - 1;
+	}
+
+	private static void parseTag(final String line, final Map<String, String> tags)
+	{
+		final int separator = line.indexOf((int) GameRecord.TAG_SEPARATOR);
+		final int valueStart = line.indexOf((int) GameRecord.QUOTE);
+		final int valueEnd = line.lastIndexOf((int) GameRecord.QUOTE);
+		if(line.isEmpty() || (line.charAt(line.length() - 1) != GameRecord.TAG_CLOSE))
+		{
+			return;
+		}
+		if((separator < 0) || (valueStart < separator) || (valueEnd <= valueStart))
+		{
+			return;
+		}
+		final String value = line.substring(valueStart + 1, valueEnd);
+		final StringBuilder unescaped = new StringBuilder(value.length());
+		for(int i = 0; i < value.length(); i++)
+		{
+			if((value.charAt(i) == GameRecord.ESCAPE) && (i + 1 < value.length()))
+			{
+				i++;
+			}
+			unescaped.append(value.charAt(i));
+		}
+		tags.put(line.substring(1, separator), unescaped.toString());
+	}
+
+	/**
+	 * Parses the tags of a tag section. The bytes are decoded as ISO-8859-1, the charset of PGN files, as ChessIO has PGNReader decode them.
+	 *
+	 * @param bytes  The bytes of the tag section
+	 * @param length The length of the tag section
+	 * @return The tags, in file order, keyed by tag name
+	 */
+	private static LinkedHashMap<String, String> parseTags(final byte[] bytes, final int length)
+	{
+		final LinkedHashMap<String, String> tags = new LinkedHashMap<String, String>(16);
+		int lineStart = 0;
+		for(int i = 0; i <= length; i++)
+		{
+			if((i == length) || (bytes[i] == GameRecord.NEW_LINE))
+			{
+				int lineEnd = i;
+				if((lineEnd > lineStart) && (bytes[lineEnd - 1] == GameRecord.CARRIAGE_RETURN))
+				{
+					lineEnd--;
+				}
+				if(lineEnd > lineStart)
+				{
+					GameRecord.parseTag(new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.ISO_8859_1).trim(), tags);
+				}
+				lineStart = i + 1;
+			}
+		}
+		return tags;
+	}
+
+	/**
+	 * Advises whether the game can be exported by copying its text straight from its PGN file
+	 *
+	 * @return True if the record is lazy else false
+	 */
+	boolean canCopyText()
+	{
+		return this.pgnFile != null;
+	}
+
+	/**
+	 * Copies the record so that tags later written to either record are not seen by the other. A lazy record copies just its tags, a compact
+	 * record's game is read out of its store and a parsed game is copied in full.
+	 *
+	 * @return The copy
+	 */
+	GameRecord copy()
+	{
+		if(this.game != null)
+		{
+			return new GameRecord(GameRecord.copyGame(this.game));
+		}
+		if(this.store != null)
+		{
+			return new GameRecord(this.store.getGame(this.storeIndex));
+		}
+		final GameRecord copy = new GameRecord(
+				this.pgnFile,
+				this.sourceLength,
+				this.sourceModified,
+				this.offset,
+				this.length,
+				this.headerLength,
+				new LinkedHashMap<String, String>(this.tags)
+											  );
+		if(this.tagEdits != null)
+		{
+			copy.tagEdits = new LinkedHashMap<String, String>(this.tagEdits);
+		}
+		return copy;
+	}
+
+	@Override
+	public String getTag(final String tagKey)
+	{
+		if(this.game != null)
+		{
+			return this.game.getTag(tagKey);
+		}
+		if(this.store != null)
+		{
+			return this.store.getTag(this.storeIndex, tagKey);
+		}
+		return this.tags.get(tagKey);
+	}
+
+	/**
+	 * Sets a tag of the game without forcing the game to be parsed
+	 *
+	 * @param tagKey   The key of the tag
+	 * @param tagValue The new value of the tag
+	 */
+	void setTag(final String tagKey, final String tagValue)
+	{
+		if(this.game != null)
+		{
+			this.game.setTag(tagKey, tagValue);
+			return;
+		}
+		final Game cachedGame = this.getCachedGame();
+		if(cachedGame != null)
+		{
+			cachedGame.setTag(tagKey, tagValue);
+		}
+		if(this.store != null)
+		{
+			this.store.setTag(this.storeIndex, tagKey, tagValue);
+			return;
+		}
+		if(this.tagEdits == null)
+		{
+			this.tagEdits = new LinkedHashMap<String, String>(4);
+		}
+		this.tagEdits.put(tagKey, tagValue);
+		this.tags.put(tagKey, tagValue);
+	}
+
+	/**
+	 * Advises whether the record holds a parsed game. Only records of games imported in full do - lazy and compact records only keep the games
+	 * read from them softly.
+	 *
+	 * @return True if the record holds a parsed game else false
+	 */
+	boolean isParsed()
+	{
+		return this.game != null;
+	}
+
+	/**
+	 * Advises whether the record's game is held in a compact store
+	 *
+	 * @param compactStore The compact store
+	 * @return True if the game is held in the store else false
+	 */
+	boolean isStoredIn(final CompactGameStore compactStore)
+	{
+		return (this.store != null) && (this.store == compactStore);
+	}
+
+	/**
+	 * Gets the game without the record holding on to it. Lazy and compact records keep the game only softly, so it is read again once the garbage
+	 * collector has reclaimed it and changes made to the game are only certain to be kept by writing its tags back with writeTags.
+	 *
+	 * @return The game
+	 */
+	Game readGame()
+	{
+		if(this.game != null)
+		{
+			return this.game;
+		}
+		final Game cachedGame = this.getCachedGame();
+		if(cachedGame != null)
+		{
+			return cachedGame;
+		}
+		final Game readGame;
+		if(this.store != null)
+		{
+			readGame = this.store.getGame(this.storeIndex);
+		}
+		else
+		{
+			readGame = this.parseGame();
+			if(this.tagEdits != null)
+			{
+				for(final Map.Entry<String, String> tagEdit : this.tagEdits.entrySet())
+				{
+					readGame.setTag(tagEdit.getKey(), tagEdit.getValue());
+				}
+			}
+		}
+		this.readGame = new SoftReference<Game>(readGame);
+		return readGame;
+	}
+
+	/**
+	 * Reads the movetext of an unparsed game straight from its PGN file, so that its moves can be looked at without the game being parsed
+	 *
+	 * @return The movetext of the game, without its tag section
+	 */
+	String readMoveText()
+	{
+		try
+		{
+			final byte[] bytes = this.readBytes();
+			return new String(bytes, this.headerLength, bytes.length - this.headerLength, StandardCharsets.ISO_8859_1);
+		}
+		catch(final IOException ioe)
+		{
+			throw new IllegalStateException("Failed to read game at offset " + this.offset + " of " + this.pgnFile.getPath(), ioe);
+		}
+	}
+
+	/**
+	 * Reads the text of an unparsed game straight from its PGN file. If any tags have been written to the record the tag section is rewritten from
+	 * the record's tags and the moves are copied as they are.
+	 *
+	 * @return The text of the game, including any trailing blank lines
+	 * @throws IOException Filesystem issue with reading PGN file
+	 */
+	String readText() throws IOException
+	{
+		final byte[] bytes = this.readBytes();
+		if(this.tagEdits == null)
+		{
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+		final StringBuilder text = new StringBuilder(bytes.length + (this.tagEdits.size() * 32));
+		for(final Map.Entry<String, String> tag : this.tags.entrySet())
+		{
+			text.append(GameRecord.TAG_OPEN_CHAR).append(tag.getKey()).append(GameRecord.TAG_SEPARATOR).append(GameRecord.QUOTE);
+			for(int i = 0; i < tag.getValue().length(); i++)
+			{
+				final char current = tag.getValue().charAt(i);
+				if((current == GameRecord.QUOTE) || (current == GameRecord.ESCAPE))
+				{
+					text.append(GameRecord.ESCAPE);
+				}
+				text.append(current);
+			}
+			text.append(GameRecord.QUOTE).append(GameRecord.TAG_CLOSE).append(GameRecord.NEW_LINE_CHAR);
+		}
+		text.append(new String(bytes, this.headerLength, bytes.length - this.headerLength, StandardCharsets.ISO_8859_1));
+		return text.toString();
+	}
+
+	/**
+	 * Writes the tags of a game read from this record back to the record, so that tags inserted into the game are kept without the game itself
+	 *
+	 * @param readGame A game read from this record
+	 */
+	void writeTags(final Game readGame)
+	{
+		if(readGame == this.game)
+		{
+			return;
+		}
+		for(final String tagKey : readGame.getTags())
+		{
+			final String tagValue = readGame.getTag(tagKey);
+			if((tagValue != null) && ! tagValue.equals(this.getTag(tagKey)))
+			{
+				this.setTag(tagKey, tagValue);
+			}
+		}
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "GameRecord{" +
+			   "pgnFile=" + this.pgnFile +
+			   ", offset=" + this.offset +
+			   ", length=" + this.length +
+			   ", game=" + this.game +
+			   ", storeIndex=" + this.storeIndex +
+			   ", tags=" + this.tags +
+			   '}';
+	}
+
+	private Game getCachedGame()
+	{
+		return (this.readGame == null) ? null : this.readGame.get();
+	}
+
+	private Game parseGame()
+	{
+		final Game parsedGame;
+		try
+		{
+			final PGNReader pgnReader = ChessIO.openPGNReader(new ByteArrayInputStream(this.readBytes()), this.pgnFile.getPath());
+			parsedGame = pgnReader.parseGame();
+		}
+		catch(final IOException ioe)
+		{
+			throw new IllegalStateException("Failed to read game at offset " + this.offset + " of " + this.pgnFile.getPath(), ioe);
+		}
+		catch(final PGNSyntaxError pgnSyntaxError)
+		{
+			throw new IllegalStateException("Failed to parse game at offset " + this.offset + " of " + this.pgnFile.getPath(), pgnSyntaxError);
+		}
+		if(parsedGame == null)
+		{
+			throw new IllegalStateException("No game at offset " + this.offset + " of " + this.pgnFile.getPath());
+		}
+		return parsedGame;
+	}
+
+	private byte[] readBytes() throws IOException
+	{
+		if((this.pgnFile.length() != this.sourceLength) || (this.pgnFile.lastModified() != this.sourceModified))
+		{
+			throw new IOException(this.pgnFile.getPath() + " has changed since its games were imported - import it again");
+		}
+		final byte[] bytes = new byte[this.length];
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(this.pgnFile, "r");
+		try
+		{
+			randomAccessFile.seek(this.offset);
+			randomAccessFile.readFully(bytes);
+		}
+		finally
+		{
+			randomAccessFile.close();
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import java.util.ArrayList;
+
+/**
+ * A snapshot of the games held by the chess context. Restoring a view lets several independent selections of games share one set of imported
+ * games - each import or filter builds a new list of records, so what one view imports or filters out is never seen by another. Tags written to
+ * a game are seen by every view holding it until ChessIO's isolateGames is called.
+ * <p>
+ * A view holds a claim on the compact store its games may be held in, so the store stays open for the view however the current games change.
+ * A view must be released once finished with - share hands out a further view of the same games with a claim of its own.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class GameView
+{
+	/**
+	 * A view of no games
+	 */
+	public static final GameView              EMPTY      = new GameView(new ArrayList<GameRecord>(0), null);
+	private final       ArrayList<GameRecord> records;
+	private final       CompactGameStore      store;
+	private             boolean               isReleased = false;
+
+	/**
+	 * Creates a view of a list of records, taking a claim on the compact store they may be held in. The list must not be changed afterwards.
+	 *
+	 * @param records The records of the games in the view
+	 * @param store   The compact store the records may be held in, null if there is none
+	 */
+	GameView(final ArrayList<GameRecord> records, final CompactGameStore store)
+	{
+		//noinspection AssignmentToCollectionOrArrayFieldFromParameter
+		this.records = records;
+		this.store = store;
+		if(store != null)
+		{
+			store.retain();
+		}
+	}
+
+	/**
+	 * Getter for the number of games in the view
+	 *
+	 * @return The number of games
+	 */
+	public int getGameCount()
+	{
+		return this.records.size();
+	}
+
+	/**
+	 * Releases the view's claim on its compact store. The view must not be restored afterwards. Releasing a view more than once has no effect.
+	 */
+	public synchronized void release()
+	{
+		if(! this.isReleased && (this.store != null))
+		{
+			this.store.release();
+		}
+		this.isReleased = true;
+	}
+
+	/**
+	 * Creates a further view of the same games, with its own claim on their compact store
+	 *
+	 * @return The new view, which must be released separately
+	 */
+	public GameView share()
+	{
+		return new GameView(this.records, this.store);
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "GameView{" +
+			   "records=" + this.records.size() +
+			   ", isReleased=" + this.isReleased +
+			   '}';
+	}
+
+	/**
+	 * Getter for the records of the games in the view
+	 *
+	 * @return The records, which must not be changed
+	 */
+	ArrayList<GameRecord> getRecords()
+	{
+		return this.records;
+	}
+
+	/**
+	 * Getter for the compact store the games of the view may be held in
+	 *
+	 * @return The compact store or null if there is none
+	 */
+	CompactGameStore getStore()
+	{
+		return this.store;
+	}
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import com.bigtobster.pgnextractalt.uciEngine.SearchLimit;
+import com.bigtobster.pgnextractalt.uciEngine.SearchLimitMode;
+import com.bigtobster.pgnextractalt.uciEngine.UCIEngine;
+
+import java.io.File;
+
+/**
+ * The settings for a machine correlation evaluation. Everything but the search depth has a default which matches the original single engine
+ * evaluation.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class MachineCorrelationSettings
+{
+	private final int             depth;
+	private       int             engineHash      = UCIEngine.USE_HASH_MB;
+	private       int             engineThreads   = UCIEngine.USE_THREADS;
+	private       int             engines         = 1;
+	private       EvaluationCache evaluationCache = null;
+	private       boolean         force           = false;
+	private       File            journalFile     = null;
+	private       SearchLimit     searchLimit;
+	private       boolean         singleSearch    = false;
+	private       String          syzygyPath      = null;
+
+	/**
+	 * Constructor
+	 *
+	 * @param depth The minimum depth that the engine will look for before returning a best move
+	 */
+	public MachineCorrelationSettings(final int depth)
+	{
+		this.depth = depth;
+		this.searchLimit = new SearchLimit(SearchLimitMode.DEPTH, (long) depth);
+	}
+
+	/**
+	 * Getter for the search depth
+	 *
+	 * @return The minimum depth that the engine will look for before returning a best move
+	 */
+	public int getDepth()
+	{
+		return this.depth;
+	}
+
+	/**
+	 * Getter for the size of each engine's hash table
+	 *
+	 * @return The size of each engine's hash table in MB
+	 */
+	public int getEngineHash()
+	{
+		return this.engineHash;
+	}
+
+	/**
+	 * Getter for the number of search threads given to each engine
+	 *
+	 * @return The number of search threads given to each engine
+	 */
+	public int getEngineThreads()
+	{
+		return this.engineThreads;
+	}
+
+	/**
+	 * Getter for the number of engines run at once
+	 *
+	 * @return The number of engines run at once
+	 */
+	public int getEngines()
+	{
+		return this.engines;
+	}
+
+	/**
+	 * Getter for the evaluation cache
+	 *
+	 * @return The cache of search results used in single search scoring, or null if there is none
+	 */
+	public EvaluationCache getEvaluationCache()
+	{
+		return this.evaluationCache;
+	}
+
+	/**
+	 * Getter for the checkpoint journal file
+	 *
+	 * @return The file in which the scores of each game are recorded as they are evaluated, or null if there is none
+	 */
+	public File getJournalFile()
+	{
+		return this.journalFile;
+	}
+
+	/**
+	 * Getter for the search limit
+	 *
+	 * @return When each search stops, which is at the search depth unless another limit has been set
+	 */
+	public SearchLimit getSearchLimit()
+	{
+		return this.searchLimit;
+	}
+
+	/**
+	 * Getter for the Syzygy tablebase directory
+	 *
+	 * @return The tablebase directory given to each engine, or null if there is none
+	 */
+	public String getSyzygyPath()
+	{
+		return this.syzygyPath;
+	}
+
+	/**
+	 * Whether games which already have a machine correlation score are evaluated again
+	 *
+	 * @return True if existing scores are overwritten
+	 */
+	public boolean isForce()
+	{
+		return this.force;
+	}
+
+	/**
+	 * Whether each ply is scored from a single search rather than three
+	 *
+	 * @return True if single search scoring is used
+	 */
+	public boolean isSingleSearch()
+	{
+		return this.singleSearch;
+	}
+
+	/**
+	 * Setter for the size of each engine's hash table
+	 *
+	 * @param engineHash The size of each engine's hash table in MB
+	 */
+	public void setEngineHash(final int engineHash)
+	{
+		this.engineHash = engineHash;
+	}
+
+	/**
+	 * Setter for the number of search threads given to each engine
+	 *
+	 * @param engineThreads The number of search threads given to each engine
+	 */
+	public void setEngineThreads(final int engineThreads)
+	{
+		this.engineThreads = engineThreads;
+	}
+
+	/**
+	 * Setter for the number of engines run at once
+	 *
+	 * @param engines The number of engines run at once
+	 */
+	public void setEngines(final int engines)
+	{
+		this.engines = engines;
+	}
+
+	/**
+	 * Setter for the evaluation cache. Only single search scoring uses the cache, as its searches depend on nothing but the position.
+	 *
+	 * @param evaluationCache The cache of search results, or null for none
+	 */
+	public void setEvaluationCache(final EvaluationCache evaluationCache)
+	{
+		this.evaluationCache = evaluationCache;
+	}
+
+	/**
+	 * Setter for whether games which already have a machine correlation score are evaluated again
+	 *
+	 * @param force True if existing scores are to be overwritten
+	 */
+	public void setForce(final boolean force)
+	{
+		this.force = force;
+	}
+
+	/**
+	 * Setter for the checkpoint journal file. Games recorded in the journal by an earlier run with the same settings are not evaluated again.
+	 *
+	 * @param journalFile The journal file, which is created if it does not exist, or null for none
+	 */
+	public void setJournalFile(final File journalFile)
+	{
+		this.journalFile = journalFile;
+	}
+
+	/**
+	 * Setter for the search limit. A node limit makes the cost of each search the same whatever the position, which makes large batches
+	 * predictable, while a stable iteration count trades some accuracy for throughput.
+	 *
+	 * @param searchLimit When each search stops
+	 */
+	public void setSearchLimit(final SearchLimit searchLimit)
+	{
+		this.searchLimit = searchLimit;
+	}
+
+	/**
+	 * Setter for whether each ply is scored from a single search. In this mode the engine searches every position of a game once, in order,
+	 * without clearing its hash table between plies. The best move's score is the score of the position before the move and the played move's
+	 * score is the negated score of the position after it.
+	 *
+	 * @param singleSearch True if single search scoring is to be used
+	 */
+	public void setSingleSearch(final boolean singleSearch)
+	{
+		this.singleSearch = singleSearch;
+	}
+
+	/**
+	 * Setter for the Syzygy tablebase directory
+	 *
+	 * @param syzygyPath The tablebase directory given to each engine, or null to leave the engine's default
+	 */
+	public void setSyzygyPath(final String syzygyPath)
+	{
+		this.syzygyPath = syzygyPath;
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "MachineCorrelationSettings{" +
+			   "depth=" + this.depth +
+			   ", engineHash=" + this.engineHash +
+			   ", engineThreads=" + this.engineThreads +
+			   ", engines=" + this.engines +
+			   ", evaluationCache=" + this.evaluationCache +
+			   ", force=" + this.force +
+			   ", journalFile=" + this.journalFile +
+			   ", searchLimit=" + this.searchLimit +
+			   ", singleSearch=" + this.singleSearch +
+			   ", syzygyPath='" + this.syzygyPath + '\'' +
+			   '}';
+	}
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import com.bigtobster.pgnextractalt.misc.UserCache;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An index of the games in a PGN file. Each game's byte offset and byte length are recorded. The index is built by
+ * memory mapping the file and scanning its raw bytes - nothing is decoded to a String. Once built the index is saved in the per-user cache
+ * directory, named after the PGN file's path, so that later imports of the same, unmodified file can skip the scan entirely. Nothing is ever
+ * written next to the PGN file itself.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class PGNIndex
+{
+	/**
+	 * The extension of a saved index
+	 */
+	static final         String INDEX_EXTENSION   = ".idx";
+	private static final byte   COMMENT_CLOSE     = (byte) '}';
+	private static final byte   COMMENT_OPEN      = (byte) '{';
+	private static final byte[] EVENT_TAG         = {'[', 'E', 'v', 'e', 'n', 't', ' '};
+	private static final long   FNV_OFFSET_BASIS  = 0xcbf29ce484222325L;
+	private static final long   FNV_PRIME         = 0x100000001b3L;
+	private static final int    INDEX_MAGIC       = 0x50474e49;
+	private static final int    INDEX_VERSION     = 3;
+	private static final int    INIT_GAMES        = 1024;
+	private static final byte   LINE_COMMENT      = (byte) ';';
+	private static final Logger LOGGER            = Logger.getLogger(PGNIndex.class.getName());
+	private static final long   MAP_WINDOW_LENGTH = 1L << 30;
+	private static final byte   NEW_LINE          = (byte) '\n';
+	private static final byte   TAG_OPEN          = (byte) '[';
+	private final int    gameCount;
+	private final long[] lengths;
+	private final long[] offsets;
+
+	private PGNIndex(final long[] offsets, final long[] lengths, final int gameCount)
+	{
+		//noinspection AssignmentToCollectionOrArrayFieldFromParameter
+		this.offsets = offsets;
+		//noinspection AssignmentToCollectionOrArrayFieldFromParameter
+		this.lengths = lengths;
+		this.gameCount = gameCount;
+	}
+
+	/**
+	 * Builds an index by scanning a PGN file. The file is mapped a window at a time so files larger than 2GB can be scanned. A game starts at each
+	 * line opening with an Event tag, unless the line is inside a brace or semicolon comment, so that the index splits a file exactly as
+	 * Chesspresso's PGNReader does.
+	 *
+	 * @param pgnFile The PGN file to be indexed
+	 * @return The index of the PGN file
+	 * @throws IOException Filesystem issue with reading PGN file
+	 */
+	@SuppressWarnings({"OverlyComplexMethod", "OverlyLongMethod"})
+	static PGNIndex build(final File pgnFile) throws IOException
+	{
+		long[] offsets = new long[PGNIndex.INIT_GAMES];
+		int gameCount = 0;
+		final long fileLength = pgnFile.length();
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(pgnFile, "r");
+		try
+		{
+			final FileChannel channel = randomAccessFile.getChannel();
+			//Number of bytes of the Event tag matched on the current line, or -1 once the line can no longer match
+			int matched = 0;
+			boolean lineStart = true;
+			boolean isTagLine = false;
+			boolean inComment = false;
+			boolean inLineComment = false;
+			long windowStart = 0L;
+			while(windowStart < fileLength)
+			{
+				final long windowLength = Math.min(PGNIndex.MAP_WINDOW_LENGTH, fileLength - windowStart);
+				final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+				//noinspection NumericCastThatLosesPrecision
+				final int limit = (int) windowLength;
+				for(int i = 0; i < limit; i++)
+				{
+					final byte current = window.get(i);
+					if(lineStart)
+					{
+						isTagLine = ! inComment && (current == PGNIndex.TAG_OPEN);
+					}
+					lineStart = current == PGNIndex.NEW_LINE;
+					//Braces and semicolons inside a tag's value do not open comments
+					if(inComment)
+					{
+						inComment = current != PGNIndex.COMMENT_CLOSE;
+					}
+					else if(! isTagLine && ! inLineComment)
+					{
+						inComment = current == PGNIndex.COMMENT_OPEN;
+						inLineComment = current == PGNIndex.LINE_COMMENT;
+					}
+					if(lineStart)
+					{
+						inLineComment = false;
+						matched = inComment ? - 1 : 0;
+					}
+					else if(matched >= 0)
+					{
+						if(current == PGNIndex.EVENT_TAG[matched])
+						{
+							matched++;
+							if(matched == PGNIndex.EVENT_TAG.length)
+							{
+								if(gameCount == offsets.length)
+								{
+									offsets = Arrays.copyOf(offsets, offsets.length * 2);
+								}
+								offsets[gameCount] = (windowStart + (long) i + 1L) - (long) PGNIndex.EVENT_TAG.length;
+								gameCount++;
+								matched = - 1;
+							}
+						}
+						else
+						{
+							matched = - 1;
+						}
+					}
+				}
+				windowStart += windowLength;
+			}
+		}
+		finally
+		{
+			randomAccessFile.close();
+		}
+		final long[] lengths = new long[gameCount];
+		for(int i = 0; i < gameCount; i++)
+		{
+			lengths[i] = ((i + 1 < gameCount) ? offsets[i + 1] : fileLength) - offsets[i];
+		}
+		return new PGNIndex(Arrays.copyOf(offsets, gameCount), lengths, gameCount);
+	}
+
+	/**
+	 * Gets the name of the saved index of a PGN file - a hash of the file's canonical path
+	 *
+	 * @param pgnPath The canonical path of the PGN file
+	 * @return The name of the index file within the cache directory
+	 */
+	private static String getIndexName(final String pgnPath)
+	{
+		long pathHash = PGNIndex.FNV_OFFSET_BASIS;
+		for(int i = 0; i < pgnPath.length(); i++)
+		{
+			pathHash = (pathHash ^ (long) pgnPath.charAt(i)) * PGNIndex.FNV_PRIME;
+		}
+		return Long.toHexString(pathHash) + PGNIndex.INDEX_EXTENSION;
+	}
+
+	/**
+	 * Gets the saved index file of a PGN file
+	 *
+	 * @param pgnFile The PGN file
+	 * @return The index file within the per-user cache directory
+	 * @throws IOException Thrown if the cache directory is unavailable
+	 */
+	static File getIndexFile(final File pgnFile) throws IOException
+	{
+		return new File(UserCache.getDirectory(), PGNIndex.getIndexName(pgnFile.getCanonicalPath()));
+	}
+
+	/**
+	 * Loads the index of a PGN file from the cache. If there is no saved index, or it was written for a different PGN file or a different version
+	 * of the PGN file, or its games do not fit the PGN file, the index is rebuilt and saved again.
+	 *
+	 * @param pgnFile The PGN file to be indexed
+	 * @return The index of the PGN file
+	 * @throws IOException Filesystem issue with reading PGN file
+	 */
+	static PGNIndex load(final File pgnFile) throws IOException
+	{
+		final String pgnPath = pgnFile.getCanonicalPath();
+		File indexFile = null;
+		try
+		{
+			indexFile = PGNIndex.getIndexFile(pgnFile);
+			if(indexFile.isFile())
+			{
+				final PGNIndex pgnIndex = PGNIndex.read(indexFile, pgnFile, pgnPath);
+				if(pgnIndex != null)
+				{
+					return pgnIndex;
+				}
+			}
+		}
+		catch(final IOException ioe)
+		{
+			PGNIndex.LOGGER.log(Level.WARNING, "Ignoring unreadable PGN index at " + indexFile + ": " + ioe.getMessage());
+		}
+		final PGNIndex pgnIndex = PGNIndex.build(pgnFile);
+		try
+		{
+			pgnIndex.write(pgnFile, pgnPath);
+		}
+		catch(final IOException ioe)
+		{
+			//An index that cannot be saved is still usable - the next import will just have to scan again
+			PGNIndex.LOGGER.log(Level.WARNING, "Failed to save PGN index of " + pgnPath + ": " + ioe.getMessage());
+		}
+		return pgnIndex;
+	}
+
+	/**
+	 * Reads an index from the cache
+	 *
+	 * @param indexFile The saved index
+	 * @param pgnFile   The PGN file that the index should describe
+	 * @param pgnPath   The canonical path of the PGN file
+	 * @return The index or null if the saved index is stale, belongs to another PGN file or has games which do not tile the PGN file
+	 * @throws IOException Filesystem issue with reading index file
+	 */
+	@SuppressWarnings("ReturnOfNull")
+	private static PGNIndex read(final File indexFile, final File pgnFile, final String pgnPath) throws IOException
+	{
+		final DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try
+		{
+			if((inputStream.readInt() != PGNIndex.INDEX_MAGIC) || (inputStream.readInt() != PGNIndex.INDEX_VERSION))
+			{
+				return null;
+			}
+			if(! inputStream.readUTF().equals(pgnPath))
+			{
+				return null;
+			}
+			if((inputStream.readLong() != pgnFile.length()) || (inputStream.readLong() != pgnFile.lastModified()))
+			{
+				return null;
+			}
+			//Every game opens with an Event tag, so a count the file cannot hold is rejected before anything is allocated for it
+			final long fileLength = pgnFile.length();
+			final int gameCount = inputStream.readInt();
+			if((gameCount < 0) || ((long) gameCount > fileLength / (long) PGNIndex.EVENT_TAG.length))
+			{
+				return null;
+			}
+			final long[] offsets = new long[gameCount];
+			final long[] lengths = new long[gameCount];
+			for(int i = 0; i < gameCount; i++)
+			{
+				offsets[i] = inputStream.readLong();
+				lengths[i] = inputStream.readLong();
+			}
+			//As when built, each game must run up to the start of the next game or the end of the file
+			for(int i = 0; i < gameCount; i++)
+			{
+				final long end = (i + 1 < gameCount) ? offsets[i + 1] : fileLength;
+				if((offsets[i] < 0L) || (lengths[i] <= 0L) || (offsets[i] + lengths[i] != end))
+				{
+					return null;
+				}
+			}
+			return new PGNIndex(offsets, lengths, gameCount);
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Getter for the number of indexed games
+	 *
+	 * @return The number of games in the PGN file
+	 */
+	int getGameCount()
+	{
+		return this.gameCount;
+	}
+
+	/**
+	 * Getter for the length of a game
+	 *
+	 * @param game The index of the game in the PGN file
+	 * @return The number of bytes from the start of the game to the start of the next game or the end of the file
+	 */
+	long getLength(final int game)
+	{
+		return this.lengths[game];
+	}
+
+	/**
+	 * Getter for the offset of a game
+	 *
+	 * @param game The index of the game in the PGN file
+	 * @return The byte offset of the game's Event tag
+	 */
+	long getOffset(final int game)
+	{
+		return this.offsets[game];
+	}
+
+	/**
+	 * Getter for the offsets of all games
+	 *
+	 * @return A copy of the byte offset of every game in file order
+	 */
+	long[] getOffsets()
+	{
+		return Arrays.copyOf(this.offsets, this.gameCount);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PGNIndex{" +
+			   "gameCount=" + this.gameCount +
+			   '}';
+	}
+
+	/**
+	 * Saves the index in the cache
+	 *
+	 * @param pgnFile The PGN file that the index describes
+	 * @param pgnPath The canonical path of the PGN file
+	 * @throws IOException Filesystem issue with writing index file
+	 */
+	private void write(final File pgnFile, final String pgnPath) throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream outputStream = new DataOutputStream(bytes);
+		try
+		{
+			outputStream.writeInt(PGNIndex.INDEX_MAGIC);
+			outputStream.writeInt(PGNIndex.INDEX_VERSION);
+			outputStream.writeUTF(pgnPath);
+			outputStream.writeLong(pgnFile.length());
+			outputStream.writeLong(pgnFile.lastModified());
+			outputStream.writeInt(this.gameCount);
+			for(int i = 0; i < this.gameCount; i++)
+			{
+				outputStream.writeLong(this.offsets[i]);
+				outputStream.writeLong(this.lengths[i]);
+			}
+		}
+		finally
+		{
+			outputStream.close();
+		}
+		UserCache.write(PGNIndex.getIndexName(pgnPath), bytes.toByteArray());
+	}
+}
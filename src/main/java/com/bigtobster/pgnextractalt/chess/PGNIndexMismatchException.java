@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the games parsed from a PGN file do not line up with the games found by its PGNIndex, so games cannot be matched back to their
+ * place in the file. This is a problem with the file's layout rather than with reading it, such as a comment holding a line which looks like the
+ * start of a game.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class PGNIndexMismatchException extends IOException
+{
+	private static final long serialVersionUID = 6931472058819357021L;
+
+	/**
+	 * Creates the exception for a PGN file
+	 *
+	 * @param pgnFilePath The path of the PGN file
+	 */
+	PGNIndexMismatchException(final String pgnFilePath)
+	{
+		super("The games parsed from " + pgnFilePath + " do not match the games found by its index");
+	}
+}
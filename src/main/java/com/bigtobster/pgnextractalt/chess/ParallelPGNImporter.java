@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import chesspresso.game.Game;
+import chesspresso.pgn.PGNReader;
+import chesspresso.pgn.PGNSyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+
+/**
+ * Imports a PGN file on several threads. The file's PGNIndex gives the offset of each game, the file is cut into chunks on those game
+ * boundaries and each chunk is parsed by its own PGNReader on a ForkJoinPool. The parsed chunks are joined back together in their original file order.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class ParallelPGNImporter
+{
+	private static final int    CHUNKS_PER_THREAD = 4;
+	@SuppressWarnings("UnusedDeclaration")
+	private static final Logger LOGGER            = Logger.getLogger(ParallelPGNImporter.class.getName());
+	private static final long   MAX_CHUNK_LENGTH  = 1L << 26;
+
+	private ParallelPGNImporter()
+	{
+	}
+
+	/**
+	 * Parses a PGN file on a pool of threads. The game offsets are taken from the file's index, which is only built if no up to date sidecar
+	 * index exists.
+	 *
+	 * @param pgnFile The PGN file to be imported
+	 * @param threads The number of threads to parse with
+	 * @return The games of the PGN file in file order
+	 * @throws IOException    Filesystem issue with reading PGN file
+	 * @throws PGNSyntaxError Syntax error with reading PGN file
+	 */
+	static ArrayList<Game> importPGN(final File pgnFile, final int threads) throws IOException, PGNSyntaxError
+	{
+		final long[] chunkStarts = ParallelPGNImporter.splitIntoChunks(
+				PGNIndex.load(pgnFile).getOffsets(),
+				0L,
+				pgnFile.length(),
+				threads * ParallelPGNImporter.CHUNKS_PER_THREAD
+																	   );
+		return ParallelPGNImporter.parseChunks(pgnFile, chunkStarts, pgnFile.length(), threads);
+	}
+
+	/**
+	 * Parses a range of games of a PGN file on a pool of threads. Only the bytes of the requested games are read.
+	 *
+	 * @param pgnFile   The PGN file to be imported
+	 * @param pgnIndex  The index of the PGN file
+	 * @param firstGame The index of the first game to be parsed
+	 * @param lastGame  The index of the last game to be parsed (inclusive)
+	 * @param threads   The number of threads to parse with
+	 * @return The games in the range in file order
+	 * @throws IOException    Filesystem issue with reading PGN file
+	 * @throws PGNSyntaxError Syntax error with reading PGN file
+	 */
+	static ArrayList<Game> importPGN(final File pgnFile, final PGNIndex pgnIndex, final int firstGame, final int lastGame, final int threads)
+			throws IOException, PGNSyntaxError
+	{
+		final long start = pgnIndex.getOffset(firstGame);
+		final long end = pgnIndex.getOffset(lastGame) + pgnIndex.getLength(lastGame);
+		final long[] chunkStarts = ParallelPGNImporter.splitIntoChunks(
+				Arrays.copyOfRange(pgnIndex.getOffsets(), firstGame, lastGame + 1),
+				start,
+				end,
+				threads * ParallelPGNImporter.CHUNKS_PER_THREAD
+																	   );
+		return ParallelPGNImporter.parseChunks(pgnFile, chunkStarts, end, threads);
+	}
+
+	private static ArrayList<Game> parseChunks(final File pgnFile, final long[] chunkStarts, final long end, final int threads)
+			throws IOException, PGNSyntaxError
+	{
+		final FileInputStream fileInputStream = new FileInputStream(pgnFile);
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try
+		{
+			return pool.invoke(new ChunkParseTask(fileInputStream.getChannel(), pgnFile, chunkStarts, end, 0, chunkStarts.length));
+		}
+		catch(final ChunkParseException chunkParseException)
+		{
+			Throwable cause = chunkParseException.getCause();
+			while(cause instanceof ChunkParseException)
+			{
+				cause = cause.getCause();
+			}
+			if(cause instanceof PGNSyntaxError)
+			{
+				throw (PGNSyntaxError) cause;
+			}
+			if(cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			throw chunkParseException;
+		}
+		finally
+		{
+			pool.shutdown();
+			fileInputStream.close();
+		}
+	}
+
+	/**
+	 * Groups game offsets into chunks of roughly equal size. Chunks are kept small enough that only a few need to be held in memory at once. The
+	 * first chunk always starts at the start of the range so that nothing before the first Event tag is lost.
+	 *
+	 * @param gameOffsets The offsets of each game in the range
+	 * @param start       The offset of the start of the range
+	 * @param end         The offset of the end of the range (exclusive)
+	 * @param maxChunks   The maximum number of chunks to be made
+	 * @return The start offset of each chunk. Each chunk ends where the next starts, or at the end of the range.
+	 */
+	static long[] splitIntoChunks(final long[] gameOffsets, final long start, final long end, final int maxChunks)
+	{
+		final long rangeLength = end - start;
+		//noinspection NumericCastThatLosesPrecision
+		final int minChunks = (int) Math.min((long) Integer.MAX_VALUE, rangeLength / ParallelPGNImporter.MAX_CHUNK_LENGTH + 1L);
+		final int chunkCount = Math.max(1, Math.min(gameOffsets.length, Math.max(maxChunks, minChunks)));
+		final long targetChunkLength = rangeLength / (long) chunkCount;
+		final long[] chunkStarts = new long[chunkCount];
+		chunkStarts[0] = start;
+		int chunk = 1;
+		for(int i = 0; (i < gameOffsets.length) && (chunk < chunkCount); i++)
+		{
+			if((gameOffsets[i] > chunkStarts[chunk - 1]) && (gameOffsets[i] >= (chunkStarts[chunk - 1] + targetChunkLength)))
+			{
+				chunkStarts[chunk] = gameOffsets[i];
+				chunk++;
+			}
+		}
+		return Arrays.copyOf(chunkStarts, chunk);
+	}
+
+	/**
+	 * Reads a byte range of a file into a new array
+	 *
+	 * @param channel The channel of the file
+	 * @param start   The offset of the first byte to read
+	 * @param end     The offset after the last byte to read
+	 * @return The bytes read, padded with zeros if the file ends early
+	 * @throws IOException Filesystem issue with reading the file
+	 */
+	static byte[] readChunk(final FileChannel channel, final long start, final long end) throws IOException
+	{
+		//noinspection NumericCastThatLosesPrecision
+		final ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+		long position = start;
+		while(buffer.hasRemaining())
+		{
+			final int read = channel.read(buffer, position);
+			if(read == - 1)
+			{
+				break;
+			}
+			position += (long) read;
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Unchecked carrier for the checked exceptions thrown whilst parsing a chunk on a pool thread
+	 */
+	private static final class ChunkParseException extends RuntimeException
+	{
+		private static final long serialVersionUID = - 3517618497826437751L;
+
+		ChunkParseException(final Exception cause)
+		{
+			super(cause);
+		}
+	}
+
+	/**
+	 * Parses a range of chunks, splitting the range in half until a single chunk remains
+	 */
+	private static final class ChunkParseTask extends RecursiveTask<ArrayList<Game>>
+	{
+		private static final long serialVersionUID = 6210942874129364312L;
+		private final FileChannel channel;
+		private final long[]      chunkStarts;
+		private final long        end;
+		private final int         firstChunk;
+		private final int         lastChunk;
+		private final File        pgnFile;
+
+		ChunkParseTask(final FileChannel channel, final File pgnFile, final long[] chunkStarts, final long end, final int firstChunk, final int lastChunk)
+		{
+			this.channel = channel;
+			this.pgnFile = pgnFile;
+			//noinspection AssignmentToCollectionOrArrayFieldFromParameter
+			this.chunkStarts = chunkStarts;
+			this.end = end;
+			this.firstChunk = firstChunk;
+			this.lastChunk = lastChunk;
+		}
+
+		@Override
+		protected ArrayList<Game> compute()
+		{
+			if((this.lastChunk - this.firstChunk) > 1)
+			{
+				final int middleChunk = (this.firstChunk + this.lastChunk) >>> 1;
+				final ChunkParseTask leftTask = new ChunkParseTask(this.channel, this.pgnFile, this.chunkStarts, this.end, this.firstChunk, middleChunk);
+				final ChunkParseTask rightTask = new ChunkParseTask(this.channel, this.pgnFile, this.chunkStarts, this.end, middleChunk, this.lastChunk);
+				leftTask.fork();
+				final ArrayList<Game> rightGames = rightTask.compute();
+				final ArrayList<Game> games = leftTask.join();
+				games.addAll(rightGames);
+				return games;
+			}
+			try
+			{
+				return this.parseChunk();
+			}
+			catch(final IOException ioe)
+			{
+				throw new ChunkParseException(ioe);
+			}
+			catch(final PGNSyntaxError pgnSyntaxError)
+			{
+				throw new ChunkParseException(pgnSyntaxError);
+			}
+		}
+
+		private ArrayList<Game> parseChunk() throws IOException, PGNSyntaxError
+		{
+			final long start = this.chunkStarts[this.firstChunk];
+			final long end = (this.lastChunk < this.chunkStarts.length) ? this.chunkStarts[this.lastChunk] : this.end;
+			final byte[] chunk = ParallelPGNImporter.readChunk(this.channel, start, end);
+			final PGNReader pgnReader = ChessIO.openPGNReader(new ByteArrayInputStream(chunk), this.pgnFile.getPath());
+			final ArrayList<Game> games = new ArrayList<Game>(100);
+			Game game = pgnReader.parseGame();
+			while(game != null)
+			{
+				games.add(game);
+				game = pgnReader.parseGame();
+			}
+			return games;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands out the fixed size segments that back a CompactGameStore. On the heap the segments are plain heap buffers. Off the heap they are direct
+ * buffers until a memory budget is used up, after which further segments are memory mapped from a scratch file so that the store spills to disk
+ * rather than failing. The scratch file is mapped in large regions which segments are sliced out of, as every mapping takes up one of the
+ * process's limited number of memory map areas. Off-heap segments are invisible to the garbage collector, so GC pauses do not grow with the
+ * number of games stored.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class StoreAllocator
+{
+	private static final Logger LOGGER            = Logger.getLogger(StoreAllocator.class.getName());
+	private static final long   MAP_REGION_LENGTH = 1L << 26;
+	private static final String SCRATCH_PREFIX    = "pgn-extract-alt-";
+	private static final String SCRATCH_SUFFIX    = ".store";
+	private final boolean          isOffHeap;
+	private final long             memoryBudget;
+	private       long             directBytes  = 0L;
+	private       MappedByteBuffer mapRegion    = null;
+	private       long             mappedBytes  = 0L;
+	private       FileChannel      scratchChannel;
+	private       File             scratchFile;
+	private       long             spilledBytes = 0L;
+
+	private StoreAllocator(final boolean isOffHeap, final long memoryBudget)
+	{
+		this.isOffHeap = isOffHeap;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Creates an allocator of off-heap segments
+	 *
+	 * @param memoryBudget The number of bytes of direct memory to use before spilling to a scratch file
+	 * @return The allocator
+	 */
+	static StoreAllocator offHeap(final long memoryBudget)
+	{
+		return new StoreAllocator(true, memoryBudget);
+	}
+
+	/**
+	 * Creates an allocator of ordinary heap segments
+	 *
+	 * @return The allocator
+	 */
+	static StoreAllocator onHeap()
+	{
+		return new StoreAllocator(false, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Allocates a zeroed segment
+	 *
+	 * @param bytes The size of the segment in bytes
+	 * @return The segment
+	 */
+	ByteBuffer allocate(final int bytes)
+	{
+		if(! this.isOffHeap)
+		{
+			return ByteBuffer.allocate(bytes);
+		}
+		if((this.directBytes + (long) bytes) <= this.memoryBudget)
+		{
+			//noinspection ErrorNotRethrown
+			try
+			{
+				final ByteBuffer segment = ByteBuffer.allocateDirect(bytes);
+				this.directBytes += (long) bytes;
+				return segment;
+			}
+			catch(final OutOfMemoryError ignored)
+			{
+				//The JVM's direct memory limit is below the budget - spill from here on
+				StoreAllocator.LOGGER.log(Level.WARNING, "Direct memory exhausted after " + this.directBytes + " bytes. Spilling to disk.");
+			}
+		}
+		return this.map(bytes);
+	}
+
+	/**
+	 * Releases the scratch file and lets go of its mapped regions, which are unmapped once the segments sliced from them are no longer reachable.
+	 * Segments handed out before closing must no longer be used.
+	 */
+	void close()
+	{
+		this.mapRegion = null;
+		if(this.scratchChannel == null)
+		{
+			return;
+		}
+		try
+		{
+			this.scratchChannel.close();
+		}
+		catch(final IOException ioe)
+		{
+			StoreAllocator.LOGGER.log(Level.WARNING, ioe.getMessage());
+		}
+		if(! this.scratchFile.delete())
+		{
+			//Some platforms refuse to delete a file whilst mappings of it are still reachable
+			this.scratchFile.deleteOnExit();
+		}
+		this.scratchChannel = null;
+		this.scratchFile = null;
+	}
+
+	/**
+	 * Getter for the number of bytes held in direct memory
+	 *
+	 * @return The number of bytes of direct segments handed out
+	 */
+	long getDirectBytes()
+	{
+		return this.directBytes;
+	}
+
+	/**
+	 * Getter for the number of bytes spilled to the scratch file
+	 *
+	 * @return The number of bytes of mapped segments handed out
+	 */
+	long getSpilledBytes()
+	{
+		return this.spilledBytes;
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "StoreAllocator{" +
+			   "isOffHeap=" + this.isOffHeap +
+			   ", memoryBudget=" + this.memoryBudget +
+			   ", directBytes=" + this.directBytes +
+			   ", spilledBytes=" + this.spilledBytes +
+			   ", mappedBytes=" + this.mappedBytes +
+			   ", scratchFile=" + this.scratchFile +
+			   '}';
+	}
+
+	private ByteBuffer map(final int bytes)
+	{
+		try
+		{
+			if(this.scratchChannel == null)
+			{
+				this.scratchFile = File.createTempFile(StoreAllocator.SCRATCH_PREFIX, StoreAllocator.SCRATCH_SUFFIX);
+				this.scratchFile.deleteOnExit();
+				this.scratchChannel = new RandomAccessFile(this.scratchFile, "rw").getChannel();
+			}
+			if((this.mapRegion == null) || (this.mapRegion.remaining() < bytes))
+			{
+				//Mapping past the end of the file grows it, and the new bytes read as zero
+				final long regionLength = Math.max(StoreAllocator.MAP_REGION_LENGTH, (long) bytes);
+				this.mapRegion = this.scratchChannel.map(FileChannel.MapMode.READ_WRITE, this.mappedBytes, regionLength);
+				this.mappedBytes += regionLength;
+			}
+			final ByteBuffer segment = this.mapRegion.slice();
+			segment.limit(bytes);
+			this.mapRegion.position(this.mapRegion.position() + bytes);
+			this.spilledBytes += (long) bytes;
+			return segment.slice();
+		}
+		catch(final IOException ioe)
+		{
+			throw new IllegalStateException("Failed to spill game store to disk", ioe);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.chess;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * A growable array of fixed width primitives made up of fixed size segments from a StoreAllocator. The array grows a segment at a time, so nothing
+ * is ever copied, and can hold more elements than a Java array. New elements read as zero.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class StoreArray
+{
+	/**
+	 * The width of an int element in bytes
+	 */
+	static final         int INT_WIDTH          = 4;
+	/**
+	 * The width of a long element in bytes
+	 */
+	static final         int LONG_WIDTH         = 8;
+	/**
+	 * The width of a short element in bytes
+	 */
+	static final         int SHORT_WIDTH        = 2;
+	private static final int SEGMENT_SHIFT      = 16;
+	private static final int SEGMENT_ELEMENTS   = 1 << StoreArray.SEGMENT_SHIFT;
+	private static final int SEGMENT_INDEX_MASK = StoreArray.SEGMENT_ELEMENTS - 1;
+	private final StoreAllocator        allocator;
+	private final ArrayList<ByteBuffer> segments = new ArrayList<ByteBuffer>(4);
+	private final int                   width;
+
+	/**
+	 * Creates an empty array
+	 *
+	 * @param allocator The allocator of the array's segments
+	 * @param width     The width of each element in bytes
+	 */
+	StoreArray(final StoreAllocator allocator, final int width)
+	{
+		this.allocator = allocator;
+		this.width = width;
+	}
+
+	/**
+	 * Makes sure the array can hold a number of elements
+	 *
+	 * @param elements The number of elements the array must be able to hold
+	 */
+	void ensureCapacity(final long elements)
+	{
+		while(((long) this.segments.size() << StoreArray.SEGMENT_SHIFT) < elements)
+		{
+			this.segments.add(this.allocator.allocate(StoreArray.SEGMENT_ELEMENTS * this.width));
+		}
+	}
+
+	/**
+	 * Reads an int element
+	 *
+	 * @param index The index of the element
+	 * @return The element
+	 */
+	int getInt(final long index)
+	{
+		return this.segment(index).getInt(this.position(index));
+	}
+
+	/**
+	 * Reads a long element
+	 *
+	 * @param index The index of the element
+	 * @return The element
+	 */
+	long getLong(final long index)
+	{
+		return this.segment(index).getLong(this.position(index));
+	}
+
+	/**
+	 * Reads a short element
+	 *
+	 * @param index The index of the element
+	 * @return The element
+	 */
+	short getShort(final long index)
+	{
+		return this.segment(index).getShort(this.position(index));
+	}
+
+	/**
+	 * Writes an int element, growing the array if need be
+	 *
+	 * @param index The index of the element
+	 * @param value The new value of the element
+	 */
+	void putInt(final long index, final int value)
+	{
+		this.ensureCapacity(index + 1L);
+		this.segment(index).putInt(this.position(index), value);
+	}
+
+	/**
+	 * Writes a long element, growing the array if need be
+	 *
+	 * @param index The index of the element
+	 * @param value The new value of the element
+	 */
+	void putLong(final long index, final long value)
+	{
+		this.ensureCapacity(index + 1L);
+		this.segment(index).putLong(this.position(index), value);
+	}
+
+	/**
+	 * Writes a short element, growing the array if need be
+	 *
+	 * @param index The index of the element
+	 * @param value The new value of the element
+	 */
+	void putShort(final long index, final short value)
+	{
+		this.ensureCapacity(index + 1L);
+		this.segment(index).putShort(this.position(index), value);
+	}
+
+	/**
+	 * Lets go of the array's segments so that their memory can be reclaimed. The array must no longer be used.
+	 */
+	void release()
+	{
+		this.segments.clear();
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "StoreArray{" +
+			   "width=" + this.width +
+			   ", segments=" + this.segments.size() +
+			   '}';
+	}
+
+	private int position(final long index)
+	{
+		//noinspection NumericCastThatLosesPrecision
+		return ((int) index & StoreArray.SEGMENT_INDEX_MASK) * this.width;
+	}
+
+	private ByteBuffer segment(final long index)
+	{
+		//noinspection NumericCastThatLosesPrecision
+		return this.segments.get((int) (index >>> StoreArray.SEGMENT_SHIFT));
+	}
+}
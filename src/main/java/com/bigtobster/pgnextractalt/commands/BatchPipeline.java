@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Headless entry point which runs a pipeline of PGN-Extract-Alt commands in one pass and exits. Each step is written exactly as it would be typed
+ * into the shell and steps are separated by "->", for example:
+ * <pre>
+ * import --FilePath - -> filter-duplicates -> result-filter --FilterDraws true -> export --ExportPath -
+ * </pre>
+ * A FilePath or ExportPath of "-" reads the PGN from stdin or writes it to stdout, so the pipeline can sit in a shell pipeline. Command messages
+ * are written to stderr to keep stdout clean. Only the beans of PGN-Extract-Alt and the shell's option converters are created - there is no
+ * terminal, history or banner - and the exit status is non-zero as soon as a step fails.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class BatchPipeline
+{
+	/**
+	 * Every command's failure message starts with this
+	 */
+	static final         String        FAILURE_PREFIX   = "Failed";
+	private static final int           EXIT_FAILURE     = 1;
+	private static final int           EXIT_USAGE       = 2;
+	private static final Pattern       STDIN_PATTERN    = Pattern.compile("(--" + IOCommands.FILE_PATH_OPTION + "\\s+)-(?=\\s|$)");
+	private static final Pattern       STDOUT_PATTERN   = Pattern.compile("(--" + IOCommands.EXPORT_PATH_OPTION + "\\s+)-(?=\\s|$)");
+	private static final Pattern       STEP_SEPARATOR   = Pattern.compile("\\s*->\\s*");
+	private static final String        TEMP_FILE_PREFIX = "pgn-extract-alt-batch";
+	private static final String        TEMP_FILE_SUFFIX = ".pgn";
+	private static final String        USAGE            = "Usage: BatchPipeline \"<command> [options] -> <command> [options] -> ...\"";
+	private final        PrintStream   messages;
+	private final        HeadlessShell shell;
+	private              File          stdinFile        = null;
+	private              File          stdoutFile       = null;
+
+	private BatchPipeline(final HeadlessShell shell, final PrintStream messages)
+	{
+		this.shell = shell;
+		this.messages = messages;
+	}
+
+	/**
+	 * Runs the pipeline given on the command line
+	 *
+	 * @param args The steps of the pipeline, separated by "->" within or between arguments
+	 * @throws java.io.IOException Thrown on failing to pass stdin or stdout through a temporary file
+	 */
+	public static void main(final String[] args) throws IOException
+	{
+		final ArrayList<String> steps = BatchPipeline.splitSteps(args);
+		if(steps.isEmpty())
+		{
+			System.err.println(BatchPipeline.USAGE);
+			System.exit(BatchPipeline.EXIT_USAGE);
+		}
+		final HeadlessShell shell = HeadlessShell.open();
+		final boolean isSuccessful;
+		try
+		{
+			isSuccessful = new BatchPipeline(shell, System.err).run(steps);
+		}
+		finally
+		{
+			shell.close();
+		}
+		System.exit(isSuccessful ? 0 : BatchPipeline.EXIT_FAILURE);
+	}
+
+	/**
+	 * Splits the command line into steps. The shell would treat a bare "->" as a redirection, so steps may be given either as one quoted
+	 * argument or as separate arguments.
+	 */
+	static ArrayList<String> splitSteps(final String[] args)
+	{
+		final ArrayList<String> steps = new ArrayList<String>(args.length);
+		for(final String arg : args)
+		{
+			for(final String step : BatchPipeline.STEP_SEPARATOR.split(arg))
+			{
+				if(! step.trim().isEmpty())
+				{
+					steps.add(step.trim());
+				}
+			}
+		}
+		return steps;
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "BatchPipeline{" +
+			   "stdinFile=" + this.stdinFile +
+			   ", stdoutFile=" + this.stdoutFile +
+			   '}';
+	}
+
+	/**
+	 * Points a "-" FilePath at a copy of stdin and a "-" ExportPath at a file which is copied to stdout once the pipeline has finished
+	 */
+	private String redirectStandardStreams(final String step) throws IOException
+	{
+		String redirectedStep = step;
+		if(BatchPipeline.STDIN_PATTERN.matcher(redirectedStep).find())
+		{
+			if(this.stdinFile == null)
+			{
+				this.stdinFile = BatchPipeline.newTempFile();
+				Files.copy(System.in, this.stdinFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			redirectedStep = BatchPipeline.STDIN_PATTERN.matcher(redirectedStep).replaceAll(
+					"$1" + Matcher.quoteReplacement(this.stdinFile.getPath())
+																						  );
+		}
+		if(BatchPipeline.STDOUT_PATTERN.matcher(redirectedStep).find())
+		{
+			if(this.stdoutFile == null)
+			{
+				this.stdoutFile = BatchPipeline.newTempFile();
+			}
+			redirectedStep = BatchPipeline.STDOUT_PATTERN.matcher(redirectedStep).replaceAll(
+					"$1" + Matcher.quoteReplacement(this.stdoutFile.getPath())
+																							);
+		}
+		return redirectedStep;
+	}
+
+	private static File newTempFile() throws IOException
+	{
+		final File tempFile = File.createTempFile(BatchPipeline.TEMP_FILE_PREFIX, BatchPipeline.TEMP_FILE_SUFFIX);
+		tempFile.deleteOnExit();
+		return tempFile;
+	}
+
+	/**
+	 * Runs each step in turn, stopping at the first which cannot be parsed or which fails
+	 *
+	 * @return Whether every step succeeded
+	 */
+	private boolean run(final ArrayList<String> steps) throws IOException
+	{
+		for(final String step : steps)
+		{
+			final String message = this.shell.execute(this.redirectStandardStreams(step));
+			if(message == null)
+			{
+				this.messages.println(BatchPipeline.FAILURE_PREFIX + ": " + step);
+				return false;
+			}
+			if(! message.isEmpty())
+			{
+				this.messages.println(message);
+				if(message.startsWith(BatchPipeline.FAILURE_PREFIX))
+				{
+					return false;
+				}
+			}
+		}
+		if(this.stdoutFile != null)
+		{
+			Files.copy(this.stdoutFile.toPath(), System.out);
+			System.out.flush();
+		}
+		return true;
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.commands;
+
+import com.bigtobster.pgnextractalt.chess.ChessFilterer;
+import com.bigtobster.pgnextractalt.filters.StreamableFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
+import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.shell.support.util.OsUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+
+/**
+ * Spring shell command class for running several filters over the imported games in a single pass
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+@SuppressWarnings("UnusedDeclaration")
+@Component
+public class ChainFilterCommands implements CommandMarker
+{
+	/**
+	 * The command option string to report the order the filters were run in
+	 */
+	static final         String SHOW_PLAN_OPTION        = "ShowPlan";
+	private static final String CHAIN_FILTER_HELP       = "Filter imported games by duplicates, result and plycount at once, looking at each game " +
+														  "once. Available on successful import.";
+	private static final String CHAIN_FILTER_SUBCOMMAND = "chain";
+	private static final String FAILED_TO_FILTER        = "Failed to filter!";
+	private static final char   HYPHEN                  = '-';
+	private static final String NO_FILTERS_CHOSEN       = "No filters were chosen.";
+	private static final String PLAN                    = "Plan:";
+	private static final String SPACE                   = " ";
+	@SuppressWarnings("InstanceVariableMayNotBeInitialized")
+	@Autowired
+	private CommandContext commandContext;
+
+	/**
+	 * Getter for Chain-Filter Command String
+	 *
+	 * @return String Chain-Filter Command
+	 */
+	@SuppressWarnings({"StaticMethodOnlyUsedInOneClass", "MethodReturnAlwaysConstant"})
+	static String getChainFilterCommand()
+	{
+		return ChainFilterCommands.CHAIN_FILTER_SUBCOMMAND + ChainFilterCommands.HYPHEN + CommandContext.FILTER_SUBCOMMAND;
+	}
+
+	/**
+	 * Filters the currently loaded games through every requested filter in one pass. Duplicates are filtered last so that only games surviving the
+	 * other filters are remembered. The result and plycount filters are run in whichever order is cheapest for the games loaded. With more than
+	 * one thread the games are filtered in partitions, which keeps the same games in the same order.
+	 *
+	 * @param isDuplicateFiltered  Whether to filter out duplicate games
+	 * @param isWhiteWinFiltered   Whether to filter out white wins
+	 * @param isBlackWinFiltered   Whether to filter out black wins
+	 * @param isDrawFiltered       Whether to filter out draws
+	 * @param isUnresolvedFiltered Whether to filter out unresolved results
+	 * @param greaterThan          Optional. Games with a plycount greater than this (and less than LessThan) are filtered out.
+	 * @param lessThan             Optional. Games with a plycount less than this (and greater than GreaterThan) are filtered out.
+	 * @param isPlanShown          Whether to report the order the filters were run in
+	 * @param threads              The number of threads to filter with
+	 * @return Successful/failure message
+	 */
+	@SuppressWarnings({"BooleanParameter", "FeatureEnvy", "DuplicateStringLiteralInspection", "MethodWithTooManyParameters"})
+	@CliCommand(value = ChainFilterCommands.CHAIN_FILTER_SUBCOMMAND + ChainFilterCommands.HYPHEN + CommandContext.FILTER_SUBCOMMAND,
+				help = ChainFilterCommands.CHAIN_FILTER_HELP)
+	public String filterByChain(
+			@CliOption(key = {IOCommands.FILTER_DUPLICATES}, help = "Filter duplicate games", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isDuplicateFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_WHITE_WINS_OPTION}, help = "Filter white wins", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isWhiteWinFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_BLACK_WINS_OPTION}, help = "Filter black wins", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isBlackWinFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_DRAWS_OPTION}, help = "Filter draws", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isDrawFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_UNRESOLVED_OPTION}, help = "Filter unresolved results", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isUnresolvedFiltered,
+			@CliOption(key = {PlycountFilterCommands.GREATER_THAN_OPTION}, help = "Filter games with a plycount greater than X",
+					   mandatory = false) final Integer greaterThan,
+			@CliOption(key = {PlycountFilterCommands.LESS_THAN_OPTION}, help = "Filter games with a plycount less than X",
+					   mandatory = false) final Integer lessThan,
+			@CliOption(key = {ChainFilterCommands.SHOW_PLAN_OPTION}, help = "Report the order the filters were run in and the share of games " +
+																			"each kept", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isPlanShown,
+			@CliOption(key = {IOCommands.THREADS_OPTION}, help = "The number of threads to filter with (default of 1). Games are filtered in " +
+																 "partitions and kept in their original order.", mandatory = false,
+					   unspecifiedDefaultValue = "1") final int threads
+							   )
+	{
+		if(threads <= 0)
+		{
+			return ChainFilterCommands.FAILED_TO_FILTER + ChainFilterCommands.SPACE + IOCommands.THREADS_OPTION + ChainFilterCommands.SPACE +
+				   EvaluateCommands.PARAMETER_MUST_BE_GREATER_THAN_0;
+		}
+		final ArrayList<StreamableFilter> filters = CommandContext.createFilterChain(
+				isDuplicateFiltered,
+				isWhiteWinFiltered,
+				isBlackWinFiltered,
+				isDrawFiltered,
+				isUnresolvedFiltered,
+				greaterThan,
+				lessThan
+																					);
+		if(filters.isEmpty())
+		{
+			return ChainFilterCommands.FAILED_TO_FILTER + ChainFilterCommands.SPACE + ChainFilterCommands.NO_FILTERS_CHOSEN;
+		}
+		final ChessFilterer chessFilterer = this.commandContext.getChessFilterer();
+		chessFilterer.loadFilters(filters);
+		final int removedGames = chessFilterer.run(threads);
+		if(isPlanShown)
+		{
+			return removedGames + ChainFilterCommands.SPACE + CommandContext.SUCCESSFULLY_FILTERED_GAMES + OsUtils.LINE_SEPARATOR +
+				   ChainFilterCommands.PLAN + ChainFilterCommands.SPACE + chessFilterer.getPlan();
+		}
+		return removedGames + ChainFilterCommands.SPACE + CommandContext.SUCCESSFULLY_FILTERED_GAMES;
+	}
+
+	/**
+	 * Describes when "chain-filter" command is available
+	 *
+	 * @return boolean Available on import
+	 */
+	@CliAvailabilityIndicator(ChainFilterCommands.CHAIN_FILTER_SUBCOMMAND + ChainFilterCommands.HYPHEN + CommandContext.FILTER_SUBCOMMAND)
+	public boolean isChainFilterAvailable()
+	{
+		return this.commandContext.getChessIO().isPGNImported();
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "DuplicateStringLiteralInspection", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "ChainFilterCommands{" +
+			   "commandContext=" + this.commandContext +
+			   '}';
+	}
+}
@@ -13,8 +13,15 @@ package com.bigtobster.pgnextractalt.commands;
 import com.bigtobster.pgnextractalt.chess.ChessFilterer;
 import com.bigtobster.pgnextractalt.chess.ChessIO;
 import com.bigtobster.pgnextractalt.chess.ChessTagModder;
+import com.bigtobster.pgnextractalt.filters.DuplicateFilter;
+import com.bigtobster.pgnextractalt.filters.DuplicateFilterMode;
+import com.bigtobster.pgnextractalt.filters.HeaderFilter;
+import com.bigtobster.pgnextractalt.filters.PlycountFilter;
+import com.bigtobster.pgnextractalt.filters.ResultFilter;
+import com.bigtobster.pgnextractalt.filters.StreamableFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +63,7 @@ class CommandContext
 	static final         String UNKNOWN_IMPORT_ERROR        = "Unknown Import Error ";
 	@SuppressWarnings("UnusedDeclaration")
 	private static final Logger LOGGER                      = Logger.getLogger(CommandContext.class.getName());
+	private static final String TAG_KEY_SEPARATOR           = ",";
 	@SuppressWarnings("InstanceVariableMayNotBeInitialized")
 	@Autowired
 	private ChessFilterer  chessFilterer;
@@ -66,6 +74,78 @@ class CommandContext
 	@Autowired
 	private ChessTagModder chessTagModder;
 
+	/**
+	 * Builds a chain of filters that can decide on games one at a time. Cheap tag based filters are placed first and the duplicate filter last so
+	 * that it only has to remember the games that survived everything else.
+	 *
+	 * @param isDuplicateFiltered  Whether to filter out duplicate games
+	 * @param isWhiteWinFiltered   Whether to filter out white wins
+	 * @param isBlackWinFiltered   Whether to filter out black wins
+	 * @param isDrawFiltered       Whether to filter out draws
+	 * @param isUnresolvedFiltered Whether to filter out unresolved results
+	 * @param greaterThan          The plycount which games must be greater than to be filtered out. Null if not filtering by plycount.
+	 * @param lessThan             The plycount which games must be less than to be filtered out. Null if not filtering by plycount.
+	 * @return The chain of filters in the order they should be applied
+	 */
+	@SuppressWarnings({"BooleanParameter", "MethodWithTooManyParameters"})
+	static ArrayList<StreamableFilter> createFilterChain(
+			final boolean isDuplicateFiltered,
+			final boolean isWhiteWinFiltered,
+			final boolean isBlackWinFiltered,
+			final boolean isDrawFiltered,
+			final boolean isUnresolvedFiltered,
+			final Integer greaterThan,
+			final Integer lessThan
+														)
+	{
+		final ArrayList<StreamableFilter> filters = new ArrayList<StreamableFilter>(3);
+		filters.addAll(CommandContext.createHeaderFilters(isWhiteWinFiltered, isBlackWinFiltered, isDrawFiltered, isUnresolvedFiltered));
+		if((greaterThan != null) || (lessThan != null))
+		{
+			final PlycountFilter plycountFilter = new PlycountFilter();
+			plycountFilter.setGreaterThan((greaterThan == null) ? Integer.MIN_VALUE : greaterThan);
+			plycountFilter.setLessThan((lessThan == null) ? Integer.MAX_VALUE : lessThan);
+			filters.add(plycountFilter);
+		}
+		if(isDuplicateFiltered)
+		{
+			final DuplicateFilter duplicateFilter = new DuplicateFilter();
+			duplicateFilter.setMode(DuplicateFilterMode.FILTER);
+			filters.add(duplicateFilter);
+		}
+		return filters;
+	}
+
+	/**
+	 * Builds the filters that can decide on games from their tags alone, so that they can be run before any moves are parsed
+	 *
+	 * @param isWhiteWinFiltered   Whether to filter out white wins
+	 * @param isBlackWinFiltered   Whether to filter out black wins
+	 * @param isDrawFiltered       Whether to filter out draws
+	 * @param isUnresolvedFiltered Whether to filter out unresolved results
+	 * @return The header filters, empty if nothing is to be filtered
+	 */
+	@SuppressWarnings({"BooleanParameter", "OverlyComplexBooleanExpression"})
+	static ArrayList<HeaderFilter> createHeaderFilters(
+			final boolean isWhiteWinFiltered,
+			final boolean isBlackWinFiltered,
+			final boolean isDrawFiltered,
+			final boolean isUnresolvedFiltered
+													  )
+	{
+		final ArrayList<HeaderFilter> headerFilters = new ArrayList<HeaderFilter>(1);
+		if(isWhiteWinFiltered || isBlackWinFiltered || isDrawFiltered || isUnresolvedFiltered)
+		{
+			final ResultFilter resultFilter = new ResultFilter();
+			resultFilter.setWhiteWinFiltered(isWhiteWinFiltered);
+			resultFilter.setBlackWinFiltered(isBlackWinFiltered);
+			resultFilter.setDrawFiltered(isDrawFiltered);
+			resultFilter.setUnresolvedFiltered(isUnresolvedFiltered);
+			headerFilters.add(resultFilter);
+		}
+		return headerFilters;
+	}
+
 	/**
 	 * Takes a severe IO error, forms a coherent bundle of failure data and reports to user
 	 *
@@ -96,6 +176,26 @@ class CommandContext
 		logger.log(Level.SEVERE, exception.toString(), exception.fillInStackTrace());
 	}
 
+	/**
+	 * Splits a comma separated list of tag keys given on the command line
+	 *
+	 * @param tagKeys The comma separated tag keys or null
+	 * @return The trimmed tag keys, empty if none were given
+	 */
+	static String[] parseTagKeys(final String tagKeys)
+	{
+		if(tagKeys == null)
+		{
+			return new String[0];
+		}
+		final String[] parsedKeys = tagKeys.split(CommandContext.TAG_KEY_SEPARATOR);
+		for(int i = 0; i < parsedKeys.length; i++)
+		{
+			parsedKeys[i] = parsedKeys[i].trim();
+		}
+		return parsedKeys;
+	}
+
 	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
 	@Override
 	public String toString()
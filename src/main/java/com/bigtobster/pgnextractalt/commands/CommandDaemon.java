@@ -0,0 +1,588 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.commands;
+
+import com.bigtobster.pgnextractalt.chess.ChessEvaluator;
+import com.bigtobster.pgnextractalt.chess.ChessIO;
+import com.bigtobster.pgnextractalt.chess.GameView;
+import com.bigtobster.pgnextractalt.misc.UserCache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Long running server which keeps the imported games, their indexes and the engines resident between requests. Clients connect to a port on the
+ * loopback interface only and send one command per line, written exactly as it would be typed into the shell. Each response is the command's
+ * message followed by a line holding a single ".". Startup steps, separated by "->" as for the batch pipeline, load the base database before the
+ * port is opened, for example:
+ * <pre>
+ * CommandDaemon 7070 "import --FilePath base.pgn --Compact true"
+ * </pre>
+ * Once the port is open the daemon writes two random tokens into owner-only files in the per-user cache directory, daemon-&lt;port&gt;.token and
+ * daemon-&lt;port&gt;.admin-token, and deletes them again on shutdown. A client's first line must be one of the tokens, or the connection is
+ * closed, so only the user who started the daemon can send it commands.
+ * Each client starts with its own view of the base database. Imports into a view add to it, so import is the delta import, and filters only
+ * remove games from the client's own view, so concurrent clients never see each other's results. A client's first insert-tag or evaluate command
+ * copies the games of its view so that the tags written are its own. Alongside the shell's commands a client may send:
+ * <ul>
+ * <li>publish - make the client's view the base database for clients which connect from now on, admin token only</li>
+ * <li>revert - go back to the current base database</li>
+ * <li>reset - empty the client's view</li>
+ * <li>quit - close the connection</li>
+ * <li>shutdown - stop the daemon, admin token only</li>
+ * </ul>
+ * Each command runs on a shell of its own, taken from a pool of idle shells, so the commands of different clients run at once. Commands which
+ * write tags still run one at a time, as do publish and revert, since they share the engines and the base database. Compaction would close the
+ * store holding other views' games so the Compact and MemoryBudget import options are only accepted in startup steps.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class CommandDaemon
+{
+	private static final String                    ADMIN_ONLY              = "needs the admin token:";
+	private static final String                    ADMIN_TOKEN_SUFFIX      = ".admin-token";
+	private static final String                    AUTHENTICATED           = "Authenticated";
+	private static final int                       BACKLOG                 = 50;
+	private static final String                    CLIENT_THREAD           = "CommandDaemon client";
+	private static final Pattern                   EDITING_COMMAND_PATTERN = Pattern.compile("^(insert-tag|evaluate-\\S+)(?=\\s|$)");
+	private static final String                    END_OF_RESPONSE         = ".";
+	private static final int                       EXIT_FAILURE            = 1;
+	private static final int                       EXIT_USAGE              = 2;
+	private static final String                    GAMES                   = "games";
+	private static final String                    HEX_FORMAT              = "%02x";
+	private static final String                    LISTENING               = "Listening on";
+	private static final Logger                    LOGGER                  = Logger.getLogger(CommandDaemon.class.getName());
+	private static final String                    NOT_AUTHENTICATED       = "Failed to authenticate: the first line must be a token " +
+																			 "written by the daemon";
+	private static final Pattern                   PORT_PATTERN            = Pattern.compile("\\d{1,5}");
+	private static final String                    PUBLISHED               = "Published";
+	private static final String                    PUBLISH_COMMAND         = "publish";
+	private static final String                    QUIT_COMMAND            = "quit";
+	@SuppressWarnings("DuplicateStringLiteralInspection")
+	private static final String                    RESET_COMMAND           = "reset";
+	private static final String                    REVERTED                = "Reverted to";
+	private static final String                    REVERT_COMMAND          = "revert";
+	private static final String                    SHUTDOWN_COMMAND        = "shutdown";
+	private static final String                    SHUTTING_DOWN           = "Shutting down";
+	private static final String                    SPACE                   = " ";
+	private static final String                    STARTUP_ONLY            = "options are only available in startup steps:";
+	private static final Pattern                   STARTUP_ONLY_PATTERN    = Pattern.compile(
+			"--(" + IOCommands.COMPACT_OPTION + '|' + IOCommands.MEMORY_BUDGET_OPTION + ")(?=\\s|$)"
+																					  );
+	private static final int                       TOKEN_BYTES             = 32;
+	private static final String                    TOKEN_PREFIX            = "daemon-";
+	private static final String                    TOKEN_SUFFIX            = ".token";
+	private static final String                    TOKENS_WRITTEN          = "Tokens written to";
+	private static final String                    USAGE                   = "Usage: CommandDaemon <port> [\"<command> [options] -> ...\"]";
+	private final        String                    adminToken;
+	private final        ArrayDeque<HeadlessShell> idleShells              = new ArrayDeque<HeadlessShell>(4);
+	private final        ArrayList<HeadlessShell>  openedShells            = new ArrayList<HeadlessShell>(4);
+	private final        ServerSocket              serverSocket;
+	private final        String                    token;
+	private              File                      adminTokenFile          = null;
+	private              GameView                  baseView;
+	private              File                      tokenFile               = null;
+
+	private CommandDaemon(final HeadlessShell shell, final ServerSocket serverSocket)
+	{
+		this.serverSocket = serverSocket;
+		this.baseView = shell.getChessIO().getView();
+		this.idleShells.push(shell);
+		final SecureRandom random = new SecureRandom();
+		this.token = CommandDaemon.newToken(random);
+		this.adminToken = CommandDaemon.newToken(random);
+	}
+
+	/**
+	 * Opens the daemon's port on the loopback interface and writes the tokens that clients must send to connect
+	 *
+	 * @param shell The shell holding the base database
+	 * @param port  The port to listen on, 0 for any free port
+	 * @return The daemon, ready to serve, which must be closed once finished with
+	 * @throws java.io.IOException Thrown on failing to open the port or write the tokens
+	 */
+	static CommandDaemon open(final HeadlessShell shell, final int port) throws IOException
+	{
+		final ServerSocket serverSocket = new ServerSocket(port, CommandDaemon.BACKLOG, InetAddress.getLoopbackAddress());
+		final CommandDaemon daemon = new CommandDaemon(shell, serverSocket);
+		try
+		{
+			final String name = CommandDaemon.TOKEN_PREFIX + serverSocket.getLocalPort();
+			daemon.tokenFile = UserCache.write(name + CommandDaemon.TOKEN_SUFFIX, daemon.token.getBytes(StandardCharsets.UTF_8));
+			daemon.adminTokenFile = UserCache.write(name + CommandDaemon.ADMIN_TOKEN_SUFFIX, daemon.adminToken.getBytes(StandardCharsets.UTF_8));
+		}
+		catch(final IOException ioe)
+		{
+			daemon.close();
+			throw ioe;
+		}
+		return daemon;
+	}
+
+	/**
+	 * Runs the startup steps and then serves clients until told to shut down
+	 *
+	 * @param args The port to listen on, 0 for any free port, followed by the startup steps
+	 * @throws java.io.IOException Thrown on failing to open the port
+	 */
+	public static void main(final String[] args) throws IOException
+	{
+		if((args.length == 0) || ! CommandDaemon.PORT_PATTERN.matcher(args[0]).matches())
+		{
+			System.err.println(CommandDaemon.USAGE);
+			System.exit(CommandDaemon.EXIT_USAGE);
+		}
+		final HeadlessShell shell = HeadlessShell.open();
+		boolean isStarted = false;
+		try
+		{
+			isStarted = CommandDaemon.runStartupSteps(shell, BatchPipeline.splitSteps(Arrays.copyOfRange(args, 1, args.length)));
+			if(isStarted)
+			{
+				ChessEvaluator.setEnginesRetained(true);
+				ChessEvaluator.prestartEngines();
+				final CommandDaemon daemon = CommandDaemon.open(shell, Integer.parseInt(args[0]));
+				try
+				{
+					System.err.println(CommandDaemon.LISTENING + CommandDaemon.SPACE + daemon.serverSocket.getLocalSocketAddress());
+					System.err.println(CommandDaemon.TOKENS_WRITTEN + CommandDaemon.SPACE + daemon.tokenFile + ", " + daemon.adminTokenFile);
+					daemon.serve();
+				}
+				finally
+				{
+					daemon.close();
+				}
+			}
+		}
+		finally
+		{
+			ChessEvaluator.setEnginesRetained(false);
+			shell.close();
+		}
+		System.exit(isStarted ? 0 : CommandDaemon.EXIT_FAILURE);
+	}
+
+	private static boolean isToken(final String line, final String token)
+	{
+		return MessageDigest.isEqual(line.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String newToken(final SecureRandom random)
+	{
+		final byte[] bytes = new byte[CommandDaemon.TOKEN_BYTES];
+		random.nextBytes(bytes);
+		final StringBuilder token = new StringBuilder(bytes.length * 2);
+		for(final byte b : bytes)
+		{
+			token.append(String.format(CommandDaemon.HEX_FORMAT, b));
+		}
+		return token.toString();
+	}
+
+	/**
+	 * Advises whether a command writes tags to the games of a view, so the view's games must be copied before it runs
+	 *
+	 * @param line The command line
+	 * @return True if the command writes tags else false
+	 */
+	static boolean isEditing(final String line)
+	{
+		return CommandDaemon.EDITING_COMMAND_PATTERN.matcher(line).find();
+	}
+
+	/**
+	 * Advises whether a command line uses an option that is only accepted in startup steps
+	 *
+	 * @param line The command line
+	 * @return True if the line compacts the imported games else false
+	 */
+	static boolean isStartupOnly(final String line)
+	{
+		return CommandDaemon.STARTUP_ONLY_PATTERN.matcher(line).find();
+	}
+
+	/**
+	 * Runs the steps which load the base database, stopping at the first which cannot be parsed or which fails
+	 *
+	 * @return Whether every step succeeded
+	 */
+	private static boolean runStartupSteps(final HeadlessShell shell, final ArrayList<String> steps)
+	{
+		for(final String step : steps)
+		{
+			final String message = shell.execute(step);
+			if(message == null)
+			{
+				System.err.println(BatchPipeline.FAILURE_PREFIX + ": " + step);
+				return false;
+			}
+			System.err.println(message);
+			if(message.startsWith(BatchPipeline.FAILURE_PREFIX))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "CommandDaemon{" +
+			   "serverSocket=" + this.serverSocket +
+			   ", tokenFile=" + this.tokenFile +
+			   ", adminTokenFile=" + this.adminTokenFile +
+			   ", baseView=" + this.baseView +
+			   '}';
+	}
+
+	/**
+	 * Checks a client's first line against the tokens
+	 *
+	 * @return Whether the line is one of the tokens
+	 */
+	private boolean authenticate(final ClientSession session, final String line)
+	{
+		session.isAdmin = CommandDaemon.isToken(line, this.adminToken);
+		return session.isAdmin || CommandDaemon.isToken(line, this.token);
+	}
+
+	/**
+	 * Closes the daemon's port, deletes its tokens, releases the base database and closes the shells the daemon opened
+	 */
+	void close()
+	{
+		this.shutdown();
+		synchronized(this)
+		{
+			this.baseView.release();
+		}
+		synchronized(this.idleShells)
+		{
+			for(final HeadlessShell openedShell : this.openedShells)
+			{
+				openedShell.close();
+			}
+			this.openedShells.clear();
+		}
+		if(this.tokenFile != null)
+		{
+			//noinspection ResultOfMethodCallIgnored
+			this.tokenFile.delete();
+		}
+		if(this.adminTokenFile != null)
+		{
+			//noinspection ResultOfMethodCallIgnored
+			this.adminTokenFile.delete();
+		}
+	}
+
+	/**
+	 * Runs a command line against the client's view on a shell of its own
+	 *
+	 * @return The command's message
+	 */
+	private String execute(final ClientSession session, final String line)
+	{
+		final HeadlessShell sessionShell = this.takeShell();
+		final ChessIO chessIO = sessionShell.getChessIO();
+		chessIO.setView(session.view);
+		String message;
+		try
+		{
+			if(! session.isIsolated && CommandDaemon.isEditing(line))
+			{
+				chessIO.isolateGames();
+				session.isIsolated = true;
+			}
+			message = sessionShell.execute(line);
+		}
+		catch(final RuntimeException runtimeException)
+		{
+			CommandDaemon.LOGGER.log(Level.SEVERE, line, runtimeException);
+			message = BatchPipeline.FAILURE_PREFIX + ": " + runtimeException;
+		}
+		finally
+		{
+			session.view.release();
+			session.view = chessIO.getView();
+			//An idle shell keeps no games, so it holds no claim on a compact store that every view has finished with
+			chessIO.setView(GameView.EMPTY);
+			this.putShell(sessionShell);
+		}
+		return (message == null) ? (BatchPipeline.FAILURE_PREFIX + ": " + line) : message;
+	}
+
+	/**
+	 * Getter for the file holding the token which grants every command
+	 *
+	 * @return The admin token file
+	 */
+	File getAdminTokenFile()
+	{
+		return this.adminTokenFile;
+	}
+
+	/**
+	 * Getter for the port the daemon is listening on
+	 *
+	 * @return The port
+	 */
+	int getPort()
+	{
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Getter for the file holding the token which grants every command but publish and shutdown
+	 *
+	 * @return The token file
+	 */
+	File getTokenFile()
+	{
+		return this.tokenFile;
+	}
+
+	/**
+	 * Puts a shell back in the pool once a command has finished with it
+	 */
+	private void putShell(final HeadlessShell idleShell)
+	{
+		synchronized(this.idleShells)
+		{
+			this.idleShells.push(idleShell);
+		}
+	}
+
+	/**
+	 * Runs a line from a client against the client's view. Lines which write tags or change the base database run one at a time, every other
+	 * line runs as soon as it is sent.
+	 *
+	 * @return The response to the line
+	 */
+	@SuppressWarnings("FeatureEnvy")
+	private String respond(final ClientSession session, final String line)
+	{
+		if(! session.isAdmin && (line.equals(CommandDaemon.PUBLISH_COMMAND) || line.equals(CommandDaemon.SHUTDOWN_COMMAND)))
+		{
+			return BatchPipeline.FAILURE_PREFIX + ": " + line + CommandDaemon.SPACE + CommandDaemon.ADMIN_ONLY + CommandDaemon.SPACE +
+				   this.adminTokenFile;
+		}
+		if(line.equals(CommandDaemon.PUBLISH_COMMAND))
+		{
+			synchronized(this)
+			{
+				this.baseView.release();
+				this.baseView = session.view.share();
+			}
+			session.isIsolated = false;
+			return CommandDaemon.PUBLISHED + CommandDaemon.SPACE + session.view.getGameCount() + CommandDaemon.SPACE + CommandDaemon.GAMES;
+		}
+		if(line.equals(CommandDaemon.REVERT_COMMAND))
+		{
+			session.view.release();
+			synchronized(this)
+			{
+				session.view = this.baseView.share();
+			}
+			session.isIsolated = false;
+			return CommandDaemon.REVERTED + CommandDaemon.SPACE + session.view.getGameCount() + CommandDaemon.SPACE + CommandDaemon.GAMES;
+		}
+		if(line.equals(CommandDaemon.RESET_COMMAND))
+		{
+			session.view.release();
+			session.view = GameView.EMPTY;
+			session.isIsolated = false;
+			return IOCommands.SUCCESSFUL_RESET;
+		}
+		if(line.equals(CommandDaemon.SHUTDOWN_COMMAND))
+		{
+			return CommandDaemon.SHUTTING_DOWN;
+		}
+		if(CommandDaemon.isStartupOnly(line))
+		{
+			return BatchPipeline.FAILURE_PREFIX + ": " + IOCommands.COMPACT_OPTION + ", " + IOCommands.MEMORY_BUDGET_OPTION + CommandDaemon.SPACE +
+				   CommandDaemon.STARTUP_ONLY + CommandDaemon.SPACE + line;
+		}
+		if(CommandDaemon.isEditing(line))
+		{
+			synchronized(this)
+			{
+				return this.execute(session, line);
+			}
+		}
+		return this.execute(session, line);
+	}
+
+	/**
+	 * Accepts clients, each served on its own thread, until the port is closed by shutdown
+	 *
+	 * @throws java.io.IOException Thrown on failing to accept a client
+	 */
+	void serve() throws IOException
+	{
+		while(! this.serverSocket.isClosed())
+		{
+			try
+			{
+				final Socket socket = this.serverSocket.accept();
+				final Thread thread = new Thread(new ClientSession(this, socket), CommandDaemon.CLIENT_THREAD);
+				thread.setDaemon(true);
+				thread.start();
+			}
+			catch(final SocketException socketException)
+			{
+				if(! this.serverSocket.isClosed())
+				{
+					throw socketException;
+				}
+			}
+		}
+	}
+
+	private void shutdown()
+	{
+		try
+		{
+			this.serverSocket.close();
+		}
+		catch(final IOException ioe)
+		{
+			CommandDaemon.LOGGER.log(Level.WARNING, "Failed to close the daemon's port cleanly", ioe);
+		}
+	}
+
+	/**
+	 * Takes an idle shell out of the pool, opening a new one when every shell is running a command
+	 */
+	private HeadlessShell takeShell()
+	{
+		synchronized(this.idleShells)
+		{
+			if(! this.idleShells.isEmpty())
+			{
+				return this.idleShells.pop();
+			}
+		}
+		final HeadlessShell openedShell = HeadlessShell.open();
+		synchronized(this.idleShells)
+		{
+			this.openedShells.add(openedShell);
+		}
+		return openedShell;
+	}
+
+	/**
+	 * A connected client and the view of the games its commands run against
+	 */
+	private static final class ClientSession implements Runnable
+	{
+		private final CommandDaemon daemon;
+		private final Socket        socket;
+		private       boolean       isAdmin    = false;
+		private       boolean       isIsolated = false;
+		private       GameView      view;
+
+		ClientSession(final CommandDaemon daemon, final Socket socket)
+		{
+			this.daemon = daemon;
+			this.socket = socket;
+			synchronized(daemon)
+			{
+				this.view = daemon.baseView.share();
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8));
+				final PrintWriter writer = new PrintWriter(new OutputStreamWriter(this.socket.getOutputStream(), StandardCharsets.UTF_8));
+				String line = reader.readLine();
+				if((line == null) || ! this.daemon.authenticate(this, line.trim()))
+				{
+					writer.println(CommandDaemon.NOT_AUTHENTICATED);
+					writer.println(CommandDaemon.END_OF_RESPONSE);
+					writer.flush();
+					return;
+				}
+				writer.println(CommandDaemon.AUTHENTICATED);
+				writer.println(CommandDaemon.END_OF_RESPONSE);
+				writer.flush();
+				line = reader.readLine();
+				while((line != null) && ! line.trim().equals(CommandDaemon.QUIT_COMMAND))
+				{
+					if(! line.trim().isEmpty())
+					{
+						writer.println(this.daemon.respond(this, line.trim()));
+						writer.println(CommandDaemon.END_OF_RESPONSE);
+						writer.flush();
+					}
+					if(this.isAdmin && line.trim().equals(CommandDaemon.SHUTDOWN_COMMAND))
+					{
+						this.daemon.shutdown();
+						break;
+					}
+					line = reader.readLine();
+				}
+			}
+			catch(final IOException ioe)
+			{
+				CommandDaemon.LOGGER.log(Level.WARNING, "Lost connection to client", ioe);
+			}
+			finally
+			{
+				//The view is only used on this client's thread, so its claim on the compact store can go without holding the daemon's lock
+				this.view.release();
+				try
+				{
+					this.socket.close();
+				}
+				catch(final IOException ioe)
+				{
+					CommandDaemon.LOGGER.log(Level.WARNING, "Failed to close client connection cleanly", ioe);
+				}
+			}
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "ClientSession{" +
+				   "socket=" + this.socket +
+				   ", isAdmin=" + this.isAdmin +
+				   ", isIsolated=" + this.isIsolated +
+				   ", view=" + this.view +
+				   '}';
+		}
+	}
+}
@@ -17,6 +17,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.shell.core.CommandMarker;
 import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
 import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.core.annotation.CliOption;
 import org.springframework.stereotype.Component;
 
 /**
@@ -30,6 +31,14 @@ public class DuplicateFilterCommands implements CommandMarker
 	private static final String DUPLICATE_FILTER_COMMAND_HELP = "Filters out the duplicates of the list of games leaving a set of unique games" +
 																"Available on successful import.";
 	private static final String DUPLICATE_FILTER_SUBCOMMAND   = "duplicates";
+	/**
+	 * The help for the option giving the tags which are compared along with the moves
+	 */
+	static final         String FINGERPRINT_TAGS_HELP         = "Comma separated tags which must also match for games to be duplicates";
+	/**
+	 * The option giving the tags which are compared along with the moves
+	 */
+	static final         String FINGERPRINT_TAGS_OPTION       = "FingerprintTags";
 	private static final char   HYPHEN                        = '-';
 	private static final String
 								ISOLATE_DUPLICATES_COMMAND_HELP
@@ -84,13 +93,18 @@ public class DuplicateFilterCommands implements CommandMarker
 	/**
 	 * Filter duplicate games from currently loaded games
 	 *
+	 * @param fingerprintTags Comma separated tags to compare along with the moves or null to compare the moves alone
 	 * @return Successful/failure message
 	 */
 	@CliCommand(value = CommandContext.FILTER_SUBCOMMAND + DuplicateFilterCommands.HYPHEN + DuplicateFilterCommands.DUPLICATE_FILTER_SUBCOMMAND,
 				help = DuplicateFilterCommands.DUPLICATE_FILTER_COMMAND_HELP)
-	public String filterDuplicateGames()
+	public String filterDuplicateGames(
+			@CliOption(key = {DuplicateFilterCommands.FINGERPRINT_TAGS_OPTION},
+					   help = DuplicateFilterCommands.FINGERPRINT_TAGS_HELP,
+					   mandatory = false) final String fingerprintTags
+									 )
 	{
-		final int removedGames = this.runDuplicateFilter(DuplicateFilterMode.FILTER);
+		final int removedGames = this.runDuplicateFilter(DuplicateFilterMode.FILTER, fingerprintTags);
 		return removedGames + DuplicateFilterCommands.SPACE + CommandContext.SUCCESSFULLY_FILTERED_GAMES;
 	}
 
@@ -136,29 +150,39 @@ public class DuplicateFilterCommands implements CommandMarker
 	/**
 	 * Isolate duplicate games from currently loaded games
 	 *
+	 * @param fingerprintTags Comma separated tags to compare along with the moves or null to compare the moves alone
 	 * @return Successful/failure message
 	 */
 	@CliCommand(value = DuplicateFilterCommands.ISOLATE_SUBCOMMAND +
 						DuplicateFilterCommands.HYPHEN +
 						DuplicateFilterCommands.DUPLICATE_FILTER_SUBCOMMAND,
 				help = DuplicateFilterCommands.ISOLATE_DUPLICATES_COMMAND_HELP)
-	public String isolateDuplicateGames()
+	public String isolateDuplicateGames(
+			@CliOption(key = {DuplicateFilterCommands.FINGERPRINT_TAGS_OPTION},
+					   help = DuplicateFilterCommands.FINGERPRINT_TAGS_HELP,
+					   mandatory = false) final String fingerprintTags
+									 )
 	{
-		final int removedGames = this.runDuplicateFilter(DuplicateFilterMode.ISOLATE);
+		final int removedGames = this.runDuplicateFilter(DuplicateFilterMode.ISOLATE, fingerprintTags);
 		return removedGames + DuplicateFilterCommands.SPACE + CommandContext.SUCCESSFULLY_FILTERED_GAMES;
 	}
 
 	/**
 	 * Purge duplicate games from currently loaded games
 	 *
+	 * @param fingerprintTags Comma separated tags to compare along with the moves or null to compare the moves alone
 	 * @return Successful/failure message
 	 */
 	@CliCommand(value = DuplicateFilterCommands.PURGE_SUBCOMMAND + DuplicateFilterCommands.HYPHEN + DuplicateFilterCommands
 			.DUPLICATE_FILTER_SUBCOMMAND,
 				help = DuplicateFilterCommands.PURGE_DUPLICATES_COMMAND_HELP)
-	public String purgeDuplicateGames()
+	public String purgeDuplicateGames(
+			@CliOption(key = {DuplicateFilterCommands.FINGERPRINT_TAGS_OPTION},
+					   help = DuplicateFilterCommands.FINGERPRINT_TAGS_HELP,
+					   mandatory = false) final String fingerprintTags
+									 )
 	{
-		final int removedGames = this.runDuplicateFilter(DuplicateFilterMode.PURGE);
+		final int removedGames = this.runDuplicateFilter(DuplicateFilterMode.PURGE, fingerprintTags);
 		return removedGames + DuplicateFilterCommands.SPACE + CommandContext.SUCCESSFULLY_FILTERED_GAMES;
 	}
 
@@ -171,10 +195,11 @@ public class DuplicateFilterCommands implements CommandMarker
 			   '}';
 	}
 
-	private int runDuplicateFilter(final DuplicateFilterMode mode)
+	private int runDuplicateFilter(final DuplicateFilterMode mode, final String fingerprintTags)
 	{
 		final DuplicateFilter duplicateFilter = new DuplicateFilter();
 		duplicateFilter.setMode(mode);
+		duplicateFilter.setFingerprintTags(CommandContext.parseTagKeys(fingerprintTags));
 		final ChessFilterer chessFilterer = this.commandContext.getChessFilterer();
 		chessFilterer.loadFilter(duplicateFilter);
 		return chessFilterer.run();
@@ -13,6 +13,10 @@ package com.bigtobster.pgnextractalt.commands;
 import chesspresso.game.Game;
 import com.bigtobster.pgnextractalt.chess.ChessEvaluator;
 import com.bigtobster.pgnextractalt.chess.ChessPresso;
+import com.bigtobster.pgnextractalt.chess.EvaluationCache;
+import com.bigtobster.pgnextractalt.chess.MachineCorrelationSettings;
+import com.bigtobster.pgnextractalt.uciEngine.SearchLimit;
+import com.bigtobster.pgnextractalt.uciEngine.SearchLimitMode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.shell.core.CommandMarker;
 import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
@@ -22,8 +26,10 @@ import org.springframework.shell.support.util.OsUtils;
 import org.springframework.stereotype.Component;
 
 import javax.naming.OperationNotSupportedException;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 
 /**
  * Spring Shell Command class for Evaluating properties of chess games. Created by Toby Leheup on 15/02/16 for pgn-extract-alt.
@@ -41,6 +47,26 @@ public class EvaluateCommands implements CommandMarker
 	 * The depth option argument key in machine correlation evaluation command
 	 */
 	static final         String DEPTH_OPTION                              = "Depth";
+	/**
+	 * The engine hash option argument key in machine correlation evaluation command
+	 */
+	static final         String ENGINE_HASH_OPTION                        = "EngineHash";
+	/**
+	 * The engine threads option argument key in machine correlation evaluation command
+	 */
+	static final         String ENGINE_THREADS_OPTION                     = "EngineThreads";
+	/**
+	 * The engines option argument key in machine correlation evaluation command
+	 */
+	static final         String ENGINES_OPTION                            = "Engines";
+	/**
+	 * The evaluation cache option argument key in machine correlation evaluation command
+	 */
+	static final         String EVALUATION_CACHE_OPTION                   = "EvaluationCache";
+	/**
+	 * Failure message on giving an evaluation cache file without single search, as only single searches are cached
+	 */
+	static final         String EVALUATION_CACHE_REQUIRES_SINGLE_SEARCH   = "The EvaluationCache parameter may only be given with SingleSearch";
 	/**
 	 * Substring for output on any failed evaluation
 	 */
@@ -50,10 +76,46 @@ public class EvaluateCommands implements CommandMarker
 	 */
 	@SuppressWarnings("DuplicateStringLiteralInspection")
 	static final         String FORCE_OPTION                              = "Force";
+	/**
+	 * The move time option argument key in machine correlation evaluation command
+	 */
+	static final         String MOVE_TIME_OPTION                          = "MoveTime";
+	/**
+	 * The nodes option argument key in machine correlation evaluation command
+	 */
+	static final         String NODES_OPTION                              = "Nodes";
+	/**
+	 * Failure message on giving more than one search limit in place of the depth
+	 */
+	static final         String ONLY_ONE_SEARCH_LIMIT                     = "Only one of the Nodes and MoveTime parameters may be given";
 	/**
 	 * Failure message substring on entering a parameter value less than or equal to 0 when not permitted
 	 */
 	static final         String PARAMETER_MUST_BE_GREATER_THAN_0          = "parameter value must be greater than 0";
+	/**
+	 * Failure message substring on entering a parameter value less than 0 when not permitted
+	 */
+	static final         String PARAMETER_MUST_NOT_BE_NEGATIVE            = "parameter value must not be less than 0";
+	/**
+	 * The journal option argument key in machine correlation evaluation command
+	 */
+	static final         String JOURNAL_OPTION                            = "Journal";
+	/**
+	 * The single search option argument key in machine correlation evaluation command
+	 */
+	static final         String SINGLE_SEARCH_OPTION                      = "SingleSearch";
+	/**
+	 * The stable iterations option argument key in machine correlation evaluation command
+	 */
+	static final         String STABLE_ITERATIONS_OPTION                  = "StableIterations";
+	/**
+	 * The Syzygy path option argument key in machine correlation evaluation command
+	 */
+	static final         String SYZYGY_PATH_OPTION                        = "SyzygyPath";
+	/**
+	 * Message when the evaluation cache file cannot be opened
+	 */
+	static final         String UNABLE_TO_OPEN_EVALUATION_CACHE           = "Unable to open evaluation cache file:";
 	/**
 	 * Message when results cannot be ascertained
 	 */
@@ -109,28 +171,96 @@ public class EvaluateCommands implements CommandMarker
 	 * Handle the interface for evaluating the machine correlation of a game and inserting the evaluated correlation value into the tag for the
 	 * evaluated person for that game
 	 *
-	 * @param depth The minimum depth that the engine must search to before returning a best move
-	 * @param wait  The period that PGN-Extract-Alt will sleep for in ms before polling the UCI engine
-	 * @param force Whether to overwrite existing machine correlation scores
+	 * @param depth               The minimum depth that the engine must search to before returning a best move
+	 * @param wait                Ignored - kept so that existing scripts which pass it still run
+	 * @param force               Whether to overwrite existing machine correlation scores
+	 * @param engines             The number of engines evaluating games at once
+	 * @param engineThreads       The number of search threads given to each engine
+	 * @param engineHash          The size of each engine's hash table in MB
+	 * @param singleSearch        Whether to score each move from a single search per position
+	 * @param evaluationCacheFile The file holding search results kept between runs, or null to keep them only for this run
+	 * @param journalFile         The file recording each game's scores as it is evaluated, or null for none
+	 * @param nodes               The number of nodes each search stops at in place of the depth, or 0 to search to the depth
+	 * @param moveTime            The time in ms each search stops at in place of the depth, or 0 to search to the depth
+	 * @param stableIterations    The number of iterations the best move must stay the same for a search to stop early, or 0 to never stop early
+	 * @param syzygyPath          The Syzygy tablebase directory given to each engine, or null for none
 	 * @return Success message
 	 * @throws java.io.IOException Thrown on unknown engine failure
 	 */
-	@SuppressWarnings({"ProhibitedExceptionDeclared", "FeatureEnvy", "BooleanParameter"})
+	@SuppressWarnings({"ProhibitedExceptionDeclared", "FeatureEnvy", "BooleanParameter", "MethodWithTooManyParameters"})
 	@CliCommand(value = EvaluateCommands.EVALUATE_MACHINE_CORRELATION_COMMAND, help = EvaluateCommands.EVALUATE_MACHINE_CORRELATION_COMMAND_HELP)
 	public String evaluateMachineCorrelation(
 			@CliOption(key = {EvaluateCommands.DEPTH_OPTION}, help = "The minimum depth the engine will search for the best move (default of 10)",
 					   mandatory = false, unspecifiedDefaultValue = "13") final int depth,
-			@CliOption(key = {EvaluateCommands.WAIT_OPTION}, help = "The time period in ms the engine will wait before checking if best move found." +
-																	" Increase value for slower hardware to improve performance.",
+			@CliOption(key = {EvaluateCommands.WAIT_OPTION}, help = "Deprecated and ignored - the engine's output is now read as soon as it is" +
+																	" written. Kept so that existing scripts still run.",
 					   mandatory = false, unspecifiedDefaultValue = "20") final int wait,
 			@SuppressWarnings("DuplicateStringLiteralInspection") @CliOption(key = {EvaluateCommands.FORCE_OPTION},
 																			 help = "Overwrite existing MachineCorrelation scores (default of false)",
 																			 mandatory = false,
-																			 unspecifiedDefaultValue = "false") final boolean force
+																			 unspecifiedDefaultValue = "false") final boolean force,
+			@CliOption(key = {EvaluateCommands.ENGINES_OPTION}, help = "The number of engines to evaluate games with at once (default of 1)",
+					   mandatory = false, unspecifiedDefaultValue = "1") final int engines,
+			@CliOption(key = {EvaluateCommands.ENGINE_THREADS_OPTION}, help = "The number of search threads given to each engine (default of 4)",
+					   mandatory = false, unspecifiedDefaultValue = "4") final int engineThreads,
+			@CliOption(key = {EvaluateCommands.ENGINE_HASH_OPTION}, help = "The size of each engine's hash table in MB (default of 1024)",
+					   mandatory = false, unspecifiedDefaultValue = "1024") final int engineHash,
+			@CliOption(key = {EvaluateCommands.SINGLE_SEARCH_OPTION}, help = "Score each move from a single search per position, keeping the" +
+																			  " engine's hash between moves (default of false)",
+					   mandatory = false, unspecifiedDefaultValue = "false") final boolean singleSearch,
+			@CliOption(key = {EvaluateCommands.EVALUATION_CACHE_OPTION}, help = "A file in which single search results are kept between runs," +
+																				 " so that positions already searched are not searched again",
+					   mandatory = false) final File evaluationCacheFile,
+			@CliOption(key = {EvaluateCommands.JOURNAL_OPTION}, help = "A file in which each game's scores are recorded as soon as it is evaluated." +
+																	   " Rerunning with the same file skips the games already recorded.",
+					   mandatory = false) final File journalFile,
+			@CliOption(key = {EvaluateCommands.NODES_OPTION}, help = "Stop each search after this many nodes in place of the depth, giving every" +
+																	 " position the same cost (default of 0 - search to the depth)",
+					   mandatory = false, unspecifiedDefaultValue = "0") final long nodes,
+			@CliOption(key = {EvaluateCommands.MOVE_TIME_OPTION}, help = "Stop each search after this many ms in place of the depth (default of 0" +
+																		 " - search to the depth)",
+					   mandatory = false, unspecifiedDefaultValue = "0") final int moveTime,
+			@CliOption(key = {EvaluateCommands.STABLE_ITERATIONS_OPTION}, help = "Stop each search early once the best move has stayed the same" +
+																				 " for this many iterations (default of 0 - never stop early)",
+					   mandatory = false, unspecifiedDefaultValue = "0") final int stableIterations,
+			@CliOption(key = {EvaluateCommands.SYZYGY_PATH_OPTION}, help = "The directory of Syzygy endgame tablebases for the engines to use",
+					   mandatory = false) final String syzygyPath
 											) throws Exception
 	{
 		int tagsInsertedNo = 0;
 		String failureDetails = null;
+		if((evaluationCacheFile != null) && ! singleSearch)
+		{
+			failureDetails = EvaluateCommands.EVALUATION_CACHE_REQUIRES_SINGLE_SEARCH;
+		}
+		if((nodes > 0L) && (moveTime > 0))
+		{
+			failureDetails = EvaluateCommands.ONLY_ONE_SEARCH_LIMIT;
+		}
+		if(stableIterations < 0)
+		{
+			failureDetails = EvaluateCommands.STABLE_ITERATIONS_OPTION + EvaluateCommands.SPACE + EvaluateCommands.PARAMETER_MUST_NOT_BE_NEGATIVE;
+		}
+		if(moveTime < 0)
+		{
+			failureDetails = EvaluateCommands.MOVE_TIME_OPTION + EvaluateCommands.SPACE + EvaluateCommands.PARAMETER_MUST_NOT_BE_NEGATIVE;
+		}
+		if(nodes < 0L)
+		{
+			failureDetails = EvaluateCommands.NODES_OPTION + EvaluateCommands.SPACE + EvaluateCommands.PARAMETER_MUST_NOT_BE_NEGATIVE;
+		}
+		if(engineHash <= 0)
+		{
+			failureDetails = EvaluateCommands.ENGINE_HASH_OPTION + EvaluateCommands.SPACE + EvaluateCommands.PARAMETER_MUST_BE_GREATER_THAN_0;
+		}
+		if(engineThreads <= 0)
+		{
+			failureDetails = EvaluateCommands.ENGINE_THREADS_OPTION + EvaluateCommands.SPACE + EvaluateCommands.PARAMETER_MUST_BE_GREATER_THAN_0;
+		}
+		if(engines <= 0)
+		{
+			failureDetails = EvaluateCommands.ENGINES_OPTION + EvaluateCommands.SPACE + EvaluateCommands.PARAMETER_MUST_BE_GREATER_THAN_0;
+		}
 		if(wait <= 0)
 		{
 			failureDetails = EvaluateCommands.WAIT_OPTION + EvaluateCommands.SPACE + EvaluateCommands.PARAMETER_MUST_BE_GREATER_THAN_0;
@@ -139,11 +269,57 @@ public class EvaluateCommands implements CommandMarker
 		{
 			failureDetails = EvaluateCommands.DEPTH_OPTION + EvaluateCommands.SPACE + EvaluateCommands.PARAMETER_MUST_BE_GREATER_THAN_0;
 		}
+		EvaluationCache evaluationCache = null;
+		if((failureDetails == null) && singleSearch)
+		{
+			try
+			{
+				if(evaluationCacheFile == null)
+				{
+					evaluationCache = new EvaluationCache(EvaluationCache.DEFAULT_MEMORY_ENTRIES);
+				}
+				else
+				{
+					evaluationCache = new EvaluationCache(
+							EvaluationCache.DEFAULT_MEMORY_ENTRIES,
+							evaluationCacheFile,
+							EvaluationCache.DEFAULT_DISK_SLOTS
+														 );
+				}
+			}
+			catch(final IOException ioe)
+			{
+				failureDetails = EvaluateCommands.UNABLE_TO_OPEN_EVALUATION_CACHE + EvaluateCommands.SPACE + ioe.getMessage();
+			}
+		}
 		if(failureDetails == null)
 		{
 			try
 			{
-				tagsInsertedNo = ChessEvaluator.evaluateMachineCorrelation(this.commandContext.getChessIO().getGames(), depth, wait, force);
+				final MachineCorrelationSettings settings = new MachineCorrelationSettings(depth);
+				settings.setForce(force);
+				settings.setEngines(engines);
+				settings.setEngineThreads(engineThreads);
+				settings.setEngineHash(engineHash);
+				settings.setSingleSearch(singleSearch);
+				settings.setEvaluationCache(evaluationCache);
+				settings.setJournalFile(journalFile);
+				settings.setSyzygyPath(syzygyPath);
+				if(nodes > 0L)
+				{
+					settings.setSearchLimit(new SearchLimit(SearchLimitMode.NODES, nodes, stableIterations));
+				}
+				else if(moveTime > 0)
+				{
+					settings.setSearchLimit(new SearchLimit(SearchLimitMode.MOVETIME, (long) moveTime, stableIterations));
+				}
+				else
+				{
+					settings.setSearchLimit(new SearchLimit(SearchLimitMode.DEPTH, (long) depth, stableIterations));
+				}
+				final ArrayList<Game> games = this.commandContext.getChessIO().getGames();
+				tagsInsertedNo = ChessEvaluator.evaluateMachineCorrelation(games, settings);
+				this.commandContext.getChessIO().writeTags(games);
 			}
 			catch(final IOException ioe)
 			{
@@ -159,6 +335,13 @@ public class EvaluateCommands implements CommandMarker
 				failureDetails = CommandContext.UNKNOWN_IMPORT_ERROR + OsUtils.LINE_SEPARATOR + CommandContext.NOTIFY_DEV;
 				CommandContext.handleAndThrowSevereError(use, failureDetails);
 			}
+			finally
+			{
+				if(evaluationCache != null)
+				{
+					evaluationCache.flush();
+				}
+			}
 		}
 		if(failureDetails == null)
 		{
@@ -179,9 +362,11 @@ public class EvaluateCommands implements CommandMarker
 	@CliCommand(value = EvaluateCommands.EVALUATE_RESULT_COMMAND, help = EvaluateCommands.EVALUATE_RESULT_COMMAND_HELP)
 	public String evaluateResult()
 	{
-		final int tagsInsertedNo = ChessPresso.evaluateGameResults(this.commandContext.getChessIO().getGames());
+		final ArrayList<Game> games = this.commandContext.getChessIO().getGames();
+		final int tagsInsertedNo = ChessPresso.evaluateGameResults(games);
+		this.commandContext.getChessIO().writeTags(games);
 		boolean allResultsEvaluated = true;
-		for(final Game game : this.commandContext.getChessIO().getGames())
+		for(final Game game : games)
 		{
 			if((game.getResultStr() == null) || game.getResultStr().isEmpty())
 			{
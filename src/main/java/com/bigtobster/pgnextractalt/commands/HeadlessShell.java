@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.commands;
+
+import com.bigtobster.pgnextractalt.chess.ChessIO;
+import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.Converter;
+import org.springframework.shell.core.SimpleParser;
+import org.springframework.shell.event.ParseResult;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The commands of PGN-Extract-Alt without the interactive shell around them. Only the beans of PGN-Extract-Alt and the shell's option converters
+ * are created - there is no terminal, history or banner - and command lines are parsed with the same syntax and option names as the shell.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+final class HeadlessShell
+{
+	@SuppressWarnings("DuplicateStringLiteralInspection")
+	private static final String                       CONVERTERS_PACKAGE = "org.springframework.shell.converters";
+	private static final String                       PLUGIN_CONTEXT     = "classpath:/META-INF/spring/spring-shell-plugin.xml";
+	private final        GenericXmlApplicationContext context;
+	private final        SimpleParser                 parser;
+
+	private HeadlessShell(final GenericXmlApplicationContext context, final SimpleParser parser)
+	{
+		this.context = context;
+		this.parser = parser;
+	}
+
+	/**
+	 * Creates the beans of PGN-Extract-Alt and a parser for their commands
+	 *
+	 * @return The shell, which must be closed once finished with
+	 */
+	static HeadlessShell open()
+	{
+		final GenericXmlApplicationContext context = new GenericXmlApplicationContext();
+		context.load(HeadlessShell.PLUGIN_CONTEXT);
+		new ClassPathBeanDefinitionScanner(context).scan(HeadlessShell.CONVERTERS_PACKAGE);
+		context.refresh();
+		final SimpleParser parser = new SimpleParser();
+		for(final Converter<?> converter : context.getBeansOfType(Converter.class).values())
+		{
+			parser.addConverter(converter);
+		}
+		for(final CommandMarker command : context.getBeansOfType(CommandMarker.class).values())
+		{
+			parser.add(command);
+		}
+		return new HeadlessShell(context, parser);
+	}
+
+	/**
+	 * Destroys the beans of PGN-Extract-Alt
+	 */
+	void close()
+	{
+		this.context.close();
+	}
+
+	/**
+	 * Runs a command line
+	 *
+	 * @param line The command and its options, as typed into the shell
+	 * @return The command's message, empty if it has none, or null if the line could not be parsed as a command
+	 */
+	String execute(final String line)
+	{
+		final ParseResult parseResult = this.parser.parse(line);
+		if(parseResult == null)
+		{
+			return null;
+		}
+		final Object result = ReflectionUtils.invokeMethod(parseResult.getMethod(), parseResult.getInstance(), parseResult.getArguments());
+		return (result == null) ? "" : result.toString();
+	}
+
+	/**
+	 * Getter for the ChessIO bean that the commands import into and export from
+	 *
+	 * @return the ChessIO instance
+	 */
+	ChessIO getChessIO()
+	{
+		return this.context.getBean(ChessIO.class);
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "HeadlessShell{" +
+			   "context=" + this.context +
+			   '}';
+	}
+}
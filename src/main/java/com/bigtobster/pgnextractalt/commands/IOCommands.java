@@ -11,6 +11,10 @@
 package com.bigtobster.pgnextractalt.commands;
 
 import chesspresso.pgn.PGNSyntaxError;
+import com.bigtobster.pgnextractalt.chess.ChessEvaluator;
+import com.bigtobster.pgnextractalt.chess.PGNIndexMismatchException;
+import com.bigtobster.pgnextractalt.filters.DuplicateFilterMode;
+import com.bigtobster.pgnextractalt.filters.HeaderFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.shell.core.CommandMarker;
 import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
@@ -21,6 +25,9 @@ import org.springframework.stereotype.Component;
 
 import javax.activation.UnsupportedDataTypeException;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.logging.Logger;
 
 /**
@@ -31,75 +38,150 @@ import java.util.logging.Logger;
 @Component
 public class IOCommands implements CommandMarker
 {
+	/**
+	 * The string for the Compact option of Import
+	 */
+	static final         String COMPACT_OPTION       = "Compact";
+	/**
+	 * The substring in console on two import options that cannot be combined
+	 */
+	static final         String CONFLICTING_OPTIONS  = "cannot be combined with";
+	/**
+	 * The string for the DuplicateMode option of Stream Duplicates
+	 */
+	static final         String DEDUP_MODE_OPTION    = "DuplicateMode";
+	/**
+	 * The substring in console on streaming a PGN file into itself
+	 */
+	static final         String EXPORT_IS_INPUT      = "ExportPath must not be the same file as FilePath:";
+	/**
+	 * The string for the ExportPath option of Stream
+	 */
+	static final         String EXPORT_PATH_OPTION   = "ExportPath";
 	/**
 	 * The substring in console on any import failure
 	 */
-	static final         String FAILED_EXPORT       = "Failed to export to PGN!";
+	static final         String FAILED_EXPORT        = "Failed to export to PGN!";
 	/**
 	 * The substring in console on any import failure
 	 */
-	static final         String FAILED_IMPORT       = "Failed to import PGN!";
+	static final         String FAILED_IMPORT        = "Failed to import PGN!";
+	/**
+	 * The substring in console on any stream failure
+	 */
+	static final         String FAILED_STREAM        = "Failed to stream PGN!";
 	/**
 	 * The string for the FilePath option of Import
 	 */
-	static final         String FILE_PATH_OPTION    = "FilePath";
+	static final         String FILE_PATH_OPTION     = "FilePath";
+	/**
+	 * The string for the FilterDuplicates option of Stream
+	 */
+	static final         String FILTER_DUPLICATES    = "FilterDuplicates";
+	/**
+	 * The string for the FirstGame option of Import
+	 */
+	static final         String FIRST_GAME_OPTION    = "FirstGame";
 	/**
 	 * The substring for successful export and count of number of imported games
 	 */
-	static final         String GAMES_EXPORTED      = "games exported";
+	static final         String GAMES_EXPORTED       = "games exported";
 	/**
 	 * The substring for successful import and count of number of imported games
 	 */
-	static final         String GAMES_IMPORTED      = "games imported";
+	static final         String GAMES_IMPORTED       = "games imported";
 	/**
 	 * Sub-string of status message
 	 */
-	static final         String GAMES_LOADED        = "games currently loaded";
+	static final         String GAMES_LOADED         = "games currently loaded";
+	/**
+	 * The substring for the count of games skipped on import as filtered out or already seen
+	 */
+	static final         String GAMES_SKIPPED        = "games skipped";
 	/**
 	 * Message on PGN parse syntax failure
 	 */
-	static final         String INVALID_SYNTAX      = "PGN file has invalid syntax";
+	static final         String INVALID_SYNTAX       = "PGN file has invalid syntax";
+	/**
+	 * The string for the LastGame option of Import
+	 */
+	static final         String LAST_GAME_OPTION     = "LastGame";
+	/**
+	 * The string for the Lazy option of Import
+	 */
+	static final         String LAZY_OPTION          = "Lazy";
+	/**
+	 * The string for the MemoryBudget option of Import
+	 */
+	static final         String MEMORY_BUDGET_OPTION = "MemoryBudget";
 	/**
 	 * The substring in console on input not being PGN
 	 */
-	static final         String NOT_A_PGN_FILE      = "Input is not a PGN file!";
+	static final         String NOT_A_PGN_FILE       = "Input is not a PGN file!";
 	/**
 	 * The substring in console on file not found error
 	 */
-	static final         String NO_FILE_AT          = "No file at";
+	static final         String NO_FILE_AT           = "No file at";
 	/**
 	 * The substring for importing a PGN with no read permission
 	 */
-	static final         String PGN_NOT_READABLE    = "PGN file not readable. Check file permissions at";
+	static final         String PGN_NOT_READABLE     = "PGN file not readable. Check file permissions at";
 	/**
 	 * The substring for export  a PGN with no read or write permission
 	 */
-	static final         String PGN_NOT_WRITABLE    = "PGN file is either not readable or not writable. Check file permissions at";
+	static final         String PGN_NOT_WRITABLE     = "PGN file is either not readable or not writable. Check file permissions at";
+	/**
+	 * The string for the PrestartEngine option of Import
+	 */
+	static final         String PRESTART_OPTION      = "PrestartEngine";
+	/**
+	 * The string for the SeenGames option of Import
+	 */
+	static final         String SEEN_GAMES_OPTION    = "SeenGames";
 	/**
 	 * The substring in console on any successful export
 	 */
-	static final         String SUCCESSFUL_EXPORT   = "Successfully exported PGN file!";
+	static final         String SUCCESSFUL_EXPORT    = "Successfully exported PGN file!";
 	/**
 	 * The substring in console on any successful import
 	 */
-	static final         String SUCCESSFUL_IMPORT   = "Successfully imported PGN file!";
+	static final         String SUCCESSFUL_IMPORT    = "Successfully imported PGN file!";
 	/**
 	 * The string in console on successful reset of PGN-Extract-Alt
 	 */
-	static final         String SUCCESSFUL_RESET    = "PGN-Extract-Alt Successfully Reset!";
-	private static final String CANNOT_CREATE_FILE  = "Cannot write to file at";
-	private static final String EXPORT_COMMAND      = "export";
-	private static final String EXPORT_COMMAND_HELP = "Export loaded data as a PGN file. Available on successful import.";
-	private static final String IMPORT_COMMAND      = "import";
-	private static final String IMPORT_COMMAND_HELP = "Import a PGN file for processing";
+	static final         String SUCCESSFUL_RESET     = "PGN-Extract-Alt Successfully Reset!";
+	/**
+	 * The substring in console on any successful stream
+	 */
+	static final         String SUCCESSFUL_STREAM    = "Successfully streamed PGN file!";
+	/**
+	 * The string for the Threads option of Import
+	 */
+	static final         String THREADS_OPTION       = "Threads";
+	private static final long   BYTES_PER_MEGABYTE   = 1024L * 1024L;
+	private static final String CANNOT_CREATE_FILE   = "Cannot write to file at";
+	private static final String EXPORT_COMMAND       = "export";
+	private static final String EXPORT_COMMAND_HELP  = "Export loaded data as a PGN file. Available on successful import.";
+	private static final String IMPORT_COMMAND       = "import";
+	private static final String IMPORT_COMMAND_HELP  = "Import a PGN file for processing";
+	private static final String IMPORT_FILTER_PREFIX = "Leave out ";
+	private static final String IMPORT_FILTER_SUFFIX = ", judged from the tags so their moves are never parsed. Cannot be combined " +
+													   "with Threads or game ranges.";
+	private static final String LIST_SEPARATOR       = ",";
 	@SuppressWarnings("UnusedDeclaration")
-	private static final Logger LOGGER              = Logger.getLogger(IOCommands.class.getName());
-	private static final String NO_CHESS_GAMES      = "Imported file appears to contain 0 chess games";
-	private static final String RESET_COMMAND       = "reset";
-	private static final String RESET_COMMAND_HELP  = "Reset PGN-Extract-Alt - WARNING: Will lose all changes. Available on successful import.";
-	private static final String SPACE               = " ";
-	private static final String STATUS_COMMAND      = "status";
-	private static final String STATUS_COMMAND_HELP = "Displays the number of currently loaded games";
+	private static final Logger LOGGER               = Logger.getLogger(IOCommands.class.getName());
+	private static final String NO_CHESS_GAMES       = "Imported file appears to contain 0 chess games";
+	private static final String RESET_COMMAND        = "reset";
+	private static final String RESET_COMMAND_HELP   = "Reset PGN-Extract-Alt - WARNING: Will lose all changes. Available on successful import.";
+	private static final String SPACE                = " ";
+	private static final String STATUS_COMMAND       = "status";
+	private static final String STATUS_COMMAND_HELP  = "Displays the number of currently loaded games";
+	private static final String STREAM_COMMAND       = "stream";
+	private static final String STREAM_COMMAND_HELP  = "Filter a PGN file straight into another PGN file without importing it. Suitable for files too large " +
+													   "to import. Always available.";
+	private static final String STREAM_DUPS_COMMAND  = "stream-duplicates";
+	private static final String STREAM_DUPS_HELP     = "Filter, isolate or purge the duplicates of a PGN file straight into another PGN file. " +
+													   "Duplicates are found on disk so files larger than memory can be filtered. Always available.";
 	@SuppressWarnings("InstanceVariableMayNotBeInitialized")
 	@Autowired
 	private CommandContext commandContext;
@@ -148,6 +230,28 @@ public class IOCommands implements CommandMarker
 		return IOCommands.STATUS_COMMAND;
 	}
 
+	/**
+	 * Getter for Stream Command String
+	 *
+	 * @return String Stream Command
+	 */
+	@SuppressWarnings({"StaticMethodOnlyUsedInOneClass", "MethodReturnAlwaysConstant"})
+	public static String getStreamCommand()
+	{
+		return IOCommands.STREAM_COMMAND;
+	}
+
+	/**
+	 * Getter for Stream Duplicates Command String
+	 *
+	 * @return String Stream Duplicates Command
+	 */
+	@SuppressWarnings({"StaticMethodOnlyUsedInOneClass", "MethodReturnAlwaysConstant"})
+	public static String getStreamDuplicatesCommand()
+	{
+		return IOCommands.STREAM_DUPS_COMMAND;
+	}
+
 	/**
 	 * Describes when "import" command is available
 	 *
@@ -161,6 +265,99 @@ public class IOCommands implements CommandMarker
 		return true;
 	}
 
+	/**
+	 * Describes when "stream" and "stream-duplicates" commands are available
+	 *
+	 * @return boolean Availability (always available)
+	 */
+	@SuppressWarnings({"MethodReturnAlwaysConstant", "SameReturnValue"})
+	@CliAvailabilityIndicator({IOCommands.STREAM_COMMAND, IOCommands.STREAM_DUPS_COMMAND})
+	public static boolean isStreamAvailable()
+	{
+		//always available
+		return true;
+	}
+
+	private static String findImportConflict(final String indexedOption, final int threads, final Integer firstGame, final Integer lastGame)
+	{
+		if(indexedOption == null)
+		{
+			return null;
+		}
+		final String conflictingOption;
+		if(threads != 1)
+		{
+			conflictingOption = IOCommands.THREADS_OPTION;
+		}
+		else if(firstGame != null)
+		{
+			conflictingOption = IOCommands.FIRST_GAME_OPTION;
+		}
+		else if(lastGame != null)
+		{
+			conflictingOption = IOCommands.LAST_GAME_OPTION;
+		}
+		else
+		{
+			return null;
+		}
+		return indexedOption + IOCommands.SPACE + IOCommands.CONFLICTING_OPTIONS + IOCommands.SPACE + conflictingOption;
+	}
+
+	@SuppressWarnings({"BooleanParameter", "MethodWithTooManyParameters"})
+	private static String getIndexedOption(
+			final boolean isLazy,
+			final File seenGames,
+			final boolean isWhiteWinFiltered,
+			final boolean isBlackWinFiltered,
+			final boolean isDrawFiltered,
+			final boolean isUnresolvedFiltered
+										  )
+	{
+		if(isLazy)
+		{
+			return IOCommands.LAZY_OPTION;
+		}
+		if(seenGames != null)
+		{
+			return IOCommands.SEEN_GAMES_OPTION;
+		}
+		if(isWhiteWinFiltered)
+		{
+			return ResultFilterCommands.FILTER_WHITE_WINS_OPTION;
+		}
+		if(isBlackWinFiltered)
+		{
+			return ResultFilterCommands.FILTER_BLACK_WINS_OPTION;
+		}
+		if(isDrawFiltered)
+		{
+			return ResultFilterCommands.FILTER_DRAWS_OPTION;
+		}
+		return isUnresolvedFiltered ? ResultFilterCommands.FILTER_UNRESOLVED_OPTION : null;
+	}
+
+	private static PrintWriter openExportWriter(final File file) throws FileNotFoundException
+	{
+		//PGN files are ISO-8859-1 text, so raw game text read from a PGN file is written back byte for byte
+		return new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.ISO_8859_1)));
+	}
+
+	private static void prepareExportFile(final File file) throws IOException
+	{
+		if(! file.exists())
+		{
+			//noinspection ResultOfMethodCallIgnored
+			file.getParentFile().mkdirs();
+			//noinspection ResultOfMethodCallIgnored
+			file.createNewFile();
+		}
+		if(! file.canRead() || ! file.canWrite())
+		{
+			throw new InvalidObjectException(IOCommands.PGN_NOT_WRITABLE + IOCommands.SPACE + file.getAbsolutePath());
+		}
+	}
+
 	/**
 	 * Exports the currently loaded list of games to a text PGN file
 	 *
@@ -178,19 +375,8 @@ public class IOCommands implements CommandMarker
 		final String filePath = file.getAbsolutePath();
 		try
 		{
-			if(! file.exists())
-			{
-				//noinspection ResultOfMethodCallIgnored
-				file.getParentFile().mkdirs();
-				//noinspection ResultOfMethodCallIgnored
-				file.createNewFile();
-			}
-			if(! file.canRead() || ! file.canWrite())
-			{
-				//noinspection ThrowCaughtLocally
-				throw new InvalidObjectException(IOCommands.PGN_NOT_WRITABLE + IOCommands.SPACE + filePath);
-			}
-			printWriter = new PrintWriter(file);
+			IOCommands.prepareExportFile(file);
+			printWriter = IOCommands.openExportWriter(file);
 			try
 			{
 				this.commandContext.getChessIO().exportPGN(printWriter);
@@ -216,7 +402,7 @@ public class IOCommands implements CommandMarker
 		{
 			return IOCommands.SUCCESSFUL_EXPORT
 				   + IOCommands.SPACE
-				   + this.commandContext.getChessIO().getGames().size()
+				   + this.commandContext.getChessIO().getGameCount()
 				   + IOCommands.SPACE
 				   + IOCommands.GAMES_EXPORTED;
 		}
@@ -226,20 +412,101 @@ public class IOCommands implements CommandMarker
 	/**
 	 * Imports a text PGN file to a list of Chesspresso games
 	 *
-	 * @param file The file to be imported
+	 * @param file      The file to be imported
+	 * @param threads   The number of threads to parse the file with
+	 * @param firstGame The number of the first game to import, or null to import from the start of the file
+	 * @param lastGame  The number of the last game to import, or null to import to the end of the file
+	 * @param isLazy    Whether to read only the tags of each game, leaving the moves to be parsed when needed
+	 * @param isCompact    Whether to pack the imported games into a compact store
+	 * @param memoryBudget The megabytes of direct memory for an off-heap compact store, or null to keep games on the heap
+	 * @param seenGames    The Bloom filter file of an archive of games seen in earlier imports, or null to import every game
+	 * @param isPrestart   Whether to start an engine in the background, ready for a machine correlation evaluation
+	 * @param isWhiteWinFiltered   Whether to leave out white wins, judged from the tags before the moves are parsed
+	 * @param isBlackWinFiltered   Whether to leave out black wins, judged from the tags before the moves are parsed
+	 * @param isDrawFiltered       Whether to leave out draws, judged from the tags before the moves are parsed
+	 * @param isUnresolvedFiltered Whether to leave out unresolved results, judged from the tags before the moves are parsed
 	 * @return Successful import of PGN file
 	 * @throws java.io.IOException Crashes on unknown failure to open PGN file
 	 */
-	@SuppressWarnings({"FeatureEnvy", "ProhibitedExceptionDeclared"})
+	@SuppressWarnings({"FeatureEnvy", "ProhibitedExceptionDeclared", "BooleanParameter", "MethodWithTooManyParameters", "OverlyLongMethod"})
 	@CliCommand(value = IOCommands.IMPORT_COMMAND, help = IOCommands.IMPORT_COMMAND_HELP)
 	public String importPGN(
-			@CliOption(key = {IOCommands.FILE_PATH_OPTION}, help = "Path to the PGN file to be imported", mandatory = true) final File file
+			@CliOption(key = {IOCommands.FILE_PATH_OPTION}, help = "Path to the PGN file to be imported", mandatory = true) final File file,
+			@CliOption(key = {IOCommands.THREADS_OPTION}, help = "The number of threads to parse the file with (default of 1). Increase for large " +
+																 "files on machines with many cores.",
+					   mandatory = false, unspecifiedDefaultValue = "1") final int threads,
+			@CliOption(key = {IOCommands.FIRST_GAME_OPTION}, help = "The number of the first game to import, counting from 1. The file's index " +
+																	"is used to seek straight to the game.", mandatory = false) final Integer firstGame,
+			@CliOption(key = {IOCommands.LAST_GAME_OPTION}, help = "The number of the last game to import. The file's index is used to seek " +
+																   "straight to the game.", mandatory = false) final Integer lastGame,
+			@CliOption(key = {IOCommands.LAZY_OPTION}, help = "Read only the tags of each game. Moves are parsed when first needed, so tag and " +
+															  "result work on large files is much faster. Cannot be combined with SeenGames, " +
+															  "Threads or game ranges.",
+					   mandatory = false, unspecifiedDefaultValue = "false") final boolean isLazy,
+			@CliOption(key = {IOCommands.COMPACT_OPTION}, help = "Pack the imported games into a compact store to cut memory use. Games with " +
+																 "variations or comments are kept in full.",
+					   mandatory = false, unspecifiedDefaultValue = "false") final boolean isCompact,
+			@CliOption(key = {IOCommands.MEMORY_BUDGET_OPTION}, help = "Pack the imported games into a compact store held off the Java heap, " +
+																	   "using up to this many megabytes of memory before spilling to disk.",
+					   mandatory = false) final Integer memoryBudget,
+			@CliOption(key = {IOCommands.SEEN_GAMES_OPTION}, help = "Skip games already recorded in this archive of seen games, then record the " +
+																	"imported games in it. Created if it doesn't exist. Cannot be combined " +
+																	"with Threads or game ranges.",
+					   mandatory = false) final File seenGames,
+			@CliOption(key = {IOCommands.PRESTART_OPTION}, help = "Start an engine in the background once imported, so that a following " +
+																  "evaluate-machine-correlation with the default engine settings starts at " +
+																  "once.",
+					   mandatory = false, unspecifiedDefaultValue = "false") final boolean isPrestart,
+			@CliOption(key = {ResultFilterCommands.FILTER_WHITE_WINS_OPTION}, help = IOCommands.IMPORT_FILTER_PREFIX + "white wins" +
+																					 IOCommands.IMPORT_FILTER_SUFFIX, mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isWhiteWinFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_BLACK_WINS_OPTION}, help = IOCommands.IMPORT_FILTER_PREFIX + "black wins" +
+																					 IOCommands.IMPORT_FILTER_SUFFIX, mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isBlackWinFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_DRAWS_OPTION}, help = IOCommands.IMPORT_FILTER_PREFIX + "draws" +
+																				IOCommands.IMPORT_FILTER_SUFFIX, mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isDrawFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_UNRESOLVED_OPTION}, help = IOCommands.IMPORT_FILTER_PREFIX + "unresolved results" +
+																					 IOCommands.IMPORT_FILTER_SUFFIX, mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isUnresolvedFiltered
 						   ) throws Exception
 	{
 		String failureDetails = null;
+		Integer skippedGames = null;
 		final String filePath = file.getPath();
+		final ArrayList<HeaderFilter> headerFilters = CommandContext.createHeaderFilters(
+				isWhiteWinFiltered,
+				isBlackWinFiltered,
+				isDrawFiltered,
+				isUnresolvedFiltered
+																						);
 		try
 		{
+			if(threads <= 0)
+			{
+				return IOCommands.FAILED_IMPORT + IOCommands.SPACE + IOCommands.THREADS_OPTION + IOCommands.SPACE +
+					   EvaluateCommands.PARAMETER_MUST_BE_GREATER_THAN_0;
+			}
+			if((memoryBudget != null) && (memoryBudget <= 0))
+			{
+				return IOCommands.FAILED_IMPORT + IOCommands.SPACE + IOCommands.MEMORY_BUDGET_OPTION + IOCommands.SPACE +
+					   EvaluateCommands.PARAMETER_MUST_BE_GREATER_THAN_0;
+			}
+			if(isLazy && (seenGames != null))
+			{
+				return IOCommands.FAILED_IMPORT + IOCommands.SPACE + IOCommands.LAZY_OPTION + IOCommands.SPACE + IOCommands.CONFLICTING_OPTIONS +
+					   IOCommands.SPACE + IOCommands.SEEN_GAMES_OPTION;
+			}
+			final String conflict = IOCommands.findImportConflict(
+					IOCommands.getIndexedOption(isLazy, seenGames, isWhiteWinFiltered, isBlackWinFiltered, isDrawFiltered, isUnresolvedFiltered),
+					threads,
+					firstGame,
+					lastGame
+																 );
+			if(conflict != null)
+			{
+				return IOCommands.FAILED_IMPORT + IOCommands.SPACE + conflict;
+			}
 			if(! file.canRead() && file.exists())
 			{
 				//noinspection ThrowCaughtLocally
@@ -247,7 +514,44 @@ public class IOCommands implements CommandMarker
 			}
 			try
 			{
-				this.commandContext.getChessIO().importPGN(file);
+				if(isLazy)
+				{
+					final int rejectedGames = this.commandContext.getChessIO().importPGNLazily(file, headerFilters);
+					skippedGames = headerFilters.isEmpty() ? null : rejectedGames;
+				}
+				else if(seenGames != null)
+				{
+					skippedGames = this.commandContext.getChessIO().importUnseenPGN(file, seenGames, headerFilters);
+				}
+				else if(! headerFilters.isEmpty())
+				{
+					skippedGames = this.commandContext.getChessIO().importPGN(file, headerFilters);
+				}
+				else if((firstGame == null) && (lastGame == null))
+				{
+					this.commandContext.getChessIO().importPGN(file, threads);
+				}
+				else
+				{
+					this.commandContext.getChessIO().importPGN(
+							file,
+							(firstGame == null) ? 1 : firstGame,
+							(lastGame == null) ? Integer.MAX_VALUE : lastGame,
+							threads
+															  );
+				}
+				if(memoryBudget != null)
+				{
+					this.commandContext.getChessIO().compact((long) memoryBudget * IOCommands.BYTES_PER_MEGABYTE);
+				}
+				else if(isCompact)
+				{
+					this.commandContext.getChessIO().compact();
+				}
+			}
+			catch(final InvalidParameterException ipe)
+			{
+				failureDetails = ipe.getMessage();
 			}
 			catch(final UnsupportedDataTypeException ignored)
 			{
@@ -271,17 +575,26 @@ public class IOCommands implements CommandMarker
 		{
 			failureDetails = ioe.getMessage();
 		}
-		if(this.commandContext.getChessIO().getGames().size() < 0)
+		if(this.commandContext.getChessIO().getGameCount() < 0)
 		{
 			failureDetails = IOCommands.NO_CHESS_GAMES;
 		}
 		if(failureDetails == null)
 		{
-			return IOCommands.SUCCESSFUL_IMPORT
-				   + IOCommands.SPACE
-				   + this.commandContext.getChessIO().getGames().size()
-				   + IOCommands.SPACE
-				   + IOCommands.GAMES_IMPORTED;
+			if(isPrestart)
+			{
+				ChessEvaluator.prestartEngines();
+			}
+			final String importedGames = IOCommands.SUCCESSFUL_IMPORT
+										 + IOCommands.SPACE
+										 + this.commandContext.getChessIO().getGameCount()
+										 + IOCommands.SPACE
+										 + IOCommands.GAMES_IMPORTED;
+			if(skippedGames == null)
+			{
+				return importedGames;
+			}
+			return importedGames + IOCommands.LIST_SEPARATOR + IOCommands.SPACE + skippedGames + IOCommands.SPACE + IOCommands.GAMES_SKIPPED;
 		}
 		return IOCommands.FAILED_IMPORT + IOCommands.SPACE + failureDetails;
 	}
@@ -342,7 +655,201 @@ public class IOCommands implements CommandMarker
 	@CliCommand(value = IOCommands.STATUS_COMMAND, help = IOCommands.STATUS_COMMAND_HELP)
 	public String status()
 	{
-		return this.commandContext.getChessIO().getGames().size() + IOCommands.SPACE + IOCommands.GAMES_LOADED;
+		return this.commandContext.getChessIO().getGameCount() + IOCommands.SPACE + IOCommands.GAMES_LOADED;
+	}
+
+	/**
+	 * Streams a text PGN file through the requested filters and into another text PGN file. The games are never imported.
+	 *
+	 * @param file                 The PGN file to be streamed
+	 * @param exportFile           The PGN file that surviving games are written to
+	 * @param isDuplicateFiltered  Whether to filter out duplicate games
+	 * @param isWhiteWinFiltered   Whether to filter out white wins
+	 * @param isBlackWinFiltered   Whether to filter out black wins
+	 * @param isDrawFiltered       Whether to filter out draws
+	 * @param isUnresolvedFiltered Whether to filter out unresolved results
+	 * @param greaterThan          Optional. Games with a plycount greater than this (and less than LessThan) are filtered out.
+	 * @param lessThan             Optional. Games with a plycount less than this (and greater than GreaterThan) are filtered out.
+	 * @return Successful/failure message
+	 * @throws java.io.IOException Crashes on unknown failure to open PGN file
+	 */
+	@SuppressWarnings({"FeatureEnvy", "ProhibitedExceptionDeclared", "BooleanParameter", "MethodWithTooManyParameters", "OverlyLongMethod"})
+	@CliCommand(value = IOCommands.STREAM_COMMAND, help = IOCommands.STREAM_COMMAND_HELP)
+	public String streamPGN(
+			@CliOption(key = {IOCommands.FILE_PATH_OPTION}, help = "Path to the PGN file to be streamed", mandatory = true) final File file,
+			@CliOption(key = {IOCommands.EXPORT_PATH_OPTION}, help = "Path (including file name) for the filtered PGN. File will be " +
+																	 "created if it doesn't exist.", mandatory = true) final File exportFile,
+			@CliOption(key = {IOCommands.FILTER_DUPLICATES}, help = "Filter duplicate games in output", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isDuplicateFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_WHITE_WINS_OPTION}, help = "Filter white wins in output", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isWhiteWinFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_BLACK_WINS_OPTION}, help = "Filter black wins in output", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isBlackWinFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_DRAWS_OPTION}, help = "Filter draws in output", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isDrawFiltered,
+			@CliOption(key = {ResultFilterCommands.FILTER_UNRESOLVED_OPTION}, help = "Filter unresolved results in output", mandatory = false,
+					   unspecifiedDefaultValue = "false") final boolean isUnresolvedFiltered,
+			@CliOption(key = {PlycountFilterCommands.GREATER_THAN_OPTION}, help = "Filter games with a plycount greater than X",
+					   mandatory = false) final Integer greaterThan,
+			@CliOption(key = {PlycountFilterCommands.LESS_THAN_OPTION}, help = "Filter games with a plycount less than X",
+					   mandatory = false) final Integer lessThan
+							) throws Exception
+	{
+		String failureDetails = null;
+		int streamedGames = 0;
+		final String filePath = file.getPath();
+		try
+		{
+			if(! file.canRead() && file.exists())
+			{
+				//noinspection ThrowCaughtLocally
+				throw new InvalidObjectException(IOCommands.PGN_NOT_READABLE + IOCommands.SPACE + filePath);
+			}
+			if(! file.exists())
+			{
+				//noinspection ThrowCaughtLocally
+				throw new FileNotFoundException(filePath);
+			}
+			if(file.getCanonicalFile().equals(exportFile.getCanonicalFile()))
+			{
+				//noinspection ThrowCaughtLocally
+				throw new InvalidObjectException(IOCommands.EXPORT_IS_INPUT + IOCommands.SPACE + filePath);
+			}
+			IOCommands.prepareExportFile(exportFile);
+			final PrintWriter printWriter = IOCommands.openExportWriter(exportFile);
+			try
+			{
+				streamedGames = this.commandContext.getChessIO().streamPGN(
+						file,
+						printWriter,
+						CommandContext.createFilterChain(
+								isDuplicateFiltered,
+								isWhiteWinFiltered,
+								isBlackWinFiltered,
+								isDrawFiltered,
+								isUnresolvedFiltered,
+								greaterThan,
+								lessThan
+														)
+																		   );
+			}
+			catch(final UnsupportedDataTypeException ignored)
+			{
+				failureDetails = IOCommands.NOT_A_PGN_FILE;
+			}
+			catch(final PGNSyntaxError ignored)
+			{
+				failureDetails = IOCommands.INVALID_SYNTAX;
+			}
+			finally
+			{
+				printWriter.close();
+			}
+		}
+		catch(final FileNotFoundException ignored)
+		{
+			failureDetails = IOCommands.NO_FILE_AT + IOCommands.SPACE + filePath;
+		}
+		catch(final InvalidObjectException ioe)
+		{
+			failureDetails = ioe.getMessage();
+		}
+		catch(final IOException ioe)
+		{
+			failureDetails = CommandContext.UNKNOWN_IMPORT_ERROR + OsUtils.LINE_SEPARATOR + CommandContext.NOTIFY_DEV;
+			CommandContext.handleAndThrowSevereError(ioe, failureDetails);
+		}
+		if(failureDetails == null)
+		{
+			return IOCommands.SUCCESSFUL_STREAM
+				   + IOCommands.SPACE
+				   + streamedGames
+				   + IOCommands.SPACE
+				   + IOCommands.GAMES_EXPORTED;
+		}
+		return IOCommands.FAILED_STREAM + IOCommands.SPACE + failureDetails;
+	}
+
+	/**
+	 * Streams the games of a text PGN file that survive a duplicate filter into another text PGN file. The games are never imported and the
+	 * duplicates are found on disk.
+	 *
+	 * @param file            The PGN file to be streamed
+	 * @param exportFile      The PGN file that surviving games are written to
+	 * @param mode            Whether to filter, isolate or purge the duplicates
+	 * @param fingerprintTags Comma separated tags to compare along with the moves or null to compare the moves alone
+	 * @return Successful/failure message
+	 * @throws java.io.IOException Crashes on unknown failure to open PGN file
+	 */
+	@SuppressWarnings({"FeatureEnvy", "ProhibitedExceptionDeclared"})
+	@CliCommand(value = IOCommands.STREAM_DUPS_COMMAND, help = IOCommands.STREAM_DUPS_HELP)
+	public String streamDuplicates(
+			@CliOption(key = {IOCommands.FILE_PATH_OPTION}, help = "Path to the PGN file to be streamed", mandatory = true) final File file,
+			@CliOption(key = {IOCommands.EXPORT_PATH_OPTION}, help = "Path (including file name) for the filtered PGN. File will be " +
+																	 "created if it doesn't exist.", mandatory = true) final File exportFile,
+			@CliOption(key = {IOCommands.DEDUP_MODE_OPTION}, help = "FILTER, ISOLATE or PURGE the duplicates", mandatory = false,
+					   unspecifiedDefaultValue = "FILTER") final DuplicateFilterMode mode,
+			@CliOption(key = {DuplicateFilterCommands.FINGERPRINT_TAGS_OPTION}, help = DuplicateFilterCommands.FINGERPRINT_TAGS_HELP,
+					   mandatory = false) final String fingerprintTags
+								   ) throws Exception
+	{
+		String failureDetails = null;
+		int streamedGames = 0;
+		final String filePath = file.getPath();
+		try
+		{
+			if(! file.canRead() && file.exists())
+			{
+				//noinspection ThrowCaughtLocally
+				throw new InvalidObjectException(IOCommands.PGN_NOT_READABLE + IOCommands.SPACE + filePath);
+			}
+			if(! file.exists())
+			{
+				//noinspection ThrowCaughtLocally
+				throw new FileNotFoundException(filePath);
+			}
+			if(file.getCanonicalFile().equals(exportFile.getCanonicalFile()))
+			{
+				//noinspection ThrowCaughtLocally
+				throw new InvalidObjectException(IOCommands.EXPORT_IS_INPUT + IOCommands.SPACE + filePath);
+			}
+			IOCommands.prepareExportFile(exportFile);
+			streamedGames = this.commandContext.getChessIO().streamDuplicates(file, exportFile, mode, CommandContext.parseTagKeys(fingerprintTags));
+		}
+		catch(final UnsupportedDataTypeException ignored)
+		{
+			failureDetails = IOCommands.NOT_A_PGN_FILE;
+		}
+		catch(final PGNSyntaxError ignored)
+		{
+			failureDetails = IOCommands.INVALID_SYNTAX;
+		}
+		catch(final FileNotFoundException ignored)
+		{
+			failureDetails = IOCommands.NO_FILE_AT + IOCommands.SPACE + filePath;
+		}
+		catch(final InvalidObjectException ioe)
+		{
+			failureDetails = ioe.getMessage();
+		}
+		catch(final PGNIndexMismatchException mismatchException)
+		{
+			failureDetails = mismatchException.getMessage();
+		}
+		catch(final IOException ioe)
+		{
+			failureDetails = CommandContext.UNKNOWN_IMPORT_ERROR + OsUtils.LINE_SEPARATOR + CommandContext.NOTIFY_DEV;
+			CommandContext.handleAndThrowSevereError(ioe, failureDetails);
+		}
+		if(failureDetails == null)
+		{
+			return IOCommands.SUCCESSFUL_STREAM
+				   + IOCommands.SPACE
+				   + streamedGames
+				   + IOCommands.SPACE
+				   + IOCommands.GAMES_EXPORTED;
+		}
+		return IOCommands.FAILED_STREAM + IOCommands.SPACE + failureDetails;
 	}
 
 	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
@@ -36,6 +36,10 @@ public class PlycountFilterCommands implements CommandMarker
 	 * Option for filtering games with a plycount less than X
 	 */
 	static final         String LESS_THAN_OPTION                = "LessThan";
+	/**
+	 * Option for reading plycounts from the PlyCount tag
+	 */
+	static final         String TRUST_PLY_COUNT_OPTION          = "TrustPlyCount";
 	private static final char   HYPHEN                          = '-';
 	private static final String PLYCOUNT_FILTER_SUBCOMMAND      = "plycount";
 	private static final String PLYCOUNT_FILTER_SUBCOMMAND_HELP = "Filter imported games by their plycount. Available on successful import.";
@@ -61,8 +65,10 @@ public class PlycountFilterCommands implements CommandMarker
 	 *
 	 * @param greaterThan Optional parameter. The plycount which, if the game is greater, will cause that game to be removed.
 	 * @param lessThan    The plycount which, if the game is smaller, will cause that game to be removed.
+	 * @param isTrusted   Whether to take each game's PlyCount tag as its plycount where the tag holds a count
 	 * @return Successful/failure message
 	 */
+	@SuppressWarnings("BooleanParameter")
 	@CliCommand(value = PlycountFilterCommands.PLYCOUNT_FILTER_SUBCOMMAND + PlycountFilterCommands.HYPHEN + CommandContext.FILTER_SUBCOMMAND,
 				help = PlycountFilterCommands.PLYCOUNT_FILTER_SUBCOMMAND_HELP)
 	public String filterByPlycount(
@@ -71,12 +77,17 @@ public class PlycountFilterCommands implements CommandMarker
 					   mandatory = true) final int greaterThan,
 			@CliOption(key = {PlycountFilterCommands.LESS_THAN_OPTION},
 					   help = "Filter games with a plycount less than X",
-					   mandatory = true) final int lessThan
+					   mandatory = true) final int lessThan,
+			@CliOption(key = {PlycountFilterCommands.TRUST_PLY_COUNT_OPTION},
+					   help = "Take each game's PlyCount tag as its plycount, so that lazily imported games are filtered without their moves " +
+							  "being read",
+					   mandatory = false, unspecifiedDefaultValue = "false") final boolean isTrusted
 								  )
 	{
 		final PlycountFilter plycountFilter = new PlycountFilter();
 		plycountFilter.setGreaterThan(greaterThan);
 		plycountFilter.setLessThan(lessThan);
+		plycountFilter.setPlyCountTagTrusted(isTrusted);
 
 		final ChessFilterer chessFilterer = this.commandContext.getChessFilterer();
 		chessFilterer.loadFilter(plycountFilter);
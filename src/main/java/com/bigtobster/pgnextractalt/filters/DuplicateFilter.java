@@ -14,66 +14,117 @@ import chesspresso.game.Game;
 
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
- * Filter that removes duplicate games Created by Toby Leheup on 08/02/16 for pgn-extract-alt.
+ * Filter that removes duplicate games. Games are compared by a 128 bit fingerprint of their moves and, optionally, a set of normalised tags, so
+ * separately loaded copies of a game are recognised as duplicates of each other. Created by Toby Leheup on 08/02/16 for pgn-extract-alt.
+ * <p>
+ * In the Filter mode the games can be split into partitions. Each partition's copy of the filter keeps the first occurrence of each game within
+ * its partition and remembers the fingerprints of the games it kept, which are then checked against the games of every earlier partition.
  *
  * @author Toby Leheup (Bigtobster)
  */
-public class DuplicateFilter implements Filter
+public class DuplicateFilter implements PartitionableFilter
 {
 	private static final String              FILTER_NO_MODE_ERROR = "Attempting to filter without a mode!";
+	private static final int                 PARTITION_CAPACITY   = 64;
+	private static final String              STREAM_MODE_ERROR    = "Only the Filter mode can decide on games one at a time!";
+	private              GameFingerprint     fingerprint          = new GameFingerprint();
 	private              DuplicateFilterMode mode                 = null;
+	private              int                 retainedCount        = 0;
+	private              long[]              retainedFingerprints = null;
+	private final        FingerprintSet      streamedGames        = new FingerprintSet(100);
 
-	private static ArrayList<Game> filterDuplicates(final ArrayList<Game> games)
+	private ArrayList<Game> filterDuplicates(final ArrayList<Game> games)
 	{
-		final HashMap<Integer, Game> gamesMap = new HashMap<Integer, Game>(games.size());
+		final FingerprintSet seenGames = new FingerprintSet(games.size());
+		final ArrayList<Game> uniqueGames = new ArrayList<Game>(games.size());
 		for(final Game game : games)
 		{
-			gamesMap.put(game.hashCode(), game);
+			this.fingerprint.compute(game);
+			if(seenGames.add(this.fingerprint))
+			{
+				uniqueGames.add(game);
+			}
 		}
-		return new ArrayList<Game>(gamesMap.values());
+		return uniqueGames;
 	}
 
-	private static ArrayList<Game> isolateDuplicates(final ArrayList<Game> games)
+	private void retainFingerprint()
 	{
-		final HashMap<Integer, Game> gamesMap = new HashMap<Integer, Game>(games.size());
-		final ArrayList<Game> duplicatedGames = new ArrayList<Game>(games.size());
-		final HashMap<Integer, Game> duplicatedGamesMap = new HashMap<Integer, Game>(games.size());
-		for(final Game game : games)
+		if(this.retainedCount * 2 == this.retainedFingerprints.length)
 		{
-			if(gamesMap.containsKey(game.hashCode()))
+			this.retainedFingerprints = Arrays.copyOf(this.retainedFingerprints, this.retainedFingerprints.length * 2);
+		}
+		this.retainedFingerprints[this.retainedCount * 2] = this.fingerprint.getHigh();
+		this.retainedFingerprints[this.retainedCount * 2 + 1] = this.fingerprint.getLow();
+		this.retainedCount++;
+	}
+
+	private ArrayList<Game> selectByDuplication(final ArrayList<Game> games, final boolean keepDuplicated)
+	{
+		//Two passes - the fingerprints are kept in a flat array so the second pass does not have to replay every game
+		final long[] fingerprints = new long[games.size() * 2];
+		final FingerprintSet seenGames = new FingerprintSet(games.size());
+		final FingerprintSet duplicatedGames = new FingerprintSet(16);
+		for(int i = 0; i < games.size(); i++)
+		{
+			this.fingerprint.compute(games.get(i));
+			fingerprints[i * 2] = this.fingerprint.getHigh();
+			fingerprints[i * 2 + 1] = this.fingerprint.getLow();
+			if(! seenGames.add(this.fingerprint))
 			{
-				duplicatedGames.add(game);
-				duplicatedGamesMap.put(game.hashCode(), game);
+				duplicatedGames.add(this.fingerprint);
 			}
-			else
+		}
+		final ArrayList<Game> selectedGames = new ArrayList<Game>(games.size());
+		for(int i = 0; i < games.size(); i++)
+		{
+			if(duplicatedGames.contains(fingerprints[i * 2], fingerprints[i * 2 + 1]) == keepDuplicated)
 			{
-				gamesMap.put(game.hashCode(), game);
+				selectedGames.add(games.get(i));
 			}
 		}
-		duplicatedGames.addAll(duplicatedGamesMap.values());
-		return duplicatedGames;
+		return selectedGames;
 	}
 
-	private static ArrayList<Game> purgeDuplicates(final ArrayList<Game> games)
+	/**
+	 * Adds the games kept by a partition's copy to the games seen by this filter. A game is rejected if a duplicate of it was seen in an earlier
+	 * partition.
+	 *
+	 * @param partition The copy that filtered the partition
+	 * @return The positions, counted among the games the copy kept, of the games that duplicate a game of an earlier partition
+	 */
+	@Override
+	public BitSet combine(final PartitionableFilter partition)
 	{
-		final HashMap<Integer, Game> gamesMap = new HashMap<Integer, Game>(games.size());
-		final HashMap<Integer, Game> duplicatedGamesMap = new HashMap<Integer, Game>(games.size());
-		for(final Game game : games)
+		final DuplicateFilter partitionFilter = (DuplicateFilter) partition;
+		final BitSet rejected = new BitSet(partitionFilter.retainedCount);
+		for(int i = 0; i < partitionFilter.retainedCount; i++)
 		{
-			if(gamesMap.containsKey(game.hashCode()))
-			{
-				duplicatedGamesMap.put(game.hashCode(), game);
-			}
-			else
+			if(! this.streamedGames.add(partitionFilter.retainedFingerprints[i * 2], partitionFilter.retainedFingerprints[i * 2 + 1]))
 			{
-				gamesMap.put(game.hashCode(), game);
+				rejected.set(i);
 			}
 		}
-		games.removeAll(duplicatedGamesMap.values());
-		return games;
+		return rejected;
+	}
+
+	/**
+	 * Creates a copy of the filter which has seen no games and which remembers the fingerprint of every game it keeps
+	 *
+	 * @return The copy
+	 */
+	@Override
+	public PartitionableFilter createPartition()
+	{
+		final DuplicateFilter partitionFilter = new DuplicateFilter();
+		partitionFilter.fingerprint = this.fingerprint.copy();
+		partitionFilter.mode = this.mode;
+		partitionFilter.retainedFingerprints = new long[DuplicateFilter.PARTITION_CAPACITY * 2];
+		return partitionFilter;
 	}
 
 	/**
@@ -86,19 +137,67 @@ public class DuplicateFilter implements Filter
 	{
 		if(this.mode.equals(DuplicateFilterMode.FILTER))
 		{
-			return DuplicateFilter.filterDuplicates(games);
+			return this.filterDuplicates(games);
 		}
 		if(this.mode.equals(DuplicateFilterMode.ISOLATE))
 		{
-			return DuplicateFilter.isolateDuplicates(games);
+			return this.selectByDuplication(games, true);
 		}
 		if(this.mode.equals(DuplicateFilterMode.PURGE))
 		{
-			return DuplicateFilter.purgeDuplicates(games);
+			return this.selectByDuplication(games, false);
 		}
 		throw new InvalidParameterException(DuplicateFilter.FILTER_NO_MODE_ERROR);
 	}
 
+	/**
+	 * Keeps the first occurrence of each game seen by this filter and rejects any later duplicates. Only the Filter mode can work like this - the
+	 * Isolate and Purge modes need to see every game before they can decide on any of them.
+	 *
+	 * @param game The game to be assessed
+	 * @return True if no duplicate of the game has been seen before else false
+	 */
+	@Override
+	public boolean isRetained(final Game game)
+	{
+		if(! DuplicateFilterMode.FILTER.equals(this.mode))
+		{
+			throw new InvalidParameterException(DuplicateFilter.STREAM_MODE_ERROR);
+		}
+		this.fingerprint.compute(game);
+		if(! this.streamedGames.add(this.fingerprint))
+		{
+			return false;
+		}
+		if(this.retainedFingerprints != null)
+		{
+			this.retainFingerprint();
+		}
+		return true;
+	}
+
+	/**
+	 * Advises whether the filter can decide on games one at a time, which is only so in the Filter mode
+	 *
+	 * @return True if in the Filter mode else false
+	 */
+	@Override
+	public boolean isStreamable()
+	{
+		return DuplicateFilterMode.FILTER.equals(this.mode);
+	}
+
+	/**
+	 * Sets the tags that are fingerprinted along with the moves. By default only the moves are compared.
+	 *
+	 * @param tagKeys The keys of the tags that must also match for two games to be duplicates
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public void setFingerprintTags(final String[] tagKeys)
+	{
+		this.fingerprint = new GameFingerprint(tagKeys);
+	}
+
 	/**
 	 * Sets the operation mode of the filter (Filter, Isolate or Purge)
 	 *
@@ -115,7 +214,8 @@ public class DuplicateFilter implements Filter
 	public String toString()
 	{
 		return "DuplicateFilter{" +
-			   "mode=" + this.mode +
+			   "fingerprint=" + this.fingerprint +
+			   ", mode=" + this.mode +
 			   '}';
 	}
 }
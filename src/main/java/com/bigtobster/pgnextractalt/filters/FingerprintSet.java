@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.filters;
+
+/**
+ * An open addressing hash set of 128 bit game fingerprints. Both halves of every fingerprint are kept side by side in a single long array and
+ * probed linearly, so adding a fingerprint allocates nothing unless the set has to grow. An all zero slot marks an empty slot, so the all zero
+ * fingerprint is stored as if its low half were 1.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class FingerprintSet
+{
+	private static final int MINIMUM_CAPACITY = 16;
+	private long[] slots;
+	private int    mask;
+	private int    size = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param expectedSize The number of fingerprints the set should hold without growing
+	 */
+	public FingerprintSet(final int expectedSize)
+	{
+		int capacity = FingerprintSet.MINIMUM_CAPACITY;
+		while(capacity < expectedSize * 2)
+		{
+			capacity <<= 1;
+		}
+		this.slots = new long[capacity * 2];
+		this.mask = capacity - 1;
+	}
+
+	private static int slotOf(final long high, final long low, final int mask)
+	{
+		final long mixed = high ^ Long.rotateLeft(low, 32);
+		return (int) (mixed ^ mixed >>> 29) & mask;
+	}
+
+	/**
+	 * Adds a fingerprint to the set
+	 *
+	 * @param high The high half of the fingerprint
+	 * @param low  The low half of the fingerprint
+	 * @return True if the fingerprint was not already in the set else false
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public boolean add(final long high, final long low)
+	{
+		final long storedLow = high == 0L && low == 0L ? 1L : low;
+		int slot = FingerprintSet.slotOf(high, storedLow, this.mask);
+		while(this.slots[slot * 2] != 0L || this.slots[slot * 2 + 1] != 0L)
+		{
+			if(this.slots[slot * 2] == high && this.slots[slot * 2 + 1] == storedLow)
+			{
+				return false;
+			}
+			slot = slot + 1 & this.mask;
+		}
+		this.slots[slot * 2] = high;
+		this.slots[slot * 2 + 1] = storedLow;
+		this.size++;
+		if(this.size * 2 > this.mask)
+		{
+			this.grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a game's fingerprint to the set
+	 *
+	 * @param fingerprint A fingerprint that has been computed
+	 * @return True if the fingerprint was not already in the set else false
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public boolean add(final GameFingerprint fingerprint)
+	{
+		return this.add(fingerprint.getHigh(), fingerprint.getLow());
+	}
+
+	/**
+	 * Checks whether a fingerprint is in the set
+	 *
+	 * @param high The high half of the fingerprint
+	 * @param low  The low half of the fingerprint
+	 * @return True if the fingerprint is in the set else false
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public boolean contains(final long high, final long low)
+	{
+		final long storedLow = high == 0L && low == 0L ? 1L : low;
+		int slot = FingerprintSet.slotOf(high, storedLow, this.mask);
+		while(this.slots[slot * 2] != 0L || this.slots[slot * 2 + 1] != 0L)
+		{
+			if(this.slots[slot * 2] == high && this.slots[slot * 2 + 1] == storedLow)
+			{
+				return true;
+			}
+			slot = slot + 1 & this.mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Getter for the number of fingerprints in the set
+	 *
+	 * @return int The number of fingerprints
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public int size()
+	{
+		return this.size;
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "FingerprintSet{" +
+			   "capacity=" + (this.mask + 1) +
+			   ", size=" + this.size +
+			   '}';
+	}
+
+	private void grow()
+	{
+		final long[] oldSlots = this.slots;
+		final int capacity = (this.mask + 1) * 2;
+		this.slots = new long[capacity * 2];
+		this.mask = capacity - 1;
+		for(int i = 0; i < oldSlots.length; i += 2)
+		{
+			if(oldSlots[i] != 0L || oldSlots[i + 1] != 0L)
+			{
+				int slot = FingerprintSet.slotOf(oldSlots[i], oldSlots[i + 1], this.mask);
+				while(this.slots[slot * 2] != 0L || this.slots[slot * 2 + 1] != 0L)
+				{
+					slot = slot + 1 & this.mask;
+				}
+				this.slots[slot * 2] = oldSlots[i];
+				this.slots[slot * 2 + 1] = oldSlots[i + 1];
+			}
+		}
+	}
+}
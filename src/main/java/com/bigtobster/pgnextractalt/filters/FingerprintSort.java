@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.filters;
+
+/**
+ * Sorts fixed width records of longs held in a single flat array, such as (high, low) fingerprint pairs or (high, low, game) triples. Records are
+ * ordered by their first long, then their second and so on. The sort is done in place so nothing is allocated.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class FingerprintSort
+{
+	private static final int INSERTION_SORT_RECORDS = 16;
+
+	private FingerprintSort()
+	{
+	}
+
+	/**
+	 * Compares two records
+	 *
+	 * @param records     The flat array of records
+	 * @param recordLongs The number of longs in each record
+	 * @param first       The index of the first record
+	 * @param second      The index of the second record
+	 * @return Negative, zero or positive as the first record is less than, equal to or greater than the second
+	 */
+	public static int compare(final long[] records, final int recordLongs, final int first, final int second)
+	{
+		for(int i = 0; i < recordLongs; i++)
+		{
+			final long firstValue = records[first * recordLongs + i];
+			final long secondValue = records[second * recordLongs + i];
+			if(firstValue != secondValue)
+			{
+				return firstValue < secondValue ? - 1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Sorts a range of records in place
+	 *
+	 * @param records     The flat array of records
+	 * @param recordLongs The number of longs in each record
+	 * @param from        The index of the first record to sort
+	 * @param to          The index after the last record to sort
+	 */
+	public static void sort(final long[] records, final int recordLongs, final int from, final int to)
+	{
+		int low = from;
+		int high = to;
+		while(high - low > FingerprintSort.INSERTION_SORT_RECORDS)
+		{
+			final int pivot = low + (high - low) / 2;
+			FingerprintSort.swap(records, recordLongs, pivot, high - 1);
+			int store = low;
+			for(int i = low; i < high - 1; i++)
+			{
+				if(FingerprintSort.compare(records, recordLongs, i, high - 1) < 0)
+				{
+					FingerprintSort.swap(records, recordLongs, i, store);
+					store++;
+				}
+			}
+			FingerprintSort.swap(records, recordLongs, store, high - 1);
+			//Recurse into the smaller side only so the stack stays shallow
+			if(store - low < high - store)
+			{
+				FingerprintSort.sort(records, recordLongs, low, store);
+				low = store + 1;
+			}
+			else
+			{
+				FingerprintSort.sort(records, recordLongs, store + 1, high);
+				high = store;
+			}
+		}
+		for(int i = low + 1; i < high; i++)
+		{
+			for(int j = i; j > low && FingerprintSort.compare(records, recordLongs, j - 1, j) > 0; j--)
+			{
+				FingerprintSort.swap(records, recordLongs, j - 1, j);
+			}
+		}
+	}
+
+	private static void swap(final long[] records, final int recordLongs, final int first, final int second)
+	{
+		for(int i = 0; i < recordLongs; i++)
+		{
+			final int firstSlot = first * recordLongs + i;
+			final int secondSlot = second * recordLongs + i;
+			final long swapped = records[firstSlot];
+			records[firstSlot] = records[secondSlot];
+			records[secondSlot] = swapped;
+		}
+	}
+}
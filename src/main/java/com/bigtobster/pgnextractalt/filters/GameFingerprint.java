@@ -0,0 +1,681 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.filters;
+
+import chesspresso.Chess;
+import chesspresso.game.Game;
+import chesspresso.move.Move;
+import chesspresso.position.Position;
+
+/**
+ * A 128 bit content fingerprint of a game. The fingerprint is built in a single pass over the SAN of the main line plus, optionally, a configured
+ * set of tags. Check, mate and annotation marks, promotion equals signs, zero castling and the square a piece moves from are normalised away so
+ * the same game written by two different tools gets the same fingerprint. The square a piece moves from cannot be normalised without the position,
+ * so it is left out altogether - two games which differ only in which of two like pieces made a move share a fingerprint. Tag values are
+ * trimmed, lower cased and have their whitespace collapsed. One instance can be reused for any number of games so fingerprinting allocates nothing
+ * per game.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class GameFingerprint
+{
+	private static final int      CHAR_BITS        = 16;
+	private static final int      CHARS_PER_WORD   = 4;
+	private static final String   EN_PASSANT       = "e.p.";
+	private static final long     HIGH_ADDEND      = 0x52dce729L;
+	//"O-O-O" packed one character to a byte
+	private static final long     LONG_CASTLE      = 0x4f2d4f2d4fL;
+	private static final long     LOW_ADDEND       = 0x38495ab5L;
+	private static final long     MIX_1            = 0x87c37b91114253d5L;
+	private static final long     MIX_2            = 0x4cf5ad432745937fL;
+	private static final long     MOVES_MARKER     = - 1L;
+	private static final String[] NO_TAGS          = new String[0];
+	private static final long     NOT_A_MOVE       = 0L;
+	private static final int      PACKED_CHAR_BITS = 8;
+	private static final int      PACKED_CHAR_MASK = 0xff;
+	private static final char     PAWN             = 'P';
+	private static final String   PIECES           = "KQRBN";
+	private static final String   PROMOTIONS       = "QRBN";
+	//"O-O" packed one character to a byte
+	private static final long     SHORT_CASTLE     = 0x4f2d4fL;
+	private static final long     TAG_MARKER       = - 2L;
+	private final String[] tagKeys;
+	private long high      = 0L;
+	private long length    = 0L;
+	private long low       = 0L;
+	private long word      = 0L;
+	private int  wordChars = 0;
+
+	/**
+	 * Constructor for a fingerprint of the moves alone
+	 */
+	public GameFingerprint()
+	{
+		this(GameFingerprint.NO_TAGS);
+	}
+
+	/**
+	 * Constructor for a fingerprint of the moves and the given tags
+	 *
+	 * @param tagKeys The keys of the tags to be included in the fingerprint
+	 */
+	public GameFingerprint(final String[] tagKeys)
+	{
+		this.tagKeys = tagKeys.clone();
+	}
+
+	/**
+	 * Counts the plies of the main line of a game's movetext without building a Game. The movetext is read as it is for a fingerprint, so move
+	 * numbers, comments, variations, NAGs, annotation symbols such as "+/-" or "e.p." and the result are not counted.
+	 *
+	 * @param moveText The movetext of one game, without its tag section
+	 * @return The number of moves in the main line
+	 */
+	static int countPlies(final CharSequence moveText)
+	{
+		return GameFingerprint.scanMoveText(moveText, 0, null);
+	}
+
+	/**
+	 * Reads a move of a parsed game into its canonical SAN, packed one character to a byte
+	 *
+	 * @param position The position before the move
+	 * @param move     The move
+	 * @return The packed canonical SAN
+	 */
+	private static long canonicalise(final Position position, final Move move)
+	{
+		if(move.isShortCastle())
+		{
+			return GameFingerprint.SHORT_CASTLE;
+		}
+		if(move.isLongCastle())
+		{
+			return GameFingerprint.LONG_CASTLE;
+		}
+		final int piece = Chess.stoneToPiece(position.getStone(move.getFromSqi()));
+		long packed = GameFingerprint.NOT_A_MOVE;
+		if(piece != Chess.PAWN)
+		{
+			packed = GameFingerprint.packChar(packed, Chess.pieceToChar(piece));
+		}
+		else if(move.isCapturing())
+		{
+			packed = GameFingerprint.packChar(packed, Chess.colToChar(Chess.sqiToCol(move.getFromSqi())));
+		}
+		if(move.isCapturing())
+		{
+			packed = GameFingerprint.packChar(packed, 'x');
+		}
+		packed = GameFingerprint.packChar(packed, Chess.colToChar(Chess.sqiToCol(move.getToSqi())));
+		packed = GameFingerprint.packChar(packed, Chess.rowToChar(Chess.sqiToRow(move.getToSqi())));
+		return move.isPromotion() ? GameFingerprint.packChar(packed, Chess.pieceToChar(move.getPromo())) : packed;
+	}
+
+	/**
+	 * Reads a SAN token into its canonical SAN, packed one character to a byte. Check, mate and annotation marks, a trailing "e.p.", promotion
+	 * equals signs and the square a piece moves from are dropped, so over-disambiguated SAN and long algebraic notation read the same as minimal
+	 * SAN. Anything else which does not read as a move, such as "+/-" or a novelty "N", is not a move.
+	 *
+	 * @return The packed canonical SAN or NOT_A_MOVE if the token is not a move
+	 */
+	@SuppressWarnings("OverlyComplexMethod")
+	private static long canonicalise(final CharSequence text, final int from, final int to)
+	{
+		int end = GameFingerprint.trimNoise(text, from, to);
+		if((end - from > GameFingerprint.EN_PASSANT.length()) &&
+		   GameFingerprint.matches(text, end - GameFingerprint.EN_PASSANT.length(), end, GameFingerprint.EN_PASSANT))
+		{
+			end = GameFingerprint.trimNoise(text, from, end - GameFingerprint.EN_PASSANT.length());
+		}
+		if(end <= from)
+		{
+			return GameFingerprint.NOT_A_MOVE;
+		}
+		if(GameFingerprint.isCastle(text, from, end))
+		{
+			return (end - from == 3) ? GameFingerprint.SHORT_CASTLE : GameFingerprint.LONG_CASTLE;
+		}
+		int start = from;
+		long packed = GameFingerprint.NOT_A_MOVE;
+		final boolean isPawn = GameFingerprint.PIECES.indexOf((int) text.charAt(start)) < 0;
+		if(! isPawn)
+		{
+			packed = GameFingerprint.packChar(packed, text.charAt(start));
+			start++;
+		}
+		else if(text.charAt(start) == GameFingerprint.PAWN)
+		{
+			start++;
+		}
+		char promotion = 0;
+		if(isPawn && (end - start > 2) && (GameFingerprint.PROMOTIONS.indexOf((int) text.charAt(end - 1)) >= 0))
+		{
+			promotion = text.charAt(end - 1);
+			end--;
+			if(text.charAt(end - 1) == '=')
+			{
+				end--;
+			}
+		}
+		if((end - start < 2) || ! GameFingerprint.isFile(text.charAt(end - 2)) || ! GameFingerprint.isRank(text.charAt(end - 1)))
+		{
+			return GameFingerprint.NOT_A_MOVE;
+		}
+		final char toFile = text.charAt(end - 2);
+		final char toRank = text.charAt(end - 1);
+		end -= 2;
+		boolean isCapture = false;
+		if((end > start) && ((text.charAt(end - 1) == 'x') || (text.charAt(end - 1) == ':')))
+		{
+			isCapture = true;
+			end--;
+		}
+		else if((end > start) && (text.charAt(end - 1) == '-'))
+		{
+			end--;
+		}
+		char fromFile = 0;
+		if((end > start) && GameFingerprint.isFile(text.charAt(start)))
+		{
+			fromFile = text.charAt(start);
+			start++;
+		}
+		if((end > start) && GameFingerprint.isRank(text.charAt(start)))
+		{
+			start++;
+		}
+		if((start != end) || (isPawn && isCapture && (fromFile == 0)))
+		{
+			return GameFingerprint.NOT_A_MOVE;
+		}
+		if(isPawn && isCapture)
+		{
+			packed = GameFingerprint.packChar(packed, fromFile);
+		}
+		if(isCapture)
+		{
+			packed = GameFingerprint.packChar(packed, 'x');
+		}
+		packed = GameFingerprint.packChar(GameFingerprint.packChar(packed, toFile), toRank);
+		return (promotion == 0) ? packed : GameFingerprint.packChar(packed, promotion);
+	}
+
+	private static long finalMix(final long value)
+	{
+		long mixed = value;
+		mixed ^= mixed >>> 33;
+		mixed *= 0xff51afd7ed558ccdL;
+		mixed ^= mixed >>> 33;
+		mixed *= 0xc4ceb9fe1a85ec53L;
+		mixed ^= mixed >>> 33;
+		return mixed;
+	}
+
+	/**
+	 * Finds where the SAN of a token starts once any move number written hard against it, such as "12." or "12...", is skipped
+	 *
+	 * @return The start of the SAN or -1 if the token is a NAG
+	 */
+	private static int findMoveStart(final CharSequence text, final int from, final int to)
+	{
+		int start = from;
+		if(text.charAt(start) == '$')
+		{
+			return - 1;
+		}
+		while(start < to && Character.isDigit(text.charAt(start)))
+		{
+			start++;
+		}
+		if(start < to && text.charAt(start) == '.')
+		{
+			while(start < to && text.charAt(start) == '.')
+			{
+				start++;
+			}
+			return start;
+		}
+		return from;
+	}
+
+	private static boolean isCastle(final CharSequence text, final int from, final int to)
+	{
+		if((to - from != 3) && (to - from != 5))
+		{
+			return false;
+		}
+		for(int i = from; i < to; i++)
+		{
+			final char character = text.charAt(i);
+			final boolean isExpected = ((i - from) % 2 == 0) ? ((character == 'O') || (character == '0')) : (character == '-');
+			if(! isExpected)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isFile(final char character)
+	{
+		return character >= 'a' && character <= 'h';
+	}
+
+	private static boolean isRank(final char character)
+	{
+		return character >= '1' && character <= '8';
+	}
+
+	private static boolean isSANNoise(final char character)
+	{
+		return character == '+' || character == '#' || character == '!' || character == '?' || character == '=';
+	}
+
+	private static boolean isTokenEnd(final char character)
+	{
+		return Character.isWhitespace(character) || character == '{' || character == '(' || character == ')' || character == ';';
+	}
+
+	private static boolean matches(final CharSequence text, final int from, final int to, final String expected)
+	{
+		if(to - from != expected.length())
+		{
+			return false;
+		}
+		for(int i = 0; i < expected.length(); i++)
+		{
+			if(text.charAt(from + i) != expected.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long packChar(final long packed, final char character)
+	{
+		return packed << GameFingerprint.PACKED_CHAR_BITS | (long) character;
+	}
+
+	/**
+	 * Reads the main line moves of movetext, skipping comments, escaped lines and variations
+	 *
+	 * @param fingerprint The fingerprint to add each move to, or null to only count the moves
+	 * @return The number of moves in the main line
+	 */
+	@SuppressWarnings("OverlyComplexMethod")
+	private static int scanMoveText(final CharSequence text, final int from, final GameFingerprint fingerprint)
+	{
+		final int length = text.length();
+		int index = from;
+		int moves = 0;
+		int variationDepth = 0;
+		while(index < length)
+		{
+			final char character = text.charAt(index);
+			if(character == '{')
+			{
+				index = GameFingerprint.skipPast(text, index, '}');
+			}
+			else if(character == ';' || character == '%' && (index == 0 || text.charAt(index - 1) == '\n'))
+			{
+				index = GameFingerprint.skipPast(text, index, '\n');
+			}
+			else if(character == '(')
+			{
+				variationDepth++;
+				index++;
+			}
+			else if(character == ')')
+			{
+				variationDepth--;
+				index++;
+			}
+			else if(Character.isWhitespace(character))
+			{
+				index++;
+			}
+			else
+			{
+				final int tokenStart = index;
+				while(index < length && ! GameFingerprint.isTokenEnd(text.charAt(index)))
+				{
+					index++;
+				}
+				final int moveStart = (variationDepth == 0) ? GameFingerprint.findMoveStart(text, tokenStart, index) : - 1;
+				final long move = (moveStart < 0) ? GameFingerprint.NOT_A_MOVE : GameFingerprint.canonicalise(text, moveStart, index);
+				if(move != GameFingerprint.NOT_A_MOVE)
+				{
+					moves++;
+					if(fingerprint != null)
+					{
+						fingerprint.addMove(move);
+					}
+				}
+			}
+		}
+		return moves;
+	}
+
+	private static int skipPast(final CharSequence text, final int from, final char end)
+	{
+		int index = from;
+		while(index < text.length() && text.charAt(index) != end)
+		{
+			index++;
+		}
+		return index + 1;
+	}
+
+	private static int trimNoise(final CharSequence text, final int from, final int to)
+	{
+		int end = to;
+		while(end > from && GameFingerprint.isSANNoise(text.charAt(end - 1)))
+		{
+			end--;
+		}
+		return end;
+	}
+
+	/**
+	 * Fingerprints a game. The fingerprint can then be read with getHigh and getLow. Each move is added as its canonical SAN, built straight from
+	 * the move so fingerprinting a game does not build a String per ply.
+	 *
+	 * @param game The game to be fingerprinted
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public void compute(final Game game)
+	{
+		this.reset();
+		game.gotoStart();
+		Move move = game.getNextMove();
+		while(move != null)
+		{
+			this.addMove(GameFingerprint.canonicalise(game.getPosition(), move));
+			game.goForward();
+			move = game.getNextMove();
+		}
+		game.gotoStart();
+		for(final String tagKey : this.tagKeys)
+		{
+			this.addTag(game.getTag(tagKey));
+		}
+		this.finish();
+	}
+
+	/**
+	 * Fingerprints the raw PGN text of a single game without building a Game. The tags are read from the tag section and the moves are the SAN
+	 * tokens of the movetext once move numbers, comments, variations, NAGs, annotation symbols and the result are skipped. Each move is read into
+	 * its canonical SAN, so this gives the same fingerprint as computing it from the parsed game.
+	 *
+	 * @param pgnText The PGN text of one game
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public void computeText(final CharSequence pgnText)
+	{
+		this.reset();
+		final String[] tagValues = new String[this.tagKeys.length];
+		final int length = pgnText.length();
+		int index = 0;
+		while(index < length)
+		{
+			final char character = pgnText.charAt(index);
+			if(character == '[')
+			{
+				index = this.readTag(pgnText, index + 1, tagValues);
+			}
+			else if(Character.isWhitespace(character))
+			{
+				index++;
+			}
+			else
+			{
+				break;
+			}
+		}
+		GameFingerprint.scanMoveText(pgnText, index, this);
+		for(final String tagValue : tagValues)
+		{
+			this.addTag(tagValue);
+		}
+		this.finish();
+	}
+
+	/**
+	 * Getter for the high 64 bits of the last computed fingerprint
+	 *
+	 * @return long The high half of the fingerprint
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public long getHigh()
+	{
+		return this.high;
+	}
+
+	/**
+	 * Getter for the low 64 bits of the last computed fingerprint
+	 *
+	 * @return long The low half of the fingerprint
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public long getLow()
+	{
+		return this.low;
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "GameFingerprint{" +
+			   "high=" + Long.toHexString(this.high) +
+			   ", low=" + Long.toHexString(this.low) +
+			   '}';
+	}
+
+	/**
+	 * Adds the SAN of the next main line move to the fingerprint
+	 *
+	 * @param san The move in Standard Algebraic Notation
+	 */
+	void addMove(final CharSequence san)
+	{
+		final long move = GameFingerprint.canonicalise(san, 0, san.length());
+		if(move == GameFingerprint.NOT_A_MOVE)
+		{
+			throw new IllegalArgumentException("Not a move: " + san);
+		}
+		this.addMove(move);
+	}
+
+	/**
+	 * Adds the value of the next configured tag to the fingerprint. A missing tag counts as an empty value.
+	 *
+	 * @param value The tag value or null
+	 */
+	void addTag(final String value)
+	{
+		this.update(GameFingerprint.TAG_MARKER);
+		if(value != null)
+		{
+			boolean started = false;
+			boolean pendingSpace = false;
+			for(int i = 0; i < value.length(); i++)
+			{
+				final char character = value.charAt(i);
+				if(Character.isWhitespace(character))
+				{
+					pendingSpace = started;
+				}
+				else
+				{
+					if(pendingSpace)
+					{
+						this.addChar(' ');
+						pendingSpace = false;
+					}
+					this.addChar(Character.toLowerCase(character));
+					started = true;
+				}
+			}
+		}
+		this.flushWord();
+	}
+
+	/**
+	 * Creates a fingerprint of the same tags, so that games can be fingerprinted on another thread
+	 *
+	 * @return The new fingerprint
+	 */
+	GameFingerprint copy()
+	{
+		return new GameFingerprint(this.tagKeys);
+	}
+
+	/**
+	 * Finishes the fingerprint after the last move and tag
+	 */
+	void finish()
+	{
+		this.high ^= this.length;
+		this.low ^= this.length;
+		this.high += this.low;
+		this.low += this.high;
+		this.high = GameFingerprint.finalMix(this.high);
+		this.low = GameFingerprint.finalMix(this.low);
+		this.high += this.low;
+		this.low += this.high;
+	}
+
+	/**
+	 * Getter for the keys of the tags included in the fingerprint
+	 *
+	 * @return String[] The tag keys
+	 */
+	String[] getTagKeys()
+	{
+		return this.tagKeys.clone();
+	}
+
+	/**
+	 * Starts a new fingerprint
+	 */
+	void reset()
+	{
+		this.high = 0L;
+		this.low = 0L;
+		this.length = 0L;
+		this.word = 0L;
+		this.wordChars = 0;
+	}
+
+	private void addChar(final char character)
+	{
+		this.word = this.word << GameFingerprint.CHAR_BITS | (long) character;
+		this.wordChars++;
+		if(this.wordChars == GameFingerprint.CHARS_PER_WORD)
+		{
+			this.flushWord();
+		}
+	}
+
+	/**
+	 * Adds the next main line move to the fingerprint
+	 *
+	 * @param move The canonical SAN of the move, packed one character to a byte
+	 */
+	private void addMove(final long move)
+	{
+		this.update(GameFingerprint.MOVES_MARKER);
+		for(int shift = Long.SIZE - GameFingerprint.PACKED_CHAR_BITS; shift >= 0; shift -= GameFingerprint.PACKED_CHAR_BITS)
+		{
+			final char character = (char) ((move >>> shift) & GameFingerprint.PACKED_CHAR_MASK);
+			if(character != 0)
+			{
+				this.addChar(character);
+			}
+		}
+		this.flushWord();
+	}
+
+	private void flushWord()
+	{
+		if(this.wordChars > 0)
+		{
+			this.update(this.word);
+			this.word = 0L;
+			this.wordChars = 0;
+		}
+	}
+
+	private int readTag(final CharSequence text, final int from, final String[] tagValues)
+	{
+		int index = from;
+		while(index < text.length() && Character.isWhitespace(text.charAt(index)))
+		{
+			index++;
+		}
+		final int keyStart = index;
+		while(index < text.length() && ! Character.isWhitespace(text.charAt(index)) && text.charAt(index) != '"')
+		{
+			index++;
+		}
+		int tag = - 1;
+		for(int i = 0; i < this.tagKeys.length; i++)
+		{
+			if(GameFingerprint.matches(text, keyStart, index, this.tagKeys[i]))
+			{
+				tag = i;
+			}
+		}
+		while(index < text.length() && text.charAt(index) != '"' && text.charAt(index) != ']')
+		{
+			index++;
+		}
+		if(index < text.length() && text.charAt(index) == '"')
+		{
+			final StringBuilder value = new StringBuilder(16);
+			index++;
+			while(index < text.length() && text.charAt(index) != '"')
+			{
+				if(text.charAt(index) == '\\' && index + 1 < text.length())
+				{
+					index++;
+				}
+				value.append(text.charAt(index));
+				index++;
+			}
+			if(tag >= 0)
+			{
+				tagValues[tag] = value.toString();
+			}
+		}
+		return GameFingerprint.skipPast(text, index, ']');
+	}
+
+	private void update(final long value)
+	{
+		long key = value * GameFingerprint.MIX_1;
+		key = Long.rotateLeft(key, 31);
+		key *= GameFingerprint.MIX_2;
+		this.high ^= key;
+		this.high = Long.rotateLeft(this.high, 27) + this.low;
+		this.high = this.high * 5L + GameFingerprint.HIGH_ADDEND;
+		key = value * GameFingerprint.MIX_2;
+		key = Long.rotateLeft(key, 33);
+		key *= GameFingerprint.MIX_1;
+		this.low ^= key;
+		this.low = Long.rotateLeft(this.low, 31) + this.high;
+		this.low = this.low * 5L + GameFingerprint.LOW_ADDEND;
+		this.length++;
+	}
+}
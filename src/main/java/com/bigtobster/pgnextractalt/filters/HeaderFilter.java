@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.filters;
+
+/**
+ * A StreamableFilter that can decide the fate of a game from its tags alone. Lazily imported games can then be filtered without their moves ever
+ * being parsed. The decision must be the same as that of isRetained on the full game.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+@SuppressWarnings("ClassUnconnectedToPackage")
+public interface HeaderFilter extends StreamableFilter
+{
+	/**
+	 * Decides whether a single game survives the filter using only its tags
+	 *
+	 * @param tags The tags of the game to be assessed
+	 * @return True if the game should be kept else false
+	 */
+	public boolean isHeaderRetained(final TagSource tags);
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.filters;
+
+import java.util.BitSet;
+
+/**
+ * A streamable filter with state that can still be run over several partitions of the games at once. Each partition is filtered on its own thread
+ * by its own copy of the filter. The copies are then combined back into the filter in partition order, which lets it reject any game that it
+ * would only have rejected had it seen the earlier partitions first.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+@SuppressWarnings("ClassUnconnectedToPackage")
+public interface PartitionableFilter extends StreamableFilter
+{
+	/**
+	 * Combines the state of a partition's copy into this filter. Called on the filter the copies were created from, once for each partition in
+	 * partition order.
+	 *
+	 * @param partition The copy that filtered the partition
+	 * @return The positions, counted among the games the copy retained, of the games this filter rejects now that it has seen every earlier
+	 * partition
+	 */
+	public BitSet combine(final PartitionableFilter partition);
+
+	/**
+	 * Creates a copy of the filter with the same settings and no state, to filter a single partition
+	 *
+	 * @return The copy
+	 */
+	public PartitionableFilter createPartition();
+}
@@ -16,14 +16,19 @@ import java.util.ArrayList;
 
 /**
  * Filter that filters games by their plycount Created by Toby Leheup on 07/02/16 for pgn-extract-alt.
+ * <p>
+ * The plies of a lazily imported game are counted from its movetext without the game being parsed. If the PlyCount tag is trusted, a game's
+ * PlyCount tag is taken as its plycount whenever it holds a count, so even its movetext need not be read.
  *
  * @author Toby Leheup (Bigtobster)
  */
 @SuppressWarnings("PublicMethodNotExposedInInterface")
-public class PlycountFilter implements Filter
+public class PlycountFilter implements StatelessFilter, TextFilter
 {
-	private int greaterThanParam = 0;
-	private int lessThanParam    = 0;
+	private static final String  PLY_COUNT_KEY        = "PlyCount";
+	private              int     greaterThanParam     = 0;
+	private              boolean isPlyCountTagTrusted = false;
+	private              int     lessThanParam        = 0;
 
 	/**
 	 * Filters games by their plycount
@@ -36,7 +41,7 @@ public class PlycountFilter implements Filter
 		final ArrayList<Game> newGames = new ArrayList<Game>(games.size());
 		for(final Game game : games)
 		{
-			if(! ((game.getNumOfPlies() < this.lessThanParam) && (game.getNumOfPlies() > this.greaterThanParam)))
+			if(this.isRetained(game))
 			{
 				newGames.add(game);
 			}
@@ -44,6 +49,34 @@ public class PlycountFilter implements Filter
 		return newGames;
 	}
 
+	@Override
+	public boolean isRetained(final Game game)
+	{
+		final int taggedPlies = this.readPlyCountTag(game.getTag(PlycountFilter.PLY_COUNT_KEY));
+		return this.isPlycountRetained((taggedPlies < 0) ? game.getNumOfPlies() : taggedPlies);
+	}
+
+	@SuppressWarnings("MethodReturnAlwaysConstant")
+	@Override
+	public boolean isStreamable()
+	{
+		return true;
+	}
+
+	/**
+	 * Decides whether a game survives the filter by counting the SAN moves of its main line, skipping comments, NAGs and variations
+	 *
+	 * @param tags     The tags of the game to be assessed
+	 * @param moveText The movetext of the game, without its tag section
+	 * @return True if the game should be kept else false
+	 */
+	@Override
+	public boolean isTextRetained(final TagSource tags, final CharSequence moveText)
+	{
+		final int taggedPlies = this.readPlyCountTag(tags.getTag(PlycountFilter.PLY_COUNT_KEY));
+		return this.isPlycountRetained((taggedPlies < 0) ? GameFingerprint.countPlies(moveText) : taggedPlies);
+	}
+
 	/**
 	 * Sets the value for which plycounts of games must be greater than
 	 *
@@ -64,13 +97,52 @@ public class PlycountFilter implements Filter
 		this.lessThanParam = lessThan;
 	}
 
+	/**
+	 * Sets whether a game's PlyCount tag is taken as its plycount. Only trust the tag for files whose PlyCount tags were written by a tool that
+	 * counted the moves.
+	 *
+	 * @param isTrusted True to read plycounts from the PlyCount tag where it holds a count
+	 */
+	public void setPlyCountTagTrusted(final boolean isTrusted)
+	{
+		this.isPlyCountTagTrusted = isTrusted;
+	}
+
 	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
 	@Override
 	public String toString()
 	{
 		return "PlycountFilter{" +
 			   "greaterThanParam=" + this.greaterThanParam +
+			   ", isPlyCountTagTrusted=" + this.isPlyCountTagTrusted +
 			   ", lessThanParam=" + this.lessThanParam +
 			   '}';
 	}
+
+	private boolean isPlycountRetained(final int plies)
+	{
+		return ! ((plies < this.lessThanParam) && (plies > this.greaterThanParam));
+	}
+
+	/**
+	 * Reads the plycount from a PlyCount tag if the tag is trusted
+	 *
+	 * @param plyCountTag The value of the PlyCount tag or null if the game has none
+	 * @return The plycount or -1 if the tag is not trusted or holds no count
+	 */
+	private int readPlyCountTag(final String plyCountTag)
+	{
+		if(! this.isPlyCountTagTrusted || (plyCountTag == null))
+		{
+			return - 1;
+		}
+		try
+		{
+			return Math.max(- 1, Integer.parseInt(plyCountTag.trim()));
+		}
+		catch(final NumberFormatException ignored)
+		{
+			return - 1;
+		}
+	}
 }
@@ -20,8 +20,13 @@ import java.util.ArrayList;
  *
  * @author Toby Leheup (Bigtobster)
  */
-public class ResultFilter implements Filter
+public class ResultFilter implements HeaderFilter, StatelessFilter
 {
+	private static final String BLACK_WIN_RESULT = "0-1";
+	private static final String DRAW_RESULT      = "1/2-1/2";
+	private static final String NOT_FINISHED     = "*";
+	private static final String RESULT_KEY       = "Result";
+	private static final String WHITE_WIN_RESULT = "1-0";
 	private boolean isBlackWinFiltered   = false;
 	private boolean isDrawFiltered       = false;
 	private boolean isUnresolvedFiltered = false;
@@ -33,8 +38,7 @@ public class ResultFilter implements Filter
 		final ArrayList<Game> newGames = new ArrayList<Game>(games.size());
 		for(final Game game : games)
 		{
-			final int res = game.getResult();
-			if(! this.isFiltered(res))
+			if(this.isRetained(game))
 			{
 				newGames.add(game);
 			}
@@ -42,6 +46,25 @@ public class ResultFilter implements Filter
 		return newGames;
 	}
 
+	@Override
+	public boolean isHeaderRetained(final TagSource tags)
+	{
+		return ! this.isFiltered(ResultFilter.toResult(tags.getTag(ResultFilter.RESULT_KEY)));
+	}
+
+	@Override
+	public boolean isRetained(final Game game)
+	{
+		return ! this.isFiltered(game.getResult());
+	}
+
+	@SuppressWarnings("MethodReturnAlwaysConstant")
+	@Override
+	public boolean isStreamable()
+	{
+		return true;
+	}
+
 	/**
 	 * Sets whether Black wins should be retained in the output
 	 *
@@ -98,6 +121,33 @@ public class ResultFilter implements Filter
 			   '}';
 	}
 
+	/**
+	 * Maps a Result tag onto a Chesspresso result the same way as Chesspresso does when it reads the tag
+	 *
+	 * @param resultStr The value of the Result tag
+	 * @return The Chesspresso result constant
+	 */
+	private static int toResult(final String resultStr)
+	{
+		if(ResultFilter.WHITE_WIN_RESULT.equals(resultStr))
+		{
+			return Chess.RES_WHITE_WINS;
+		}
+		if(ResultFilter.BLACK_WIN_RESULT.equals(resultStr))
+		{
+			return Chess.RES_BLACK_WINS;
+		}
+		if(ResultFilter.DRAW_RESULT.equals(resultStr))
+		{
+			return Chess.RES_DRAW;
+		}
+		if(ResultFilter.NOT_FINISHED.equals(resultStr))
+		{
+			return Chess.RES_NOT_FINISHED;
+		}
+		return Chess.NO_RES;
+	}
+
 	private boolean isBlackWinGameFiltered(final int res)
 	{
 		return (res == Chess.RES_BLACK_WINS) && this.isBlackWinFiltered;
@@ -0,0 +1,476 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.filters;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent set of the fingerprints of every game seen so far, kept between sessions so that games already taken from earlier files can be
+ * skipped. The archive is a Bloom filter file plus an exact sidecar file holding every fingerprint in sorted order. The Bloom filter is held in
+ * memory and answers most lookups on its own - only when it reports a possible match is the sidecar binary searched on disk to rule out a false
+ * positive. Fingerprints added in a session are held in memory until the archive is saved, when they are merged into the sidecar.
+ * <p>
+ * The sidecar is the record of truth. The Bloom filter is rebuilt from it whenever it is missing, out of date or too small for the games about to
+ * be added.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class SeenGamesArchive
+{
+	/**
+	 * The extension appended to the Bloom filter's path to give the path of its exact sidecar
+	 */
+	public static final  String SIDECAR_EXTENSION = ".fps";
+	private static final int    BITS_PER_GAME     = 10;
+	private static final int    BLOOM_MAGIC       = 0x50474e42;
+	private static final int    FORMAT_VERSION    = 1;
+	private static final int    HASH_COUNT        = 7;
+	private static final int    HEADER_BYTES      = 16;
+	private static final Logger LOGGER            = Logger.getLogger(SeenGamesArchive.class.getName());
+	private static final int    MAXIMUM_WORDS     = 1 << 25;
+	private static final int    MINIMUM_WORDS     = 16;
+	private static final int    PAIR_BYTES        = 16;
+	private static final int    SIDECAR_MAGIC     = 0x50474e46;
+	private static final String TEMP_EXTENSION    = ".tmp";
+	private final File           bloomFile;
+	private final File           sidecarFile;
+	private       long[]         bloomWords;
+	private       long           savedCount;
+	private       FileChannel    sidecarChannel = null;
+	private       FingerprintSet sessionSet     = new FingerprintSet(16);
+	private       long[]         sessionPairs   = new long[32];
+	private       int            sessionCount   = 0;
+	private final ByteBuffer     probe          = ByteBuffer.allocate(SeenGamesArchive.PAIR_BYTES);
+
+	private SeenGamesArchive(final File bloomFile, final long[] bloomWords, final long savedCount) throws IOException
+	{
+		this.bloomFile = bloomFile;
+		this.sidecarFile = SeenGamesArchive.getSidecarFile(bloomFile);
+		this.bloomWords = bloomWords;
+		this.savedCount = savedCount;
+		if(savedCount > 0L)
+		{
+			this.sidecarChannel = new RandomAccessFile(this.sidecarFile, "r").getChannel();
+		}
+	}
+
+	/**
+	 * Getter for the exact sidecar of a Bloom filter file
+	 *
+	 * @param bloomFile The Bloom filter file of an archive
+	 * @return The sidecar file
+	 */
+	public static File getSidecarFile(final File bloomFile)
+	{
+		return new File(bloomFile.getPath() + SeenGamesArchive.SIDECAR_EXTENSION);
+	}
+
+	/**
+	 * Opens an archive, creating it if it doesn't exist
+	 *
+	 * @param bloomFile     The Bloom filter file of the archive
+	 * @param expectedGames The number of new games expected to be added this session
+	 * @return The open archive
+	 * @throws IOException Filesystem issue with reading the archive
+	 */
+	public static SeenGamesArchive open(final File bloomFile, final int expectedGames) throws IOException
+	{
+		final long savedCount = SeenGamesArchive.readSidecarCount(bloomFile, SeenGamesArchive.getSidecarFile(bloomFile));
+		final int wordCount = SeenGamesArchive.wordsFor(savedCount + (long) expectedGames);
+		long[] bloomWords = SeenGamesArchive.readBloom(bloomFile, savedCount, wordCount);
+		if(bloomWords == null)
+		{
+			bloomWords = new long[wordCount];
+			SeenGamesArchive.rebuildBloom(SeenGamesArchive.getSidecarFile(bloomFile), savedCount, bloomWords);
+		}
+		return new SeenGamesArchive(bloomFile, bloomWords, savedCount);
+	}
+
+	private static int bloomBit(final long high, final long low, final int hash, final long bitCount)
+	{
+		final long combined = low + (long) hash * high;
+		//noinspection NumericCastThatLosesPrecision
+		return (int) ((combined & Long.MAX_VALUE) % bitCount);
+	}
+
+	private static void bloomSet(final long[] bloomWords, final long high, final long low)
+	{
+		final long bitCount = (long) bloomWords.length * 64L;
+		for(int hash = 0; hash < SeenGamesArchive.HASH_COUNT; hash++)
+		{
+			final int bit = SeenGamesArchive.bloomBit(high, low, hash, bitCount);
+			bloomWords[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	private static boolean bloomTest(final long[] bloomWords, final long high, final long low)
+	{
+		final long bitCount = (long) bloomWords.length * 64L;
+		for(int hash = 0; hash < SeenGamesArchive.HASH_COUNT; hash++)
+		{
+			final int bit = SeenGamesArchive.bloomBit(high, low, hash, bitCount);
+			if((bloomWords[bit >>> 6] & 1L << bit) == 0L)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long[] readBloom(final File bloomFile, final long savedCount, final int minimumWords) throws IOException
+	{
+		if(! bloomFile.isFile())
+		{
+			return null;
+		}
+		final DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(bloomFile)));
+		try
+		{
+			if(inputStream.readInt() != SeenGamesArchive.BLOOM_MAGIC ||
+			   inputStream.readInt() != SeenGamesArchive.FORMAT_VERSION ||
+			   inputStream.readLong() != savedCount)
+			{
+				SeenGamesArchive.LOGGER.log(Level.INFO, "Rebuilding out of date Bloom filter " + bloomFile);
+				return null;
+			}
+			final int wordCount = inputStream.readInt();
+			if(wordCount < minimumWords)
+			{
+				return null;
+			}
+			final long[] bloomWords = new long[wordCount];
+			for(int i = 0; i < wordCount; i++)
+			{
+				bloomWords[i] = inputStream.readLong();
+			}
+			return bloomWords;
+		}
+		catch(final EOFException ignored)
+		{
+			return null;
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	private static long readSidecarCount(final File bloomFile, final File sidecarFile) throws IOException
+	{
+		if(! sidecarFile.isFile())
+		{
+			//The sidecar is always saved before its Bloom filter, so a Bloom filter without one has lost the archive's record
+			if(bloomFile.exists())
+			{
+				throw new IOException("Missing seen games sidecar " + sidecarFile + " for " + bloomFile);
+			}
+			return 0L;
+		}
+		final DataInputStream inputStream = new DataInputStream(new FileInputStream(sidecarFile));
+		try
+		{
+			if(inputStream.readInt() != SeenGamesArchive.SIDECAR_MAGIC || inputStream.readInt() != SeenGamesArchive.FORMAT_VERSION)
+			{
+				throw new IOException("Not a seen games sidecar: " + sidecarFile);
+			}
+			return inputStream.readLong();
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	private static void rebuildBloom(final File sidecarFile, final long savedCount, final long[] bloomWords) throws IOException
+	{
+		if(savedCount == 0L)
+		{
+			return;
+		}
+		final DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecarFile)));
+		try
+		{
+			inputStream.skipBytes(SeenGamesArchive.HEADER_BYTES);
+			for(long i = 0L; i < savedCount; i++)
+			{
+				SeenGamesArchive.bloomSet(bloomWords, inputStream.readLong(), inputStream.readLong());
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	private static void replaceFile(final File temporaryFile, final File file) throws IOException
+	{
+		//The sidecar is the archive's only exact record, so it is never deleted before its replacement is in place
+		Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static int wordsFor(final long games)
+	{
+		//Capped so that every bit of the filter can be addressed by an int
+		final long words = games * (long) SeenGamesArchive.BITS_PER_GAME / 64L + 1L;
+		//noinspection NumericCastThatLosesPrecision
+		return (int) Math.min((long) SeenGamesArchive.MAXIMUM_WORDS, Math.max((long) SeenGamesArchive.MINIMUM_WORDS, words));
+	}
+
+	/**
+	 * Adds a fingerprint to the archive
+	 *
+	 * @param high The high half of the fingerprint
+	 * @param low  The low half of the fingerprint
+	 * @return True if the fingerprint had not been seen before else false
+	 * @throws IOException Filesystem issue with reading the sidecar
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public boolean add(final long high, final long low) throws IOException
+	{
+		if(this.contains(high, low))
+		{
+			return false;
+		}
+		SeenGamesArchive.bloomSet(this.bloomWords, high, low);
+		this.sessionSet.add(high, low);
+		if(this.sessionCount * 2 == this.sessionPairs.length)
+		{
+			this.sessionPairs = Arrays.copyOf(this.sessionPairs, this.sessionPairs.length * 2);
+		}
+		this.sessionPairs[this.sessionCount * 2] = high;
+		this.sessionPairs[this.sessionCount * 2 + 1] = low;
+		this.sessionCount++;
+		return true;
+	}
+
+	/**
+	 * Closes the archive without saving any fingerprints added since it was last saved
+	 *
+	 * @throws IOException Filesystem issue with closing the sidecar
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public void close() throws IOException
+	{
+		if(this.sidecarChannel != null)
+		{
+			this.sidecarChannel.close();
+			this.sidecarChannel = null;
+		}
+	}
+
+	/**
+	 * Checks whether a fingerprint has been seen before
+	 *
+	 * @param high The high half of the fingerprint
+	 * @param low  The low half of the fingerprint
+	 * @return True if the fingerprint has been seen before else false
+	 * @throws IOException Filesystem issue with reading the sidecar
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public boolean contains(final long high, final long low) throws IOException
+	{
+		if(! SeenGamesArchive.bloomTest(this.bloomWords, high, low))
+		{
+			return false;
+		}
+		return this.sessionSet.contains(high, low) || this.isSaved(high, low);
+	}
+
+	/**
+	 * Getter for the number of fingerprints in the archive, including any not yet saved
+	 *
+	 * @return long The number of fingerprints
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public long getCount()
+	{
+		return this.savedCount + (long) this.sessionCount;
+	}
+
+	/**
+	 * Saves the fingerprints added this session. They are merged into the sorted sidecar and the Bloom filter is written out alongside it.
+	 *
+	 * @throws IOException Filesystem issue with writing the archive
+	 */
+	@SuppressWarnings("PublicMethodNotExposedInInterface")
+	public void save() throws IOException
+	{
+		FingerprintSort.sort(this.sessionPairs, 2, 0, this.sessionCount);
+		final long mergedCount = this.savedCount + (long) this.sessionCount;
+		final File temporarySidecar = new File(this.sidecarFile.getPath() + SeenGamesArchive.TEMP_EXTENSION);
+		final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporarySidecar)));
+		try
+		{
+			outputStream.writeInt(SeenGamesArchive.SIDECAR_MAGIC);
+			outputStream.writeInt(SeenGamesArchive.FORMAT_VERSION);
+			outputStream.writeLong(mergedCount);
+			this.mergeInto(outputStream);
+		}
+		finally
+		{
+			outputStream.close();
+		}
+		this.close();
+		SeenGamesArchive.replaceFile(temporarySidecar, this.sidecarFile);
+		this.savedCount = mergedCount;
+		this.sessionSet = new FingerprintSet(16);
+		this.sessionCount = 0;
+		if(this.savedCount > 0L)
+		{
+			this.sidecarChannel = new RandomAccessFile(this.sidecarFile, "r").getChannel();
+		}
+		this.writeBloom();
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "SeenGamesArchive{" +
+			   "bloomFile=" + this.bloomFile +
+			   ", savedCount=" + this.savedCount +
+			   ", sessionCount=" + this.sessionCount +
+			   '}';
+	}
+
+	private boolean isSaved(final long high, final long low) throws IOException
+	{
+		long first = 0L;
+		long last = this.savedCount - 1L;
+		while(first <= last)
+		{
+			final long middle = first + last >>> 1;
+			this.readSavedPair(middle);
+			final long savedHigh = this.probe.getLong(0);
+			final long savedLow = this.probe.getLong(8);
+			if(savedHigh == high && savedLow == low)
+			{
+				return true;
+			}
+			if(savedHigh < high || savedHigh == high && savedLow < low)
+			{
+				first = middle + 1L;
+			}
+			else
+			{
+				last = middle - 1L;
+			}
+		}
+		return false;
+	}
+
+	private void mergeInto(final DataOutputStream outputStream) throws IOException
+	{
+		DataInputStream inputStream = null;
+		if(this.savedCount > 0L)
+		{
+			inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(this.sidecarFile)));
+			inputStream.skipBytes(SeenGamesArchive.HEADER_BYTES);
+		}
+		try
+		{
+			int session = 0;
+			long saved = 0L;
+			long savedHigh = 0L;
+			long savedLow = 0L;
+			if(inputStream != null)
+			{
+				savedHigh = inputStream.readLong();
+				savedLow = inputStream.readLong();
+			}
+			while(saved < this.savedCount || session < this.sessionCount)
+			{
+				final long sessionHigh = session < this.sessionCount ? this.sessionPairs[session * 2] : 0L;
+				final long sessionLow = session < this.sessionCount ? this.sessionPairs[session * 2 + 1] : 0L;
+				final boolean takeSaved = saved < this.savedCount && (session == this.sessionCount || savedHigh < sessionHigh ||
+																	  savedHigh == sessionHigh && savedLow < sessionLow);
+				if(takeSaved)
+				{
+					outputStream.writeLong(savedHigh);
+					outputStream.writeLong(savedLow);
+					saved++;
+					if(saved < this.savedCount)
+					{
+						//noinspection ConstantConditions
+						savedHigh = inputStream.readLong();
+						savedLow = inputStream.readLong();
+					}
+				}
+				else
+				{
+					outputStream.writeLong(sessionHigh);
+					outputStream.writeLong(sessionLow);
+					session++;
+				}
+			}
+		}
+		finally
+		{
+			if(inputStream != null)
+			{
+				inputStream.close();
+			}
+		}
+	}
+
+	private void readSavedPair(final long pair) throws IOException
+	{
+		this.probe.clear();
+		long position = (long) SeenGamesArchive.HEADER_BYTES + pair * (long) SeenGamesArchive.PAIR_BYTES;
+		while(this.probe.hasRemaining())
+		{
+			final int read = this.sidecarChannel.read(this.probe, position);
+			if(read == - 1)
+			{
+				throw new EOFException("Truncated seen games sidecar " + this.sidecarFile);
+			}
+			position += (long) read;
+		}
+	}
+
+	private void writeBloom() throws IOException
+	{
+		final File temporaryBloom = new File(this.bloomFile.getPath() + SeenGamesArchive.TEMP_EXTENSION);
+		final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryBloom)));
+		try
+		{
+			outputStream.writeInt(SeenGamesArchive.BLOOM_MAGIC);
+			outputStream.writeInt(SeenGamesArchive.FORMAT_VERSION);
+			outputStream.writeLong(this.savedCount);
+			outputStream.writeInt(this.bloomWords.length);
+			for(final long bloomWord : this.bloomWords)
+			{
+				outputStream.writeLong(bloomWord);
+			}
+		}
+		finally
+		{
+			outputStream.close();
+		}
+		SeenGamesArchive.replaceFile(temporaryBloom, this.bloomFile);
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.filters;
+
+import chesspresso.game.Game;
+
+/**
+ * A Filter that can decide the fate of each game on its own, without seeing the rest of the list. Games can therefore be filtered as they are read
+ * from a PGN file rather than once the whole file has been loaded.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+@SuppressWarnings("ClassUnconnectedToPackage")
+public interface StreamableFilter extends Filter
+{
+	/**
+	 * Decides whether a single game survives the filter
+	 *
+	 * @param game The game to be assessed
+	 * @return True if the game should be kept else false
+	 */
+	public boolean isRetained(final Game game);
+
+	/**
+	 * Advises whether the filter can currently decide on games one at a time. A filter that cannot must be given the whole list of games.
+	 *
+	 * @return True if isRetained may be called else false
+	 */
+	public boolean isStreamable();
+}
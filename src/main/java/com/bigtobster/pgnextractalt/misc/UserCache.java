@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.misc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+
+/**
+ * Locates the private per-user cache directory ($XDG_CACHE_HOME/pgn-extract-alt, or ~/.cache/pgn-extract-alt) and writes files into it. The
+ * directory is created owner-only, and is refused outright if it is a link or belongs to another user, so nothing read back out of it can have
+ * been planted by someone else.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class UserCache
+{
+	private static final String                   CACHE_HOME     = ".cache";
+	private static final String                   DIRECTORY      = "pgn-extract-alt";
+	private static final Set<PosixFilePermission> OWNER_ONLY     = PosixFilePermissions.fromString("rwx------");
+	private static final String                   POSIX          = "posix";
+	private static final String                   TEMP_SUFFIX    = ".tmp";
+	private static final String                   XDG_CACHE_HOME = "XDG_CACHE_HOME";
+
+	private UserCache()
+	{
+	}
+
+	/**
+	 * Gets the cache directory, creating it if need be
+	 *
+	 * @return The cache directory
+	 * @throws java.io.IOException Thrown if the directory cannot be created, or is not private to the current user
+	 */
+	public static File getDirectory() throws IOException
+	{
+		final String cacheHome = System.getenv(UserCache.XDG_CACHE_HOME);
+		final Path parent;
+		if((cacheHome != null) && new File(cacheHome).isAbsolute())
+		{
+			parent = Paths.get(cacheHome);
+		}
+		else
+		{
+			parent = Paths.get(System.getProperty("user.home"), UserCache.CACHE_HOME);
+		}
+		final Path directory = parent.resolve(UserCache.DIRECTORY);
+		final boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains(UserCache.POSIX);
+		if(! Files.exists(directory, LinkOption.NOFOLLOW_LINKS))
+		{
+			Files.createDirectories(parent);
+			try
+			{
+				if(posix)
+				{
+					Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(UserCache.OWNER_ONLY));
+				}
+				else
+				{
+					Files.createDirectory(directory);
+				}
+			}
+			catch(final FileAlreadyExistsException ignored)
+			{
+				// Created by another run in the meantime, and checked below like any other existing directory
+			}
+		}
+		if(! Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS))
+		{
+			throw new IOException("cache directory is not a plain directory: " + directory);
+		}
+		if(posix)
+		{
+			final PosixFileAttributeView view = Files.getFileAttributeView(directory, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+			final UserPrincipal owner = view.getOwner();
+			if(! owner.getName().equals(System.getProperty("user.name")))
+			{
+				throw new IOException("cache directory: " + directory + " is owned by: " + owner.getName());
+			}
+			if(! view.readAttributes().permissions().equals(UserCache.OWNER_ONLY))
+			{
+				view.setPermissions(UserCache.OWNER_ONLY);
+			}
+		}
+		return directory.toFile();
+	}
+
+	/**
+	 * Writes a file into the cache directory. The content goes to an owner-only temporary file first, which then replaces any old copy in a single
+	 * step, so readers never see a half-written file.
+	 *
+	 * @param name    The name of the file within the cache directory
+	 * @param content The content of the file
+	 * @return The written file
+	 * @throws java.io.IOException Thrown if the cache directory is unavailable or the file cannot be written
+	 */
+	public static File write(final String name, final byte[] content) throws IOException
+	{
+		final Path directory = UserCache.getDirectory().toPath();
+		final Path tempFile = Files.createTempFile(directory, name, UserCache.TEMP_SUFFIX);
+		try
+		{
+			Files.write(tempFile, content);
+			return Files.move(tempFile, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE).toFile();
+		}
+		catch(final IOException ioe)
+		{
+			Files.deleteIfExists(tempFile);
+			throw ioe;
+		}
+	}
+}
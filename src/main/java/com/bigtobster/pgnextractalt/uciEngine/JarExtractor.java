@@ -10,19 +10,31 @@
 
 package com.bigtobster.pgnextractalt.uciEngine;
 
+import com.bigtobster.pgnextractalt.misc.UserCache;
+
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.ProtectionDomain;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
 /**
- * Utility class which extracts files from a JAR and then marks them to be cleaned up. Essentially works as a per-instance installer. Created by Toby
+ * Utility class which extracts files from a JAR into the private per-user cache kept between runs. Essentially works as a per-user installer.
+ * Cached files are named after the CRC and size the JAR records for them, so a new version of a file never collides with an old one. A file is
+ * only read in full while it is extracted, when it is checked against the JAR's CRC and size and its SHA-256 digest is written to a marker
+ * beside it. Later runs trust a cached file whose size matches and whose marker exists, as nobody else can write to the cache. Created by Toby
  * Leheup on 15/02/16 for pgn-extract-alt.
  *
  * @author Toby Leheup (Bigtobster)
@@ -30,8 +42,16 @@ import java.util.zip.ZipFile;
  */
 final class JarExtractor
 {
-	@SuppressWarnings("UnusedDeclaration")
-	private static final Logger LOGGER = Logger.getLogger(JarExtractor.class.getName());
+	private static final int     BUFFER_SIZE     = 64 * 1024;
+	private static final char    CACHE_SEPARATOR = '-';
+	private static final String  CRC_FORMAT      = "%08x";
+	private static final String  DIGEST          = "SHA-256";
+	private static final int     DIGEST_LENGTH   = 64;
+	private static final String  DIGEST_SUFFIX   = ".sha256";
+	private static final String  HEX_FORMAT      = "%02x";
+	private static final Logger  LOGGER          = Logger.getLogger(JarExtractor.class.getName());
+	private static final Charset MARKER_CHARSET  = StandardCharsets.US_ASCII;
+	private static final String  PART_SUFFIX     = ".part";
 
 	private static void close(final Closeable stream) throws IOException
 	{
@@ -41,51 +61,200 @@ final class JarExtractor
 		}
 	}
 
+	/**
+	 * Copies a file out of the archive, checking the copy against the CRC and size the archive records for it
+	 *
+	 * @return The digest of the copy
+	 * @throws java.util.zip.ZipException Thrown if the copy does not match the CRC or size
+	 */
+	private static byte[] copy(final ZipFile zipFile, final ZipEntry entry, final File file) throws IOException
+	{
+		final InputStream zipStream = zipFile.getInputStream(entry);
+		OutputStream fileStream = null;
+		final MessageDigest copyDigest = JarExtractor.newDigest();
+		final CRC32 copyCrc = new CRC32();
+		long copySize = 0L;
+		try
+		{
+			//noinspection IOResourceOpenedButNotSafelyClosed
+			fileStream = new FileOutputStream(file);
+			final byte[] buf = new byte[JarExtractor.BUFFER_SIZE];
+			int i = zipStream.read(buf);
+			while(i != - 1)
+			{
+				copyDigest.update(buf, 0, i);
+				copyCrc.update(buf, 0, i);
+				copySize += (long) i;
+				fileStream.write(buf, 0, i);
+				i = zipStream.read(buf);
+			}
+		}
+		finally
+		{
+			JarExtractor.close(zipStream);
+			JarExtractor.close(fileStream);
+		}
+		if((copyCrc.getValue() != entry.getCrc()) || (copySize != entry.getSize()))
+		{
+			throw new ZipException("CRC or size mismatch extracting: " + entry.getName() + " from archive: " + zipFile.getName());
+		}
+		return copyDigest.digest();
+	}
+
+	private static byte[] digest(final InputStream stream) throws IOException
+	{
+		final MessageDigest digest = JarExtractor.newDigest();
+		try
+		{
+			final byte[] buf = new byte[JarExtractor.BUFFER_SIZE];
+			int i = stream.read(buf);
+			while(i != - 1)
+			{
+				digest.update(buf, 0, i);
+				i = stream.read(buf);
+			}
+		}
+		finally
+		{
+			stream.close();
+		}
+		return digest.digest();
+	}
+
 	private static URI extract(
 			final ZipFile zipFile,
 			final String fileName
 							  )
 			throws IOException
 	{
-		final File tempFile;
-		final ZipEntry entry;
-		final InputStream zipStream;
-		OutputStream fileStream = null;
-		tempFile = File.createTempFile(fileName, Long.toString(System.currentTimeMillis()));
-		tempFile.deleteOnExit();
-		entry = zipFile.getEntry(fileName);
-
+		final ZipEntry entry = zipFile.getEntry(fileName);
 		if(entry == null)
 		{
 			throw new FileNotFoundException("cannot find file: " + fileName + " in archive: " + zipFile.getName());
 		}
 
-		zipStream = zipFile.getInputStream(entry);
-
+		final File cacheDirectory;
+		try
+		{
+			cacheDirectory = UserCache.getDirectory();
+		}
+		catch(final IOException ioe)
+		{
+			JarExtractor.LOGGER.log(Level.FINE, "Extraction cache unavailable", ioe);
+			return JarExtractor.extractToTempFile(zipFile, entry, fileName);
+		}
+		final File cachedFile = new File(
+				cacheDirectory,
+				String.format(JarExtractor.CRC_FORMAT, entry.getCrc()) + JarExtractor.CACHE_SEPARATOR + entry.getSize() +
+				JarExtractor.CACHE_SEPARATOR + fileName.substring(fileName.lastIndexOf('/') + 1)
+										);
+		final File digestFile = JarExtractor.getDigestFile(cachedFile);
+		if(cachedFile.isFile() && (cachedFile.length() == entry.getSize()) && digestFile.isFile())
+		{
+			return cachedFile.toURI();
+		}
+		final File partFile = Files.createTempFile(cacheDirectory.toPath(), cachedFile.getName(), JarExtractor.PART_SUFFIX).toFile();
+		final byte[] digest;
+		try
+		{
+			digest = JarExtractor.copy(zipFile, entry, partFile);
+		}
+		catch(final IOException ioe)
+		{
+			//noinspection ResultOfMethodCallIgnored
+			partFile.delete();
+			throw ioe;
+		}
+		// Another run may have cached the file in the meantime, or the old copy may be in use and impossible to replace. Either way, the file which
+		// ends up in place is checked in full before its marker is written, and a run which cannot use it keeps its own copy until it exits.
+		if(! partFile.renameTo(cachedFile) && ! JarExtractor.isIntact(cachedFile, digest))
+		{
+			partFile.deleteOnExit();
+			return partFile.toURI();
+		}
+		//noinspection ResultOfMethodCallIgnored
+		partFile.delete();
+		if(! JarExtractor.isIntact(cachedFile, digest))
+		{
+			return JarExtractor.extractToTempFile(zipFile, entry, fileName);
+		}
 		try
 		{
-			final byte[] buf;
-			int i;
+			UserCache.write(digestFile.getName(), JarExtractor.toHex(digest).getBytes(JarExtractor.MARKER_CHARSET));
+		}
+		catch(final IOException ioe)
+		{
+			// The file is intact, so is still used - it will simply be extracted again by the next run
+			JarExtractor.LOGGER.log(Level.FINE, "Unable to write extraction marker", ioe);
+		}
+		return cachedFile.toURI();
+	}
 
-			//noinspection IOResourceOpenedButNotSafelyClosed
-			fileStream = new FileOutputStream(tempFile);
-			//noinspection MagicNumber
-			buf = new byte[1024];
-			i = zipStream.read(buf);
+	private static URI extractToTempFile(final ZipFile zipFile, final ZipEntry entry, final String fileName) throws IOException
+	{
+		final String prefix = fileName.substring(fileName.lastIndexOf('/') + 1);
+		final File tempFile = Files.createTempFile(prefix, Long.toString(System.currentTimeMillis())).toFile();
+		tempFile.deleteOnExit();
+		JarExtractor.copy(zipFile, entry, tempFile);
+		return tempFile.toURI();
+	}
 
-			while(i != - 1)
-			{
-				fileStream.write(buf, 0, i);
-				i = zipStream.read(buf);
-			}
+	private static File getDigestFile(final File file)
+	{
+		return new File(file.getParentFile(), file.getName() + JarExtractor.DIGEST_SUFFIX);
+	}
+
+	/**
+	 * Checks a file against the digest of the copy extracted from the archive
+	 */
+	private static boolean isIntact(final File file, final byte[] digest) throws IOException
+	{
+		return file.isFile() && MessageDigest.isEqual(JarExtractor.digest(new FileInputStream(file)), digest);
+	}
+
+	private static MessageDigest newDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance(JarExtractor.DIGEST);
 		}
-		finally
+		catch(final NoSuchAlgorithmException nsae)
 		{
-			JarExtractor.close(zipStream);
-			JarExtractor.close(fileStream);
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(nsae);
 		}
+	}
 
-		return tempFile.toURI();
+	private static String toHex(final byte[] bytes)
+	{
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for(final byte b : bytes)
+		{
+			hex.append(String.format(JarExtractor.HEX_FORMAT, b));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Gets the SHA-256 digest of a file. A file extracted into the cache has its digest read from the marker written when it was extracted,
+	 * rather than being read in full again.
+	 *
+	 * @param file The file to digest
+	 * @return The digest in hex
+	 * @throws IOException Issue on reading the file
+	 */
+	static String getDigest(final File file) throws IOException
+	{
+		final File digestFile = JarExtractor.getDigestFile(file);
+		if(digestFile.isFile())
+		{
+			final String digest = new String(Files.readAllBytes(digestFile.toPath()), JarExtractor.MARKER_CHARSET);
+			if(digest.length() == JarExtractor.DIGEST_LENGTH)
+			{
+				return digest;
+			}
+		}
+		return JarExtractor.toHex(JarExtractor.digest(new FileInputStream(file)));
 	}
 
 	/**
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.uciEngine;
+
+/**
+ * Describes when an engine search stops. A search stops on reaching its limit of depth, nodes or time, or earlier in adaptive mode once the
+ * engine's best move has stayed the same for a number of consecutive iterations. Node and depth limits give a cost per position which does not
+ * depend on the machine, whereas a time limit gives a fixed throughput.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class SearchLimit
+{
+	private final SearchLimitMode mode;
+	private final int             stableIterations;
+	private final long            value;
+
+	/**
+	 * Constructor for a search which always runs to its limit
+	 *
+	 * @param mode  The kind of limit
+	 * @param value The depth in plies, number of nodes or time in ms at which the search stops
+	 */
+	public SearchLimit(final SearchLimitMode mode, final long value)
+	{
+		this(mode, value, 0);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param mode             The kind of limit
+	 * @param value            The depth in plies, number of nodes or time in ms at which the search stops
+	 * @param stableIterations The number of consecutive iterations the best move must stay the same for the search to stop early, or 0 to always
+	 *                         search to the limit
+	 */
+	public SearchLimit(final SearchLimitMode mode, final long value, final int stableIterations)
+	{
+		if(value <= 0L)
+		{
+			throw new IllegalArgumentException("Search limit must be greater than 0: " + value);
+		}
+		if(stableIterations < 0)
+		{
+			throw new IllegalArgumentException("Stable iterations must not be negative: " + stableIterations);
+		}
+		this.mode = mode;
+		this.value = value;
+		this.stableIterations = stableIterations;
+	}
+
+	@Override
+	public boolean equals(final Object o)
+	{
+		if(this == o)
+		{
+			return true;
+		}
+		if(! (o instanceof SearchLimit))
+		{
+			return false;
+		}
+		final SearchLimit other = (SearchLimit) o;
+		return (this.mode == other.mode) && (this.value == other.value) && (this.stableIterations == other.stableIterations);
+	}
+
+	/**
+	 * Getter for the kind of limit
+	 *
+	 * @return The kind of limit
+	 */
+	public SearchLimitMode getMode()
+	{
+		return this.mode;
+	}
+
+	/**
+	 * Getter for the number of consecutive iterations the best move must stay the same for the search to stop early
+	 *
+	 * @return The number of iterations, or 0 if the search always runs to its limit
+	 */
+	public int getStableIterations()
+	{
+		return this.stableIterations;
+	}
+
+	/**
+	 * Getter for the limit
+	 *
+	 * @return The depth in plies, number of nodes or time in ms at which the search stops
+	 */
+	public long getValue()
+	{
+		return this.value;
+	}
+
+	/**
+	 * The hash code depends only on the limit's values, not on the identity of its mode, so that it is the same on every run. This lets it
+	 * identify the limit in the files kept between runs.
+	 */
+	@Override
+	public int hashCode()
+	{
+		return (this.mode.ordinal() * 31 + (int) (this.value ^ (this.value >>> 32))) * 31 + this.stableIterations;
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "SearchLimit{" +
+			   "mode=" + this.mode +
+			   ", value=" + this.value +
+			   ", stableIterations=" + this.stableIterations +
+			   '}';
+	}
+
+	/**
+	 * Builds the arguments of the UCI "go" command which apply this limit
+	 *
+	 * @return The limit's "go" arguments, such as "depth 13"
+	 */
+	String getGoArguments()
+	{
+		return this.mode.name().toLowerCase() + ' ' + this.value;
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.uciEngine;
+
+/**
+ * Enumerated type of the ways a search can be limited. Each corresponds to one of the limits of the UCI "go" command.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public enum SearchLimitMode
+{
+	/**
+	 * Searches until the given depth in plies has been completed
+	 */
+	DEPTH,
+	/**
+	 * Searches until the given number of nodes has been searched. The cost of a search is then fixed regardless of the position.
+	 */
+	NODES,
+	/**
+	 * Searches for the given time in ms
+	 */
+	MOVETIME
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.uciEngine;
+
+/**
+ * The outcome of a single engine search - the best move found along with the score of the position it was searched from. Scores are from the
+ * point of view of the side to move, so a positive score favours the player about to move.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class SearchResult
+{
+	/**
+	 * The move reported by the engine when the searched position has no legal moves
+	 */
+	public static final String NO_MOVE = "(none)";
+	private final String  bestMove;
+	private final boolean mate;
+	private final float   score;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bestMove The best move found in coordinate notation, or NO_MOVE
+	 * @param score    The score of the position in centipawns, or the number of moves to mate when a mate was found
+	 * @param mate     Whether the engine found a forced mate. A negative score means the side to move is being mated.
+	 */
+	@SuppressWarnings("BooleanParameter")
+	public SearchResult(final String bestMove, final float score, final boolean mate)
+	{
+		this.bestMove = bestMove;
+		this.score = score;
+		this.mate = mate;
+	}
+
+	/**
+	 * Getter for the best move
+	 *
+	 * @return The best move found in coordinate notation, or NO_MOVE
+	 */
+	public String getBestMove()
+	{
+		return this.bestMove;
+	}
+
+	/**
+	 * Getter for the score
+	 *
+	 * @return The score in centipawns, or the number of moves to mate when isMate
+	 */
+	public float getScore()
+	{
+		return this.score;
+	}
+
+	/**
+	 * Whether the engine found a forced mate for either side
+	 *
+	 * @return True if the score counts moves to mate rather than centipawns
+	 */
+	public boolean isMate()
+	{
+		return this.mate;
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "SearchResult{" +
+			   "bestMove='" + this.bestMove + '\'' +
+			   ", score=" + this.score +
+			   ", mate=" + this.mate +
+			   '}';
+	}
+}
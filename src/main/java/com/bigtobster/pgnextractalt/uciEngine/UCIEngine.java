@@ -14,6 +14,8 @@ import javax.naming.OperationNotSupportedException;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -28,12 +30,20 @@ import java.util.regex.Pattern;
 @SuppressWarnings({"PublicMethodNotExposedInInterface", "ClassWithTooManyMethods"})
 public class UCIEngine
 {
+	/**
+	 * The hash table size in MB each engine is given when none is specified
+	 */
+	public static final  int            USE_HASH_MB              = 1024;
+	/**
+	 * The number of search threads each engine is given when none is specified
+	 */
+	public static final  int            USE_THREADS              = 4;
 	private static final String         BESTMOVE_UCI             = "bestmove";
 	private static final String         CP_UCI                   = "cp";
 	private static final String         DEBUG_TERMINATION_STRING = "Checkers:";
 	private static final String         DEBUG_UCI                = "d";
-	private static final long           DEFAULT_THREAD_SLEEP     = 10L;
 	private static final String         DEPTH_UCI                = "depth";
+	private static final String         END_OF_OUTPUT            = "\0";
 	@SuppressWarnings("DuplicateStringLiteralInspection")
 	private static final String         FALSE_UCI                = "false";
 	private static final String         FEN_DEBUG_MARKER         = "Fen:";
@@ -45,6 +55,7 @@ public class UCIEngine
 	private static final int            LINES_OF_ANALYSIS        = 1;
 	private static final Logger         LOGGER                   = Logger.getLogger(UCIEngine.class.getName());
 	private static final String         MATE_UCI                 = "mate";
+	private static final String         MOVES_UCI                = "moves";
 	private static final String         MULTIPV_UCI              = "multipv";
 	private static final String         NAME_UCI                 = "name";
 	private static final String         NEW_LINE                 = "\n";
@@ -52,6 +63,8 @@ public class UCIEngine
 	private static final String         NODES_UCI                = "nodes";
 	private static final String         PONDER_UCI               = "ponder";
 	private static final String         POSITION_UCI             = "position";
+	private static final String         PV_UCI                   = "pv";
+	private static final long           QUIT_TIMEOUT             = 1000L;
 	private static final String         QUIT_UCI                 = "quit";
 	private static final String         SCORE_UCI                = "score";
 	private static final String         SEARCHMOVES_UCI          = "searchmoves";
@@ -64,6 +77,10 @@ public class UCIEngine
 			UCIEngine.SPACE
 																				  );
 	private static final Pattern        SPACE_PATTERN            = Pattern.compile(UCIEngine.SPACE);
+	private static final String         STARTPOS_UCI             = "startpos";
+	private static final String         START_FEN                = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+	private static final String         STOP_UCI                 = "stop";
+	private static final String         SYZYGYPATH_UCI           = "SyzygyPath";
 	private static final String         THREADS_UCI              = "threads";
 	private static final String         UCINEWGAME_UCI           = "ucinewgame";
 	private static final String         UPPERBOUND_UCI           = "upperbound";
@@ -73,48 +90,118 @@ public class UCIEngine
 			UCIEngine.SPACE +
 			UCIEngine.NODES_UCI
 																				  );
-	private static final int            USE_HASH_MB              = 1024;
-	private static final int            USE_THREADS              = 4;
 	private static final String         VALUE_UCI                = "value";
-	private static final double         WAIT_MODIFIER            = 0.2;
 	private              Process        engineProcess            = null;
+	private final        StringBuilder  gameMoves                = new StringBuilder(UCIEngine.INIT_BUFFER_SIZE);
+	private              String         gameStart                = null;
+	private              OutputReader   outputReader             = null;
 	private              BufferedReader processReader            = null;
 	private              BufferedWriter processWriter            = null;
 
 	/**
-	 * This function returns the best move for a given position after it has reached a depth of 'depth'. It will check that it has reached depth of
-	 * 'depth' after 'waitTime' seconds.
+	 * Extracts an engine binary out of the jar and marks it executable
+	 *
+	 * @param fullEnginePath The path to the UCI engine within the jar
+	 * @return The extracted engine binary
+	 * @throws javax.naming.OperationNotSupportedException Either architecture or operating system not supported
+	 * @throws java.io.IOException                         Error finding engine binary
+	 * @throws java.net.URISyntaxException                 Thrown on bad URI
+	 */
+	static File extractEngine(final String fullEnginePath) throws OperationNotSupportedException, IOException, URISyntaxException
+	{
+		final URI uri = JarExtractor.getJarURI();
+		final File engineBinary = JarExtractor.getFile(uri, fullEnginePath);
+		//noinspection ResultOfMethodCallIgnored
+		engineBinary.setExecutable(true);
+		return engineBinary;
+	}
+
+	/**
+	 * Identifies an engine binary by the SHA-256 digest of its contents, so that results recorded by one build of an engine are never taken for
+	 * those of another build kept at the same path
+	 *
+	 * @param fullEnginePath The path to the UCI engine within the jar
+	 * @return The digest of the engine binary in hex
+	 * @throws javax.naming.OperationNotSupportedException Either architecture or operating system not supported
+	 * @throws java.io.IOException                         Error finding or reading engine binary
+	 * @throws java.net.URISyntaxException                 Thrown on bad URI
+	 */
+	public static String getEngineDigest(final String fullEnginePath) throws OperationNotSupportedException, IOException, URISyntaxException
+	{
+		return JarExtractor.getDigest(UCIEngine.extractEngine(fullEnginePath));
+	}
+
+	/**
+	 * This function returns the best move for a given position once it has reached a depth of 'depth'. The move is returned as soon as the engine
+	 * reports it.
+	 *
+	 * @param depth The depth the engine will go to in the search for the best move
+	 * @return Best Move in Long Algebraic Notation format
+	 * @throws java.io.IOException Error on executing UCI command
+	 */
+	public String getBestMoveAlt(final int depth) throws IOException
+	{
+		return this.getBestMoveAlt(new SearchLimit(SearchLimitMode.DEPTH, (long) depth));
+	}
+
+	/**
+	 * This function returns the best move for a given position once the search reaches its limit
+	 *
+	 * @param searchLimit When the search for the best move stops
+	 * @return Best Move in Long Algebraic Notation format
+	 * @throws java.io.IOException Error on executing UCI command
+	 */
+	public String getBestMoveAlt(final SearchLimit searchLimit) throws IOException
+	{
+		this.sendCommand(UCIEngine.GO_UCI + UCIEngine.SPACE + searchLimit.getGoArguments());
+		final String engineOutput = this.getMoveSearchOutput(searchLimit.getStableIterations());
+		return UCIEngine.SPACE_PATTERN.split(UCIEngine.BEST_MOVE_PATTERN.split(engineOutput)[1])[0];
+	}
+
+	/**
+	 * This function returns the best move for a given position once it has reached a depth of 'depth'.
 	 *
 	 * @param depth    The depth the engine will go to in the search for the best move
-	 * @param waitTime The initial time the engine will wait before checking if analysis to depth 'depth' has been achieved
+	 * @param waitTime No longer used - the engine's output is read as soon as it is written
 	 * @return Best Move in Long Algebraic Notation format
 	 * @throws java.io.IOException Error on executing UCI command
+	 * @deprecated Use {@link #getBestMoveAlt(int)}
 	 */
 	@SuppressWarnings("UnusedDeclaration")
+	@Deprecated
 	public String getBestMoveAlt(final int depth, final int waitTime) throws IOException
 	{
-		this.sendCommand(UCIEngine.GO_UCI + UCIEngine.SPACE + UCIEngine.DEPTH_UCI + UCIEngine.SPACE + depth);
-		final String engineOutput = this.getMoveSearchOutput(waitTime);
-		return UCIEngine.SPACE_PATTERN.split(UCIEngine.BEST_MOVE_PATTERN.split(engineOutput)[1])[0];
+		return this.getBestMoveAlt(depth);
 	}
 
 	/**
 	 * Get the evaluation score of a given move - does not actually execute the move
 	 *
-	 * @param lanMove  The move to be evaluated
-	 * @param depth    The depth the engine will go to in the search for the best move
-	 * @param waitTime in milliseconds
+	 * @param lanMove The move to be evaluated
+	 * @param depth   The depth the engine will go to in the search for the best move
 	 * @return evalScore The score of the move
 	 * @throws java.io.IOException Error on executing UCI command
 	 */
-	@SuppressWarnings("UnusedDeclaration")
-	public float getMoveScoreAlt(final String lanMove, final int depth, final int waitTime) throws IOException
+	public float getMoveScoreAlt(final String lanMove, final int depth) throws IOException
+	{
+		return this.getMoveScoreAlt(lanMove, new SearchLimit(SearchLimitMode.DEPTH, (long) depth));
+	}
+
+	/**
+	 * Get the evaluation score of a given move once the search reaches its limit - does not actually execute the move
+	 *
+	 * @param lanMove     The move to be evaluated
+	 * @param searchLimit When the search of the move stops
+	 * @return evalScore The score of the move
+	 * @throws java.io.IOException Error on executing UCI command
+	 */
+	public float getMoveScoreAlt(final String lanMove, final SearchLimit searchLimit) throws IOException
 	{
 		this.sendCommand(
-				UCIEngine.GO_UCI + UCIEngine.SPACE + UCIEngine.DEPTH_UCI + UCIEngine.SPACE + depth + UCIEngine.SPACE +
+				UCIEngine.GO_UCI + UCIEngine.SPACE + searchLimit.getGoArguments() + UCIEngine.SPACE +
 				UCIEngine.SEARCHMOVES_UCI + UCIEngine.SPACE + lanMove
 						);
-		final String engineOutput = this.getMoveSearchOutput(waitTime);
+		final String engineOutput = this.getMoveSearchOutput(searchLimit.getStableIterations());
 
 		float evalScore = 0.0f;
 		final String[] dump = UCIEngine.NEW_LINE_PATTERN.split(engineOutput);
@@ -149,6 +236,40 @@ public class UCIEngine
 		return Math.abs(evalScore);
 	}
 
+	/**
+	 * Get the evaluation score of a given move - does not actually execute the move
+	 *
+	 * @param lanMove  The move to be evaluated
+	 * @param depth    The depth the engine will go to in the search for the best move
+	 * @param waitTime No longer used - the engine's output is read as soon as it is written
+	 * @return evalScore The score of the move
+	 * @throws java.io.IOException Error on executing UCI command
+	 * @deprecated Use {@link #getMoveScoreAlt(String, int)}
+	 */
+	@SuppressWarnings("UnusedDeclaration")
+	@Deprecated
+	public float getMoveScoreAlt(final String lanMove, final int depth, final int waitTime) throws IOException
+	{
+		return this.getMoveScoreAlt(lanMove, depth);
+	}
+
+	/**
+	 * Plays a move in the game started by startGame. The engine is sent the game's starting position and every move played since, so that it
+	 * can keep what it has learnt about the earlier positions.
+	 *
+	 * @param coordinateMove The move in coordinate notation, including the promotion piece if any
+	 * @throws java.io.IOException Error on executing UCI command
+	 */
+	public void playMove(final String coordinateMove) throws IOException
+	{
+		if(this.gameMoves.length() == 0)
+		{
+			this.gameMoves.append(UCIEngine.SPACE).append(UCIEngine.MOVES_UCI);
+		}
+		this.gameMoves.append(UCIEngine.SPACE).append(coordinateMove);
+		this.sendCommand(this.gameStart + this.gameMoves);
+	}
+
 	/**
 	 * Discards the current game and sets up a new board
 	 *
@@ -170,12 +291,47 @@ public class UCIEngine
 	@SuppressWarnings({"UnusedDeclaration"})
 	public void startEngine(final String fullEnginePath) throws OperationNotSupportedException, IOException, URISyntaxException
 	{
-		final URI uri = JarExtractor.getJarURI();
-		final File engineBinary = JarExtractor.getFile(uri, fullEnginePath);
-		//noinspection ResultOfMethodCallIgnored
-		engineBinary.setExecutable(true);
-		this.startEngine(engineBinary);
+		this.startEngine(fullEnginePath, UCIEngine.USE_THREADS, UCIEngine.USE_HASH_MB);
+	}
 
+	/**
+	 * Extracts an engine out of a jar then runs the engine as a binary and initialises it with the given search threads and hash size
+	 *
+	 * @param fullEnginePath The path to the current UCI engine
+	 * @param threads        The number of search threads the engine may use
+	 * @param hashMb         The size of the engine's hash table in MB
+	 * @throws javax.naming.OperationNotSupportedException Either architecture or operating system not supported
+	 * @throws java.io.IOException                         Error finding engine binary
+	 * @throws java.net.URISyntaxException                 Thrown on bad URI
+	 */
+	public void startEngine(final String fullEnginePath, final int threads, final int hashMb) throws
+																							  OperationNotSupportedException,
+																							  IOException,
+																							  URISyntaxException
+	{
+		this.startEngine(UCIEngine.extractEngine(fullEnginePath), threads, hashMb);
+	}
+
+	/**
+	 * Starts a new game from the given position. This is the only point in a game at which the engine is told to discard what it has learnt, so
+	 * the searches of consecutive plies played through playMove can reuse its hash table.
+	 *
+	 * @param fen The starting position of the game in FEN format
+	 * @throws java.io.IOException Error on executing UCI command
+	 */
+	public void startGame(final String fen) throws IOException
+	{
+		this.reset();
+		if(UCIEngine.START_FEN.equals(fen))
+		{
+			this.gameStart = UCIEngine.POSITION_UCI + UCIEngine.SPACE + UCIEngine.STARTPOS_UCI;
+		}
+		else
+		{
+			this.gameStart = UCIEngine.POSITION_UCI + UCIEngine.SPACE + UCIEngine.FEN_UCI + UCIEngine.SPACE + fen;
+		}
+		this.gameMoves.setLength(0);
+		this.sendCommand(this.gameStart);
 	}
 
 	/**
@@ -187,9 +343,11 @@ public class UCIEngine
 	public void stopEngine() throws IOException
 	{
 		this.sendCommand(UCIEngine.QUIT_UCI);
-		this.processReader.close();
 		this.processWriter.close();
+		this.outputReader.awaitEnd(UCIEngine.QUIT_TIMEOUT);
 		this.engineProcess.destroy();
+		this.outputReader.awaitEnd(UCIEngine.QUIT_TIMEOUT);
+		this.processReader.close();
 	}
 
 	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter", "ObjectToString"})
@@ -225,6 +383,60 @@ public class UCIEngine
 		return null;
 	}
 
+	/**
+	 * Searches the current position to a depth of 'depth' and returns the best move together with the score the engine gave the position at the
+	 * deepest completed iteration. Unlike the searchmoves based methods, the score is signed from the point of view of the side to move.
+	 *
+	 * @param depth The depth the engine will go to in the search for the best move
+	 * @return The best move and score of the current position
+	 * @throws java.io.IOException Error on executing UCI command
+	 */
+	public SearchResult search(final int depth) throws IOException
+	{
+		return this.search(new SearchLimit(SearchLimitMode.DEPTH, (long) depth));
+	}
+
+	/**
+	 * Searches the current position until the search reaches its limit and returns the best move together with the score the engine gave the
+	 * position at the deepest completed iteration. The score is signed from the point of view of the side to move.
+	 *
+	 * @param searchLimit When the search stops
+	 * @return The best move and score of the current position
+	 * @throws java.io.IOException Error on executing UCI command
+	 */
+	public SearchResult search(final SearchLimit searchLimit) throws IOException
+	{
+		this.sendCommand(UCIEngine.GO_UCI + UCIEngine.SPACE + searchLimit.getGoArguments());
+		final String[] dump = UCIEngine.NEW_LINE_PATTERN.split(this.getMoveSearchOutput(searchLimit.getStableIterations()));
+		String bestMove = SearchResult.NO_MOVE;
+		float score = 0.0F;
+		boolean mate = false;
+		boolean scoreFound = false;
+		for(int i = dump.length - 1; i >= 0; i--)
+		{
+			final String[] tokens = UCIEngine.SPACE_PATTERN.split(dump[i]);
+			if(tokens[0].equals(UCIEngine.BESTMOVE_UCI) && (tokens.length > 1))
+			{
+				bestMove = tokens[1];
+			}
+			else if(! scoreFound && tokens[0].equals(UCIEngine.INFO_UCI) && (tokens.length > 1) && tokens[1].equals(UCIEngine.DEPTH_UCI))
+			{
+				for(int j = 2; j < (tokens.length - 2); j++)
+				{
+					if(tokens[j].equals(UCIEngine.SCORE_UCI))
+					{
+						mate = tokens[j + 1].equals(UCIEngine.MATE_UCI);
+						score = Float.parseFloat(tokens[j + 2]);
+						scoreFound = true;
+						//noinspection BreakStatement
+						break;
+					}
+				}
+			}
+		}
+		return new SearchResult(bestMove, score, mate);
+	}
+
 	/**
 	 * Sets the current game into a new position
 	 *
@@ -236,6 +448,17 @@ public class UCIEngine
 		this.sendCommand(UCIEngine.POSITION_UCI + UCIEngine.SPACE + UCIEngine.FEN_UCI + UCIEngine.SPACE + fen);
 	}
 
+	/**
+	 * Points the engine at a directory of Syzygy endgame tablebases, so that it can play positions with few pieces left perfectly
+	 *
+	 * @param syzygyPath The tablebase directory, or several separated by the platform's path separator
+	 * @throws java.io.IOException Error on executing UCI command
+	 */
+	public void setSyzygyPath(final String syzygyPath) throws IOException
+	{
+		this.setOption(UCIEngine.SYZYGYPATH_UCI, syzygyPath);
+	}
+
 	/**
 	 * Starts Engine as a process and initializes it
 	 *
@@ -243,58 +466,88 @@ public class UCIEngine
 	 * @throws IOException Error finding engine binary
 	 */
 	void startEngine(final File engine) throws IOException
+	{
+		this.startEngine(engine, UCIEngine.USE_THREADS, UCIEngine.USE_HASH_MB);
+	}
+
+	/**
+	 * Starts Engine as a process and initializes it with the given search threads and hash size. If the process starts but cannot be
+	 * initialised, it is killed before the failure is thrown, so no engine is left running without an owner.
+	 *
+	 * @param engine  The engine binary
+	 * @param threads The number of search threads the engine may use
+	 * @param hashMb  The size of the engine's hash table in MB
+	 * @throws IOException Error finding engine binary or initialising the engine
+	 */
+	void startEngine(final File engine, final int threads, final int hashMb) throws IOException
 	{
 		this.engineProcess = new ProcessBuilder(engine.getPath()).start();
-		this.processReader = new BufferedReader(new InputStreamReader(this.engineProcess.getInputStream()), UCIEngine.INIT_BUFFER_SIZE);
-		this.processWriter = new BufferedWriter(new OutputStreamWriter(this.engineProcess.getOutputStream()), UCIEngine.INIT_BUFFER_SIZE);
+		boolean isInitialised = false;
+		try
+		{
+			this.processReader = new BufferedReader(new InputStreamReader(this.engineProcess.getInputStream()), UCIEngine.INIT_BUFFER_SIZE);
+			this.processWriter = new BufferedWriter(new OutputStreamWriter(this.engineProcess.getOutputStream()), UCIEngine.INIT_BUFFER_SIZE);
+			this.outputReader = new OutputReader(this.processReader);
+			this.outputReader.start();
 
-		this.sendCommand(
-				UCIEngine.SETOPTION_UCI + UCIEngine.SPACE +
-				UCIEngine.NAME_UCI + UCIEngine.SPACE + UCIEngine.PONDER_UCI + UCIEngine.SPACE +
-				UCIEngine.VALUE_UCI + UCIEngine.SPACE + UCIEngine.FALSE_UCI
-						);
-		this.sendCommand(
-				UCIEngine.SETOPTION_UCI + UCIEngine.SPACE +
-				UCIEngine.NAME_UCI + UCIEngine.SPACE + UCIEngine.MULTIPV_UCI + UCIEngine.SPACE +
-				UCIEngine.VALUE_UCI + UCIEngine.SPACE + UCIEngine.LINES_OF_ANALYSIS
-						);
-		this.sendCommand(
-				UCIEngine.SETOPTION_UCI + UCIEngine.SPACE +
-				UCIEngine.NAME_UCI + UCIEngine.SPACE + UCIEngine.THREADS_UCI + UCIEngine.SPACE +
-				UCIEngine.VALUE_UCI + UCIEngine.SPACE + UCIEngine.USE_THREADS
-						);
-		this.sendCommand(
-				UCIEngine.SETOPTION_UCI + UCIEngine.SPACE +
-				UCIEngine.NAME_UCI + UCIEngine.SPACE + UCIEngine.HASH_UCI + UCIEngine.SPACE +
-				UCIEngine.VALUE_UCI + UCIEngine.SPACE + UCIEngine.USE_HASH_MB
-						);
+			this.setOption(UCIEngine.PONDER_UCI, UCIEngine.FALSE_UCI);
+			this.setOption(UCIEngine.MULTIPV_UCI, UCIEngine.LINES_OF_ANALYSIS);
+			this.setOption(UCIEngine.THREADS_UCI, threads);
+			this.setOption(UCIEngine.HASH_UCI, hashMb);
+			isInitialised = true;
+		}
+		finally
+		{
+			if(! isInitialised)
+			{
+				this.engineProcess.destroy();
+			}
+		}
 	}
 
-	private String getMoveSearchOutput(final int waitTime) throws IOException
+	/**
+	 * Reads the engine's output up to and including its best move. If stableIterations is greater than 0, the search is stopped as soon as the
+	 * first move of the principal variation has stayed the same over that many completed iterations. An iteration counts as completed once the
+	 * engine reports a principal variation at a greater depth, as the engine may revise its choice more than once within an iteration.
+	 */
+	private String getMoveSearchOutput(final int stableIterations) throws IOException
 	{
 		final StringBuilder builder = new StringBuilder(UCIEngine.INIT_BUFFER_SIZE);
-		double currentWaitTime = (double) waitTime;
-		String text = "";
+		int currentDepth = 0;
+		String currentMove = null;
+		String completedMove = null;
+		int stableCount = 0;
+		boolean stopSent = stableIterations <= 0;
+		String text;
 		do
 		{
-			try
-			{
-				//noinspection BusyWait,NumericCastThatLosesPrecision
-				Thread.sleep((long) currentWaitTime);
-			}
-			catch(final InterruptedException interruptedException)
-			{
-				final String message = interruptedException.getMessage();
-				UCIEngine.LOGGER.log(Level.SEVERE, message);
-				UCIEngine.LOGGER.log(Level.SEVERE, interruptedException.getMessage());
-				UCIEngine.LOGGER.log(Level.SEVERE, interruptedException.toString(), interruptedException.fillInStackTrace());
-			}
-			currentWaitTime += (double) waitTime * UCIEngine.WAIT_MODIFIER;
-			while(this.processReader.ready())
+			text = this.outputReader.nextLine();
+			builder.append(text);
+			builder.append(UCIEngine.NEW_LINE);
+			if(! stopSent && text.startsWith(UCIEngine.INFO_UCI + UCIEngine.SPACE + UCIEngine.DEPTH_UCI + UCIEngine.SPACE))
 			{
-				text = this.processReader.readLine();
-				builder.append(text.trim());
-				builder.append(UCIEngine.NEW_LINE);
+				final String[] tokens = UCIEngine.SPACE_PATTERN.split(text);
+				final int depth = Integer.parseInt(tokens[2]);
+				for(int i = 3; i < (tokens.length - 1); i++)
+				{
+					if(tokens[i].equals(UCIEngine.PV_UCI))
+					{
+						if((depth > currentDepth) && (currentMove != null))
+						{
+							stableCount = currentMove.equals(completedMove) ? (stableCount + 1) : 1;
+							completedMove = currentMove;
+						}
+						currentDepth = depth;
+						currentMove = tokens[i + 1];
+						//noinspection BreakStatement
+						break;
+					}
+				}
+				if(stableCount >= stableIterations)
+				{
+					this.sendCommand(UCIEngine.STOP_UCI);
+					stopSent = true;
+				}
 			}
 		}
 		while(! text.startsWith(UCIEngine.BESTMOVE_UCI));
@@ -306,37 +559,134 @@ public class UCIEngine
 	private String getOutput(@SuppressWarnings("SameParameterValue") final String terminationString) throws IOException
 	{
 		final StringBuilder builder = new StringBuilder(1000);
-		String text = "";
-		while(! terminationString.equals(text))
+		String text;
+		do
+		{
+			text = this.outputReader.nextLine();
+			builder.append(text);
+			builder.append(UCIEngine.NEW_LINE);
+		}
+		while(! terminationString.equals(text));
+		return builder.toString();
+	}
+
+	private void sendCommand(final String command) throws IOException
+	{
+		this.processWriter.write(command + UCIEngine.NEW_LINE);
+		this.processWriter.flush();
+	}
+
+	private void setOption(final String name, final Object value) throws IOException
+	{
+		this.sendCommand(
+				UCIEngine.SETOPTION_UCI + UCIEngine.SPACE +
+				UCIEngine.NAME_UCI + UCIEngine.SPACE + name + UCIEngine.SPACE +
+				UCIEngine.VALUE_UCI + UCIEngine.SPACE + value
+						);
+	}
+
+	/**
+	 * Reads the engine's output on its own thread as soon as it is written, queueing each line until a search or command takes it. A line holding
+	 * only a NUL character marks the end of the output - trimmed engine output can never take that form.
+	 */
+	private static final class OutputReader implements Runnable
+	{
+		private final BlockingQueue<String> lines;
+		private final BufferedReader        processReader;
+		private final Thread                thread;
+
+		OutputReader(final BufferedReader processReader)
+		{
+			this.lines = new LinkedBlockingQueue<String>();
+			this.processReader = processReader;
+			this.thread = new Thread(this, "UCIEngine output reader");
+			this.thread.setDaemon(true);
+		}
+
+		@Override
+		public void run()
 		{
 			try
 			{
-				// noinspection BusyWait
-				Thread.sleep(UCIEngine.DEFAULT_THREAD_SLEEP);
+				String line = this.processReader.readLine();
+				while(line != null)
+				{
+					this.lines.add(line.trim());
+					line = this.processReader.readLine();
+				}
+			}
+			catch(final IOException ioe)
+			{
+				UCIEngine.LOGGER.log(Level.FINE, "Engine output closed", ioe);
+			}
+			finally
+			{
+				this.lines.add(UCIEngine.END_OF_OUTPUT);
+			}
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "OutputReader{" +
+				   "lines=" + this.lines.size() +
+				   ", thread=" + this.thread +
+				   '}';
+		}
+
+		/**
+		 * Waits for the engine's output to end
+		 *
+		 * @param timeout The longest time to wait in ms
+		 * @throws java.io.InterruptedIOException Thrown if interrupted while waiting
+		 */
+		void awaitEnd(final long timeout) throws InterruptedIOException
+		{
+			try
+			{
+				this.thread.join(timeout);
+			}
+			catch(final InterruptedException interruptedException)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(interruptedException.getMessage());
+			}
+		}
+
+		/**
+		 * Takes the next line written by the engine, waiting until one is written
+		 *
+		 * @return The next line of output, trimmed
+		 * @throws java.io.EOFException           Thrown once the engine's output has ended
+		 * @throws java.io.InterruptedIOException Thrown if interrupted while waiting
+		 */
+		String nextLine() throws IOException
+		{
+			final String line;
+			try
+			{
+				line = this.lines.take();
 			}
 			catch(final InterruptedException interruptedException)
 			{
-				final String message = interruptedException.getMessage();
-				UCIEngine.LOGGER.log(Level.SEVERE, message);
-				UCIEngine.LOGGER.log(Level.SEVERE, interruptedException.getMessage());
-				UCIEngine.LOGGER.log(Level.SEVERE, interruptedException.toString(), interruptedException.fillInStackTrace());
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(interruptedException.getMessage());
 			}
-			do
+			if(UCIEngine.END_OF_OUTPUT.equals(line))
 			{
-				text = this.processReader.readLine().trim();
-				builder.append(text);
-				builder.append(UCIEngine.NEW_LINE);
+				this.lines.add(UCIEngine.END_OF_OUTPUT);
+				throw new EOFException("Engine output ended unexpectedly");
 			}
-			while(this.processReader.ready());
+			return line;
 		}
-		builder.append(text);
-		builder.append(UCIEngine.NEW_LINE);
-		return builder.toString();
-	}
 
-	private void sendCommand(final String command) throws IOException
-	{
-		this.processWriter.write(command + UCIEngine.NEW_LINE);
-		this.processWriter.flush();
+		/**
+		 * Starts reading the engine's output
+		 */
+		void start()
+		{
+			this.thread.start();
+		}
 	}
-}
\ No newline at end of file
+}
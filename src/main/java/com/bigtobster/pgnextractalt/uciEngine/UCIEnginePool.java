@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.uciEngine;
+
+import javax.naming.OperationNotSupportedException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A fixed set of UCI engines, each running as its own process with its own search threads and hash table, so that independent games can be
+ * analysed at the same time. The engine binary is extracted once and shared by every engine in the pool. Engines are borrowed with acquire and
+ * must be handed back with release once the caller has finished with them. A pool can also be started in the background ahead of time with
+ * prestart, or kept running with retain, and claimed once it is needed.
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public final class UCIEnginePool
+{
+	private static final Logger                    LOGGER            = Logger.getLogger(UCIEnginePool.class.getName());
+	private static final String                    PRESTART_THREAD   = "UCIEnginePool prestart";
+	private static       String                    prestartedConfig  = null;
+	private static       FutureTask<UCIEnginePool> prestartedPool    = null;
+	private final        ArrayList<UCIEngine>      engines;
+	private final        int                       hashPerEngine;
+	private final        BlockingQueue<UCIEngine>  idleEngines;
+	private final        int                       size;
+	private              String                    syzygyPath        = null;
+	private final        int                       threadsPerEngine;
+
+	/**
+	 * Constructor for a pool which has not yet been started
+	 *
+	 * @param size             The number of engines in the pool
+	 * @param threadsPerEngine The number of search threads each engine may use
+	 * @param hashPerEngine    The size of each engine's hash table in MB
+	 */
+	public UCIEnginePool(final int size, final int threadsPerEngine, final int hashPerEngine)
+	{
+		if(size <= 0)
+		{
+			throw new IllegalArgumentException("Engine pool size must be greater than 0: " + size);
+		}
+		this.engines = new ArrayList<UCIEngine>(size);
+		this.idleEngines = new ArrayBlockingQueue<UCIEngine>(size);
+		this.size = size;
+		this.threadsPerEngine = threadsPerEngine;
+		this.hashPerEngine = hashPerEngine;
+	}
+
+	/**
+	 * Claims the pool started by prestart, waiting for it to finish starting if need be. The pool is only handed over if it was started with the
+	 * same engine and configuration, otherwise it is stopped. Once claimed, the pool belongs to the caller, who must stop it.
+	 *
+	 * @param fullEnginePath   The path to the UCI engine within the jar
+	 * @param size             The number of engines in the pool
+	 * @param threadsPerEngine The number of search threads each engine may use
+	 * @param hashPerEngine    The size of each engine's hash table in MB
+	 * @return The started pool, or null if there is no matching pool or it failed to start
+	 * @throws InterruptedException Thrown if interrupted while waiting for the pool to start
+	 */
+	public static UCIEnginePool claimPrestarted(
+			final String fullEnginePath, final int size, final int threadsPerEngine, final int hashPerEngine
+											   ) throws InterruptedException
+	{
+		final FutureTask<UCIEnginePool> pool;
+		final String config;
+		synchronized(UCIEnginePool.class)
+		{
+			pool = UCIEnginePool.prestartedPool;
+			config = UCIEnginePool.prestartedConfig;
+			UCIEnginePool.prestartedPool = null;
+			UCIEnginePool.prestartedConfig = null;
+		}
+		if(pool == null)
+		{
+			return null;
+		}
+		if(! UCIEnginePool.getConfig(fullEnginePath, size, threadsPerEngine, hashPerEngine).equals(config))
+		{
+			UCIEnginePool.stopPrestarted(pool);
+			return null;
+		}
+		return UCIEnginePool.getPrestarted(pool);
+	}
+
+	/**
+	 * Starts a pool on a background thread so that whoever next needs a pool of the same engine and configuration can claim it without waiting
+	 * for the engines to start. A pool started earlier which has not been claimed is stopped, unless it has the same configuration. An unclaimed
+	 * pool's engines quit of their own accord when this process exits and closes their input.
+	 *
+	 * @param fullEnginePath   The path to the UCI engine within the jar
+	 * @param size             The number of engines in the pool
+	 * @param threadsPerEngine The number of search threads each engine may use
+	 * @param hashPerEngine    The size of each engine's hash table in MB
+	 */
+	public static void prestart(final String fullEnginePath, final int size, final int threadsPerEngine, final int hashPerEngine)
+	{
+		final String config = UCIEnginePool.getConfig(fullEnginePath, size, threadsPerEngine, hashPerEngine);
+		final FutureTask<UCIEnginePool> pool;
+		synchronized(UCIEnginePool.class)
+		{
+			if(config.equals(UCIEnginePool.prestartedConfig))
+			{
+				return;
+			}
+			pool = new FutureTask<UCIEnginePool>(
+					new PrestartTask(UCIEnginePool.prestartedPool, fullEnginePath, new UCIEnginePool(size, threadsPerEngine, hashPerEngine))
+			);
+			UCIEnginePool.prestartedPool = pool;
+			UCIEnginePool.prestartedConfig = config;
+		}
+		final Thread thread = new Thread(pool, UCIEnginePool.PRESTART_THREAD);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the pool started by prestart or kept by retain, if it has not been claimed
+	 *
+	 * @throws InterruptedException Thrown if interrupted while waiting for a prestarting pool to finish starting
+	 */
+	public static void releasePrestarted() throws InterruptedException
+	{
+		final FutureTask<UCIEnginePool> pool;
+		synchronized(UCIEnginePool.class)
+		{
+			pool = UCIEnginePool.prestartedPool;
+			UCIEnginePool.prestartedPool = null;
+			UCIEnginePool.prestartedConfig = null;
+		}
+		if(pool != null)
+		{
+			UCIEnginePool.stopPrestarted(pool);
+		}
+	}
+
+	private static String getConfig(final String fullEnginePath, final int size, final int threadsPerEngine, final int hashPerEngine)
+	{
+		return fullEnginePath + ',' + size + ',' + threadsPerEngine + ',' + hashPerEngine;
+	}
+
+	private static UCIEnginePool getPrestarted(final FutureTask<UCIEnginePool> pool) throws InterruptedException
+	{
+		try
+		{
+			return pool.get();
+		}
+		catch(final ExecutionException executionException)
+		{
+			UCIEnginePool.LOGGER.log(Level.WARNING, "Failed to prestart engines", executionException.getCause());
+			return null;
+		}
+	}
+
+	private static void stopPrestarted(final FutureTask<UCIEnginePool> pool) throws InterruptedException
+	{
+		final UCIEnginePool startedPool = UCIEnginePool.getPrestarted(pool);
+		if(startedPool != null)
+		{
+			startedPool.stop();
+		}
+	}
+
+	/**
+	 * Borrows an idle engine from the pool, waiting until one becomes free
+	 *
+	 * @return An engine for the sole use of the caller until it is released
+	 * @throws InterruptedException Thrown if interrupted while waiting for an engine
+	 */
+	public UCIEngine acquire() throws InterruptedException
+	{
+		return this.idleEngines.take();
+	}
+
+	/**
+	 * Getter for the number of engines in the pool
+	 *
+	 * @return The number of engines the pool runs once started
+	 */
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Hands a borrowed engine back to the pool
+	 *
+	 * @param engine An engine previously returned by acquire
+	 */
+	public void release(final UCIEngine engine)
+	{
+		//noinspection ResultOfMethodCallIgnored
+		this.idleEngines.offer(engine);
+	}
+
+	/**
+	 * Keeps this started pool running for whoever next claims a prestarted pool of the same engine and configuration, in place of stopping it. Any
+	 * other pool waiting to be claimed is stopped. Every engine must have been released and the pool must not have a Syzygy tablebase directory,
+	 * as that is not part of the configuration a claim is matched on.
+	 *
+	 * @param fullEnginePath The path to the UCI engine within the jar that the pool was started with
+	 */
+	public void retain(final String fullEnginePath)
+	{
+		final FutureTask<UCIEnginePool> pool = new FutureTask<UCIEnginePool>(new RetainedPool(this));
+		pool.run();
+		final FutureTask<UCIEnginePool> replacedPool;
+		synchronized(UCIEnginePool.class)
+		{
+			replacedPool = UCIEnginePool.prestartedPool;
+			UCIEnginePool.prestartedPool = pool;
+			UCIEnginePool.prestartedConfig = UCIEnginePool.getConfig(fullEnginePath, this.size, this.threadsPerEngine, this.hashPerEngine);
+		}
+		if(replacedPool != null)
+		{
+			try
+			{
+				UCIEnginePool.stopPrestarted(replacedPool);
+			}
+			catch(final InterruptedException ignored)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Setter for the Syzygy tablebase directory given to each engine as it starts
+	 *
+	 * @param syzygyPath The tablebase directory, or null to leave the engine's default
+	 */
+	public void setSyzygyPath(final String syzygyPath)
+	{
+		this.syzygyPath = syzygyPath;
+	}
+
+	/**
+	 * Extracts the engine binary and starts every engine in the pool. Any engines already started are stopped again if one fails to start, and the
+	 * engine which failed kills its own process if the process started but the engine could not be initialised.
+	 *
+	 * @param fullEnginePath The path to the UCI engine within the jar
+	 * @throws javax.naming.OperationNotSupportedException Either architecture or operating system not supported
+	 * @throws java.io.IOException                         Error finding or starting the engine binary
+	 * @throws java.net.URISyntaxException                 Thrown on bad URI
+	 */
+	public void start(final String fullEnginePath) throws OperationNotSupportedException, IOException, URISyntaxException
+	{
+		final File engineBinary = UCIEngine.extractEngine(fullEnginePath);
+		try
+		{
+			for(int i = this.engines.size(); i < this.size; i++)
+			{
+				final UCIEngine engine = new UCIEngine();
+				engine.startEngine(engineBinary, this.threadsPerEngine, this.hashPerEngine);
+				this.engines.add(engine);
+				if(this.syzygyPath != null)
+				{
+					engine.setSyzygyPath(this.syzygyPath);
+				}
+				this.idleEngines.add(engine);
+			}
+		}
+		catch(final IOException ioe)
+		{
+			this.stop();
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Stops every engine in the pool. Engines which fail to stop cleanly are logged and the rest are still stopped.
+	 */
+	public void stop()
+	{
+		for(final UCIEngine engine : this.engines)
+		{
+			try
+			{
+				engine.stopEngine();
+			}
+			catch(final IOException ioe)
+			{
+				UCIEnginePool.LOGGER.log(Level.WARNING, "Failed to stop engine cleanly", ioe);
+			}
+		}
+		this.engines.clear();
+		this.idleEngines.clear();
+	}
+
+	@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+	@Override
+	public String toString()
+	{
+		return "UCIEnginePool{" +
+			   "engines=" + this.engines.size() +
+			   ", idleEngines=" + this.idleEngines.size() +
+			   ", threadsPerEngine=" + this.threadsPerEngine +
+			   ", hashPerEngine=" + this.hashPerEngine +
+			   ", syzygyPath='" + this.syzygyPath + '\'' +
+			   '}';
+	}
+
+	/**
+	 * Starts a pool in the background, first stopping any pool it replaces so that the two are never running at once
+	 */
+	private static final class PrestartTask implements Callable<UCIEnginePool>
+	{
+		private final String                    fullEnginePath;
+		private final UCIEnginePool             pool;
+		private final FutureTask<UCIEnginePool> replacedPool;
+
+		PrestartTask(final FutureTask<UCIEnginePool> replacedPool, final String fullEnginePath, final UCIEnginePool pool)
+		{
+			this.replacedPool = replacedPool;
+			this.fullEnginePath = fullEnginePath;
+			this.pool = pool;
+		}
+
+		@Override
+		public UCIEnginePool call() throws Exception
+		{
+			if(this.replacedPool != null)
+			{
+				UCIEnginePool.stopPrestarted(this.replacedPool);
+			}
+			this.pool.start(this.fullEnginePath);
+			return this.pool;
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "PrestartTask{" +
+				   "fullEnginePath='" + this.fullEnginePath + '\'' +
+				   ", pool=" + this.pool +
+				   '}';
+		}
+	}
+
+	/**
+	 * Hands over a pool that is already running, so that a retained pool can be claimed in the same way as a prestarted one
+	 */
+	private static final class RetainedPool implements Callable<UCIEnginePool>
+	{
+		private final UCIEnginePool pool;
+
+		RetainedPool(final UCIEnginePool pool)
+		{
+			this.pool = pool;
+		}
+
+		@Override
+		public UCIEnginePool call()
+		{
+			return this.pool;
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "RetainedPool{" +
+				   "pool=" + this.pool +
+				   '}';
+		}
+	}
+}
@@ -13,11 +13,16 @@ package com.bigtobster.pgnextractalt.chess;
 import chesspresso.game.Game;
 import chesspresso.move.IllegalMoveException;
 import com.bigtobster.pgnextractalt.misc.TestContext;
+import com.bigtobster.pgnextractalt.uciEngine.SearchLimit;
+import com.bigtobster.pgnextractalt.uciEngine.SearchLimitMode;
+import com.bigtobster.pgnextractalt.uciEngine.UCIEngine;
+import com.bigtobster.pgnextractalt.uciEngine.UCIEnginePool;
 import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.util.StringUtils;
 
 import javax.naming.OperationNotSupportedException;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -32,11 +37,16 @@ import java.util.regex.Pattern;
 public class ChessEvaluatorTest
 {
 	private static final String  ALL_GAMES_SHOULD_BE_UPDATED   = "All games should be updated when not evaluated";
+	private static final String  CACHED_SCORES_DIFFER          = "Scores built from cached results should match the searched scores";
+	private static final String  ENGINE_SHOULD_BE_PRESTARTED   = "An engine with the default settings should have been prestarted";
 	private static final String  IVANOV_NAME                   = "Ivanov, Borislav";
+	private static final String  JOURNALLED_SCORES_DIFFER      = "Resumed games should take the scores recorded in the journal";
 	@SuppressWarnings("UnusedDeclaration")
 	private static final Logger  LOGGER                        = Logger.getLogger(ChessEvaluatorTest.class.getName());
 	private static final String  NO_GAMES_EXCEEDS_EXPECTATION  = "Number of games exceeds expectation";
 	private static final String  NO_GAMES_SHOULD_BE_UPDATED    = "In non-forced mode, games should not be updated when already evaluated";
+	private static final String  PRESTART_NOT_CONSUMED         = "The evaluation should have claimed the prestarted engine";
+	private static final String  REPEATED_GAMES_DIFFER         = "Repeated games should be scored from the same searches";
 	private static final Pattern SPACE_SPLITTER                = Pattern.compile(" ");
 	private static final String  UNEXPECTED_MOD_TO_PLAYER_NAME = "Unexpected modification to player name";
 
@@ -108,6 +118,57 @@ public class ChessEvaluatorTest
 						 );
 	}
 
+	/**
+	 * Tests that single search results kept in an evaluation cache file are reused by a later run, which then needs no searches
+	 *
+	 * @throws chesspresso.move.IllegalMoveException       Thrown on an illegal move being found in one of the test games
+	 * @throws java.io.IOException                         Thrown on difficulties communicating with engine
+	 * @throws java.net.URISyntaxException                 Thrown on difficulties finding engine
+	 * @throws javax.naming.OperationNotSupportedException Thrown on testing on unsupported OS
+	 */
+	@SuppressWarnings({"InstanceMethodNamingConvention", "MethodWithTooExceptionsDeclared"})
+	@Test
+	public void evaluateMachineCorrelationEvaluationCacheTest() throws
+																URISyntaxException,
+																IllegalMoveException,
+																OperationNotSupportedException,
+																IOException
+	{
+		final File cacheFile = File.createTempFile("evaluationCache", ".bin");
+		cacheFile.deleteOnExit();
+		Assert.assertTrue("Cache file should start out empty", cacheFile.delete());
+		final ArrayList<String> firstRunPlayers = new ArrayList<String>(6);
+		for(int run = 0; run < 2; run++)
+		{
+			final TestChessContext testChessContext = new TestChessContext();
+			testChessContext.loadPGN(TestContext.SMALL_IVANOV_PGN);
+			final ArrayList<Game> games = testChessContext.getChessIO().getGames();
+			final EvaluationCache evaluationCache = new EvaluationCache(EvaluationCache.DEFAULT_MEMORY_ENTRIES, cacheFile, 1 << 12);
+			final MachineCorrelationSettings settings = new MachineCorrelationSettings(8);
+			settings.setSingleSearch(true);
+			settings.setEvaluationCache(evaluationCache);
+			ChessEvaluator.evaluateMachineCorrelation(games, settings);
+			evaluationCache.flush();
+			for(int i = 0; i < games.size(); i++)
+			{
+				if(run == 0)
+				{
+					firstRunPlayers.add(games.get(i).getWhite());
+					firstRunPlayers.add(games.get(i).getBlack());
+				}
+				else
+				{
+					Assert.assertEquals(ChessEvaluatorTest.CACHED_SCORES_DIFFER, firstRunPlayers.get(i * 2), games.get(i).getWhite());
+					Assert.assertEquals(ChessEvaluatorTest.CACHED_SCORES_DIFFER, firstRunPlayers.get((i * 2) + 1), games.get(i).getBlack());
+				}
+			}
+			if(run == 1)
+			{
+				Assert.assertEquals("Every position should be found in the cache on the second run", 0L, evaluationCache.getMisses());
+			}
+		}
+	}
+
 	/**
 	 * Tests that the force option works as expected
 	 *
@@ -136,6 +197,69 @@ public class ChessEvaluatorTest
 						   );
 	}
 
+	/**
+	 * Tests that a rerun with the same journal takes the journalled scores and that a journal cannot be resumed with different settings
+	 *
+	 * @throws chesspresso.move.IllegalMoveException       Thrown on an illegal move being found in one of the test games
+	 * @throws java.io.IOException                         Thrown on difficulties communicating with engine
+	 * @throws java.net.URISyntaxException                 Thrown on difficulties finding engine
+	 * @throws javax.naming.OperationNotSupportedException Thrown on testing on unsupported OS
+	 */
+	@SuppressWarnings({"InstanceMethodNamingConvention", "MethodWithTooExceptionsDeclared"})
+	@Test
+	public void evaluateMachineCorrelationJournalTest() throws URISyntaxException, IllegalMoveException, OperationNotSupportedException, IOException
+	{
+		final File journalFile = File.createTempFile("correlationJournal", ".bin");
+		journalFile.deleteOnExit();
+		Assert.assertTrue("Journal file should start out empty", journalFile.delete());
+		final MachineCorrelationSettings settings = new MachineCorrelationSettings(8);
+		settings.setJournalFile(journalFile);
+		TestChessContext testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.SMALL_IVANOV_PGN);
+		final ArrayList<Game> firstRunGames = testChessContext.getChessIO().getGames();
+		Assert.assertEquals(
+				ChessEvaluatorTest.ALL_GAMES_SHOULD_BE_UPDATED
+				, 3L
+				, (long) ChessEvaluator.evaluateMachineCorrelation(firstRunGames, settings)
+						   );
+		testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.SMALL_IVANOV_PGN);
+		final ArrayList<Game> resumedGames = testChessContext.getChessIO().getGames();
+		Assert.assertEquals(
+				ChessEvaluatorTest.ALL_GAMES_SHOULD_BE_UPDATED
+				, 3L
+				, (long) ChessEvaluator.evaluateMachineCorrelation(resumedGames, settings)
+						   );
+		for(int i = 0; i < firstRunGames.size(); i++)
+		{
+			Assert.assertEquals(ChessEvaluatorTest.JOURNALLED_SCORES_DIFFER, firstRunGames.get(i).getWhite(), resumedGames.get(i).getWhite());
+			Assert.assertEquals(ChessEvaluatorTest.JOURNALLED_SCORES_DIFFER, firstRunGames.get(i).getBlack(), resumedGames.get(i).getBlack());
+		}
+		final MachineCorrelationSettings deeperSettings = new MachineCorrelationSettings(9);
+		deeperSettings.setJournalFile(journalFile);
+		try
+		{
+			ChessEvaluator.evaluateMachineCorrelation(resumedGames, deeperSettings);
+			Assert.fail("A journal should not be resumed with a different depth");
+		}
+		catch(final IOException ignored)
+		{
+			//Expected
+		}
+		final MachineCorrelationSettings forcedSettings = new MachineCorrelationSettings(8);
+		forcedSettings.setJournalFile(journalFile);
+		forcedSettings.setForce(true);
+		try
+		{
+			ChessEvaluator.evaluateMachineCorrelation(resumedGames, forcedSettings);
+			Assert.fail("A journal should not be resumed with a different force setting");
+		}
+		catch(final IOException ignored)
+		{
+			//Expected
+		}
+	}
+
 	/**
 	 * Tests that the lack of force option works as expected
 	 *
@@ -200,4 +324,187 @@ public class ChessEvaluatorTest
 		Assert.assertEquals(ChessEvaluatorTest.UNEXPECTED_MOD_TO_PLAYER_NAME, unmodifiedWhite, modifiedWhite);
 		Assert.assertEquals(ChessEvaluatorTest.UNEXPECTED_MOD_TO_PLAYER_NAME, unmodifiedBlack, modifiedBlack);
 	}
+
+	/**
+	 * Tests that repeated games are scored from the same planned searches and so receive identical scores
+	 *
+	 * @throws chesspresso.move.IllegalMoveException       Thrown on an illegal move being found in one of the test games
+	 * @throws java.io.IOException                         Thrown on difficulties communicating with engine
+	 * @throws java.net.URISyntaxException                 Thrown on difficulties finding engine
+	 * @throws javax.naming.OperationNotSupportedException Thrown on testing on unsupported OS
+	 */
+	@SuppressWarnings({"InstanceMethodNamingConvention", "MethodWithTooExceptionsDeclared"})
+	@Test
+	public void evaluateMachineCorrelationPlannedTest() throws URISyntaxException, IllegalMoveException, OperationNotSupportedException, IOException
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.SMALL_IVANOV_PGN);
+		testChessContext.loadPGN(TestContext.SMALL_IVANOV_PGN);
+		final ArrayList<Game> games = testChessContext.getChessIO().getGames();
+		Assert.assertEquals(ChessEvaluatorTest.NO_GAMES_EXCEEDS_EXPECTATION, 6L, (long) games.size());
+		final MachineCorrelationSettings settings = new MachineCorrelationSettings(8);
+		settings.setEngines(2);
+		settings.setEngineThreads(1);
+		settings.setEngineHash(16);
+		Assert.assertEquals(
+				ChessEvaluatorTest.ALL_GAMES_SHOULD_BE_UPDATED
+				, (long) games.size()
+				, (long) ChessEvaluator.evaluateMachineCorrelation(games, settings)
+						   );
+		for(int i = 0; i < 3; i++)
+		{
+			Assert.assertEquals(ChessEvaluatorTest.REPEATED_GAMES_DIFFER, games.get(i).getWhite(), games.get(i + 3).getWhite());
+			Assert.assertEquals(ChessEvaluatorTest.REPEATED_GAMES_DIFFER, games.get(i).getBlack(), games.get(i + 3).getBlack());
+		}
+	}
+
+	/**
+	 * Tests that games shared out between a pool of engines are all evaluated and tagged in place
+	 *
+	 * @throws chesspresso.move.IllegalMoveException       Thrown on an illegal move being found in one of the test games
+	 * @throws java.io.IOException                         Thrown on difficulties communicating with engine
+	 * @throws java.net.URISyntaxException                 Thrown on difficulties finding engine
+	 * @throws javax.naming.OperationNotSupportedException Thrown on testing on unsupported OS
+	 */
+	@SuppressWarnings({"InstanceMethodNamingConvention", "MethodWithTooExceptionsDeclared"})
+	@Test
+	public void evaluateMachineCorrelationPoolTest() throws URISyntaxException, IllegalMoveException, OperationNotSupportedException, IOException
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.SMALL_IVANOV_PGN);
+		final ArrayList<Game> games = testChessContext.getChessIO().getGames();
+		final ArrayList<String> whitePlayers = new ArrayList<String>(games.size());
+		for(final Game game : games)
+		{
+			whitePlayers.add(game.getWhite());
+		}
+		final MachineCorrelationSettings settings = new MachineCorrelationSettings(10);
+		settings.setEngines(2);
+		settings.setEngineThreads(1);
+		settings.setEngineHash(16);
+		Assert.assertEquals(
+				ChessEvaluatorTest.ALL_GAMES_SHOULD_BE_UPDATED
+				, (long) games.size()
+				, (long) ChessEvaluator.evaluateMachineCorrelation(games, settings)
+						   );
+		for(int i = 0; i < games.size(); i++)
+		{
+			Assert.assertTrue(
+					"Scores should be written back to the game they were evaluated for",
+					games.get(i).getWhite().startsWith(whitePlayers.get(i))
+							 );
+			Assert.assertTrue(ChessEvaluatorTest.ALL_GAMES_SHOULD_BE_UPDATED, ChessPresso.isMachineCorrelationEvaluated(games.get(i).getWhite()));
+			Assert.assertTrue(ChessEvaluatorTest.ALL_GAMES_SHOULD_BE_UPDATED, ChessPresso.isMachineCorrelationEvaluated(games.get(i).getBlack()));
+		}
+	}
+
+	/**
+	 * Tests that an evaluation with the default engine settings runs on an engine prestarted in the background, and consumes it
+	 *
+	 * @throws chesspresso.move.IllegalMoveException       Thrown on an illegal move being found in one of the test games
+	 * @throws java.io.IOException                         Thrown on difficulties communicating with engine
+	 * @throws java.net.URISyntaxException                 Thrown on difficulties finding engine
+	 * @throws javax.naming.OperationNotSupportedException Thrown on testing on unsupported OS
+	 * @throws java.lang.InterruptedException              Thrown if interrupted while waiting for the prestarted engine
+	 */
+	@SuppressWarnings({"InstanceMethodNamingConvention", "MethodWithTooExceptionsDeclared"})
+	@Test
+	public void evaluateMachineCorrelationPrestartedTest() throws
+														   URISyntaxException,
+														   IllegalMoveException,
+														   OperationNotSupportedException,
+														   IOException,
+														   InterruptedException
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.SMALL_IVANOV_PGN);
+		final ArrayList<Game> games = testChessContext.getChessIO().getGames();
+		final String enginePath = ChessContext.resolveStockfishPath();
+		ChessEvaluator.prestartEngines();
+		final UCIEnginePool claimedPool = UCIEnginePool.claimPrestarted(enginePath, 1, UCIEngine.USE_THREADS, UCIEngine.USE_HASH_MB);
+		Assert.assertNotNull(ChessEvaluatorTest.ENGINE_SHOULD_BE_PRESTARTED, claimedPool);
+		claimedPool.stop();
+
+		ChessEvaluator.prestartEngines();
+		final MachineCorrelationSettings settings = new MachineCorrelationSettings(8);
+		settings.setSingleSearch(true);
+		Assert.assertEquals(
+				ChessEvaluatorTest.ALL_GAMES_SHOULD_BE_UPDATED
+				, (long) games.size()
+				, (long) ChessEvaluator.evaluateMachineCorrelation(games, settings)
+						   );
+		Assert.assertNull(
+				ChessEvaluatorTest.PRESTART_NOT_CONSUMED,
+				UCIEnginePool.claimPrestarted(enginePath, 1, UCIEngine.USE_THREADS, UCIEngine.USE_HASH_MB)
+						 );
+	}
+
+	/**
+	 * Tests that both scoring methods evaluate every game when searches are limited by nodes rather than depth
+	 *
+	 * @throws chesspresso.move.IllegalMoveException       Thrown on an illegal move being found in one of the test games
+	 * @throws java.io.IOException                         Thrown on difficulties communicating with engine
+	 * @throws java.net.URISyntaxException                 Thrown on difficulties finding engine
+	 * @throws javax.naming.OperationNotSupportedException Thrown on testing on unsupported OS
+	 */
+	@SuppressWarnings({"InstanceMethodNamingConvention", "MethodWithTooExceptionsDeclared"})
+	@Test
+	public void evaluateMachineCorrelationSearchLimitTest() throws
+															URISyntaxException,
+															IllegalMoveException,
+															OperationNotSupportedException,
+															IOException
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.SMALL_IVANOV_PGN);
+		final ArrayList<Game> games = testChessContext.getChessIO().getGames();
+		final MachineCorrelationSettings settings = new MachineCorrelationSettings(10);
+		settings.setSearchLimit(new SearchLimit(SearchLimitMode.NODES, 20000L, 3));
+		settings.setSingleSearch(true);
+		Assert.assertEquals(
+				ChessEvaluatorTest.ALL_GAMES_SHOULD_BE_UPDATED
+				, (long) games.size()
+				, (long) ChessEvaluator.evaluateMachineCorrelation(games, settings)
+						   );
+		settings.setSingleSearch(false);
+		settings.setForce(true);
+		Assert.assertEquals(
+				ChessEvaluatorTest.ALL_GAMES_SHOULD_BE_UPDATED
+				, (long) games.size()
+				, (long) ChessEvaluator.evaluateMachineCorrelation(games, settings)
+						   );
+	}
+
+	/**
+	 * Tests that single search scoring evaluates every game and never produces a negative score
+	 *
+	 * @throws chesspresso.move.IllegalMoveException       Thrown on an illegal move being found in one of the test games
+	 * @throws java.io.IOException                         Thrown on difficulties communicating with engine
+	 * @throws java.net.URISyntaxException                 Thrown on difficulties finding engine
+	 * @throws javax.naming.OperationNotSupportedException Thrown on testing on unsupported OS
+	 */
+	@SuppressWarnings({"InstanceMethodNamingConvention", "MethodWithTooExceptionsDeclared"})
+	@Test
+	public void evaluateMachineCorrelationSingleSearchTest() throws
+															 URISyntaxException,
+															 IllegalMoveException,
+															 OperationNotSupportedException,
+															 IOException
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.SMALL_IVANOV_PGN);
+		final ArrayList<Game> games = testChessContext.getChessIO().getGames();
+		final MachineCorrelationSettings settings = new MachineCorrelationSettings(10);
+		settings.setSingleSearch(true);
+		Assert.assertEquals(
+				ChessEvaluatorTest.ALL_GAMES_SHOULD_BE_UPDATED
+				, (long) games.size()
+				, (long) ChessEvaluator.evaluateMachineCorrelation(games, settings)
+						   );
+		for(final Game game : games)
+		{
+			Assert.assertTrue("Single search scores should never be negative", ChessPresso.getMachineCorrelationScore(game.getWhite()) >= 0.0F);
+			Assert.assertTrue("Single search scores should never be negative", ChessPresso.getMachineCorrelationScore(game.getBlack()) >= 0.0F);
+		}
+	}
 }
@@ -10,11 +10,20 @@
 
 package com.bigtobster.pgnextractalt.chess;
 
+import chesspresso.game.Game;
+import chesspresso.pgn.PGNSyntaxError;
+import com.bigtobster.pgnextractalt.filters.DuplicateFilter;
+import com.bigtobster.pgnextractalt.filters.DuplicateFilterMode;
+import com.bigtobster.pgnextractalt.filters.Filter;
+import com.bigtobster.pgnextractalt.filters.PlycountFilter;
 import com.bigtobster.pgnextractalt.filters.ResultFilter;
 import com.bigtobster.pgnextractalt.misc.TestContext;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.MissingResourceException;
 
 /**
@@ -24,8 +33,41 @@ import java.util.MissingResourceException;
  */
 public class ChessFiltererTest
 {
+	private static final String KEPT_GAMES_DIFFER       = "Pipeline should keep the same games as running each filter in turn";
+	private static final String REMOVED_GAMES_DIFFER    = "Pipeline should report every game it removed";
 	private static final String SHOULD_NOT_FILTER_GAMES = "Filter should not filter any games";
 
+	/**
+	 * Tests that a plycount filter run on lazily imported games counts their moves from the movetext, keeping the same games as on parsed games
+	 * without parsing any
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void lazyTextRunTest() throws IOException, PGNSyntaxError
+	{
+		final File importFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LARGE_PGN);
+		final TestChessContext testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.LARGE_PGN);
+		final PlycountFilter plycountFilter = new PlycountFilter();
+		//noinspection MagicNumber
+		plycountFilter.setGreaterThan(60);
+		plycountFilter.setLessThan(Integer.MAX_VALUE);
+		final ArrayList<Game> expectedGames = plycountFilter.filter(testChessContext.getChessIO().getGames());
+		testChessContext.getChessIO().reset();
+
+		testChessContext.getChessIO().importPGNLazily(importFile);
+		final ChessFilterer chessFilterer = testChessContext.getChessFilterer();
+		chessFilterer.loadFilter(plycountFilter);
+		chessFilterer.run();
+		for(final GameRecord record : testChessContext.getChessContext().getRecords())
+		{
+			Assert.assertFalse("Counting plies from the movetext should not have parsed any game", record.isParsed());
+		}
+		Assert.assertEquals(ChessFiltererTest.KEPT_GAMES_DIFFER, expectedGames, testChessContext.getChessIO().getGames());
+	}
+
 	/**
 	 * Tests that load performs without failing
 	 */
@@ -76,4 +118,99 @@ public class ChessFiltererTest
 		}
 	}
 
+	/**
+	 * Tests that a pipeline of filters, fused or broken by a filter needing every game, keeps the same games as running each filter in turn
+	 */
+	@Test
+	public void pipelineRunTest()
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.LARGE_PGN);
+		final int importedGames = testChessContext.getChessIO().getGameCount();
+		ArrayList<Game> expectedGames = new ArrayList<Game>(testChessContext.getChessIO().getGames());
+		for(final Filter filter : ChessFiltererTest.createPipeline(DuplicateFilterMode.PURGE))
+		{
+			expectedGames = filter.filter(expectedGames);
+		}
+		final ChessFilterer chessFilterer = testChessContext.getChessFilterer();
+		chessFilterer.loadFilters(ChessFiltererTest.createPipeline(DuplicateFilterMode.PURGE));
+		Assert.assertEquals(ChessFiltererTest.REMOVED_GAMES_DIFFER, (long) (importedGames - expectedGames.size()), (long) chessFilterer.run());
+		Assert.assertEquals(ChessFiltererTest.KEPT_GAMES_DIFFER, expectedGames, testChessContext.getChessIO().getGames());
+
+		testChessContext.getChessIO().reset();
+		testChessContext.loadPGN(TestContext.LARGE_PGN);
+		expectedGames = new ArrayList<Game>(testChessContext.getChessIO().getGames());
+		for(final Filter filter : ChessFiltererTest.createPipeline(DuplicateFilterMode.FILTER))
+		{
+			expectedGames = filter.filter(expectedGames);
+		}
+		chessFilterer.loadFilters(ChessFiltererTest.createPipeline(DuplicateFilterMode.FILTER));
+		Assert.assertEquals(ChessFiltererTest.REMOVED_GAMES_DIFFER, (long) (importedGames - expectedGames.size()), (long) chessFilterer.run());
+		Assert.assertEquals(ChessFiltererTest.KEPT_GAMES_DIFFER, expectedGames, testChessContext.getChessIO().getGames());
+	}
+
+	/**
+	 * Tests that filtering a pipeline over partitions on several threads keeps the same games in the same order as on a single thread
+	 */
+	@Test
+	public void partitionedRunTest()
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.LARGE_PGN);
+		final int importedGames = testChessContext.getChessIO().getGameCount();
+		final ChessFilterer chessFilterer = testChessContext.getChessFilterer();
+		chessFilterer.loadFilters(ChessFiltererTest.createPipeline(DuplicateFilterMode.FILTER));
+		final int removedGames = chessFilterer.run();
+		final ArrayList<Game> expectedGames = new ArrayList<Game>(testChessContext.getChessIO().getGames());
+
+		testChessContext.getChessIO().reset();
+		testChessContext.loadPGN(TestContext.LARGE_PGN);
+		chessFilterer.loadFilters(ChessFiltererTest.createPipeline(DuplicateFilterMode.FILTER));
+		Assert.assertEquals(ChessFiltererTest.REMOVED_GAMES_DIFFER, (long) removedGames, (long) chessFilterer.run(4));
+		Assert.assertEquals(ChessFiltererTest.KEPT_GAMES_DIFFER, expectedGames, testChessContext.getChessIO().getGames());
+		Assert.assertTrue("Some games should have been kept", removedGames < importedGames);
+	}
+
+	/**
+	 * Tests that a cheap tag filter which rejects every game is planned ahead of a costly plycount filter which rejects none
+	 */
+	@Test
+	public void planTest()
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		testChessContext.loadPGN(TestContext.MULTI_PGN);
+		final ChessFilterer chessFilterer = testChessContext.getChessFilterer();
+		Assert.assertEquals("Nothing run should have no plan", "", chessFilterer.getPlan());
+		final ResultFilter resultFilter = new ResultFilter();
+		resultFilter.setWhiteWinFiltered(true);
+		resultFilter.setBlackWinFiltered(true);
+		resultFilter.setDrawFiltered(true);
+		resultFilter.setUnresolvedFiltered(true);
+		final ArrayList<Filter> filters = new ArrayList<Filter>(2);
+		filters.add(new PlycountFilter());
+		filters.add(resultFilter);
+		chessFilterer.loadFilters(filters);
+		final int importedGames = testChessContext.getChessIO().getGameCount();
+		Assert.assertEquals("Every game should be filtered", (long) importedGames, (long) chessFilterer.run());
+		Assert.assertTrue("Result filter should be planned first: " + chessFilterer.getPlan(), chessFilterer.getPlan().startsWith("ResultFilter"));
+	}
+
+	private static ArrayList<Filter> createPipeline(final DuplicateFilterMode duplicateMode)
+	{
+		final ResultFilter resultFilter = new ResultFilter();
+		resultFilter.setDrawFiltered(true);
+		final PlycountFilter plycountFilter = new PlycountFilter();
+		plycountFilter.setGreaterThan(0);
+		plycountFilter.setLessThan(40);
+		final DuplicateFilter duplicateFilter = new DuplicateFilter();
+		duplicateFilter.setMode(duplicateMode);
+		final ResultFilter blackWinFilter = new ResultFilter();
+		blackWinFilter.setBlackWinFiltered(true);
+		final ArrayList<Filter> filters = new ArrayList<Filter>(4);
+		filters.add(resultFilter);
+		filters.add(plycountFilter);
+		filters.add(duplicateFilter);
+		filters.add(blackWinFilter);
+		return filters;
+	}
 }
@@ -10,7 +10,13 @@
 
 package com.bigtobster.pgnextractalt.chess;
 
+import chesspresso.game.Game;
 import chesspresso.pgn.PGNSyntaxError;
+import com.bigtobster.pgnextractalt.filters.DuplicateFilterMode;
+import com.bigtobster.pgnextractalt.filters.GameFingerprint;
+import com.bigtobster.pgnextractalt.filters.ResultFilter;
+import com.bigtobster.pgnextractalt.filters.SeenGamesArchive;
+import com.bigtobster.pgnextractalt.filters.StreamableFilter;
 import com.bigtobster.pgnextractalt.misc.TestContext;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -18,13 +24,18 @@ import org.junit.Test;
 
 import javax.activation.UnsupportedDataTypeException;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.UUID;
 import java.util.logging.Logger;
 
 import static java.nio.file.Files.createDirectory;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
 
 /**
  * Tests the IO of PGNExtractAlt. Created by Toby Leheup on 08/01/16 for pgn-extract-alt.
@@ -118,6 +129,83 @@ public class ChessIOTest
 		ChessIOTest.assertImportSuccess(chessIO);
 	}
 
+	/**
+	 * Tests that games packed into an off-heap compact store with too small a memory budget spill to disk and are still rebuilt equal to the games
+	 * that were imported
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void compactOffHeapTest() throws IOException, PGNSyntaxError
+	{
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+		ChessIOTest.testImportSucceeds(TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LARGE_PGN), chessIO);
+		final ArrayList<Game> importedGames = new ArrayList<Game>(chessIO.getGames());
+		//A budget smaller than a single segment forces every segment into the scratch file
+		final int compactGames = chessIO.compact(1L);
+		Assert.assertEquals("Every game of a file without variations or comments should be compacted", (long) importedGames.size(), (long) compactGames);
+		Assert.assertEquals("Spilled games should be rebuilt equal to the imported games", importedGames, chessIO.getGames());
+		chessIO.reset();
+		Assert.assertFalse("Reset should clear an off-heap store", chessIO.isPGNImported());
+	}
+
+	/**
+	 * Tests that games packed into the compact store are rebuilt equal to the games that were imported and that their tags can still be read and
+	 * written
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void compactTest() throws IOException, PGNSyntaxError
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		final ChessIO chessIO = testChessContext.getChessIO();
+		ChessIOTest.testImportSucceeds(TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LARGE_PGN), chessIO);
+		final ArrayList<Game> importedGames = new ArrayList<Game>(chessIO.getGames());
+
+		final int compactGames = chessIO.compact();
+		Assert.assertEquals("Every game of a file without variations or comments should be compacted", (long) importedGames.size(), (long) compactGames);
+		Assert.assertEquals("Compacting should not change the number of games", (long) importedGames.size(), (long) chessIO.getGameCount());
+		testChessContext.getChessTagModder().insertTag(ChessContext.WHITE_KEY, ChessContext.WHITE_KEY, true);
+		for(final Game game : importedGames)
+		{
+			game.setTag(ChessContext.WHITE_KEY, ChessContext.WHITE_KEY);
+		}
+		Assert.assertEquals("Compacted games should be rebuilt equal to the imported games", importedGames, chessIO.getGames());
+	}
+
+	/**
+	 * Tests that a compact store is kept open by a view across a reset and is closed once the view and the current games are done with it
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void compactViewTest() throws IOException, PGNSyntaxError
+	{
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+		ChessIOTest.testImportSucceeds(TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LARGE_PGN), chessIO);
+		final ArrayList<Game> importedGames = new ArrayList<Game>(chessIO.getGames());
+		chessIO.compact(1L);
+		final GameView view = chessIO.getView();
+		chessIO.reset();
+		chessIO.setView(view);
+		view.release();
+		Assert.assertEquals("A store held by a view should outlive a reset", importedGames, chessIO.getGames());
+		chessIO.reset();
+		try
+		{
+			view.share();
+			Assert.fail("A store should be closed once its last claim is released");
+		}
+		catch(final IllegalStateException ignored)
+		{
+			//Expected - neither the view nor the current games hold the store any more
+		}
+	}
+
 	/**
 	 * Tests that an imported large multiple game PGN file is exported correctly
 	 *
@@ -200,6 +288,42 @@ public class ChessIOTest
 		ChessIOTest.testImportFails(TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.EMPTY_PGN));
 	}
 
+	/**
+	 * Tests that importing through a header filter yields the same games as filtering a full import, both eagerly and lazily, and that a lazy
+	 * filtered import parses nothing
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void importFilteredTest() throws IOException, PGNSyntaxError
+	{
+		final File importFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LARGE_PGN);
+		final TestChessContext testChessContext = new TestChessContext();
+		final ChessIO chessIO = testChessContext.getChessIO();
+		ChessIOTest.testImportSucceeds(importFile, chessIO);
+		final ArrayList<Game> eagerGames = new ArrayList<Game>(chessIO.getGames());
+		chessIO.reset();
+		final ResultFilter resultFilter = new ResultFilter();
+		resultFilter.setDrawFiltered(true);
+		resultFilter.setUnresolvedFiltered(true);
+		final ArrayList<Game> expectedGames = resultFilter.filter(eagerGames);
+		final ArrayList<ResultFilter> headerFilters = new ArrayList<ResultFilter>(1);
+		headerFilters.add(resultFilter);
+
+		final int rejectedGames = chessIO.importPGN(importFile, headerFilters);
+		Assert.assertEquals("Rejected games should be counted", (long) (eagerGames.size() - expectedGames.size()), (long) rejectedGames);
+		Assert.assertEquals("Filtered import should match filtered full import", expectedGames, chessIO.getGames());
+		chessIO.reset();
+
+		Assert.assertEquals("Rejected games should be counted", (long) rejectedGames, (long) chessIO.importPGNLazily(importFile, headerFilters));
+		for(final GameRecord record : testChessContext.getChessContext().getRecords())
+		{
+			Assert.assertFalse("Filtered lazy import should not have parsed any game", record.isParsed());
+		}
+		Assert.assertEquals("Filtered lazy import should match filtered full import", expectedGames, chessIO.getGames());
+	}
+
 	/**
 	 * Tests that PGN importing is flagged correctly
 	 *
@@ -228,6 +352,31 @@ public class ChessIOTest
 		ChessIOTest.testImportSucceeds(TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LARGE_PGN), chessIO);
 	}
 
+	/**
+	 * Tests that PGN text is read and written as ISO-8859-1 whatever the platform charset, so that the tags of a lazily imported game match its
+	 * parsed tags and survive being copied to an export
+	 *
+	 * @throws IOException    Thrown on import or export file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void importLatinTest() throws IOException, PGNSyntaxError
+	{
+		final String white = "M\u00fcller, Hans";
+		final File importFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LATIN_PGN);
+		final TestChessContext testChessContext = new TestChessContext();
+		final ChessIO chessIO = testChessContext.getChessIO();
+		chessIO.importPGNLazily(importFile);
+		Assert.assertEquals("Raw tags should be read as ISO-8859-1", white, testChessContext.getChessContext().getRecords().get(0).getTag("White"));
+		Assert.assertEquals("Parsed tags should match raw tags", white, chessIO.getGames().get(0).getWhite());
+
+		final File exportFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + ".pgn");
+		final PrintWriter printWriter = new PrintWriter(exportFile, StandardCharsets.ISO_8859_1.name());
+		chessIO.exportPGN(printWriter);
+		final String exportedText = new String(readAllBytes(exportFile.toPath()), StandardCharsets.ISO_8859_1);
+		Assert.assertTrue("Copied tags should be written unchanged", exportedText.contains("[White \"" + white + "\"]"));
+	}
+
 	/**
 	 * Tests that PGN importing is flagged correctly
 	 *
@@ -256,6 +405,53 @@ public class ChessIOTest
 		ChessIOTest.testImportSucceeds(TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN), chessIO);
 	}
 
+	/**
+	 * Tests that a lazily imported PGN file can be tagged, filtered by result and exported without any game being parsed, and that the games it
+	 * yields once parsed are those of a full import
+	 *
+	 * @throws IOException    Thrown on import or export file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@SuppressWarnings("FeatureEnvy")
+	@Test
+	public void importLazyTest() throws IOException, PGNSyntaxError
+	{
+		final File importFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LARGE_PGN);
+		final TestChessContext testChessContext = new TestChessContext();
+		final ChessIO chessIO = testChessContext.getChessIO();
+		final ChessContext chessContext = testChessContext.getChessContext();
+		ChessIOTest.testImportSucceeds(importFile, chessIO);
+		final ArrayList<Game> eagerGames = new ArrayList<Game>(chessIO.getGames());
+		chessIO.reset();
+
+		chessIO.importPGNLazily(importFile);
+		ChessIOTest.assertImportSuccess(chessIO);
+		Assert.assertEquals("Lazy import should find every game", (long) eagerGames.size(), (long) chessIO.getGameCount());
+		testChessContext.getChessTagModder().insertTag(ChessContext.WHITE_KEY, ChessContext.WHITE_KEY, true);
+		final ResultFilter resultFilter = new ResultFilter();
+		resultFilter.setDrawFiltered(true);
+		testChessContext.getChessFilterer().loadFilter(resultFilter);
+		testChessContext.getChessFilterer().run();
+		for(final GameRecord record : chessContext.getRecords())
+		{
+			Assert.assertFalse("Header-only work should not have parsed any game", record.isParsed());
+			Assert.assertEquals("Tag should have been inserted", ChessContext.WHITE_KEY, record.getTag(ChessContext.WHITE_KEY));
+		}
+		// noinspection MagicCharacter
+		final File exportFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + '-' + importFile.getName());
+		chessIO.exportPGN(new PrintWriter(exportFile));
+
+		final ArrayList<Game> expectedGames = resultFilter.filter(eagerGames);
+		for(final Game game : expectedGames)
+		{
+			game.setTag(ChessContext.WHITE_KEY, ChessContext.WHITE_KEY);
+		}
+		Assert.assertEquals("Parsed lazy games should match filtered eager games", expectedGames, chessIO.getGames());
+		chessIO.reset();
+		ChessIOTest.testImportSucceeds(exportFile, chessIO);
+		Assert.assertEquals("Games exported without parsing should match filtered eager games", expectedGames, chessIO.getGames());
+	}
+
 	/**
 	 * Tests that PGN importing is flagged correctly
 	 *
@@ -268,6 +464,53 @@ public class ChessIOTest
 		ChessIOTest.testImportFails(TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.NOT_A_PGN));
 	}
 
+	/**
+	 * Tests that a large PGN file imported across several threads yields the same games, in the same order, as a sequential import
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void importParallelTest() throws IOException, PGNSyntaxError
+	{
+		final File importFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LARGE_PGN);
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+		ChessIOTest.testImportSucceeds(importFile, chessIO);
+		final ArrayList<Game> sequentialGames = new ArrayList<Game>(chessIO.getGames());
+		chessIO.reset();
+		//noinspection MagicNumber
+		chessIO.importPGN(importFile, 4);
+		ChessIOTest.assertImportSuccess(chessIO);
+		Assert.assertEquals("Parallel import should match sequential import", sequentialGames, chessIO.getGames());
+	}
+
+	/**
+	 * Tests that importing a range of games through the PGN index yields the same games as slicing a full import, and that the index is saved in
+	 * the user cache rather than next to the PGN file
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@SuppressWarnings("MagicNumber")
+	@Test
+	public void importRangeTest() throws IOException, PGNSyntaxError
+	{
+		final File importFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LARGE_PGN);
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+		ChessIOTest.testImportSucceeds(importFile, chessIO);
+		final ArrayList<Game> allGames = new ArrayList<Game>(chessIO.getGames());
+		chessIO.reset();
+		chessIO.importPGN(importFile, 2, 4, 1);
+		ChessIOTest.assertImportSuccess(chessIO);
+		Assert.assertEquals("Range import should match the same games of a full import", allGames.subList(1, 4), chessIO.getGames());
+		Assert.assertTrue("PGN index should have been saved in the user cache", PGNIndex.getIndexFile(importFile).isFile());
+		Assert.assertFalse(
+				"PGN index should not have been saved next to the PGN file",
+				new File(importFile.getPath() + PGNIndex.INDEX_EXTENSION).exists()
+						  );
+		Assert.assertEquals("Saved PGN index should cover every game", (long) allGames.size(), (long) PGNIndex.load(importFile).getGameCount());
+	}
+
 	/**
 	 * Tests that PGN importing is flagged correctly
 	 *
@@ -281,4 +524,358 @@ public class ChessIOTest
 		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
 		ChessIOTest.testImportSucceeds(TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.SINGLE_PGN), chessIO);
 	}
+
+	/**
+	 * Tests that header filters and an archive of seen games combine on import, and that games rejected by the filters are not recorded as seen
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@SuppressWarnings("MagicNumber")
+	@Test
+	public void importUnseenFilteredTest() throws IOException, PGNSyntaxError
+	{
+		final File multiFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN);
+		final File seenGamesFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + ".bloom");
+		final ResultFilter resultFilter = new ResultFilter();
+		resultFilter.setWhiteWinFiltered(true);
+		final ArrayList<ResultFilter> headerFilters = new ArrayList<ResultFilter>(1);
+		headerFilters.add(resultFilter);
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+		Assert.assertEquals("White wins should be rejected", 3L, (long) chessIO.importUnseenPGN(multiFile, seenGamesFile, headerFilters));
+		Assert.assertEquals("Only black wins should have been imported", 2L, (long) chessIO.getGameCount());
+		chessIO.reset();
+		final ArrayList<ResultFilter> noFilters = new ArrayList<ResultFilter>(0);
+		Assert.assertEquals("Only black wins should have been seen", 2L, (long) chessIO.importUnseenPGN(multiFile, seenGamesFile, noFilters));
+		Assert.assertEquals("Rejected white wins should have been imported", 3L, (long) chessIO.getGameCount());
+	}
+
+	/**
+	 * Tests that an archive of seen games that has lost its sidecar fails to open rather than opening empty
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void importUnseenLostSidecarTest() throws IOException, PGNSyntaxError
+	{
+		final File singleFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.SINGLE_PGN);
+		final File seenGamesFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + ".bloom");
+		final ArrayList<ResultFilter> noFilters = new ArrayList<ResultFilter>(0);
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+		chessIO.importUnseenPGN(singleFile, seenGamesFile, noFilters);
+		chessIO.reset();
+		Assert.assertTrue("Sidecar should have been saved", SeenGamesArchive.getSidecarFile(seenGamesFile).delete());
+		try
+		{
+			chessIO.importUnseenPGN(singleFile, seenGamesFile, noFilters);
+			Assert.fail("An archive without its sidecar should not open");
+		}
+		catch(final IOException ignored)
+		{
+			Assert.assertFalse("No games should have been imported", chessIO.isPGNImported());
+		}
+	}
+
+	/**
+	 * Tests that games recorded in an archive of seen games are skipped by later imports, and that fingerprinting the raw text of a game agrees
+	 * with fingerprinting the parsed game
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@SuppressWarnings("MagicNumber")
+	@Test
+	public void importUnseenTest() throws IOException, PGNSyntaxError
+	{
+		final File multiFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN);
+		final File singleFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.SINGLE_PGN);
+		final File seenGamesFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + ".bloom");
+		final ArrayList<ResultFilter> noFilters = new ArrayList<ResultFilter>(0);
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+		Assert.assertEquals("No games should have been seen yet", 0L, (long) chessIO.importUnseenPGN(multiFile, seenGamesFile, noFilters));
+		Assert.assertEquals("Every game should have been imported", 5L, (long) chessIO.getGameCount());
+		chessIO.reset();
+		Assert.assertEquals("Every game should have been seen already", 5L, (long) chessIO.importUnseenPGN(multiFile, seenGamesFile, noFilters));
+		Assert.assertEquals("No games should have been imported", 0L, (long) chessIO.getGameCount());
+		Assert.assertEquals("The unseen game should have been imported", 0L, (long) chessIO.importUnseenPGN(singleFile, seenGamesFile, noFilters));
+		Assert.assertEquals("The unseen game should have been imported", 1L, (long) chessIO.getGameCount());
+		chessIO.reset();
+
+		ChessIOTest.testImportSucceeds(multiFile, chessIO);
+		ChessIOTest.testImportSucceeds(singleFile, chessIO);
+		final GameFingerprint fingerprint = new GameFingerprint();
+		final SeenGamesArchive seenGames = SeenGamesArchive.open(seenGamesFile, 0);
+		try
+		{
+			Assert.assertEquals("Archive should hold every imported game", 6L, seenGames.getCount());
+			for(final Game game : chessIO.getGames())
+			{
+				fingerprint.compute(game);
+				final boolean isSeen = seenGames.contains(fingerprint.getHigh(), fingerprint.getLow());
+				Assert.assertTrue("Parsed game should match its raw text fingerprint", isSeen);
+			}
+		}
+		finally
+		{
+			seenGames.close();
+		}
+	}
+
+	/**
+	 * Tests that a line opening with an Event tag inside a comment does not start a game in the PGN index, so that the index splits the file as
+	 * the parser does and the file can still be streamed
+	 *
+	 * @throws IOException    Thrown on import or export file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void indexCommentTest() throws IOException, PGNSyntaxError
+	{
+		final File importFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.COMMENT_EVENT_PGN);
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+		ChessIOTest.testImportSucceeds(importFile, chessIO);
+		final long gameCount = (long) chessIO.getGameCount();
+		Assert.assertEquals("The index should find the games the parser finds", gameCount, (long) PGNIndex.build(importFile).getGameCount());
+		final File exportFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + ".pgn");
+		final int streamedGames = chessIO.streamDuplicates(importFile, exportFile, DuplicateFilterMode.FILTER, new String[0]);
+		Assert.assertEquals("Every game should be streamed", gameCount, (long) streamedGames);
+	}
+
+	/**
+	 * Tests that a saved PGN index whose games do not fit the PGN file is rebuilt rather than trusted
+	 *
+	 * @throws IOException Thrown on import or index file handling failure
+	 */
+	@Test
+	public void indexCorruptTest() throws IOException
+	{
+		final File importFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.LARGE_PGN);
+		final long gameCount = (long) PGNIndex.load(importFile).getGameCount();
+		final File indexFile = PGNIndex.getIndexFile(importFile);
+		final byte[] savedIndex = readAllBytes(indexFile.toPath());
+		//Skip the magic number and version, the path and the PGN file's length and modification time to reach the game count
+		final ByteBuffer index = ByteBuffer.wrap(savedIndex);
+		final int countPosition = 8 + 2 + (int) index.getShort(8) + 16;
+
+		index.putInt(countPosition, Integer.MAX_VALUE);
+		write(indexFile.toPath(), savedIndex);
+		Assert.assertEquals("An impossible game count should be rebuilt", gameCount, (long) PGNIndex.load(importFile).getGameCount());
+
+		final byte[] rebuiltIndex = readAllBytes(indexFile.toPath());
+		ByteBuffer.wrap(rebuiltIndex).putLong(countPosition + 4, importFile.length());
+		write(indexFile.toPath(), rebuiltIndex);
+		final PGNIndex pgnIndex = PGNIndex.load(importFile);
+		Assert.assertEquals("An offset past the end of the file should be rebuilt", gameCount, (long) pgnIndex.getGameCount());
+		Assert.assertTrue("The rebuilt index should start within the file", pgnIndex.getOffset(0) < importFile.length());
+	}
+
+	/**
+	 * Tests that streaming duplicates through sorted runs on disk keeps the same games as the in memory duplicate modes
+	 *
+	 * @throws IOException    Thrown on import or export file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@SuppressWarnings("MagicNumber")
+	@Test
+	public void streamDuplicatesTest() throws IOException, PGNSyntaxError
+	{
+		final File multiFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN);
+		final File singleFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.SINGLE_PGN);
+		final File importFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + ".pgn");
+		final byte[] separator = "\n\n".getBytes("US-ASCII");
+		final FileOutputStream outputStream = new FileOutputStream(importFile);
+		try
+		{
+			outputStream.write(readAllBytes(multiFile.toPath()));
+			outputStream.write(separator);
+			outputStream.write(readAllBytes(singleFile.toPath()));
+			outputStream.write(separator);
+			outputStream.write(readAllBytes(multiFile.toPath()));
+		}
+		finally
+		{
+			outputStream.close();
+		}
+		final File exportFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + ".pgn");
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+
+		//A run of 2 games forces several run files to be merged
+		final String[] noTags = new String[0];
+		final int filteredCount = chessIO.streamDuplicates(importFile, exportFile, DuplicateFilterMode.FILTER, noTags, 2);
+		Assert.assertEquals("Filter should keep one of each game", 6L, (long) filteredCount);
+		ChessIOTest.testImportSucceeds(exportFile, chessIO);
+		final ArrayList<Game> filteredGames = new ArrayList<Game>(chessIO.getGames());
+		chessIO.reset();
+		ChessIOTest.testImportSucceeds(multiFile, chessIO);
+		ChessIOTest.testImportSucceeds(singleFile, chessIO);
+		Assert.assertEquals("Filtered games should be the first copy of each game in file order", chessIO.getGames(), filteredGames);
+		chessIO.reset();
+
+		final int isolatedGames = chessIO.streamDuplicates(importFile, exportFile, DuplicateFilterMode.ISOLATE, noTags, 2);
+		Assert.assertEquals("Isolate should keep every duplicated game", 10L, (long) isolatedGames);
+		final int purgedGames = chessIO.streamDuplicates(importFile, exportFile, DuplicateFilterMode.PURGE, noTags, 2);
+		Assert.assertEquals("Purge should keep only the unique game", 1L, (long) purgedGames);
+		ChessIOTest.testImportSucceeds(exportFile, chessIO);
+		Assert.assertEquals("Purge should keep only the unique game", 1L, (long) chessIO.getGames().size());
+	}
+
+	/**
+	 * Tests that streaming a PGN file through a filter writes the same games as importing, filtering and exporting it
+	 *
+	 * @throws IOException    Thrown on import or export file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void streamMultiTest() throws IOException, PGNSyntaxError
+	{
+		final File importFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN);
+		// noinspection MagicCharacter
+		final File exportFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + '-' + importFile.getName());
+		final ResultFilter resultFilter = new ResultFilter();
+		resultFilter.setDrawFiltered(true);
+		final ArrayList<StreamableFilter> filters = new ArrayList<StreamableFilter>(1);
+		filters.add(resultFilter);
+
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+		final int streamedGames = chessIO.streamPGN(importFile, new PrintWriter(exportFile), filters);
+		Assert.assertFalse("Streaming should not import any games", chessIO.isPGNImported());
+
+		ChessIOTest.testImportSucceeds(importFile, chessIO);
+		final ArrayList<Game> expectedGames = resultFilter.filter(chessIO.getGames());
+		chessIO.reset();
+		ChessIOTest.testImportSucceeds(exportFile, chessIO);
+		Assert.assertEquals("Streamed game count differs from the number of games written", (long) streamedGames, (long) chessIO.getGames().size());
+		Assert.assertEquals("Streamed games should be logically equal to filtered games", expectedGames, chessIO.getGames());
+	}
+
+	/**
+	 * Tests that a view keeps its games when the current games change and that isolated games can be tagged without changing the view
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void viewTest() throws IOException, PGNSyntaxError
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		final ChessIO chessIO = testChessContext.getChessIO();
+		ChessIOTest.testImportSucceeds(TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN), chessIO);
+		final GameView view = chessIO.getView();
+		final ArrayList<Game> viewGames = new ArrayList<Game>(chessIO.getGames());
+		final String whiteName = viewGames.get(0).getWhite();
+
+		chessIO.setView(GameView.EMPTY);
+		Assert.assertFalse("Restoring an empty view should leave no games", chessIO.isPGNImported());
+		chessIO.setView(view);
+		Assert.assertEquals("Restoring a view should restore its games", viewGames, chessIO.getGames());
+
+		chessIO.isolateGames();
+		Assert.assertEquals("Isolated games should be logically equal to the games they copy", viewGames, chessIO.getGames());
+		testChessContext.getChessTagModder().insertTag(ChessContext.WHITE_KEY, ChessContext.WHITE_KEY, true);
+		chessIO.setView(view);
+		Assert.assertEquals("Tagging isolated games should not change the view's games", whiteName, chessIO.getGames().get(0).getWhite());
+		Assert.assertEquals("A view should not change once taken", (long) viewGames.size(), (long) view.getGameCount());
+	}
+
+	/**
+	 * Tests that reading lazily imported games does not keep them, and that tags written back from the read games are kept
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void writeTagsTest() throws IOException, PGNSyntaxError
+	{
+		final TestChessContext testChessContext = new TestChessContext();
+		final ChessIO chessIO = testChessContext.getChessIO();
+		chessIO.importPGNLazily(TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN));
+		final ArrayList<Game> games = chessIO.getGames();
+		for(final Game game : games)
+		{
+			game.setTag(ChessContext.WHITE_KEY, ChessContext.WHITE_KEY);
+		}
+		for(final GameRecord record : testChessContext.getChessContext().getRecords())
+		{
+			Assert.assertFalse("Reading a lazy game should not keep it", record.isParsed());
+			Assert.assertFalse(
+					"A tag inserted into a read game is not kept until written back",
+					ChessContext.WHITE_KEY.equals(record.getTag(ChessContext.WHITE_KEY))
+							  );
+		}
+		chessIO.writeTags(games);
+		Assert.assertEquals("Written back tags should be kept", games, chessIO.getGames());
+		for(final GameRecord record : testChessContext.getChessContext().getRecords())
+		{
+			Assert.assertEquals("Written back tags should be kept by the record", ChessContext.WHITE_KEY, record.getTag(ChessContext.WHITE_KEY));
+		}
+	}
+
+	/**
+	 * Tests that streaming duplicates out of a PGN file fails when the file holds more games than its index found
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void streamDuplicatesMismatchTest() throws IOException, PGNSyntaxError
+	{
+		final File importFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MISSING_EVENT_PGN);
+		final File exportFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + ".pgn");
+		final ChessIO chessIO = ChessIOTest.chessIOTestInit();
+		try
+		{
+			chessIO.streamDuplicates(importFile, exportFile, DuplicateFilterMode.FILTER, new String[0], 2);
+			Assert.fail("A game missed by the index should not be streamed");
+		}
+		catch(final PGNIndexMismatchException ignored)
+		{
+			//Expected - the unindexed game would otherwise be fingerprinted under the wrong index entry
+		}
+	}
+
+	/**
+	 * Tests that lazily imported games are not parsed again between reads, and that reading them fails once their PGN file has changed
+	 *
+	 * @throws IOException    Thrown on import file handling failure
+	 * @throws PGNSyntaxError Thrown on the imported PGN file having a syntax error
+	 */
+	@Test
+	public void importLazyChangedTest() throws IOException, PGNSyntaxError
+	{
+		final File multiFile = TestChessContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN);
+		final File importFile = TestChessContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + ".pgn");
+		final FileOutputStream outputStream = new FileOutputStream(importFile);
+		try
+		{
+			outputStream.write(readAllBytes(multiFile.toPath()));
+		}
+		finally
+		{
+			outputStream.close();
+		}
+		final TestChessContext testChessContext = new TestChessContext();
+		final ChessIO chessIO = testChessContext.getChessIO();
+		chessIO.importPGNLazily(importFile);
+		final Game firstGame = chessIO.getGames().get(0);
+		Assert.assertSame("A lazy game should not be parsed again while it is still held", firstGame, chessIO.getGames().get(0));
+		final FileOutputStream appendStream = new FileOutputStream(importFile, true);
+		try
+		{
+			appendStream.write("\n".getBytes(StandardCharsets.ISO_8859_1));
+		}
+		finally
+		{
+			appendStream.close();
+		}
+		try
+		{
+			chessIO.getGames();
+			Assert.fail("Reading a lazy game from a changed PGN file should fail");
+		}
+		catch(final IllegalStateException ignored)
+		{
+			//Expected - the file no longer matches the imported games
+		}
+	}
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.commands;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+/**
+ * Tests the headless batch pipeline entry point
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public class BatchPipelineTest
+{
+	private static final String UNEXPECTED_STEPS = "Pipeline steps were not split as expected";
+
+	/**
+	 * Tests that steps are split the same whether given as one argument or several
+	 */
+	@Test
+	public void splitStepsTest()
+	{
+		final ArrayList<String> expectedSteps = new ArrayList<String>(3);
+		expectedSteps.add("import --FilePath -");
+		expectedSteps.add("filter-duplicates");
+		expectedSteps.add("export --ExportPath -");
+		Assert.assertEquals(
+				BatchPipelineTest.UNEXPECTED_STEPS,
+				expectedSteps,
+				BatchPipeline.splitSteps(new String[]{"import --FilePath - -> filter-duplicates->export --ExportPath -"})
+						   );
+		Assert.assertEquals(
+				BatchPipelineTest.UNEXPECTED_STEPS,
+				expectedSteps,
+				BatchPipeline.splitSteps(new String[]{"import --FilePath -", "->", "filter-duplicates ->", "export --ExportPath -"})
+						   );
+		Assert.assertTrue(BatchPipelineTest.UNEXPECTED_STEPS, BatchPipeline.splitSteps(new String[]{" -> "}).isEmpty());
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2016 Toby Leheup
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.bigtobster.pgnextractalt.commands;
+
+import com.bigtobster.pgnextractalt.misc.TestContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tests the long running command daemon
+ *
+ * @author Toby Leheup (Bigtobster)
+ */
+public class CommandDaemonTest
+{
+	private static final String INSERT_TEST_TAG  = "insert-tag --" + TagCommands.TAG_KEY + " TestKey --" + TagCommands.TAG_VALUE + " TestValue";
+	private static final Logger LOGGER           = Logger.getLogger(CommandDaemonTest.class.getName());
+	private static final int    RESPONSE_TIMEOUT = 60000;
+	private static final String SHUTDOWN         = "shutdown";
+
+	/**
+	 * Tests that a client must send a token, that only the admin token may shut the daemon down, and that one client's tag edits are not seen by
+	 * another client
+	 *
+	 * @throws java.io.IOException            Thrown on failing to talk to the daemon
+	 * @throws java.lang.InterruptedException Thrown if interrupted while waiting for the daemon to stop
+	 */
+	@Test
+	public void clientSessionTest() throws IOException, InterruptedException
+	{
+		final HeadlessShell shell = HeadlessShell.open();
+		try
+		{
+			final File pgnFile = TestContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN);
+			Assert.assertTrue(shell.execute("import --FilePath " + pgnFile.getAbsolutePath()).startsWith(IOCommands.SUCCESSFUL_IMPORT));
+			final CommandDaemon daemon = CommandDaemon.open(shell, 0);
+			final Thread server = new Thread(new Server(daemon));
+			server.start();
+			try
+			{
+				final Client stranger = new Client(daemon.getPort());
+				Assert.assertTrue(
+						"A client without a token should be turned away",
+						stranger.send("not the token").startsWith(BatchPipeline.FAILURE_PREFIX)
+								 );
+				stranger.close();
+
+				final Client first = new Client(daemon.getPort());
+				final Client second = new Client(daemon.getPort());
+				first.authenticate(daemon.getTokenFile());
+				second.authenticate(daemon.getTokenFile());
+				Assert.assertTrue(
+						"The first client should insert its tag",
+						first.send(CommandDaemonTest.INSERT_TEST_TAG).startsWith(CommandContext.SUCCESSFULLY_INSERTED_TAGS)
+								 );
+				Assert.assertTrue(
+						"The first client should see its own tag",
+						first.send(CommandDaemonTest.INSERT_TEST_TAG).startsWith(CommandContext.FAILED_TO_INSERT_TAGS)
+								 );
+				Assert.assertTrue(
+						"The second client should not see the first client's tag",
+						second.send(CommandDaemonTest.INSERT_TEST_TAG).startsWith(CommandContext.SUCCESSFULLY_INSERTED_TAGS)
+								 );
+				//Editing commands hold the daemon's lock while they run, which must not hold up the commands of other clients
+				synchronized(daemon)
+				{
+					Assert.assertFalse(
+							"A command which does not edit games should run alongside an editing command",
+							first.send(IOCommands.getStatusCommand()).startsWith(BatchPipeline.FAILURE_PREFIX)
+									  );
+				}
+				Assert.assertTrue(
+						"Shutdown should need the admin token",
+						second.send(CommandDaemonTest.SHUTDOWN).startsWith(BatchPipeline.FAILURE_PREFIX)
+								 );
+				first.close();
+				second.close();
+
+				final Client admin = new Client(daemon.getPort());
+				admin.authenticate(daemon.getAdminTokenFile());
+				admin.send(CommandDaemonTest.SHUTDOWN);
+				admin.close();
+				server.join();
+			}
+			finally
+			{
+				daemon.close();
+			}
+			Assert.assertFalse("Tokens should be deleted once the daemon stops", daemon.getTokenFile().exists());
+		}
+		finally
+		{
+			shell.close();
+		}
+	}
+
+	/**
+	 * Tests that only the commands which write tags are treated as editing a view's games
+	 */
+	@Test
+	public void isEditingTest()
+	{
+		Assert.assertTrue("Tag insertion should edit games", CommandDaemon.isEditing("insert-tag --TagKey Event --TagValue Test"));
+		Assert.assertTrue("Machine correlation should edit games", CommandDaemon.isEditing("evaluate-machine-correlation --Depth 5"));
+		Assert.assertTrue("Result evaluation should edit games", CommandDaemon.isEditing("evaluate-result"));
+		Assert.assertFalse("Filters should not edit games", CommandDaemon.isEditing("result-filter --FilterDraws true"));
+		Assert.assertFalse("Export should not edit games", CommandDaemon.isEditing("export --FilePath insert-tag.pgn"));
+	}
+
+	/**
+	 * Tests that compaction is only recognised as an option
+	 */
+	@Test
+	public void isStartupOnlyTest()
+	{
+		Assert.assertTrue("Compact should only be accepted at startup", CommandDaemon.isStartupOnly("import --FilePath a.pgn --Compact true"));
+		Assert.assertTrue("MemoryBudget should only be accepted at startup", CommandDaemon.isStartupOnly("import --MemoryBudget 64 --FilePath a.pgn"));
+		Assert.assertFalse("A plain import should be accepted", CommandDaemon.isStartupOnly("import --FilePath Compact.pgn"));
+	}
+
+	/**
+	 * A connection to the daemon which sends one line at a time and waits for the response
+	 */
+	private static final class Client
+	{
+		private final BufferedReader reader;
+		private final Socket         socket;
+		private final PrintWriter    writer;
+
+		Client(final int port) throws IOException
+		{
+			this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			this.socket.setSoTimeout(CommandDaemonTest.RESPONSE_TIMEOUT);
+			this.reader = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8));
+			this.writer = new PrintWriter(new OutputStreamWriter(this.socket.getOutputStream(), StandardCharsets.UTF_8));
+		}
+
+		void authenticate(final File tokenFile) throws IOException
+		{
+			final String token = new String(Files.readAllBytes(tokenFile.toPath()), StandardCharsets.UTF_8);
+			Assert.assertEquals("A client with a token should be accepted", "Authenticated", this.send(token));
+		}
+
+		void close() throws IOException
+		{
+			this.socket.close();
+		}
+
+		String send(final String line) throws IOException
+		{
+			this.writer.println(line);
+			this.writer.flush();
+			final StringBuilder response = new StringBuilder();
+			String responseLine = this.reader.readLine();
+			while((responseLine != null) && ! responseLine.equals("."))
+			{
+				response.append(responseLine);
+				responseLine = this.reader.readLine();
+			}
+			return response.toString();
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "Client{" +
+				   "socket=" + this.socket +
+				   '}';
+		}
+	}
+
+	/**
+	 * Serves the daemon's clients until it is shut down
+	 */
+	private static final class Server implements Runnable
+	{
+		private final CommandDaemon daemon;
+
+		Server(final CommandDaemon daemon)
+		{
+			this.daemon = daemon;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				this.daemon.serve();
+			}
+			catch(final IOException ioe)
+			{
+				CommandDaemonTest.LOGGER.log(Level.WARNING, "Daemon stopped serving", ioe);
+			}
+		}
+
+		@SuppressWarnings({"HardCodedStringLiteral", "MagicCharacter"})
+		@Override
+		public String toString()
+		{
+			return "Server{" +
+				   "daemon=" + this.daemon +
+				   '}';
+		}
+	}
+}
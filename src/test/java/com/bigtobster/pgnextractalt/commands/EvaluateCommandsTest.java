@@ -63,6 +63,24 @@ public class EvaluateCommandsTest
 		return TestCommandContext.buildCommand(command);
 	}
 
+	/**
+	 * Tests that an evaluation cache file is refused without single search, as it would otherwise be silently ignored
+	 */
+	@SuppressWarnings({"InstanceMethodNamingConvention", "JUnitTestMethodWithNoAssertions"})
+	@Test
+	public void evaluateMachineCorrelationCacheWithoutSingleSearchTest()
+	{
+		final TestCommandContext testCommandContext = new TestCommandContext();
+		testCommandContext.loadPGN(TestContext.SINGLE_PGN);
+		final HashMap<String, String> args = new HashMap<String, String>(1);
+		args.put(EvaluateCommands.EVALUATION_CACHE_OPTION, "evaluation.cache");
+		final String finalCommand = TestCommandContext.buildCommand(EvaluateCommands.getEvaluateMachineCorrelationCommand(), args);
+		final String actualOutput = testCommandContext.executeValidCommand(finalCommand);
+		final String predictedOutput = EvaluateCommands.FAILED_EVALUATION + EvaluateCommandsTest.SPACE +
+									   EvaluateCommands.EVALUATION_CACHE_REQUIRES_SINGLE_SEARCH;
+		TestCommandContext.assertOutputMatchesPredicted(actualOutput, predictedOutput);
+	}
+
 	/**
 	 * Tests evaluating the machine correlation when no games have been inserted
 	 */
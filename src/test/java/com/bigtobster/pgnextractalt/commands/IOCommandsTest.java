@@ -219,6 +219,47 @@ public class IOCommandsTest
 		TestCommandContext.assertOutputMatchesPredicted(actualOutput, predictedOutput);
 	}
 
+	/**
+	 * Tests that import options which cannot be combined fail the import rather than being silently dropped, and that result filters combine
+	 * with an archive of seen games
+	 */
+	@Test
+	public void importConflictTest()
+	{
+		final File pgnFile = TestCommandContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN);
+		final File seenGamesFile = TestCommandContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + ".bloom");
+		final String[][] conflicts = {
+				{IOCommands.LAZY_OPTION, "true", IOCommands.SEEN_GAMES_OPTION, seenGamesFile.getPath()},
+				{IOCommands.LAZY_OPTION, "true", IOCommands.THREADS_OPTION, "2"},
+				{IOCommands.SEEN_GAMES_OPTION, seenGamesFile.getPath(), IOCommands.FIRST_GAME_OPTION, "2"},
+				{ResultFilterCommands.FILTER_DRAWS_OPTION, "true", IOCommands.LAST_GAME_OPTION, "2"}
+		};
+		final TestCommandContext testCommandContext = new TestCommandContext();
+		for(final String[] conflict : conflicts)
+		{
+			final HashMap<String, String> optionArgs = new HashMap<String, String>(3);
+			optionArgs.put(IOCommands.FILE_PATH_OPTION, pgnFile.getPath());
+			optionArgs.put(conflict[0], conflict[1]);
+			optionArgs.put(conflict[2], conflict[3]);
+			final String command = TestCommandContext.buildCommand(IOCommands.getImportCommand(), optionArgs);
+			final String actualOutput = testCommandContext.executeValidCommand(command);
+			final String predictedOutput = IOCommands.FAILED_IMPORT + IOCommandsTest.SPACE + conflict[0] + IOCommandsTest.SPACE +
+										   IOCommands.CONFLICTING_OPTIONS + IOCommandsTest.SPACE + conflict[2];
+			TestCommandContext.assertOutputMatchesPredicted(actualOutput, predictedOutput);
+			Assert.assertFalse("Conflicting options should not import any games", testCommandContext.getChessIO().isPGNImported());
+		}
+
+		final HashMap<String, String> optionArgs = new HashMap<String, String>(3);
+		optionArgs.put(IOCommands.FILE_PATH_OPTION, pgnFile.getPath());
+		optionArgs.put(IOCommands.SEEN_GAMES_OPTION, seenGamesFile.getPath());
+		optionArgs.put(ResultFilterCommands.FILTER_WHITE_WINS_OPTION, "true");
+		final String command = TestCommandContext.buildCommand(IOCommands.getImportCommand(), optionArgs);
+		final String actualOutput = testCommandContext.executeValidCommand(command);
+		TestCommandContext.assertCommandOutputContains(actualOutput, IOCommands.SUCCESSFUL_IMPORT);
+		TestCommandContext.assertCommandOutputContains(actualOutput, 3 + IOCommandsTest.SPACE + IOCommands.GAMES_SKIPPED);
+		Assert.assertEquals("Result filters should apply alongside the seen games", 2L, (long) testCommandContext.getChessIO().getGameCount());
+	}
+
 	/**
 	 * Tests Import functionality on an empty PGN file
 	 */
@@ -391,4 +432,44 @@ public class IOCommandsTest
 		actualOutput = testCommandContext.executeValidCommand(command);
 		TestCommandContext.assertOutputMatchesPredicted(actualOutput, expectedOutput);
 	}
+
+	/**
+	 * Tests that a PGN file streams successfully without being imported
+	 */
+	@Test
+	public void streamMultiPGNTest()
+	{
+		final TestCommandContext testCommandContext = new TestCommandContext();
+		final File pgnFile = TestCommandContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN);
+		//noinspection MagicCharacter
+		final File exportFile = TestCommandContext.getPGNFile(TestContext.DUMP_DIR, UUID.randomUUID().toString() + '-' + TestContext.MULTI_PGN);
+		final HashMap<String, String> optionArgs = new HashMap<String, String>(3);
+		optionArgs.put(IOCommands.FILE_PATH_OPTION, pgnFile.getPath());
+		optionArgs.put(IOCommands.EXPORT_PATH_OPTION, exportFile.getPath());
+		optionArgs.put(IOCommands.FILTER_DUPLICATES, "true");
+		final String command = TestCommandContext.buildCommand(IOCommands.getStreamCommand(), optionArgs);
+		final String actualOutput = testCommandContext.executeValidCommand(command);
+		TestCommandContext.assertCommandOutputContains(actualOutput, IOCommands.SUCCESSFUL_STREAM);
+		Assert.assertFalse("Streaming should not import any games", testCommandContext.getChessIO().isPGNImported());
+		Assert.assertTrue("Streamed PGN should have been written", exportFile.length() > 0L);
+	}
+
+	/**
+	 * Tests that a PGN file cannot be streamed into itself
+	 */
+	@Test
+	public void streamIntoInputTest()
+	{
+		final TestCommandContext testCommandContext = new TestCommandContext();
+		final File pgnFile = TestCommandContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.MULTI_PGN);
+		final long pgnLength = pgnFile.length();
+		final HashMap<String, String> optionArgs = new HashMap<String, String>(2);
+		optionArgs.put(IOCommands.FILE_PATH_OPTION, pgnFile.getPath());
+		optionArgs.put(IOCommands.EXPORT_PATH_OPTION, pgnFile.getPath());
+		final String command = TestCommandContext.buildCommand(IOCommands.getStreamDuplicatesCommand(), optionArgs);
+		final String actualOutput = testCommandContext.executeValidCommand(command);
+		TestCommandContext.assertCommandOutputContains(actualOutput, IOCommands.FAILED_STREAM);
+		TestCommandContext.assertCommandOutputContains(actualOutput, IOCommands.EXPORT_IS_INPUT);
+		Assert.assertEquals("The PGN file should be left untouched", pgnLength, pgnFile.length());
+	}
 }
@@ -11,13 +11,18 @@
 package com.bigtobster.pgnextractalt.filters;
 
 import chesspresso.game.Game;
+import chesspresso.move.Move;
 import com.bigtobster.pgnextractalt.chess.ChessFilterer;
 import com.bigtobster.pgnextractalt.misc.TestContext;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
+import static java.nio.file.Files.readAllBytes;
+
 /**
  * Tests the DuplicatesFilter filters games correctly.
  * Created by Toby Leheup on 08/02/16 for pgn-extract-alt.
@@ -95,6 +100,58 @@ public class DuplicateFilterTest
 						   );
 	}
 
+	/**
+	 * Tests that fingerprinting a parsed game, which builds the canonical SAN of each move straight from the move, gives the same fingerprint as
+	 * adding the SAN of every move
+	 */
+	@Test
+	public void fingerprintSANTest()
+	{
+		final TestFilterContext testFilterContext = new TestFilterContext();
+		testFilterContext.loadPGN(TestContext.LARGE_PGN);
+		testFilterContext.loadPGN(TestContext.SMALL_IVANOV_PGN);
+		final GameFingerprint fingerprint = new GameFingerprint();
+		final GameFingerprint sanFingerprint = new GameFingerprint();
+		for(final Game game : testFilterContext.getChessIO().getGames())
+		{
+			fingerprint.compute(game);
+			sanFingerprint.reset();
+			game.gotoStart();
+			Move move = game.getNextMove();
+			while(move != null)
+			{
+				sanFingerprint.addMove(move.getSAN());
+				game.goForward();
+				move = game.getNextMove();
+			}
+			game.gotoStart();
+			sanFingerprint.finish();
+			Assert.assertEquals("Fingerprint should match the SAN fingerprint", sanFingerprint.getHigh(), fingerprint.getHigh());
+			Assert.assertEquals("Fingerprint should match the SAN fingerprint", sanFingerprint.getLow(), fingerprint.getLow());
+		}
+	}
+
+	/**
+	 * Tests that fingerprinting the raw text of a game written with annotation symbols, zero castling and more disambiguation than needed gives
+	 * the same fingerprint as the parsed game
+	 *
+	 * @throws IOException Thrown on failing to read the annotated PGN file
+	 */
+	@Test
+	public void fingerprintTextTest() throws IOException
+	{
+		final TestFilterContext testFilterContext = new TestFilterContext();
+		testFilterContext.loadPGN(TestContext.SINGLE_PGN);
+		final String[] tagKeys = {"Event"};
+		final GameFingerprint fingerprint = new GameFingerprint(tagKeys);
+		fingerprint.compute(testFilterContext.getChessIO().getGames().get(0));
+		final byte[] annotatedBytes = readAllBytes(TestContext.getPGNFile(TestContext.IMPORTS_DIR, TestContext.ANNOTATED_PGN).toPath());
+		final GameFingerprint textFingerprint = new GameFingerprint(tagKeys);
+		textFingerprint.computeText(new String(annotatedBytes, StandardCharsets.ISO_8859_1));
+		Assert.assertEquals("Text fingerprint should match the parsed fingerprint", fingerprint.getHigh(), textFingerprint.getHigh());
+		Assert.assertEquals("Text fingerprint should match the parsed fingerprint", fingerprint.getLow(), textFingerprint.getLow());
+	}
+
 	/**
 	 * Tests that no games are removed when no games are duplicated
 	 */
@@ -237,4 +294,31 @@ public class DuplicateFilterTest
 				(long) testFilterContext.getChessIO().getGames().size()
 						   );
 	}
+
+	/**
+	 * Tests that games with the same moves are only duplicates on the configured tags when tags are fingerprinted
+	 */
+	@Test
+	public void taggedDuplicatesFilterTest()
+	{
+		final TestFilterContext testFilterContext = new TestFilterContext();
+		testFilterContext.loadPGN(TestContext.SINGLE_PGN);
+		testFilterContext.loadPGN(TestContext.SINGLE_PGN);
+		testFilterContext.loadPGN(TestContext.SINGLE_PGN);
+		testFilterContext.getChessIO().getGames().get(2).setTag("Event", "  A different   EVENT ");
+		testFilterContext.getChessIO().getGames().get(1).setTag("Site", "A different site");
+
+		final DuplicateFilter duplicatesFilter = new DuplicateFilter();
+		duplicatesFilter.setMode(DuplicateFilterMode.FILTER);
+		duplicatesFilter.setFingerprintTags(new String[]{"Event"});
+		final ChessFilterer chessFilterer = testFilterContext.getChessFilterer();
+		chessFilterer.loadFilter(duplicatesFilter);
+		Assert.assertEquals(TestFilterContext.GAMES_FILTERED_DIFFERENT_EXP, 1L, (long) chessFilterer.run());
+
+		final DuplicateFilter movesOnlyFilter = new DuplicateFilter();
+		movesOnlyFilter.setMode(DuplicateFilterMode.FILTER);
+		chessFilterer.loadFilter(movesOnlyFilter);
+		Assert.assertEquals(TestFilterContext.GAMES_FILTERED_DIFFERENT_EXP, 1L, (long) chessFilterer.run());
+		Assert.assertEquals(TestFilterContext.GAMES_FILTERED_DIFFERENT_EXP, 1L, (long) testFilterContext.getChessIO().getGames().size());
+	}
 }
@@ -16,7 +16,12 @@ import com.bigtobster.pgnextractalt.misc.TestContext;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+
+import static java.nio.file.Files.readAllBytes;
 
 /**
  * Tests that PlyCountFilter filters games correctly.
@@ -39,6 +44,27 @@ public class PlycountFilterTest
 		return counter;
 	}
 
+	private static ArrayList<String> readMoveTexts(final String pgn) throws IOException
+	{
+		//Every game of the test files opens with an Event tag at the start of a line
+		final byte[] pgnBytes = readAllBytes(TestContext.getPGNFile(TestContext.IMPORTS_DIR, pgn).toPath());
+		final String pgnText = new String(pgnBytes, StandardCharsets.ISO_8859_1);
+		final ArrayList<String> moveTexts = new ArrayList<String>(16);
+		for(final String gameText : pgnText.substring(pgnText.indexOf("[Event ")).split("\n(?=\\[Event )"))
+		{
+			final StringBuilder moveText = new StringBuilder(gameText.length());
+			for(final String line : gameText.split("\n"))
+			{
+				if(! line.startsWith("["))
+				{
+					moveText.append(line).append('\n');
+				}
+			}
+			moveTexts.add(moveText.toString());
+		}
+		return moveTexts;
+	}
+
 	/**
 	 * Tests that filtering all games out works correctly
 	 */
@@ -116,4 +142,83 @@ public class PlycountFilterTest
 		final int postFilteredGames = testFilterContext.getChessIO().getGames().size();
 		Assert.assertEquals(TestFilterContext.EXPECTED_ALL_GAMES_REMAINING, (long) preFilteredGames, (long) postFilteredGames);
 	}
+
+	/**
+	 * Tests that the plies counted from the movetext of each game match the plies of the parsed game, including a game written with annotation
+	 * symbols and more disambiguation than needed
+	 *
+	 * @throws IOException Thrown on failing to read a test PGN file
+	 */
+	@Test
+	public void textPliesTest() throws IOException
+	{
+		final String[] pgns = {TestContext.LARGE_PGN, TestContext.SMALL_IVANOV_PGN};
+		for(final String pgn : pgns)
+		{
+			final TestFilterContext testFilterContext = new TestFilterContext();
+			testFilterContext.loadPGN(pgn);
+			final ArrayList<Game> games = testFilterContext.getChessIO().getGames();
+			final ArrayList<String> moveTexts = PlycountFilterTest.readMoveTexts(pgn);
+			Assert.assertEquals("Every game should have its movetext read", (long) games.size(), (long) moveTexts.size());
+			for(int i = 0; i < games.size(); i++)
+			{
+				Assert.assertEquals(
+						"Plies counted from movetext should match the parsed game",
+						(long) games.get(i).getNumOfPlies(),
+						(long) GameFingerprint.countPlies(moveTexts.get(i))
+								   );
+			}
+		}
+		final TestFilterContext testFilterContext = new TestFilterContext();
+		testFilterContext.loadPGN(TestContext.SINGLE_PGN);
+		Assert.assertEquals(
+				"Annotation symbols should not be counted as plies",
+				(long) testFilterContext.getChessIO().getGames().get(0).getNumOfPlies(),
+				(long) GameFingerprint.countPlies(PlycountFilterTest.readMoveTexts(TestContext.ANNOTATED_PGN).get(0))
+						   );
+		final String enPassantMoveText = "1. e4 a6 2. e5 d5 3. exd6 e.p. 1-0";
+		Assert.assertEquals("An e.p. suffix should not be counted as a ply", 5L, (long) GameFingerprint.countPlies(enPassantMoveText));
+	}
+
+	/**
+	 * Tests that plies are counted from movetext without counting move numbers, comments, NAGs, variations or the result, and that a PlyCount
+	 * tag is only used once trusted
+	 */
+	@Test
+	public void textRetainedTest()
+	{
+		final String moveText = "1. e4 {best by test (1. d4)} e5 2. Nf3 $1 Nc6 (2... d6 3. d4) 3.Bb5 a6?! ; the Ruy Lopez\n4. Ba4 1-0";
+		final PlycountFilter plycountFilter = new PlycountFilter();
+		plycountFilter.setGreaterThan(6);
+		plycountFilter.setLessThan(Integer.MAX_VALUE);
+		final TagMap tags = new TagMap();
+		Assert.assertFalse("Seven plies should be filtered", plycountFilter.isTextRetained(tags, moveText));
+		plycountFilter.setGreaterThan(7);
+		Assert.assertTrue("Seven plies should be kept", plycountFilter.isTextRetained(tags, moveText));
+		tags.put("PlyCount", "100");
+		Assert.assertTrue("An untrusted PlyCount tag should be ignored", plycountFilter.isTextRetained(tags, moveText));
+		plycountFilter.setPlyCountTagTrusted(true);
+		Assert.assertFalse("A trusted PlyCount tag should be used", plycountFilter.isTextRetained(tags, moveText));
+		tags.put("PlyCount", "?");
+		Assert.assertTrue("A PlyCount tag without a count should be ignored", plycountFilter.isTextRetained(tags, moveText));
+	}
+
+	/**
+	 * Tags held in a map
+	 */
+	private static final class TagMap extends HashMap<String, String> implements TagSource
+	{
+		private static final long serialVersionUID = 2875320465870621532L;
+
+		TagMap()
+		{
+			super(1);
+		}
+
+		@Override
+		public String getTag(final String tagKey)
+		{
+			return this.get(tagKey);
+		}
+	}
 }
@@ -28,10 +28,18 @@ import java.util.logging.Logger;
 @SuppressWarnings("ClassUnconnectedToPackage")
 public abstract class TestContext
 {
+	/**
+	 * Name of a PGN file holding the game of single.pgn written with annotation symbols, zero castling and more disambiguation than needed
+	 */
+	public static final    String              ANNOTATED_PGN                = "annotated.pgn";
 	/**
 	 * black_win_mate_headless.pgn filename
 	 */
 	public static final    String              BLACK_WIN_MATE_HEADLESS_PGN  = "black_win_mate_headless.pgn";
+	/**
+	 * Name of a PGN file with a comment holding a line that opens with an Event tag
+	 */
+	public static final    String              COMMENT_EVENT_PGN            = "comment_event.pgn";
 	/**
 	 * draw_headless.pgn filename
 	 */
@@ -64,6 +72,14 @@ public abstract class TestContext
 	 * Name of a large PGN file with many valid games (and no invalid games)
 	 */
 	public static final    String              LARGE_PGN                    = "large.pgn";
+	/**
+	 * Name of a PGN file with ISO-8859-1 characters in its tags
+	 */
+	public static final    String              LATIN_PGN                    = "latin.pgn";
+	/**
+	 * Name of a PGN file with a game that has no Event tag, so the game is not found by a PGNIndex
+	 */
+	public static final    String              MISSING_EVENT_PGN            = "missing_event.pgn";
 	/**
 	 * Name of a PGN file with multiple invalid and multiple valid games
 	 */
@@ -37,12 +37,14 @@ public class UCIEngineTest
 	private static final String MATE_BOARD_FEN           = "r2n1R2/p1R3bk/1p3N1p/2p4B/2P5/1P6/PBK3PP/4r3";
 	private static final String MID_PLAY_BOARD_FEN       = "rnbqkbnr/pppppppp/8/8/2P5/8/PP1PPPPP/RNBQKBNR";
 	private static final String NEARLY_MATE_BOARD_FEN    = "r2n1R2/p1R3bk/1p5p/2p4B/2P3N1/1P6/PBK3PP/4r3";
+	private static final String NO_MOVE_FOUND            = "A best move should be found in a playable position";
 	@SuppressWarnings("DuplicateStringLiteralInspection")
 	private static final String OS_LINUX                 = "linux";
 	private static final String OS_MAC                   = "mac";
 	@SuppressWarnings("DuplicateStringLiteralInspection")
 	private static final String OS_WINDOWS               = "windows";
 	private static final String START_BOARD_FEN          = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR";
+	private static final String START_GAME_FEN           = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
 	@SuppressWarnings("DuplicateStringLiteralInspection")
 	private static final String STOCKFISH_7_X64          = "stockfish-7-x64-";
 	@SuppressWarnings("DuplicateStringLiteralInspection")
@@ -120,6 +122,27 @@ public class UCIEngineTest
 		uciEngine.stopEngine();
 	}
 
+	/**
+	 * Tests that searches return as soon as the engine reports a best move and that back-to-back searches each read only their own output
+	 *
+	 * @throws IOException                    Error on executing UCI command
+	 * @throws OperationNotSupportedException Either architecture or operating system not supported
+	 */
+	@Test
+	public void getBestMoveWithoutWaitTest() throws IOException, OperationNotSupportedException
+	{
+		final UCIEngine uciEngine = UCIEngineTest.initTestEngine();
+		for(int i = 0; i < 5; i++)
+		{
+			uciEngine.setPosition(UCIEngineTest.MATE_BOARD_FEN);
+			Assert.assertEquals("A best move should not be found in a checkmate position", "(none)", uciEngine.getBestMoveAlt(1).trim());
+			uciEngine.setPosition(UCIEngineTest.NEARLY_MATE_BOARD_FEN);
+			Assert.assertEquals(UCIEngineTest.UNEXPECTED_NON_MATE_SCORE, - 1.0, (double) uciEngine.getMoveScoreAlt(UCIEngineTest.A8B8_MOVE, 10), 0.0);
+		}
+		Assert.assertEquals(UCIEngineTest.UNEXPECTED_FEN_INEQUALITY, UCIEngineTest.NEARLY_MATE_BOARD_FEN, uciEngine.getPosition());
+		uciEngine.stopEngine();
+	}
+
 	/**
 	 * Tests that getBestMoveScore works as expected
 	 *
@@ -141,6 +164,23 @@ public class UCIEngineTest
 		uciEngine.stopEngine();
 	}
 
+	/**
+	 * Tests that playMove feeds moves on from the start of the game
+	 *
+	 * @throws IOException                    Error on executing UCI command
+	 * @throws OperationNotSupportedException Either architecture or operating system not supported
+	 */
+	@Test
+	public void playMoveTest() throws IOException, OperationNotSupportedException
+	{
+		final UCIEngine uciEngine = UCIEngineTest.initTestEngine();
+		uciEngine.startGame(UCIEngineTest.START_GAME_FEN);
+		Assert.assertEquals(UCIEngineTest.UNEXPECTED_FEN_INEQUALITY, UCIEngineTest.START_BOARD_FEN, uciEngine.getPosition());
+		uciEngine.playMove(UCIEngineTest.C2C4_MOVE);
+		Assert.assertEquals(UCIEngineTest.UNEXPECTED_FEN_INEQUALITY, UCIEngineTest.MID_PLAY_BOARD_FEN, uciEngine.getPosition());
+		uciEngine.stopEngine();
+	}
+
 	/**
 	 * Tests that reset works as expected
 	 *
@@ -159,6 +199,29 @@ public class UCIEngineTest
 		uciEngine.stopEngine();
 	}
 
+	/**
+	 * Tests that searches stop at node and time limits, and that adaptive searches stop long before an otherwise unreachable depth
+	 *
+	 * @throws IOException                    Error on executing UCI command
+	 * @throws OperationNotSupportedException Either architecture or operating system not supported
+	 */
+	@Test
+	public void searchLimitTest() throws IOException, OperationNotSupportedException
+	{
+		final UCIEngine uciEngine = UCIEngineTest.initTestEngine();
+		uciEngine.setPosition(UCIEngineTest.MID_PLAY_BOARD_FEN);
+		SearchResult result = uciEngine.search(new SearchLimit(SearchLimitMode.NODES, 10000L));
+		Assert.assertFalse(UCIEngineTest.NO_MOVE_FOUND, SearchResult.NO_MOVE.equals(result.getBestMove()));
+		result = uciEngine.search(new SearchLimit(SearchLimitMode.MOVETIME, 100L));
+		Assert.assertFalse(UCIEngineTest.NO_MOVE_FOUND, SearchResult.NO_MOVE.equals(result.getBestMove()));
+		result = uciEngine.search(new SearchLimit(SearchLimitMode.DEPTH, 100L, 3));
+		Assert.assertFalse(UCIEngineTest.NO_MOVE_FOUND, SearchResult.NO_MOVE.equals(result.getBestMove()));
+		uciEngine.setPosition(UCIEngineTest.MATE_BOARD_FEN);
+		result = uciEngine.search(new SearchLimit(SearchLimitMode.NODES, 10000L));
+		Assert.assertEquals("A best move should not be found in a checkmate position", SearchResult.NO_MOVE, result.getBestMove().trim());
+		uciEngine.stopEngine();
+	}
+
 	/**
 	 * Tests that setPosition works as expected
 	 *